@@ -0,0 +1,95 @@
+package de.lmu.ifi.nm.www.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.lmu.ifi.nm.www.Conv;
+import de.lmu.ifi.nm.www.IPv4;
+import de.lmu.ifi.nm.www.Iandr;
+import de.lmu.ifi.nm.www.Subtool;
+
+/**
+ * The address helpers of the Satellite, called for every interface and link
+ * of a discovered network element.
+ *
+ * Every call takes the next of ADDRESSES random addresses and masks, so the
+ * JIT cannot fold the arguments.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class AddressBenchmark {
+	private static final int ADDRESSES = 1024;
+
+	private String[] addresses = new String[ADDRESSES];
+	private String[] masks = new String[ADDRESSES];
+	private int next = 0;
+
+	/**
+	 * Create the addresses. The masks are between /8 and /30, so every
+	 * address is of class A, B or C.
+	 */
+	@Setup
+	public void setUp() {
+		Random random = new Random(42);
+
+		for (int i = 0; i < ADDRESSES; i++) {
+			addresses[i] = IPv4.toString((1 + random.nextInt(223)) << 24
+					| random.nextInt(1 << 24));
+			masks[i] = IPv4.toString(IPv4.mask(8 + random.nextInt(23)));
+		}
+	}
+
+	/**
+	 * @return The subnet address of the next address.
+	 */
+	@Benchmark
+	public String and() {
+		int i = next++ & (ADDRESSES - 1);
+		return Iandr.and(addresses[i], masks[i]);
+	}
+
+	/**
+	 * @return The broadcast address of the next address.
+	 */
+	@Benchmark
+	public String broadcast() {
+		int i = next++ & (ADDRESSES - 1);
+		return Iandr.broadcast(addresses[i], masks[i]);
+	}
+
+	/**
+	 * @return The binary octets of the next address.
+	 */
+	@Benchmark
+	public char[][] ipToBin() {
+		return Conv.ipToBin(addresses[next++ & (ADDRESSES - 1)]);
+	}
+
+	/**
+	 * @return The subnet calculation of the next address.
+	 */
+	@Benchmark
+	public Subtool subtool() {
+		int i = next++ & (ADDRESSES - 1);
+		Subtool subtool = new Subtool();
+
+		subtool.setIPAddress(addresses[i]);
+		subtool.setSubnetMask(masks[i]);
+		return subtool;
+	}
+}
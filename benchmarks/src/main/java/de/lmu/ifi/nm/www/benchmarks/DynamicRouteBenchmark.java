@@ -0,0 +1,75 @@
+package de.lmu.ifi.nm.www.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jgrapht.graph.DirectedWeightedMultigraph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import controllers.routing.DynamicShortestPaths;
+import controllers.routing.RouteChange;
+import de.lmu.ifi.nm.www.Link;
+import de.lmu.ifi.nm.www.Vertex;
+
+/**
+ * Logic.setRoutes() after the cost of a single link has changed, which
+ * DynamicShortestPaths handles by repairing the affected shortest path trees
+ * instead of computing all of them again. Every invocation changes the next
+ * link, alternately to four times and back to its original cost.
+ *
+ * The trees of all sources are kept in memory, 20 bytes per pair of
+ * vertices, so the topologies are smaller than in the other benchmarks.
+ * RouteBenchmark.shortestPathTree() times nodes gives the full calculation
+ * for comparison.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class DynamicRouteBenchmark {
+	@Param({ "10", "100", "1000", "2000" })
+	private int nodes;
+
+	private DirectedWeightedMultigraph<Vertex, Link> network = null;
+	private List<Link> links = null;
+	private DynamicShortestPaths shortestPaths = null;
+	private int link = 0;
+
+	/**
+	 * Create the topology and compute all shortest paths.
+	 */
+	@Setup
+	public void setUp() {
+		network = new SyntheticTopology(nodes, 42).toGraph();
+		links = new ArrayList<Link>(network.edgeSet());
+		shortestPaths = new DynamicShortestPaths(null);
+		shortestPaths.update(network);
+	}
+
+	/**
+	 * @return The changed routes.
+	 */
+	@Benchmark
+	public List<RouteChange> linkCostChange() {
+		Link changed = links.get(link / 2);
+		double weight = network.getEdgeWeight(changed);
+
+		network.setEdgeWeight(changed, link % 2 == 0 ? weight * 4
+				: weight / 4);
+		link = (link + 1) % (2 * links.size());
+		return shortestPaths.update(network);
+	}
+}
@@ -0,0 +1,53 @@
+package de.lmu.ifi.nm.www.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.lmu.ifi.nm.www.TopologyStore;
+
+/**
+ * Conversion of a discovered CDP neighborhood into the JGraphT topology, as
+ * done by CiscoAgent.toJGraphT(): every router is added to a TopologyStore
+ * and every CDP edge becomes a Link. The onePK Edge objects are replaced by
+ * the equivalent SyntheticTopology.CdpEdge, everything from
+ * TopologyStore.addLink() on is the production code.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class GraphConversionBenchmark {
+	@Param({ "10", "100", "1000", "10000", "50000" })
+	private int nodes;
+
+	private SyntheticTopology topology = null;
+
+	/**
+	 * Create the topology.
+	 */
+	@Setup
+	public void setUp() {
+		topology = new SyntheticTopology(nodes, 42);
+	}
+
+	/**
+	 * @return The topology holding all routers and links.
+	 */
+	@Benchmark
+	public TopologyStore toJGraphT() {
+		return topology.toStore();
+	}
+}
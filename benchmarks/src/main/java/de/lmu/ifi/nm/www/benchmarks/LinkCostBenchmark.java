@@ -0,0 +1,153 @@
+package de.lmu.ifi.nm.www.benchmarks;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.dyndns.kwitte.jfunction.FunctionFormatException;
+import org.dyndns.kwitte.jfunction.Terms;
+import org.jgrapht.graph.DirectedWeightedMultigraph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import controllers.routing.LinkCostFormula;
+import controllers.routing.LinkCostTable;
+import de.lmu.ifi.nm.www.Link;
+import de.lmu.ifi.nm.www.Vertex;
+
+/**
+ * The link cost calculation of Logic.calculateLinkCosts() in the web
+ * application.
+ *
+ * Logic needs a running Play application and database, so the loop is
+ * repeated here step by step: collect the links through incomingEdgesOf(),
+ * compute the cost of every link and set it as the weight of the link. Links
+ * have no feeds, so the default value of the metric is used, like for links
+ * without a LinkToMetric relation.
+ *
+ * parsePerLink() is the original approach, which replaces the metric name in
+ * the formula by its value and parses the result with jfunction for every
+ * link. compiledFormula() evaluates a LinkCostFormula that is compiled once
+ * for one link after the other. columnarFormula() puts the values into a
+ * LinkCostTable and evaluates the formula for all links at once, as Logic
+ * does now.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class LinkCostBenchmark {
+	@Param({ "10", "100", "1000", "10000", "50000" })
+	private int nodes;
+
+	/** The formula of conf/application.properties. */
+	@Param({ "1+Preis" })
+	private String formula;
+
+	@Param({ "Preis" })
+	private String metric;
+
+	@Param({ "10" })
+	private int defaultValue;
+
+	private DirectedWeightedMultigraph<Vertex, Link> network = null;
+	private LinkCostFormula compiled = null;
+
+	/**
+	 * Create the topology and compile the formula.
+	 *
+	 * @throws FunctionFormatException
+	 *             If the formula is not valid.
+	 */
+	@Setup
+	public void setUp() throws FunctionFormatException {
+		network = new SyntheticTopology(nodes, 42).toGraph();
+		compiled = LinkCostFormula.compile(formula,
+				Collections.singletonList(metric));
+	}
+
+	/**
+	 * @return The sum of all link costs.
+	 * @throws FunctionFormatException
+	 *             If the formula is not valid.
+	 */
+	@Benchmark
+	public long parsePerLink() throws FunctionFormatException {
+		Set<Link> LinkSet = new HashSet<Link>();
+		for (Vertex Vertex : network.vertexSet()) {
+			for (Link Link : network.incomingEdgesOf(Vertex)) {
+				LinkSet.add(Link);
+			}
+		}
+
+		long total = 0;
+		for (Link l : LinkSet) {
+			String newFormula = formula.replace(metric,
+					new Integer(defaultValue).toString());
+			int value = (int) Terms.evaluate(newFormula);
+
+			network.setEdgeWeight(l, value);
+			total += value;
+		}
+		return total;
+	}
+
+	/**
+	 * @return The sum of all link costs.
+	 */
+	@Benchmark
+	public long compiledFormula() {
+		Set<Link> LinkSet = new HashSet<Link>();
+		for (Vertex Vertex : network.vertexSet()) {
+			for (Link Link : network.incomingEdgesOf(Vertex)) {
+				LinkSet.add(Link);
+			}
+		}
+
+		long total = 0;
+		double[] values = new double[1];
+		for (Link l : LinkSet) {
+			values[0] = defaultValue;
+			int value = (int) compiled.evaluate(values);
+
+			network.setEdgeWeight(l, value);
+			total += value;
+		}
+		return total;
+	}
+
+	/**
+	 * @return The sum of all link costs.
+	 */
+	@Benchmark
+	public long columnarFormula() {
+		Set<Link> LinkSet = new HashSet<Link>();
+		for (Vertex Vertex : network.vertexSet()) {
+			for (Link Link : network.incomingEdgesOf(Vertex)) {
+				LinkSet.add(Link);
+			}
+		}
+
+		LinkCostTable table = new LinkCostTable(compiled, LinkSet);
+		table.fill(0, defaultValue);
+
+		long total = 0;
+		for (double cost : table.evaluate()) {
+			total += (int) cost;
+		}
+		table.apply(network);
+		return total;
+	}
+}
@@ -0,0 +1,131 @@
+package de.lmu.ifi.nm.www.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.jgrapht.alg.DijkstraShortestPath;
+import org.jgrapht.graph.DirectedWeightedMultigraph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import controllers.routing.GraphSnapshot;
+import controllers.routing.RouteChange;
+import controllers.routing.ShortestPathTree;
+import de.lmu.ifi.nm.www.Link;
+import de.lmu.ifi.nm.www.RouteRequest;
+import de.lmu.ifi.nm.www.Vertex;
+
+/**
+ * The path computation of Logic.setRoutes() in the web application.
+ *
+ * pairwiseDijkstra() is the original approach, which runs
+ * DijkstraShortestPath.findPathBetween() for every pair of routers. A
+ * complete run takes nodes * (nodes - 1) searches, which is hours for the
+ * larger topologies. One invocation therefore computes the routes from one
+ * source to 'destinations' evenly spread destinations; a complete run takes
+ * about nodes * (nodes - 1) / destinations times the reported time.
+ *
+ * shortestPathTree() is the full calculation of DynamicShortestPaths in the
+ * web application, which computes the routes from one source to all
+ * destinations with a single ShortestPathTree; a complete run takes about
+ * nodes times the reported time.
+ *
+ * The source moves on with every invocation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class RouteBenchmark {
+	@Param({ "10", "100", "1000", "10000", "50000" })
+	private int nodes;
+
+	@Param({ "10" })
+	private int destinations;
+
+	private DirectedWeightedMultigraph<Vertex, Link> network = null;
+	private List<Vertex> vertices = null;
+	private GraphSnapshot graph = null;
+	private int source = 0;
+
+	/**
+	 * Create the topology.
+	 */
+	@Setup
+	public void setUp() {
+		network = new SyntheticTopology(nodes, 42).toGraph();
+		vertices = new ArrayList<Vertex>(network.vertexSet());
+		graph = new GraphSnapshot(network);
+	}
+
+	/**
+	 * @return The routes by source and destination.
+	 */
+	@Benchmark
+	public Map<String, RouteRequest> pairwiseDijkstra() {
+		Map<String, RouteRequest> routes = new HashMap<String, RouteRequest>();
+		Vertex start = vertices.get(source);
+		int count = Math.min(destinations, vertices.size() - 1);
+
+		source = (source + 1) % vertices.size();
+		for (int i = 1; i <= count; i++) {
+			Vertex end = vertices.get((source - 1 + i * (vertices.size() - 1)
+					/ count)
+					% vertices.size());
+			if (start == end) {
+				continue;
+			}
+
+			List<Link> path = DijkstraShortestPath.findPathBetween(network,
+					start, end);
+			if (path.size() > 1) {
+				Vertex nextV = network.getEdgeTarget(path.get(0));
+				Vertex nextToLast = network.getEdgeSource(path.get(path
+						.size() - 1));
+				routes.put(start.getHostname() + "|" + end.getHostname(),
+						new RouteRequest(start.getHostname(),
+								nextV.getHostname(), nextToLast.getHostname(),
+								end.getHostname()));
+			}
+		}
+		return routes;
+	}
+
+	/**
+	 * @return The routes by source and destination.
+	 */
+	@Benchmark
+	public Map<String, RouteRequest> shortestPathTree() {
+		Map<String, RouteRequest> routes = new HashMap<String, RouteRequest>();
+		int start = graph.indexOf(vertices.get(source));
+		ShortestPathTree tree = new ShortestPathTree(graph, start);
+		String startName = graph.getVertex(start).getHostname();
+
+		source = (source + 1) % vertices.size();
+		for (int end = 0; end < graph.getVertexCount(); end++) {
+			if (end != start && tree.getHopCount(end) > 1) {
+				String endName = graph.getVertex(end).getHostname();
+				routes.put(RouteChange.getRouteKey(startName, endName),
+						new RouteRequest(startName, graph.getVertex(
+								tree.getNextHop(end)).getHostname(), graph
+								.getVertex(tree.getSecondToLast(end))
+								.getHostname(), endName));
+			}
+		}
+		return routes;
+	}
+}
@@ -0,0 +1,214 @@
+package de.lmu.ifi.nm.www.benchmarks;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.jgrapht.graph.DirectedWeightedMultigraph;
+
+import de.lmu.ifi.nm.www.IPv4;
+import de.lmu.ifi.nm.www.Link;
+import de.lmu.ifi.nm.www.NetworkPrefix;
+import de.lmu.ifi.nm.www.TopologyStore;
+import de.lmu.ifi.nm.www.Vertex;
+
+/**
+ * Reproducible router topology for the benchmarks.
+ *
+ * The routers form a ring, and every router has one additional link to a
+ * random other router, which gives an average degree of four and short paths
+ * like in a meshed backbone. Every link is a /30 out of 10.0.0.0/8 and is
+ * reported in both directions, like CDP does. Management addresses are taken
+ * from 100.64.0.0/10.
+ */
+public class SyntheticTopology {
+	private static final int LINK_NETWORKS = IPv4.toInt("10.0.0.0");
+	private static final int MANAGEMENT_NETWORK = IPv4.toInt("100.64.0.0");
+
+	private List<Vertex> vertices = new ArrayList<Vertex>();
+	private List<CdpEdge> edges = new ArrayList<CdpEdge>();
+
+	/**
+	 * A directed link as reported by CDP, i.e. the input of
+	 * CiscoAgent.toJGraphT().
+	 */
+	public static class CdpEdge {
+		private final String headHostname;
+		private final String headInt;
+		private final String headIP;
+		private final String tailHostname;
+		private final String tailInt;
+		private final String tailIP;
+
+		/**
+		 * @param headHostname
+		 *            - The host name of the source router.
+		 * @param headInt
+		 *            - The source interface.
+		 * @param headIP
+		 *            - The IP-Address of the source interface.
+		 * @param tailHostname
+		 *            - The host name of the destination router.
+		 * @param tailInt
+		 *            - The destination interface.
+		 * @param tailIP
+		 *            - The IP-Address of the destination interface.
+		 */
+		public CdpEdge(String headHostname, String headInt, String headIP,
+				String tailHostname, String tailInt, String tailIP) {
+			this.headHostname = headHostname;
+			this.headInt = headInt;
+			this.headIP = headIP;
+			this.tailHostname = tailHostname;
+			this.tailInt = tailInt;
+			this.tailIP = tailIP;
+		}
+
+		/**
+		 * Add the link to a topology like CiscoAgent.addLink() does.
+		 *
+		 * @param store
+		 *            - The topology the routers have been added to.
+		 * @return True if the link has been added.
+		 */
+		public boolean addTo(TopologyStore store) {
+			return store.addLink(headHostname, headInt, headIP, tailHostname,
+					tailInt, tailIP);
+		}
+	}
+
+	/**
+	 * @param nodes
+	 *            - The number of routers, at least 2.
+	 * @param seed
+	 *            - The seed of the random links; the same seed yields the
+	 *            same topology.
+	 */
+	public SyntheticTopology(int nodes, long seed) {
+		Random random = new Random(seed);
+
+		for (int i = 0; i < nodes; i++) {
+			vertices.add(new Vertex("FTX" + (1000000 + i), null, null,
+					new HashMap<String, List<NetworkPrefix>>(),
+					random.nextInt(10000000), getHostname(i),
+					IPv4.toString(MANAGEMENT_NETWORK + i),
+					47 + random.nextDouble() * 8, 6 + random.nextDouble() * 9));
+		}
+
+		Set<Long> connected = new HashSet<Long>();
+		for (int i = 0; i < nodes; i++) {
+			connect(i, (i + 1) % nodes, connected);
+		}
+		for (int i = 0; i < nodes; i++) {
+			connect(i, random.nextInt(nodes), connected);
+		}
+	}
+
+	/**
+	 * @param index
+	 *            - The number of a router.
+	 * @return The host name of the router.
+	 */
+	public static String getHostname(int index) {
+		return "R" + index;
+	}
+
+	/**
+	 * Add the routers and links the way the CiscoAgent adds discovered
+	 * network elements and CDP neighbors.
+	 *
+	 * @return A new topology holding all routers and links.
+	 */
+	public TopologyStore toStore() {
+		TopologyStore store = new TopologyStore(
+				new DirectedWeightedMultigraph<Vertex, Link>(Link.class));
+
+		for (Vertex vertex : vertices) {
+			store.addVertex(vertex);
+		}
+		for (CdpEdge edge : edges) {
+			edge.addTo(store);
+		}
+		return store;
+	}
+
+	/**
+	 * @return A new graph holding all routers and links.
+	 */
+	public DirectedWeightedMultigraph<Vertex, Link> toGraph() {
+		return toStore().getGraph();
+	}
+
+	/**
+	 * @return The routers.
+	 */
+	public List<Vertex> getVertices() {
+		return vertices;
+	}
+
+	/**
+	 * @return The links in both directions.
+	 */
+	public List<CdpEdge> getEdges() {
+		return edges;
+	}
+
+	/**
+	 * Connect two routers through a new /30 unless they are the same or
+	 * already connected.
+	 *
+	 * @param a
+	 *            - The number of the first router.
+	 * @param b
+	 *            - The number of the second router.
+	 * @param connected
+	 *            - The pairs of routers that are already connected.
+	 */
+	private void connect(int a, int b, Set<Long> connected) {
+		if (a == b
+				|| !connected.add((long) Math.min(a, b) << 32 | Math.max(a, b))) {
+			return;
+		}
+
+		int network = LINK_NETWORKS + (edges.size() / 2) * 4;
+		String aInt = addInterface(vertices.get(a), network + 1);
+		String bInt = addInterface(vertices.get(b), network + 2);
+		String aIP = IPv4.toString(network + 1);
+		String bIP = IPv4.toString(network + 2);
+
+		edges.add(new CdpEdge(getHostname(a), aInt, aIP, getHostname(b), bInt,
+				bIP));
+		edges.add(new CdpEdge(getHostname(b), bInt, bIP, getHostname(a), aInt,
+				aIP));
+	}
+
+	/**
+	 * @param vertex
+	 *            - The router.
+	 * @param address
+	 *            - The IP-Address of the new interface.
+	 * @return The name of the new interface.
+	 */
+	private static String addInterface(Vertex vertex, int address) {
+		HashMap<String, List<NetworkPrefix>> interfaces = vertex
+				.getInterfaceHash();
+		String name = "GigabitEthernet0/" + interfaces.size();
+		List<NetworkPrefix> prefixes = new ArrayList<NetworkPrefix>();
+
+		try {
+			prefixes.add(new NetworkPrefix(InetAddress.getByAddress(new byte[] {
+					(byte) IPv4.octet(address, 0), (byte) IPv4.octet(address, 1),
+					(byte) IPv4.octet(address, 2), (byte) IPv4.octet(address, 3) }),
+					30));
+		} catch (UnknownHostException e) {
+			throw new IllegalArgumentException(e);
+		}
+		interfaces.put(name, prefixes);
+		return name;
+	}
+}
@@ -0,0 +1,138 @@
+package de.lmu.ifi.nm.www.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.lmu.ifi.nm.www.TopologyDelta;
+import de.lmu.ifi.nm.www.TopologyStore;
+
+/**
+ * Serialization of the topology as sent from the Satellite to the
+ * TopologyDiscoverer: the whole graph as returned by getTopology() and the
+ * full TopologyDelta as returned by getTopologyDelta(0) and streamed in
+ * chunks. Both use the compact wire format of Vertex and Link.
+ *
+ * The payload sizes are printed once per trial.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class WireFormatBenchmark {
+	@Param({ "10", "100", "1000", "10000", "50000" })
+	private int nodes;
+
+	private TopologyStore store = null;
+	private TopologyDelta delta = null;
+	private byte[] graphBytes = null;
+	private byte[] deltaBytes = null;
+
+	/**
+	 * Create the topology and its serialized forms.
+	 *
+	 * @throws IOException
+	 *             If the topology could not be serialized.
+	 */
+	@Setup
+	public void setUp() throws IOException {
+		store = new SyntheticTopology(nodes, 42).toStore();
+		delta = store.getDelta(0);
+		graphBytes = serialize(store.getGraph());
+		deltaBytes = serialize(delta);
+
+		System.out.println();
+		System.out.println(nodes + " routers, " + store.getLinkCount()
+				+ " links: graph " + graphBytes.length + " bytes, delta "
+				+ deltaBytes.length + " bytes");
+	}
+
+	/**
+	 * @return The serialized graph.
+	 * @throws IOException
+	 *             If the graph could not be serialized.
+	 */
+	@Benchmark
+	public byte[] serializeGraph() throws IOException {
+		return serialize(store.getGraph());
+	}
+
+	/**
+	 * @return The deserialized graph.
+	 * @throws Exception
+	 *             If the graph could not be deserialized.
+	 */
+	@Benchmark
+	public Object deserializeGraph() throws Exception {
+		return deserialize(graphBytes);
+	}
+
+	/**
+	 * @return The serialized delta.
+	 * @throws IOException
+	 *             If the delta could not be serialized.
+	 */
+	@Benchmark
+	public byte[] serializeDelta() throws IOException {
+		return serialize(delta);
+	}
+
+	/**
+	 * @return The deserialized delta.
+	 * @throws Exception
+	 *             If the delta could not be deserialized.
+	 */
+	@Benchmark
+	public Object deserializeDelta() throws Exception {
+		return deserialize(deltaBytes);
+	}
+
+	/**
+	 * @param object
+	 *            - The object to be serialized.
+	 * @return Its Java serialization, as sent by RMI.
+	 * @throws IOException
+	 *             If the object could not be serialized.
+	 */
+	private static byte[] serialize(Object object) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(object);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * @param bytes
+	 *            - The Java serialization of an object.
+	 * @return The deserialized object.
+	 * @throws Exception
+	 *             If the object could not be deserialized.
+	 */
+	private static Object deserialize(byte[] bytes) throws Exception {
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(
+				bytes));
+		try {
+			return in.readObject();
+		} finally {
+			in.close();
+		}
+	}
+}
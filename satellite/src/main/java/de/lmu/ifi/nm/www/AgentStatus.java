@@ -0,0 +1,98 @@
+package de.lmu.ifi.nm.www;
+
+import java.io.Serializable;
+
+/**
+ * The state of the topology discovery of a single network agent, as reported
+ * by ISatellite.getAgentStatus().
+ */
+public class AgentStatus implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The states of a discovery.
+	 */
+	public enum State {
+		/** The network agent is crawling the network. */
+		RUNNING,
+		/** The network agent has added its topology to the graph. */
+		COMPLETED,
+		/** The network agent did not finish within the agent timeout. */
+		TIMED_OUT,
+		/** The network agent has thrown an exception. */
+		FAILED
+	}
+
+	private String agentName = null;
+	private State state = null;
+	private long startTime = 0;
+	private long duration = 0;
+	private String message = null;
+
+	/**
+	 * @param agentName
+	 *            - The name of the network agent.
+	 * @param state
+	 *            - The state of the discovery.
+	 * @param startTime
+	 *            - The time the discovery has started in milliseconds.
+	 * @param duration
+	 *            - The time the discovery has taken so far in milliseconds.
+	 * @param message
+	 *            - The reason of a failure or null.
+	 */
+	public AgentStatus(String agentName, State state, long startTime,
+			long duration, String message) {
+		this.agentName = agentName;
+		this.state = state;
+		this.startTime = startTime;
+		this.duration = duration;
+		this.message = message;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return agentName + ": " + state + " after " + duration + " ms"
+				+ (message == null ? "" : " (" + message + ")");
+	}
+
+	/**
+	 * @return The name of the network agent.
+	 */
+	public String getAgentName() {
+		return agentName;
+	}
+
+	/**
+	 * @return The state of the discovery.
+	 */
+	public State getState() {
+		return state;
+	}
+
+	/**
+	 * @return The time the discovery has started in milliseconds.
+	 */
+	public long getStartTime() {
+		return startTime;
+	}
+
+	/**
+	 * @return The time the discovery has taken in milliseconds.
+	 */
+	public long getDuration() {
+		return duration;
+	}
+
+	/**
+	 * @return The reason of a failure or null.
+	 */
+	public String getMessage() {
+		return message;
+	}
+}
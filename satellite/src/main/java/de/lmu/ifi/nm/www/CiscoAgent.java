@@ -1,11 +1,18 @@
 package de.lmu.ifi.nm.www;
 
-import java.rmi.RemoteException;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 
@@ -26,29 +33,26 @@ import com.cisco.onep.element.SessionConfig.SessionTransportMode;
 import com.cisco.onep.interfaces.InterfaceFilter;
 import com.cisco.onep.interfaces.InterfaceStateEvent;
 import com.cisco.onep.interfaces.InterfaceStateListener;
+import com.cisco.onep.interfaces.InterfaceStatus.InterfaceState;
 import com.cisco.onep.interfaces.InterfaceStatus.InterfaceStateEventType;
 import com.cisco.onep.interfaces.NetworkInterface;
 import com.cisco.onep.interfaces.NetworkPrefix;
 import com.cisco.onep.routing.ARTRouteStateEvent;
 import com.cisco.onep.routing.ARTRouteStateListener;
 import com.cisco.onep.routing.AppRouteTable;
-import com.cisco.onep.routing.L3UnicastNextHop;
 import com.cisco.onep.routing.L3UnicastRIBFilter;
 import com.cisco.onep.routing.L3UnicastRoute;
-import com.cisco.onep.routing.L3UnicastRouteOperation;
 import com.cisco.onep.routing.L3UnicastRouteRange;
 import com.cisco.onep.routing.L3UnicastScope;
 import com.cisco.onep.routing.RIB;
 import com.cisco.onep.routing.RIBRouteStateEvent;
 import com.cisco.onep.routing.RIBRouteStateListener;
 import com.cisco.onep.routing.Route;
-import com.cisco.onep.routing.RouteOperation;
 import com.cisco.onep.routing.RouteRange;
 import com.cisco.onep.routing.Routing;
 import com.cisco.onep.routing.L3UnicastScope.AFIType;
 import com.cisco.onep.routing.L3UnicastScope.SAFIType;
 import com.cisco.onep.routing.RIB.RouteStateListenerFlag;
-import com.cisco.onep.routing.RouteOperation.RouteOperationType;
 import com.cisco.onep.topology.Edge;
 import com.cisco.onep.topology.Edge.EdgeType;
 import com.cisco.onep.topology.Graph;
@@ -59,6 +63,8 @@ import com.cisco.onep.topology.TopologyListener;
 import com.cisco.onep.topology.Topology.TopologyType;
 import com.cisco.onep.topology.TopologyEvent.TopologyEventType;
 
+import controllers.networking.NetworkEvent;
+
 /**
  * The CiscoAgent is the implementation of a network agent and is instantiated by the Satellite.
  * 
@@ -85,18 +91,21 @@ public class CiscoAgent implements INetworkAgent {
 	@SuppressWarnings("unused")
 	private CDPListenerImplementer myCDPListener = null;
 	// private TopologyListenerImplementer myTopologyListener = null;
+	private String applicationName = null;
 	private String seedAddress = null;
 	private String userName = null;
 	private String password = null;
-	private HashMap<String, List<de.lmu.ifi.nm.www.NetworkPrefix>> interfaceHash = null;
-	private HashMap<String, String> nodesHash = null;
-	private NetworkElement myNetworkElement = null;
+	private ConcurrentMap<String, String> nodesHash = null;
+	private volatile NetworkElement myNetworkElement = null;
 	private SessionConfig mySessionConf = null;
+	private SessionPool mySessionPool = null;
+	private RouteInstaller myRouteInstaller = null;
+	private ExecutorService myEventDiscovery = null;
 	private NetworkApplication myNetworkApplication = null;
 	private double latitude;
 	private double longitude;
 	private Graph myCdpGraph = null;
-	private List<List<InetAddress>> tailNodeConnectorList = null;;
+	private int discoveryThreads = 1;
 	private Logger myLogger = null;
 
 	/**
@@ -116,10 +125,15 @@ public class CiscoAgent implements INetworkAgent {
 	 * @param password
 	 *            - The password to authorize with the network element. Needs to
 	 *            be configured on the network device.
+	 * @param installThreads
+	 *            - The number of threads installing routes on the network
+	 *            elements.
 	 */
 	public CiscoAgent(Satellite mySatellite, String applicationName,
-			String seedAddress, String userName, String password) {
+			String seedAddress, String userName, String password,
+			int installThreads) {
 		this.mySatellite = mySatellite;
+		this.applicationName = applicationName;
 		this.seedAddress = seedAddress;
 		this.userName = userName;
 		this.password = password;
@@ -137,8 +151,49 @@ public class CiscoAgent implements INetworkAgent {
 		}
 
 		mySessionConf = new SessionConfig(SessionTransportMode.SOCKET);
+		mySessionPool = new SessionPool(myNetworkApplication, userName,
+				password, mySessionConf);
+		myRouteInstaller = new RouteInstaller(mySessionPool, installThreads);
+		myEventDiscovery = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "CiscoAgent-discovery");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
 		myCDPListener = new CDPListenerImplementer();
-		nodesHash = new HashMap<String, String>();
+		nodesHash = new ConcurrentHashMap<String, String>();
+	}
+
+	/**
+	 * Discovery task for the worker pool. Connects to a single network element
+	 * and returns the neighbor addresses found via CDP.
+	 */
+	private class DiscoveryTask implements Callable<List<String>> {
+		private final String elementAddress;
+
+		/**
+		 * @param elementAddress
+		 *            - The IP-Address of the network element to discover.
+		 */
+		public DiscoveryTask(String elementAddress) {
+			this.elementAddress = elementAddress;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.util.concurrent.Callable#call()
+		 */
+		public List<String> call() {
+			long start = System.nanoTime();
+			try {
+				return listenToAddress(elementAddress);
+			} finally {
+				Satellite.myMetrics.record("discoverElement", elementAddress,
+						start);
+			}
+		}
 	}
 
 	/**
@@ -147,8 +202,11 @@ public class CiscoAgent implements INetworkAgent {
 	private class TopologyListenerImplementer implements TopologyListener {
 
 		/**
-		 * Handle TopologyEvents. Call mySatellite.sendEvent() when an event has
-		 * occurred.
+		 * Handle TopologyEvents. Apply the added or deleted edges to the
+		 * Satellite's topology graph and queue an event for the
+		 * TopologyDiscoverer for every edge. Edges to unknown network
+		 * elements are linked after those have been discovered in the
+		 * background.
 		 * 
 		 * @param event
 		 *            The TopologyEvent.
@@ -164,21 +222,33 @@ public class CiscoAgent implements INetworkAgent {
 
 			if (event.getType().contains(TopologyEventType.EDGES_ADD)) {
 				getLogger().info("Some edges have been added.");
-				try {
-					mySatellite.sendEvent(mySatellite.getSatelliteName(),
-							"Some edges have been added.");
-				} catch (RemoteException e) {
-					e.printStackTrace();
+				for (Edge edge : event.getEdgeList()) {
+					// Unknown neighbors are discovered before linking them
+					if (!addLink(edge)
+							&& Satellite.myTopologyStore.getVertex(edge
+									.getTailNode().getName()) == null) {
+						List<String> addresses = new ArrayList<String>();
+						for (InetAddress address : edge.getTailNodeConnector()
+								.getAddressList()) {
+							addresses.add(address.getHostAddress());
+						}
+						discoverInBackground(addresses, edge);
+					} else {
+						queueLinkAdded(edge);
+					}
 				}
 			}
 
 			if (event.getType().contains(TopologyEventType.EDGES_DELETE)) {
 				getLogger().info("Some edges have been deleted.");
-				try {
-					mySatellite.sendEvent(mySatellite.getSatelliteName(),
-							"Some edges have been deleted.");
-				} catch (RemoteException e) {
-					e.printStackTrace();
+				for (Edge edge : event.getEdgeList()) {
+					Satellite.myTopologyStore.removeLink(edge.getHeadNode()
+							.getName(), edge.getHeadNodeConnector().getName(),
+							edge.getTailNode().getName());
+					mySatellite.queueEvent(new NetworkEvent(
+							NetworkEvent.Type.LINK_REMOVED, edge.getHeadNode()
+									.getName(), edge.getHeadNodeConnector()
+									.getName(), edge.getTailNode().getName()));
 				}
 			}
 
@@ -195,8 +265,8 @@ public class CiscoAgent implements INetworkAgent {
 			InterfaceStateListener {
 
 		/**
-		 * Handle InterfaceStateEvent. Call mySatellite.sendEvent() when an
-		 * event has occurred.
+		 * Handle InterfaceStateEvent. Mark the links attached to the interface
+		 * as up or down and queue an event for the TopologyDiscoverer.
 		 * 
 		 * @param event
 		 *            The InterfaceStateEvent.
@@ -214,16 +284,18 @@ public class CiscoAgent implements INetworkAgent {
 			getLogger().info("State event type: " + event.getStateEventType());
 
 			try {
-				mySatellite.sendEvent(
-						mySatellite.getSatelliteName(),
-						"Interface "
-								+ event.getInterface().getName()
-								+ " of "
-								+ event.getNetworkElement().getProperty()
-										.getSysName() + " was set to "
-								+ event.getState() + ".");
-			} catch (RemoteException e) {
-				e.printStackTrace();
+				String hostname = event.getNetworkElement().getProperty()
+						.getSysName();
+				boolean isUp = event.getState() == InterfaceState.ONEP_IF_STATE_OPER_UP;
+
+				Satellite.myTopologyStore.setInterfaceState(hostname, event
+						.getInterface().getName(), isUp);
+
+				mySatellite.queueEvent(new NetworkEvent(
+						isUp ? NetworkEvent.Type.INTERFACE_UP
+								: NetworkEvent.Type.INTERFACE_DOWN, hostname,
+						event.getInterface().getName(), event.getState()
+								.toString()));
 			} catch (OnepRemoteProcedureException e) {
 				e.printStackTrace();
 			} catch (OnepConnectionException e) {
@@ -238,7 +310,9 @@ public class CiscoAgent implements INetworkAgent {
 	private class CDPListenerImplementer implements CDPListener {
 		/**
 		 * Handle the CDPEvents. Add addresses to HashMap 'nodesHash' to
-		 * progress network discovery.
+		 * progress network discovery. Network elements found this way are
+		 * crawled in the background and linked into the Satellite's topology
+		 * graph.
 		 * 
 		 * @param cdpEvent
 		 *            The CDPEvent from the network element.
@@ -249,11 +323,11 @@ public class CiscoAgent implements INetworkAgent {
 		 */
 		public synchronized void handleEvent(CDPEvent cdpEvent,
 				Object clientData) {
-			List<InetAddress> addressList = cdpEvent.getAddresses();
-			for (InetAddress address : addressList) {
-				String neighborAddress = address.getHostAddress();
-				addElementAddress(neighborAddress);
+			List<String> addresses = new ArrayList<String>();
+			for (InetAddress address : cdpEvent.getAddresses()) {
+				addresses.add(address.getHostAddress());
 			}
+			discoverInBackground(addresses, null);
 		}
 	}
 
@@ -262,7 +336,9 @@ public class CiscoAgent implements INetworkAgent {
 	 **/
 	private class RIBRouteListener implements RIBRouteStateListener {
 		/**
-		 * Handle RIBRouteStateEvent.
+		 * Handle RIBRouteStateEvent. The cached routing table of the network
+		 * element is dropped, so the next request fetches the changed one, and
+		 * pending route installs are confirmed.
 		 * 
 		 * @param event
 		 *            The RIBRouteStateEvent from the network element.
@@ -273,6 +349,11 @@ public class CiscoAgent implements INetworkAgent {
 		 */
 		public synchronized void handleEvent(RIBRouteStateEvent event,
 				Object clientData) {
+			String address = getManagementIPaddress(event.getNetworkElement());
+
+			mySatellite.getRoutingTableCache().invalidate(address);
+			getRouteInstaller().confirm(address, event.getRoute());
+
 			try {
 				getLogger().info(
 						"Received RIBRouteStateEvent on "
@@ -365,7 +446,7 @@ public class CiscoAgent implements INetworkAgent {
 	 */
 	private void registerARTRouteListener(NetworkElement networkElement)
 			throws OnepException {
-		AppRouteTable appRouteTable = getAppRouteTable();
+		AppRouteTable appRouteTable = getAppRouteTable(networkElement);
 
 		L3UnicastScope aL3UnicastScope = new L3UnicastScope("", AFIType.IPV4,
 				SAFIType.UNICAST, "base");
@@ -388,7 +469,7 @@ public class CiscoAgent implements INetworkAgent {
 	 */
 	private void registerRIBRouteListener(NetworkElement networkElement)
 			throws OnepException {
-		RIB rib = getRIB();
+		RIB rib = getRIB(networkElement);
 		L3UnicastScope aL3UnicastScope = new L3UnicastScope("", AFIType.IPV4,
 				SAFIType.UNICAST, "base");
 		L3UnicastRIBFilter filter = new L3UnicastRIBFilter();
@@ -402,87 +483,141 @@ public class CiscoAgent implements INetworkAgent {
 	/**
 	 * Get the topology graph object of a network element via CDP. New
 	 * discovered nodes are added to the global Satellite.myGraph object.
+	 * 
+	 * @param networkElement
+	 *            - The connected network element to query.
+	 * @return The neighbor addresses found in the CDP table of the network
+	 *         element.
 	 */
-	private void getTopologyGraphviaCDP() {
-		boolean isInVertexSet = false;
-		tailNodeConnectorList = new ArrayList<List<InetAddress>>();
+	private List<String> getTopologyGraphviaCDP(NetworkElement networkElement) {
+		List<String> neighborAddresses = new ArrayList<String>();
 
-		if (!isInVertexSet) {
-			// Add vertex to JGraphT graph object
-			Satellite.myGraph.addVertex(initVertex());
+		// Add vertex to JGraphT graph object unless it is already known
+		Satellite.myTopologyStore.addVertex(initVertex(networkElement));
 
-			try {
-				// Get graph object from network element
-				Topology myTopology = new Topology(myNetworkElement,
-						TopologyType.CDP);
+		try {
+			// Get graph object from network element
+			Topology myTopology = new Topology(networkElement,
+					TopologyType.CDP);
 
-				// registerTopologyListener(myTopology);
+			// Keep the graph up to date when links appear or disappear
+			registerTopologyListener(myTopology);
 
-				// Concatenate graphs
+			// Concatenate graphs
+			synchronized (this) {
 				if (myCdpGraph == null) {
 					myCdpGraph = myTopology.getGraph();
 				} else {
 					myCdpGraph.concatenate(myTopology.getGraph());
 				}
-
-				// Get TailNodeConnectorList to retrieve neighbor addresses
-				for (Edge edge : myTopology.getGraph().getEdgeList(
-						EdgeType.DIRECTED)) {
-					tailNodeConnectorList.add(edge.getTailNodeConnector()
-							.getAddressList());
-				}
-			} catch (OnepConnectionException e) {
-				e.printStackTrace();
-			} catch (OnepRemoteProcedureException e) {
-				e.printStackTrace();
-			} catch (OnepIllegalArgumentException e) {
-				e.printStackTrace();
 			}
 
-			// Add addresses from TailNodeConnectorList to nodesHash
-			for (List<InetAddress> connectorList : tailNodeConnectorList) {
-				for (InetAddress address : connectorList) {
-					String neighborAddress = address.getHostAddress();
-					addElementAddress(neighborAddress);
+			// Get TailNodeConnectorList to retrieve neighbor addresses
+			for (Edge edge : myTopology.getGraph().getEdgeList(
+					EdgeType.DIRECTED)) {
+				for (InetAddress address : edge.getTailNodeConnector()
+						.getAddressList()) {
+					neighborAddresses.add(address.getHostAddress());
 				}
 			}
+		} catch (OnepConnectionException e) {
+			e.printStackTrace();
+		} catch (OnepRemoteProcedureException e) {
+			e.printStackTrace();
+		} catch (OnepIllegalArgumentException e) {
+			e.printStackTrace();
+		} catch (OnepException e) {
+			e.printStackTrace();
 		}
+
+		return neighborAddresses;
 	}
 
 	/**
-	 * Given the address of a network element, register this as a CDP listener,
-	 * and call registerSyslogListener.
+	 * Given the address of a network element, connect to it, record its
+	 * addresses, register the route and interface listeners and add it to the
+	 * topology graph.
 	 * 
 	 * @param elementAddress
 	 *            - Address of the network element to listen to.
+	 * @return The neighbor addresses of the network element. The list is empty
+	 *         if the network element could not be queried.
 	 */
-	private void listenToAddress(String elementAddress) {
+	private List<String> listenToAddress(String elementAddress) {
 		try {
-			if (myNetworkElement != null
-					&& InetAddress.getAllByName(elementAddress).equals(
-							myNetworkElement.getAddress())) {
-				getLogger().info(
-						"Already listen to network element with address "
-								+ elementAddress + ".");
-			} else {
-				getLogger().info(
-						"Connecting to address " + elementAddress + ".");
-				myNetworkElement = getMyNetworkApplication().getNetworkElement(
-						InetAddress.getByName(elementAddress));
-
-				myNetworkElement.connect(getUserName(), getPassword(),
-						mySessionConf);
+			NetworkElement networkElement = getSessionPool().acquire(
+					elementAddress);
+			try {
+				long start = System.nanoTime();
+				discoverAddresses(networkElement);
+				Satellite.myMetrics.record("discoverAddresses", elementAddress,
+						start);
+
+				start = System.nanoTime();
+				registerARTRouteListener(networkElement);
+				registerRIBRouteListener(networkElement);
+				registerInterfaceStateListener(networkElement);
+				Satellite.myMetrics.record("registerListeners",
+						elementAddress, start);
+
+				// Listeners need the session to stay open
+				getSessionPool().pin(elementAddress);
+
+				start = System.nanoTime();
+				try {
+					return getTopologyGraphviaCDP(networkElement);
+				} finally {
+					Satellite.myMetrics.record("queryCDP", elementAddress,
+							start);
+				}
+			} finally {
+				getSessionPool().release(elementAddress);
 			}
+		} catch (Exception e) {
+			getLogger().error(e.getLocalizedMessage(), e);
+		}
+		return new ArrayList<String>();
+	}
 
-			discoverAddresses(myNetworkElement);
-
-			registerARTRouteListener(myNetworkElement);
-			registerRIBRouteListener(myNetworkElement);
-			registerInterfaceStateListener(myNetworkElement);
+	/**
+	 * Crawl the CDP neighborhood starting at the given address. Network
+	 * elements are discovered by a bounded pool of 'discoveryThreads' workers:
+	 * every neighbor address that has not been recorded in 'nodesHash' yet is
+	 * handed to the pool as soon as it is found, so the crawl time depends on
+	 * the depth of the network rather than on the number of network elements.
+	 * 
+	 * @param startAddress
+	 *            - The IP-Address of the network element to start with.
+	 */
+	private void discoverNetwork(String startAddress) {
+		ExecutorService pool = Executors.newFixedThreadPool(getDiscoveryThreads());
+		CompletionService<List<String>> completionService = new ExecutorCompletionService<List<String>>(
+				pool);
+		int pending = 0;
 
-			getTopologyGraphviaCDP();
-		} catch (Exception e) {
+		try {
+			completionService.submit(new DiscoveryTask(startAddress));
+			pending++;
+
+			while (pending > 0) {
+				List<String> neighborAddresses = completionService.take().get();
+				pending--;
+
+				for (String neighborAddress : neighborAddresses) {
+					if (markVisited(neighborAddress)) {
+						completionService.submit(new DiscoveryTask(
+								neighborAddress));
+						pending++;
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			getLogger().error("Network discovery has been interrupted.");
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
 			getLogger().error(e.getLocalizedMessage(), e);
+		} finally {
+			pool.shutdownNow();
 		}
 	}
 
@@ -502,7 +637,6 @@ public class CiscoAgent implements INetworkAgent {
 			throws OnepException {
 		List<NetworkInterface> interfaceList = networkElement
 				.getInterfaceList(new InterfaceFilter());
-		interfaceHash = new HashMap<String, List<de.lmu.ifi.nm.www.NetworkPrefix>>();
 
 		for (NetworkInterface networkInterface : interfaceList) {
 			List<InetAddress> addressList = networkInterface.getAddressList();
@@ -527,19 +661,69 @@ public class CiscoAgent implements INetworkAgent {
 	}
 
 	/**
-	 * Similarly to discoverAddresses, an address discovered in
-	 * handleEvent(CDPEvent cdpEvent, Object clientData) is recorded to avoid
-	 * further processing, and listenToAddress(String elementAddress) is called
-	 * for the address.
+	 * Record an address in 'nodesHash' unless it is already known. The check
+	 * and the insertion are atomic, so concurrent discovery workers never
+	 * process the same address twice.
 	 * 
 	 * @param elementAddress
 	 *            - The IP-Address of the network element.
+	 * @return True if the address has not been recorded before.
 	 */
-	private void addElementAddress(String elementAddress) {
-		if (!nodesHash.containsKey(elementAddress)) {
-			nodesHash.put(elementAddress, elementAddress);
-			listenToAddress(elementAddress);
+	private boolean markVisited(String elementAddress) {
+		return nodesHash.putIfAbsent(elementAddress, elementAddress) == null;
+	}
+
+	/**
+	 * Similarly to discoverAddresses, addresses discovered by the listeners
+	 * are recorded to avoid further processing. The network is crawled from
+	 * the new ones by the 'myEventDiscovery' thread, so the onePK event thread
+	 * never waits for a crawl. The links of the new network elements are
+	 * added to the topology graph, then the given edge, if any.
+	 * 
+	 * @param addresses
+	 *            - The IP-Addresses of network elements.
+	 * @param edge
+	 *            - The CDP edge to be added after the crawl, or null.
+	 */
+	private void discoverInBackground(List<String> addresses, final Edge edge) {
+		final List<String> newAddresses = new ArrayList<String>();
+		for (String elementAddress : addresses) {
+			if (Satellite.myTopologyStore.getVertexByAddress(elementAddress) == null
+					&& Satellite.myTopologyStore.getInterface(elementAddress) == null
+					&& markVisited(elementAddress)) {
+				newAddresses.add(elementAddress);
+			}
 		}
+		if (newAddresses.isEmpty() && edge == null) {
+			return;
+		}
+
+		myEventDiscovery.execute(new Runnable() {
+			public void run() {
+				for (String elementAddress : newAddresses) {
+					discoverNetwork(elementAddress);
+				}
+				if (!newAddresses.isEmpty()) {
+					toJGraphT();
+				}
+				if (edge != null) {
+					addLink(edge);
+					queueLinkAdded(edge);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Queue the event of an added link for the TopologyDiscoverer.
+	 * 
+	 * @param edge
+	 *            - The directed CDP edge.
+	 */
+	private void queueLinkAdded(Edge edge) {
+		mySatellite.queueEvent(new NetworkEvent(NetworkEvent.Type.LINK_ADDED,
+				edge.getHeadNode().getName(), edge.getHeadNodeConnector()
+						.getName(), edge.getTailNode().getName()));
 	}
 
 	/*
@@ -550,97 +734,56 @@ public class CiscoAgent implements INetworkAgent {
 	 */
 	public boolean setRoute(String sourceAddress, String destNetwork,
 			int destNetworkPrefix, String nextHop, String sourceInt) {
-		try {
-			if (myNetworkElement != null
-					&& InetAddress.getAllByName(sourceAddress).equals(
-							myNetworkElement.getAddress())) {
-				getLogger().info(
-						"Already listen to network element with address "
-								+ sourceAddress + ".");
-			} else {
-				getLogger().debug(
-						"Getting network element with address " + sourceAddress
-								+ ".");
-				myNetworkElement = getMyNetworkApplication().getNetworkElement(
-						InetAddress.getByName(sourceAddress));
-				if (!myNetworkElement.isConnected()) {
-					myNetworkElement.connect(getUserName(), getPassword());
-				}
-			}
+		List<StaticRoute> routes = new ArrayList<StaticRoute>();
+		routes.add(new StaticRoute(sourceAddress, destNetwork,
+				destNetworkPrefix, nextHop, sourceInt));
 
-			// Before adding the route sleep for 5 seconds. Routes haven'n been
-			// placed without the prior sleep.
-			Thread.sleep(5000);
+		return setRoutes(sourceAddress, routes);
+	}
 
-			addRoutes(getAppRouteTable(), destNetwork, destNetworkPrefix,
-					nextHop, sourceInt);
-		} catch (Exception e) {
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.lmu.ifi.nm.www.INetworkAgent#setRoutes(java.lang.String,
+	 * java.util.List)
+	 */
+	public boolean setRoutes(String sourceAddress, List<StaticRoute> routes) {
+		try {
+			return installRoutes(sourceAddress, routes).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
 			getLogger().error(e.getLocalizedMessage(), e);
-			return false;
 		}
-
-		return true;
+		return false;
 	}
 
-	/**
-	 * Add custom application routes to the network element.
+	/*
+	 * (non-Javadoc)
 	 * 
-	 * @param appRouteTable
-	 *            - Application route table to be updated.
-	 * @throws OnepConnectionException
-	 *             As determined by the presentation layer semantics.
-	 * @throws OnepIllegalArgumentException
-	 *             As determined by the presentation layer semantics.
-	 * @throws OnepRemoteProcedureException
-	 *             As determined by the presentation layer semantics.
-	 * @throws UnknownHostException
-	 *             As determined by the presentation layer semantics.
+	 * @see de.lmu.ifi.nm.www.INetworkAgent#installRoutes(java.lang.String,
+	 * java.util.List)
 	 */
-	private void addRoutes(AppRouteTable appRouteTable,
-			String destinationNetwork, int destNetworkPrefix, String nextHop,
-			String sourceInt) throws OnepConnectionException,
-			OnepIllegalArgumentException, OnepRemoteProcedureException,
-			UnknownHostException {
-		// Specify scope
-		L3UnicastScope aL3UnicastScope = new L3UnicastScope("", AFIType.IPV4,
-				SAFIType.UNICAST, "base");
-
-		// Create a new route and change its administrative distance
-		// to make it more trusted. This operation will have the same effect
-		// as the adding/replacing static route using the following IOS
-		// config command:
-		//
-		// ip route 10.1.1.0 255.255.255.0 10.15.1.7
-		NetworkPrefix destNetwork = new NetworkPrefix(
-				InetAddress.getByName(destinationNetwork), destNetworkPrefix);
-
-		L3UnicastNextHop aL3UnicastNextHop = new L3UnicastNextHop(
-				getNetworkElement().getInterfaceByName(sourceInt),
-				InetAddress.getByName(nextHop));
-
-		Set<L3UnicastNextHop> aL3UnicastNextHopList = new HashSet<L3UnicastNextHop>();
-		aL3UnicastNextHopList.add(aL3UnicastNextHop);
-		L3UnicastRoute aRoute = new L3UnicastRoute(destNetwork,
-				aL3UnicastNextHopList);
-		aRoute.setAdminDistance(1);
-
-		// Now update the application route table with this route
-		RouteOperation routeOperation = new L3UnicastRouteOperation(
-				RouteOperationType.REPLACE, aRoute);
-		List<RouteOperation> routeOperationList = new ArrayList<RouteOperation>();
-		routeOperationList.add(routeOperation);
-		appRouteTable.updateRoutes(aL3UnicastScope, routeOperationList);
+	public Future<Boolean> installRoutes(String sourceAddress,
+			List<StaticRoute> routes) {
+		getLogger().debug(
+				"Installing " + routes.size() + " routes on " + sourceAddress
+						+ ".");
+		return getRouteInstaller().install(sourceAddress, routes);
 	}
 
 	/**
-	 * Get the Application Route Table generated by this application.
+	 * Get the Application Route Table of a network element.
 	 * 
+	 * @param networkElement
+	 *            - The connected network element.
 	 * @return AppRouteTable for this application.
 	 * @throws OnepConnectionException
 	 *             As determined by the presentation layer semantics.
 	 */
-	private AppRouteTable getAppRouteTable() throws OnepConnectionException {
-		Routing routing = Routing.getInstance(getNetworkElement());
+	private AppRouteTable getAppRouteTable(NetworkElement networkElement)
+			throws OnepConnectionException {
+		Routing routing = Routing.getInstance(networkElement);
 		AppRouteTable appRouteTable = routing.getAppRouteTable();
 
 		return appRouteTable;
@@ -649,26 +792,31 @@ public class CiscoAgent implements INetworkAgent {
 	/**
 	 * Get the RIB table for the connected network element.
 	 * 
+	 * @param networkElement
+	 *            - The connected network element.
 	 * @return RIB table for the connected network element.
 	 * @throws OnepConnectionException
 	 *             As determined by the presentation layer semantics.
 	 */
-	private RIB getRIB() throws OnepConnectionException {
-		Routing routing = Routing.getInstance(getNetworkElement());
+	private RIB getRIB(NetworkElement networkElement)
+			throws OnepConnectionException {
+		Routing routing = Routing.getInstance(networkElement);
 		RIB rib = routing.getRib();
 
 		return rib;
 	}
 
 	/**
-	 * Disconnect from the network element.
+	 * Disconnect from all network elements held by the session pool.
 	 * 
 	 * @return True of the disconnect succeeded without an exception, and false
 	 *         if there was an exception.
 	 */
 	public boolean disconnect() {
 		try {
-			myNetworkElement.disconnect();
+			myEventDiscovery.shutdownNow();
+			getRouteInstaller().shutdown();
+			getSessionPool().close();
 		} catch (Exception e) {
 			getLogger().error("Failed to disconnect from Network Element");
 			return false;
@@ -680,7 +828,16 @@ public class CiscoAgent implements INetworkAgent {
 	 * @return Serial number of the network element.
 	 */
 	public String getIdentifier() {
-		return myNetworkElement.getProperty().getSerialNo();
+		return getIdentifier(getNetworkElement());
+	}
+
+	/**
+	 * @param networkElement
+	 *            - The connected network element.
+	 * @return Serial number of the network element.
+	 */
+	public String getIdentifier(NetworkElement networkElement) {
+		return networkElement.getProperty().getSerialNo();
 	}
 
 	/**
@@ -705,11 +862,24 @@ public class CiscoAgent implements INetworkAgent {
 	 *         an address and a prefix, e.g. 10.1.0.0/24.
 	 */
 	public HashMap<String, List<de.lmu.ifi.nm.www.NetworkPrefix>> getInterfaceHash() {
+		return getInterfaceHash(getNetworkElement());
+	}
+
+	/**
+	 * Get all available interfaces of a network element.
+	 * 
+	 * @param networkElement
+	 *            - The connected network element.
+	 * @return A HashMap where the key is the interface name and the value a
+	 *         list of NetworkPrefix objects.
+	 */
+	public HashMap<String, List<de.lmu.ifi.nm.www.NetworkPrefix>> getInterfaceHash(
+			NetworkElement networkElement) {
 		List<de.lmu.ifi.nm.www.NetworkPrefix> interfacePrefixList;
-		interfaceHash = new HashMap<String, List<de.lmu.ifi.nm.www.NetworkPrefix>>();
+		HashMap<String, List<de.lmu.ifi.nm.www.NetworkPrefix>> interfaceHash = new HashMap<String, List<de.lmu.ifi.nm.www.NetworkPrefix>>();
 
 		try {
-			List<NetworkInterface> interfaceList = getNetworkElement()
+			List<NetworkInterface> interfaceList = networkElement
 					.getInterfaceList(
 							new InterfaceFilter(null,
 									NetworkInterface.Type.ONEP_IF_TYPE_ANY));
@@ -744,11 +914,64 @@ public class CiscoAgent implements INetworkAgent {
 	 * @return The routing table as a String object.
 	 */
 	public String getRoutingTable() {
-		String RibString = "";
+		return getRoutingTable(getNetworkElement());
+	}
+
+	/**
+	 * Get the routing information base of a network element.
+	 * 
+	 * @param networkElement
+	 *            - The connected network element.
+	 * @return The routing table as a String object.
+	 */
+	public String getRoutingTable(NetworkElement networkElement) {
+		StringBuilder ribString = new StringBuilder();
+		List<String> routeList = getRouteList(networkElement);
+
+		if (routeList != null) {
+			for (String route : routeList) {
+				ribString.append(route).append("\n");
+			}
+		}
+
+		return ribString.toString();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.lmu.ifi.nm.www.INetworkAgent#getRoutingTable(java.lang.String)
+	 */
+	public List<String> getRoutingTable(String address) {
+		long start = System.nanoTime();
+		try {
+			NetworkElement networkElement = getSessionPool().acquire(address);
+			try {
+				return getRouteList(networkElement);
+			} finally {
+				getSessionPool().release(address);
+				Satellite.myMetrics.record("getRoutingTable", address, start);
+			}
+		} catch (Exception e) {
+			getLogger().error(e.getLocalizedMessage(), e);
+		}
+		return null;
+	}
+
+	/**
+	 * Get the layer 3 unicast routes of a network element.
+	 * 
+	 * @param networkElement
+	 *            - The connected network element.
+	 * @return The routes, one String per route, or null if the RIB could not
+	 *         be read.
+	 */
+	private List<String> getRouteList(NetworkElement networkElement) {
+		List<String> routeStrings = new ArrayList<String>();
 
 		try {
 			// Create a Routing object for the network element
-			Routing routing = Routing.getInstance(getNetworkElement());
+			Routing routing = Routing.getInstance(networkElement);
 
 			// Specify scope, filter and range
 			L3UnicastScope aL3UnicastScope = new L3UnicastScope("",
@@ -768,13 +991,13 @@ public class CiscoAgent implements INetworkAgent {
 			List<Route> routeList = rib.getRouteList(aL3UnicastScope, filter,
 					range);
 
-			// Print the route in the list if it is a layer 3 unicast route
+			// Keep the route if it is a layer 3 unicast route
 			for (Route route : routeList) {
 				if (route instanceof L3UnicastRoute) {
-					L3UnicastRoute l3uRoute = (L3UnicastRoute) route;
-					RibString = RibString + l3uRoute + "\n";
+					routeStrings.add(route.toString());
 				}
 			}
+			return routeStrings;
 		} catch (OnepConnectionException e) {
 			getLogger().error("\n\n--- Exception Text ---\n" + e.getMessage());
 			getLogger().error(
@@ -793,15 +1016,24 @@ public class CiscoAgent implements INetworkAgent {
 							+ e.getLocalizedMessage());
 		}
 
-		return RibString;
+		return null;
 	}
 
 	/**
 	 * @return The uptime of the network element.
 	 */
 	public long getUpTime() {
+		return getUpTime(getNetworkElement());
+	}
+
+	/**
+	 * @param networkElement
+	 *            - The connected network element.
+	 * @return The uptime of the network element.
+	 */
+	public long getUpTime(NetworkElement networkElement) {
 		try {
-			return getNetworkElement().getProperty().getSysUpTime();
+			return networkElement.getProperty().getSysUpTime();
 		} catch (OnepRemoteProcedureException e) {
 			getLogger().error("\n\n--- Exception Text ---\n" + e.getMessage());
 			getLogger().error(
@@ -821,8 +1053,17 @@ public class CiscoAgent implements INetworkAgent {
 	 * @return The host name of the network element.
 	 */
 	public String getHostname() {
+		return getHostname(getNetworkElement());
+	}
+
+	/**
+	 * @param networkElement
+	 *            - The connected network element.
+	 * @return The host name of the network element.
+	 */
+	public String getHostname(NetworkElement networkElement) {
 		try {
-			return getNetworkElement().getProperty().getSysName();
+			return networkElement.getProperty().getSysName();
 		} catch (OnepRemoteProcedureException e) {
 			getLogger().error("\n\n--- Exception Text ---\n" + e.getMessage());
 			getLogger().error(
@@ -842,7 +1083,16 @@ public class CiscoAgent implements INetworkAgent {
 	 * @return The management IP-Address of the network element.
 	 */
 	public String getManagementIPaddress() {
-		return getNetworkElement().getAddress().toString().substring(1);
+		return getManagementIPaddress(getNetworkElement());
+	}
+
+	/**
+	 * @param networkElement
+	 *            - The connected network element.
+	 * @return The management IP-Address of the network element.
+	 */
+	public String getManagementIPaddress(NetworkElement networkElement) {
+		return networkElement.getAddress().toString().substring(1);
 	}
 
 	/**
@@ -854,40 +1104,51 @@ public class CiscoAgent implements INetworkAgent {
 
 	/**
 	 * Initialize a new vertex object that will be further added to the
-	 * Satellite.myGraph JGraphT object.
+	 * Satellite.myGraph JGraphT object. The routing table is not part of the
+	 * vertex; it is fetched on demand through getRoutingTable(String).
 	 * 
+	 * @param networkElement
+	 *            - The connected network element the vertex stands for.
 	 * @return A Vertex object.
 	 */
-	private Vertex initVertex() {
-		if (getHostname().equals("Zuerich")) {
-			this.latitude = 47.36865;
-			this.longitude = 8.53918;
+	private Vertex initVertex(NetworkElement networkElement) {
+		String hostname = getHostname(networkElement);
+		double latitude = 0;
+		double longitude = 0;
+
+		if (hostname.equals("Zuerich")) {
+			latitude = 47.36865;
+			longitude = 8.53918;
 		}
 
-		if (getHostname().equals("Berlin")) {
-			this.latitude = 52.471;
-			this.longitude = 13.344612;
+		if (hostname.equals("Berlin")) {
+			latitude = 52.471;
+			longitude = 13.344612;
 		}
 
-		if (getHostname().equals("Muenchen")) {
-			this.latitude = 48.175168;
-			this.longitude = 11.564484;
+		if (hostname.equals("Muenchen")) {
+			latitude = 48.175168;
+			longitude = 11.564484;
 		}
 
-		if (getHostname().equals("Koeln")) {
-			this.latitude = 50.936977;
-			this.longitude = 6.961555;
+		if (hostname.equals("Koeln")) {
+			latitude = 50.936977;
+			longitude = 6.961555;
 		}
 
-		if (getHostname().equals("Hamburg")) {
-			this.latitude = 53.564715;
-			this.longitude = 9.959793;
+		if (hostname.equals("Hamburg")) {
+			latitude = 53.564715;
+			longitude = 9.959793;
 		}
 
-		Vertex v = new Vertex(getIdentifier(), getUserName(), getPassword(),
-				getInterfaceHash(), getRoutingTable(), getUpTime(),
-				getHostname(), getManagementIPaddress(), getLatitude(),
-				getLongitude());
+		this.latitude = latitude;
+		this.longitude = longitude;
+
+		Vertex v = new Vertex(getIdentifier(networkElement), getUserName(),
+				getPassword(), getInterfaceHash(networkElement),
+				getUpTime(networkElement),
+				hostname, getManagementIPaddress(networkElement), latitude,
+				longitude);
 
 		getLogger().info(
 				"\n" + "Added new vertex to JGraphT graph: " + v.toString());
@@ -901,42 +1162,46 @@ public class CiscoAgent implements INetworkAgent {
 	 * @see satellite.INetworkAgent#toJGraphT()
 	 */
 	public void toJGraphT() {
-		Vertex headNode = null;
-		Vertex tailNode = null;
-		Link myLink = null;
-		String subnetAddress = null;
-		String headInt = null;
-		String tailInt = null;
-		String headIP = null;
-		String tailIP = null;
-
-		for (Edge edge : myCdpGraph.getEdgeList(EdgeType.DIRECTED)) {
-			for (Vertex vertex : Satellite.myGraph.vertexSet()) {
-				if (vertex.getHostname().equals(edge.getHeadNode().getName())) {
-					headNode = vertex;
-					headInt = edge.getHeadNodeConnector().getName();
-					headIP = edge.getHeadNodeConnector().getAddressList()
-							.get(0).toString().substring(1);
-				}
+		List<Edge> edgeList = null;
+		long start = System.nanoTime();
 
-				if (vertex.getHostname().equals(edge.getTailNode().getName())) {
-					tailNode = vertex;
-					tailInt = edge.getTailNodeConnector().getName();
-					tailIP = edge.getTailNodeConnector().getAddressList()
-							.get(0).toString().substring(1);
-				}
+		synchronized (this) {
+			if (myCdpGraph == null) {
+				getLogger().error("No CDP graph available to convert!");
+				return;
 			}
+			edgeList = myCdpGraph.getEdgeList(EdgeType.DIRECTED);
+		}
 
-			// Calculate subnet address from source and destination IP address
-			subnetAddress = Iandr.and(headIP, tailIP);
+		for (Edge edge : edgeList) {
+			addLink(edge);
+		}
+		Satellite.myMetrics.record("toJGraphT", null, start);
+	}
 
-			myLink = new Link(headInt, headIP, tailInt, tailIP, subnetAddress,
-					headNode, tailNode);
+	/**
+	 * Add the link described by a CDP edge to the Satellite's topology graph.
+	 * 
+	 * @param edge
+	 *            - The directed CDP edge.
+	 * @return True if the link has been added, false if it already existed or
+	 *         one of its network elements has not been discovered yet.
+	 */
+	private boolean addLink(Edge edge) {
+		List<InetAddress> headAddresses = edge.getHeadNodeConnector()
+				.getAddressList();
+		List<InetAddress> tailAddresses = edge.getTailNodeConnector()
+				.getAddressList();
 
-			if (!Satellite.myGraph.containsEdge(headNode, tailNode)) {
-				Satellite.myGraph.addEdge(headNode, tailNode, myLink);
-			}
+		if (headAddresses.isEmpty() || tailAddresses.isEmpty()) {
+			return false;
 		}
+
+		return Satellite.myTopologyStore.addLink(edge.getHeadNode().getName(),
+				edge.getHeadNodeConnector().getName(), headAddresses.get(0)
+						.getHostAddress(), edge.getTailNode().getName(), edge
+						.getTailNodeConnector().getName(), tailAddresses.get(0)
+						.getHostAddress());
 	}
 
 	/*
@@ -945,10 +1210,70 @@ public class CiscoAgent implements INetworkAgent {
 	 * @see satellite.INetworkAgent#getTopology()
 	 */
 	public void getTopology() {
-		listenToAddress(seedAddress);
+		long start = System.nanoTime();
+
+		markVisited(seedAddress);
+		discoverNetwork(seedAddress);
+		Satellite.myMetrics.record("discoverNetwork", null, start);
+		rememberSeedElement();
 		toJGraphT();
 	}
 
+	/**
+	 * Keep the session of the seed network element as the network element the
+	 * application is connected to, see getNetworkElement(). Set once discovery
+	 * is done instead of by the discovery workers.
+	 */
+	private void rememberSeedElement() {
+		try {
+			myNetworkElement = getSessionPool().acquire(seedAddress);
+			getSessionPool().release(seedAddress);
+		} catch (Exception e) {
+			getLogger().error(e.getLocalizedMessage(), e);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see satellite.INetworkAgent#getName()
+	 */
+	public String getName() {
+		return applicationName + "@" + seedAddress;
+	}
+
+	/**
+	 * @return The pool of onePK sessions used for all network elements.
+	 */
+	public SessionPool getSessionPool() {
+		return mySessionPool;
+	}
+
+	/**
+	 * @return The pipeline that installs routes on the network elements.
+	 */
+	public RouteInstaller getRouteInstaller() {
+		return myRouteInstaller;
+	}
+
+	/**
+	 * @return The number of network elements discovered concurrently.
+	 */
+	public int getDiscoveryThreads() {
+		return discoveryThreads;
+	}
+
+	/**
+	 * Set the size of the worker pool used for network discovery. A value of 1
+	 * discovers one network element after the other.
+	 * 
+	 * @param discoveryThreads
+	 *            - The number of network elements discovered concurrently.
+	 */
+	public void setDiscoveryThreads(int discoveryThreads) {
+		this.discoveryThreads = Math.max(1, discoveryThreads);
+	}
+
 	/**
 	 * @return The logger.
 	 */
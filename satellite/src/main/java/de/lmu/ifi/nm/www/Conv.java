@@ -1,7 +1,5 @@
 package de.lmu.ifi.nm.www;
 
-import java.text.DecimalFormat;
-
 /**
  * @author Lance Colton
  * @author Andrew Madden
@@ -16,11 +14,22 @@ public class Conv {
 	 * @return binary string
 	 */
 	public static String toBinary(String dec) {
-		DecimalFormat df = new DecimalFormat("00000000");
-		int v = Integer.parseInt(dec);
-		String s = Integer.toBinaryString(v);
-		int val = Integer.parseInt(s);
-		return df.format(val);
+		return new String(toBinary(Integer.parseInt(dec)));
+	}
+
+	/**
+	 * convert an octet to binary.
+	 *
+	 * @param octet
+	 *            the value between 0 and 255
+	 * @return the eight binary digits
+	 */
+	private static char[] toBinary(int octet) {
+		char[] bin = new char[8];
+		for (int i = 0; i < 8; i++) {
+			bin[i] = (octet & (0x80 >>> i)) != 0 ? '1' : '0';
+		}
+		return bin;
 	}
 
 	/**
@@ -59,12 +68,11 @@ public class Conv {
 	 * @return char[][]
 	 */
 	public static char[][] ipToBin(String ip) {
-		String[] split = ip.split("[.]");
-		char[] a1 = Conv.toBinary(split[0]).toCharArray();
-		char[] b1 = Conv.toBinary(split[1]).toCharArray();
-		char[] c1 = Conv.toBinary(split[2]).toCharArray();
-		char[] d1 = Conv.toBinary(split[3]).toCharArray();
-		char[][] vec = { a1, b1, c1, d1 };
+		int address = IPv4.toInt(ip);
+		char[][] vec = { toBinary(IPv4.octet(address, 0)),
+				toBinary(IPv4.octet(address, 1)),
+				toBinary(IPv4.octet(address, 2)),
+				toBinary(IPv4.octet(address, 3)) };
 		return vec;
 	}
 
@@ -76,12 +84,9 @@ public class Conv {
 	 * @since 1.2
 	 */
 	public static int numRound(int toRound) {
-		int b = 1;
-
-		for (int i = 0; b < toRound; i++) {
-			b = (int) Math.pow(2, i);
+		if (toRound <= 1) {
+			return 1;
 		}
-
-		return b;
+		return Integer.highestOneBit(toRound - 1) << 1;
 	}
 }
@@ -0,0 +1,159 @@
+package de.lmu.ifi.nm.www;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import controllers.networking.ITopologyDiscoverer;
+import controllers.networking.NetworkEvent;
+
+/**
+ * Asynchronous, bounded queue for the network events sent to the
+ * TopologyDiscoverer.
+ *
+ * Event listeners only add events with offer(), which never blocks. A
+ * background thread waits 'window' milliseconds after the first event of a
+ * batch, so that further events concerning the same link or interface can be
+ * coalesced into it, and sends the whole batch with a single call of
+ * ITopologyDiscoverer.receiveEvents(). At most 'capacity' distinct events are
+ * kept; further ones are dropped until the next batch has been sent.
+ */
+public class EventQueue {
+	private ITopologyDiscoverer myTopologyDiscoverer = null;
+	private String satelliteName = null;
+	private int capacity = 1024;
+	private long window = 500;
+	private Map<String, NetworkEvent> pending = new LinkedHashMap<String, NetworkEvent>();
+	private long dropped = 0;
+	private Thread mySender = null;
+	private Logger myLogger = LoggerFactory.getLogger(EventQueue.class);
+
+	/**
+	 * @param myTopologyDiscoverer
+	 *            - The remote TopologyDiscoverer service object.
+	 * @param satelliteName
+	 *            - The name of the sending Satellite.
+	 * @param capacity
+	 *            - The maximum number of distinct events waiting to be sent.
+	 * @param window
+	 *            - The time in milliseconds events are collected before a
+	 *            batch is sent.
+	 */
+	public EventQueue(ITopologyDiscoverer myTopologyDiscoverer,
+			String satelliteName, int capacity, long window) {
+		this.myTopologyDiscoverer = myTopologyDiscoverer;
+		this.satelliteName = satelliteName;
+		this.capacity = Math.max(1, capacity);
+		this.window = Math.max(0, window);
+
+		mySender = new Thread(new Runnable() {
+			public void run() {
+				sendBatches();
+			}
+		}, "EventQueue");
+		mySender.setDaemon(true);
+		mySender.start();
+	}
+
+	/**
+	 * Add an event without waiting. An event concerning the same link or
+	 * interface as a pending one is merged into it.
+	 *
+	 * @param event
+	 *            - The event to be sent.
+	 * @return False if the event has been dropped because the queue is full.
+	 */
+	public synchronized boolean offer(NetworkEvent event) {
+		NetworkEvent existing = pending.get(event.getKey());
+
+		if (existing != null) {
+			existing.coalesce(event);
+			Satellite.myMetrics.eventOffered(true);
+			return true;
+		}
+
+		if (pending.size() >= capacity) {
+			dropped++;
+			Satellite.myMetrics.eventOffered(false);
+			return false;
+		}
+
+		pending.put(event.getKey(), event);
+		Satellite.myMetrics.eventOffered(true);
+		notifyAll();
+		return true;
+	}
+
+	/**
+	 * Stop the sender thread. Pending events are discarded.
+	 */
+	public void shutdown() {
+		mySender.interrupt();
+	}
+
+	/**
+	 * @return The number of events dropped because the queue was full.
+	 */
+	public synchronized long getDropped() {
+		return dropped;
+	}
+
+	/**
+	 * @return The number of distinct events waiting to be sent.
+	 */
+	public synchronized int size() {
+		return pending.size();
+	}
+
+	/**
+	 * Loop of the sender thread.
+	 */
+	private void sendBatches() {
+		long reported = 0;
+
+		try {
+			while (!Thread.currentThread().isInterrupted()) {
+				synchronized (this) {
+					while (pending.isEmpty()) {
+						wait();
+					}
+				}
+
+				// Give events of the same flap the chance to be coalesced
+				Thread.sleep(window);
+
+				List<NetworkEvent> batch = null;
+				long droppedSinceLast = 0;
+				synchronized (this) {
+					batch = new ArrayList<NetworkEvent>(pending.values());
+					pending.clear();
+					droppedSinceLast = dropped - reported;
+					reported = dropped;
+				}
+
+				if (droppedSinceLast > 0) {
+					myLogger.warn("Dropped " + droppedSinceLast
+							+ " events, the event queue was full.");
+				}
+
+				long start = System.nanoTime();
+				try {
+					myTopologyDiscoverer.receiveEvents(satelliteName, batch);
+					Satellite.myMetrics.eventsSent(batch.size());
+				} catch (RemoteException e) {
+					myLogger.error("Could not send " + batch.size()
+							+ " events: " + e.getLocalizedMessage());
+				} finally {
+					Satellite.myMetrics.record("receiveEvents", null, start);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
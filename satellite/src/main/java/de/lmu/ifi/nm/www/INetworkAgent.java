@@ -1,5 +1,8 @@
 package de.lmu.ifi.nm.www;
 
+import java.util.List;
+import java.util.concurrent.Future;
+
 /**
  * This interface defines a network agent. A network agent discovers the
  * network topology, sets static routes on network devices and converts a
@@ -11,8 +14,15 @@ package de.lmu.ifi.nm.www;
 public interface INetworkAgent {
 	/**
 	 * Discover the network topology. Will be called by the Satellite.
+	 * Several network agents may run concurrently; they add vertices and
+	 * links through Satellite.myTopologyStore.
 	 */
 	public void getTopology();
+
+	/**
+	 * @return The name of the network agent, e.g. for status reports.
+	 */
+	public String getName();
 	
 	/**
 	 * Set a static route on a network element.
@@ -35,6 +45,43 @@ public interface INetworkAgent {
 	public boolean setRoute(String source, String destNet, int destSubnetMask,
 			String nextHop, String sourceInt);
 
+	/**
+	 * Set several static routes on a network element with a single update.
+	 * 
+	 * @param source
+	 *            - The IP-Address of the network element where to configure
+	 *            the routes.
+	 * @param routes
+	 *            - The routes to be configured.
+	 * @return True or false whether the routes have been placed successfully
+	 *         or not.
+	 */
+	public boolean setRoutes(String source, List<StaticRoute> routes);
+
+	/**
+	 * Install several static routes on a network element in the background.
+	 * Installs on different network elements proceed concurrently.
+	 * 
+	 * @param source
+	 *            - The IP-Address of the network element where to configure
+	 *            the routes.
+	 * @param routes
+	 *            - The routes to be configured.
+	 * @return A Future that yields true once the network element has
+	 *         confirmed all routes, and false if they could not be placed.
+	 */
+	public Future<Boolean> installRoutes(String source, List<StaticRoute> routes);
+
+	/**
+	 * Fetch the routing table of a network element.
+	 * 
+	 * @param address
+	 *            - The management IP-Address of the network element.
+	 * @return The routes of the routing table, one per entry, or null if the
+	 *         network element could not be queried.
+	 */
+	public List<String> getRoutingTable(String address);
+
 	/**
 	 * Convert a proprietary topology graph object to a JGraphT graph object.
 	 */
@@ -0,0 +1,180 @@
+package de.lmu.ifi.nm.www;
+
+/**
+ * Arithmetic on IPv4-Addresses represented as primitive int values, e.g.
+ * 10.1.0.1 = 0x0A010001. Apart from parsing and formatting, no method creates
+ * objects, so they can be used in loops over many links and prefixes. Iandr,
+ * Conv and Subtool are kept for compatibility and delegate to this class.
+ */
+public final class IPv4 {
+
+	private IPv4() {
+	}
+
+	/**
+	 * @param address
+	 *            - An IPv4-Address in dotted notation, e.g. 10.1.0.1.
+	 * @return The address as unsigned 32 bit value, or -1 if the string is not
+	 *         a plain IPv4-Address.
+	 */
+	public static long parse(String address) {
+		long value = 0;
+		int octet = -1;
+		int dots = 0;
+
+		for (int i = 0; i < address.length(); i++) {
+			char c = address.charAt(i);
+
+			if (c >= '0' && c <= '9') {
+				octet = (octet < 0 ? 0 : octet * 10) + (c - '0');
+				if (octet > 255) {
+					return -1;
+				}
+			} else if (c == '.' && octet >= 0 && dots < 3) {
+				value = (value << 8) | octet;
+				octet = -1;
+				dots++;
+			} else {
+				return -1;
+			}
+		}
+
+		if (dots != 3 || octet < 0) {
+			return -1;
+		}
+		return (value << 8) | octet;
+	}
+
+	/**
+	 * @param address
+	 *            - An IPv4-Address in dotted notation, e.g. 10.1.0.1.
+	 * @return The address as int.
+	 * @throws IllegalArgumentException
+	 *             If the string is not a plain IPv4-Address.
+	 */
+	public static int toInt(String address) {
+		long value = parse(address);
+		if (value < 0) {
+			throw new IllegalArgumentException("Not an IPv4-Address: "
+					+ address);
+		}
+		return (int) value;
+	}
+
+	/**
+	 * @param address
+	 *            - An IPv4-Address as int.
+	 * @return The address in dotted notation.
+	 */
+	public static String toString(int address) {
+		return (address >>> 24) + "." + ((address >>> 16) & 0xFF) + "."
+				+ ((address >>> 8) & 0xFF) + "." + (address & 0xFF);
+	}
+
+	/**
+	 * @param address
+	 *            - An IPv4-Address as int.
+	 * @param index
+	 *            - The index of the octet, 0 for the leftmost one.
+	 * @return The value of the octet between 0 and 255.
+	 */
+	public static int octet(int address, int index) {
+		return (address >>> (24 - 8 * index)) & 0xFF;
+	}
+
+	/**
+	 * @param prefixLength
+	 *            - The prefix length between 0 and 32.
+	 * @return The subnet mask, e.g. 0xFFFFFF00 for 24.
+	 */
+	public static int mask(int prefixLength) {
+		if (prefixLength <= 0) {
+			return 0;
+		}
+		if (prefixLength >= 32) {
+			return -1;
+		}
+		return -1 << (32 - prefixLength);
+	}
+
+	/**
+	 * @param mask
+	 *            - A subnet mask.
+	 * @return The number of bits set in the mask, e.g. 24 for 255.255.255.0.
+	 */
+	public static int prefixLength(int mask) {
+		return Integer.bitCount(mask);
+	}
+
+	/**
+	 * @param address
+	 *            - An IPv4-Address.
+	 * @param prefixLength
+	 *            - The prefix length of its subnet.
+	 * @return The subnet address.
+	 */
+	public static int network(int address, int prefixLength) {
+		return address & mask(prefixLength);
+	}
+
+	/**
+	 * @param address
+	 *            - An IPv4-Address.
+	 * @param prefixLength
+	 *            - The prefix length of its subnet.
+	 * @return The broadcast address of the subnet.
+	 */
+	public static int broadcast(int address, int prefixLength) {
+		return address | ~mask(prefixLength);
+	}
+
+	/**
+	 * @param address
+	 *            - An IPv4-Address.
+	 * @param prefixLength
+	 *            - The prefix length of its subnet.
+	 * @return The lowest host address of the subnet. /31 and /32 subnets have
+	 *         no network address, so their first address is returned.
+	 */
+	public static int firstHost(int address, int prefixLength) {
+		int network = network(address, prefixLength);
+		return prefixLength >= 31 ? network : network + 1;
+	}
+
+	/**
+	 * @param address
+	 *            - An IPv4-Address.
+	 * @param prefixLength
+	 *            - The prefix length of its subnet.
+	 * @return The highest host address of the subnet. /31 and /32 subnets have
+	 *         no broadcast address, so their last address is returned.
+	 */
+	public static int lastHost(int address, int prefixLength) {
+		int broadcast = broadcast(address, prefixLength);
+		return prefixLength >= 31 ? broadcast : broadcast - 1;
+	}
+
+	/**
+	 * @param prefixLength
+	 *            - The prefix length of a subnet.
+	 * @return The number of addresses in the subnet, including network and
+	 *         broadcast address.
+	 */
+	public static long size(int prefixLength) {
+		return 1L << (32 - Math.max(0, Math.min(32, prefixLength)));
+	}
+
+	/**
+	 * @param network
+	 *            - The subnet address.
+	 * @param prefixLength
+	 *            - The prefix length of the subnet.
+	 * @param address
+	 *            - An IPv4-Address.
+	 * @return True if the address is part of the subnet.
+	 */
+	public static boolean contains(int network, int prefixLength, int address) {
+		int mask = mask(prefixLength);
+		return (network & mask) == (address & mask);
+	}
+}
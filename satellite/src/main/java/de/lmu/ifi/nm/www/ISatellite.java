@@ -2,6 +2,7 @@ package de.lmu.ifi.nm.www;
 
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.util.List;
 
 import org.jgrapht.graph.DirectedWeightedMultigraph;
 
@@ -15,7 +16,10 @@ public interface ISatellite extends Remote {
 	/**
 	 * Get the site's network topology by asking all available Network Agents
 	 * to discover the LAN. The TopologyDiscoverer will call this method while
-	 * discovering the global network topology.
+	 * discovering the global network topology. The LAN is only discovered on
+	 * the first call, afterwards the topology is kept up to date by the events
+	 * of the network elements. The Network Agents run concurrently; agents
+	 * that do not finish in time are left out, see getAgentStatus().
 	 * 
 	 * @return The topology graph object of the site's LAN.
 	 * @throws RemoteException
@@ -26,6 +30,119 @@ public interface ISatellite extends Remote {
 	public DirectedWeightedMultigraph<?, ?> getTopology()
 			throws RemoteException;
 
+	/**
+	 * Get the site's network topology like getTopology(). The Satellite reuses
+	 * a snapshot of its topology for a configurable time.
+	 * 
+	 * @param allowStale
+	 *            - True to receive the last snapshot at once, even if it has
+	 *            expired or the discovery is still running. The snapshot is
+	 *            refreshed in the background.
+	 * @return The topology graph object of the site's LAN.
+	 * @throws RemoteException
+	 *             A RemoteException is the common superclass for a number of
+	 *             communication-related exceptions that may occur during the
+	 *             execution of a remote method call.
+	 */
+	public DirectedWeightedMultigraph<?, ?> getTopology(boolean allowStale)
+			throws RemoteException;
+
+	/**
+	 * Get the changes of the site's network topology since a given version.
+	 * The TopologyDiscoverer keeps the version of the last delta it has
+	 * applied and only receives the vertices and links that have been added,
+	 * changed or removed since then.
+	 * 
+	 * @param sinceVersion
+	 *            - The version of the last applied delta, 0 for none.
+	 * @return The changes of the topology graph. A full delta contains the
+	 *         complete topology.
+	 * @throws RemoteException
+	 *             A RemoteException is the common superclass for a number of
+	 *             communication-related exceptions that may occur during the
+	 *             execution of a remote method call.
+	 */
+	public TopologyDelta getTopologyDelta(long sinceVersion)
+			throws RemoteException;
+
+	/**
+	 * Get the changes of the site's network topology like
+	 * getTopologyDelta(long).
+	 * 
+	 * @param sinceVersion
+	 *            - The version of the last applied delta, 0 for none.
+	 * @param allowStale
+	 *            - True to receive the changes known so far without waiting
+	 *            for a running discovery, which continues in the background.
+	 * @return The changes of the topology graph.
+	 * @throws RemoteException
+	 *             A RemoteException is the common superclass for a number of
+	 *             communication-related exceptions that may occur during the
+	 *             execution of a remote method call.
+	 */
+	public TopologyDelta getTopologyDelta(long sinceVersion, boolean allowStale)
+			throws RemoteException;
+
+	/**
+	 * Get the changes of the site's network topology like
+	 * getTopologyDelta(long, boolean), but in chunks of bounded size, so that
+	 * neither side has to hold the serialized form of a large topology at
+	 * once. Further chunks are fetched with nextTopologyChunk() until
+	 * TopologyChunk.isLast() is true.
+	 * 
+	 * @param sinceVersion
+	 *            - The version of the last applied delta, 0 for none.
+	 * @param allowStale
+	 *            - True to receive the changes known so far without waiting
+	 *            for a running discovery.
+	 * @param maxElements
+	 *            - The maximum number of vertices and links of a chunk.
+	 * @return The first chunk of the stream.
+	 * @throws RemoteException
+	 *             A RemoteException is the common superclass for a number of
+	 *             communication-related exceptions that may occur during the
+	 *             execution of a remote method call.
+	 */
+	public TopologyChunk openTopologyStream(long sinceVersion,
+			boolean allowStale, int maxElements) throws RemoteException;
+
+	/**
+	 * Get the next chunk of a stream opened with openTopologyStream(). A
+	 * stream that is not read for a while is dropped by the Satellite.
+	 * 
+	 * @param streamId
+	 *            - The id of the stream, see TopologyChunk.getStreamId().
+	 * @return The next chunk, or null if the stream is unknown or has
+	 *         expired. The client has to open a new stream then.
+	 * @throws RemoteException
+	 *             A RemoteException is the common superclass for a number of
+	 *             communication-related exceptions that may occur during the
+	 *             execution of a remote method call.
+	 */
+	public TopologyChunk nextTopologyChunk(long streamId)
+			throws RemoteException;
+
+	/**
+	 * Get a part of the routing table of a network element. Routing tables are
+	 * not part of the topology graph. They are fetched on demand and cached by
+	 * the Satellite for a limited time.
+	 * 
+	 * @param hostname
+	 *            - The host name of the network element.
+	 * @param offset
+	 *            - The index of the first route.
+	 * @param limit
+	 *            - The maximum number of routes.
+	 * @return At most 'limit' routes starting at 'offset'. A shorter list means
+	 *         that the end of the routing table has been reached.
+	 * @throws RemoteException
+	 *             A RemoteException is the common superclass for a number of
+	 *             communication-related exceptions that may occur during the
+	 *             execution of a remote method call.
+	 */
+	public List<String> getRoutingTable(String hostname, int offset, int limit)
+			throws RemoteException;
+
 	/**
 	 * Set a static route on a network element. The TopologyDiscoverer can call
 	 * this method.
@@ -51,6 +168,37 @@ public interface ISatellite extends Remote {
 	public boolean setRoute(Vertex source, Vertex next, Vertex nextToLast,
 			Vertex destination) throws RemoteException;
 
+	/**
+	 * Set a whole set of static routes. The routes are grouped by the network
+	 * element they are configured on, and every network element is updated
+	 * with a single operation. A withdrawal removes the route the Satellite
+	 * has set between its source and destination before.
+	 * 
+	 * @param routes
+	 *            - The routes to be configured.
+	 * @return The routes that could not be placed. An empty list means that
+	 *         all routes have been placed.
+	 * @throws RemoteException
+	 *             A RemoteException is the common superclass for a number of
+	 *             communication-related exceptions that may occur during the
+	 *             execution of a remote method call.
+	 */
+	public List<RouteRequest> setRoutes(List<RouteRequest> routes)
+			throws RemoteException;
+
+	/**
+	 * Report the state of the topology discovery of every network agent. The
+	 * topology returned by getTopology() and getTopologyDelta() only contains
+	 * the part of the network discovered by agents that have completed.
+	 * 
+	 * @return The status of every network agent.
+	 * @throws RemoteException
+	 *             A RemoteException is the common superclass for a number of
+	 *             communication-related exceptions that may occur during the
+	 *             execution of a remote method call.
+	 */
+	public List<AgentStatus> getAgentStatus() throws RemoteException;
+
 	/**
 	 * The TopologyDiscoverer will use this remote method to check whether or
 	 * not a Satellite is still reachable.
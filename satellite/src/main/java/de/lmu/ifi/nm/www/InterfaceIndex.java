@@ -0,0 +1,256 @@
+package de.lmu.ifi.nm.www;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of the interface addresses of all network elements of a topology.
+ * Every NetworkPrefix of a Vertex's interfaceHash is stored twice in a
+ * PrefixTrie: as host route of the interface address and as subnet. This
+ * answers which network element and interface own an address or a subnet
+ * without scanning the vertices.
+ *
+ * The index is updated per network element whenever a vertex is added,
+ * changed or removed. It is not synchronized.
+ */
+public class InterfaceIndex {
+	private PrefixTrie<List<Entry>> prefixes = new PrefixTrie<List<Entry>>();
+	private Map<String, List<Entry>> hostEntries = new HashMap<String, List<Entry>>();
+
+	/**
+	 * An interface address of a network element.
+	 */
+	public static class Entry {
+		private final String hostname;
+		private final String interfaceName;
+		private final int address;
+		private final int prefixLength;
+
+		/**
+		 * @param hostname
+		 *            - The host name of the network element.
+		 * @param interfaceName
+		 *            - The name of the interface.
+		 * @param address
+		 *            - The IPv4-Address of the interface.
+		 * @param prefixLength
+		 *            - The prefix length of the interface's subnet.
+		 */
+		public Entry(String hostname, String interfaceName, int address,
+				int prefixLength) {
+			this.hostname = hostname;
+			this.interfaceName = interfaceName;
+			this.address = address;
+			this.prefixLength = prefixLength;
+		}
+
+		/**
+		 * @return The host name of the network element.
+		 */
+		public String getHostname() {
+			return hostname;
+		}
+
+		/**
+		 * @return The name of the interface.
+		 */
+		public String getInterfaceName() {
+			return interfaceName;
+		}
+
+		/**
+		 * @return The IPv4-Address of the interface in dotted notation.
+		 */
+		public String getAddress() {
+			return IPv4.toString(address);
+		}
+
+		/**
+		 * @return The prefix length of the interface's subnet.
+		 */
+		public int getPrefixLength() {
+			return prefixLength;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return hostname + " " + interfaceName + " " + getAddress() + "/"
+					+ prefixLength;
+		}
+	}
+
+	/**
+	 * Add the interface addresses of a network element, replacing those
+	 * indexed for it before.
+	 *
+	 * @param vertex
+	 *            - The network element.
+	 */
+	public void put(Vertex vertex) {
+		remove(vertex.getHostname());
+
+		if (vertex.getInterfaceHash() == null) {
+			return;
+		}
+
+		List<Entry> entries = new ArrayList<Entry>();
+		for (Map.Entry<String, List<NetworkPrefix>> entry : vertex
+				.getInterfaceHash().entrySet()) {
+			for (NetworkPrefix prefix : entry.getValue()) {
+				byte[] bytes = prefix.getAddress() == null ? null : prefix
+						.getAddress().getAddress();
+				if (bytes == null || bytes.length != 4) {
+					continue;
+				}
+
+				int address = ((bytes[0] & 0xFF) << 24)
+						| ((bytes[1] & 0xFF) << 16) | ((bytes[2] & 0xFF) << 8)
+						| (bytes[3] & 0xFF);
+				Entry indexed = new Entry(vertex.getHostname(), entry.getKey(),
+						address, prefix.getPrefixLen());
+
+				add(address, 32, indexed);
+				if (prefix.getPrefixLen() < 32) {
+					add(address, prefix.getPrefixLen(), indexed);
+				}
+				entries.add(indexed);
+			}
+		}
+		hostEntries.put(vertex.getHostname(), entries);
+	}
+
+	/**
+	 * Remove the interface addresses of a network element.
+	 *
+	 * @param hostname
+	 *            - The host name of the network element.
+	 */
+	public void remove(String hostname) {
+		List<Entry> entries = hostEntries.remove(hostname);
+		if (entries == null) {
+			return;
+		}
+
+		for (Entry entry : entries) {
+			remove(entry.address, 32, entry);
+			if (entry.prefixLength < 32) {
+				remove(entry.address, entry.prefixLength, entry);
+			}
+		}
+	}
+
+	/**
+	 * Remove all interface addresses.
+	 */
+	public void clear() {
+		prefixes.clear();
+		hostEntries.clear();
+	}
+
+	/**
+	 * @param address
+	 *            - An IPv4-Address in dotted notation.
+	 * @return The interface configured with exactly this address, or null.
+	 */
+	public Entry getOwner(String address) {
+		long ipv4 = IPv4.parse(address);
+		if (ipv4 < 0) {
+			return null;
+		}
+
+		List<Entry> entries = prefixes.get((int) ipv4, 32);
+		if (entries != null) {
+			for (Entry entry : entries) {
+				if (entry.address == (int) ipv4) {
+					return entry;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Longest-prefix match over all interface addresses and subnets.
+	 *
+	 * @param address
+	 *            - An IPv4-Address in dotted notation.
+	 * @return The interface owning the address, or else the interfaces
+	 *         attached to the most specific subnet containing it. The list is
+	 *         empty if no subnet matches.
+	 */
+	public List<Entry> lookup(String address) {
+		long ipv4 = IPv4.parse(address);
+		if (ipv4 < 0) {
+			return Collections.emptyList();
+		}
+
+		List<Entry> entries = prefixes.lookup((int) ipv4);
+		if (entries == null) {
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(entries);
+	}
+
+	/**
+	 * @param network
+	 *            - The subnet address in dotted notation.
+	 * @param prefixLength
+	 *            - The prefix length of the subnet.
+	 * @return The interfaces attached to exactly this subnet.
+	 */
+	public List<Entry> getSubnet(String network, int prefixLength) {
+		long ipv4 = IPv4.parse(network);
+		List<Entry> entries = ipv4 < 0 ? null : prefixes.get((int) ipv4,
+				prefixLength);
+
+		if (entries == null) {
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(entries);
+	}
+
+	/**
+	 * @param address
+	 *            - The address of the prefix.
+	 * @param length
+	 *            - The length of the prefix.
+	 * @param entry
+	 *            - The interface to be added to the prefix.
+	 */
+	private void add(int address, int length, Entry entry) {
+		List<Entry> entries = prefixes.get(address, length);
+		if (entries == null) {
+			entries = new ArrayList<Entry>(2);
+			prefixes.put(address, length, entries);
+		}
+		entries.add(entry);
+	}
+
+	/**
+	 * @param address
+	 *            - The address of the prefix.
+	 * @param length
+	 *            - The length of the prefix.
+	 * @param entry
+	 *            - The interface to be removed from the prefix.
+	 */
+	private void remove(int address, int length, Entry entry) {
+		List<Entry> entries = prefixes.get(address, length);
+		if (entries == null) {
+			return;
+		}
+
+		entries.remove(entry);
+		if (entries.isEmpty()) {
+			prefixes.remove(address, length);
+		}
+	}
+}
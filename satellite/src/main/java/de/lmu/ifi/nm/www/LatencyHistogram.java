@@ -0,0 +1,90 @@
+package de.lmu.ifi.nm.www;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with exponential buckets.
+ *
+ * Bucket i counts the samples of less than 2^i microseconds, so 40 buckets
+ * cover everything up to about twelve days with a relative error of at most
+ * a factor of two, which is plenty to tell a slow network element from a
+ * fast one. Percentiles are reported as the upper bound of their bucket.
+ */
+public class LatencyHistogram {
+	private static final int BUCKETS = 40;
+
+	private AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private AtomicLong count = new AtomicLong();
+	private AtomicLong totalNanos = new AtomicLong();
+	private AtomicLong maxNanos = new AtomicLong();
+
+	/**
+	 * @param nanos
+	 *            - The duration of an operation in nanoseconds.
+	 */
+	public void record(long nanos) {
+		nanos = Math.max(0, nanos);
+		long micros = nanos / 1000;
+		int bucket = micros == 0 ? 0 : 64 - Long.numberOfLeadingZeros(micros);
+
+		buckets.incrementAndGet(Math.min(bucket, BUCKETS - 1));
+		count.incrementAndGet();
+		totalNanos.addAndGet(nanos);
+
+		long max = maxNanos.get();
+		while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+			max = maxNanos.get();
+		}
+	}
+
+	/**
+	 * @return The number of recorded operations.
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * @return The total duration of all operations in nanoseconds.
+	 */
+	public long getTotalNanos() {
+		return totalNanos.get();
+	}
+
+	/**
+	 * @return The longest duration in nanoseconds.
+	 */
+	public long getMaxNanos() {
+		return maxNanos.get();
+	}
+
+	/**
+	 * @param percentile
+	 *            - The percentile between 0 and 1, e.g. 0.99.
+	 * @return The upper bound of the duration in nanoseconds not exceeded by
+	 *         the given share of the operations, 0 if none has been recorded.
+	 */
+	public long getPercentileNanos(double percentile) {
+		long total = 0;
+		long[] counts = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] = buckets.get(i);
+			total += counts[i];
+		}
+		if (total == 0) {
+			return 0;
+		}
+
+		long rank = (long) Math.ceil(percentile * total);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				// Never report more than has actually been measured
+				return Math.min((1L << i) * 1000, getMaxNanos());
+			}
+		}
+		return getMaxNanos();
+	}
+}
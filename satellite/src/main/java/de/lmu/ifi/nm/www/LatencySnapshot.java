@@ -0,0 +1,152 @@
+package de.lmu.ifi.nm.www;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * The latency of an operation, overall or on a single network element, as
+ * reported by the SatelliteMetricsMXBean. All durations are in milliseconds.
+ */
+public class LatencySnapshot {
+	private String operation = null;
+	private String device = null;
+	private long count;
+	private double totalMillis;
+	private double meanMillis;
+	private double p50Millis;
+	private double p90Millis;
+	private double p99Millis;
+	private double maxMillis;
+
+	/**
+	 * @param operation
+	 *            - The name of the operation.
+	 * @param device
+	 *            - The network element, or null for all of them.
+	 * @param count
+	 *            - The number of operations.
+	 * @param totalMillis
+	 *            - The total duration.
+	 * @param meanMillis
+	 *            - The mean duration.
+	 * @param p50Millis
+	 *            - The median duration.
+	 * @param p90Millis
+	 *            - The 90th percentile.
+	 * @param p99Millis
+	 *            - The 99th percentile.
+	 * @param maxMillis
+	 *            - The longest duration.
+	 */
+	@ConstructorProperties({ "operation", "device", "count", "totalMillis",
+			"meanMillis", "p50Millis", "p90Millis", "p99Millis", "maxMillis" })
+	public LatencySnapshot(String operation, String device, long count,
+			double totalMillis, double meanMillis, double p50Millis,
+			double p90Millis, double p99Millis, double maxMillis) {
+		this.operation = operation;
+		this.device = device;
+		this.count = count;
+		this.totalMillis = totalMillis;
+		this.meanMillis = meanMillis;
+		this.p50Millis = p50Millis;
+		this.p90Millis = p90Millis;
+		this.p99Millis = p99Millis;
+		this.maxMillis = maxMillis;
+	}
+
+	/**
+	 * @param operation
+	 *            - The name of the operation.
+	 * @param device
+	 *            - The network element, or null for all of them.
+	 * @param histogram
+	 *            - The recorded durations.
+	 * @return The snapshot of the histogram.
+	 */
+	public static LatencySnapshot of(String operation, String device,
+			LatencyHistogram histogram) {
+		long count = histogram.getCount();
+		double total = histogram.getTotalNanos() / 1e6;
+
+		return new LatencySnapshot(operation, device, count, total,
+				count == 0 ? 0 : total / count,
+				histogram.getPercentileNanos(0.5) / 1e6,
+				histogram.getPercentileNanos(0.9) / 1e6,
+				histogram.getPercentileNanos(0.99) / 1e6,
+				histogram.getMaxNanos() / 1e6);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return operation + (device == null ? "" : "@" + device) + ": "
+				+ count + " calls, mean " + meanMillis + " ms, p99 "
+				+ p99Millis + " ms";
+	}
+
+	/**
+	 * @return The name of the operation.
+	 */
+	public String getOperation() {
+		return operation;
+	}
+
+	/**
+	 * @return The network element, or null for all of them.
+	 */
+	public String getDevice() {
+		return device;
+	}
+
+	/**
+	 * @return The number of operations.
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return The total duration.
+	 */
+	public double getTotalMillis() {
+		return totalMillis;
+	}
+
+	/**
+	 * @return The mean duration.
+	 */
+	public double getMeanMillis() {
+		return meanMillis;
+	}
+
+	/**
+	 * @return The median duration.
+	 */
+	public double getP50Millis() {
+		return p50Millis;
+	}
+
+	/**
+	 * @return The 90th percentile.
+	 */
+	public double getP90Millis() {
+		return p90Millis;
+	}
+
+	/**
+	 * @return The 99th percentile.
+	 */
+	public double getP99Millis() {
+		return p99Millis;
+	}
+
+	/**
+	 * @return The longest duration.
+	 */
+	public double getMaxMillis() {
+		return maxMillis;
+	}
+}
@@ -1,6 +1,10 @@
 package de.lmu.ifi.nm.www;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.HashMap;
+import java.util.Map;
 
 import org.jgrapht.graph.DefaultWeightedEdge;
 
@@ -8,16 +12,20 @@ import org.jgrapht.graph.DefaultWeightedEdge;
  * This class represents a link in the topology graph. A link has a source and
  * destination node and a subnet address.
  * 
+ * The fields of this class are transferred in the compact format of
+ * WireFormat. The end points and the weight belong to the JGraphT super
+ * classes and are serialized by them, so a graph of links can still be
+ * serialized as a whole.
+ * 
  * @author Dawin Schmidt, dawin.schmidt@lmu.de
  * @author Werner Hoffmann, werner.hoffmann@lmu.de
  * @version 0.3
  * @since October 2, 2013
  */
 public class Link extends DefaultWeightedEdge {
-	private static final long serialVersionUID = 1L;
-	@SuppressWarnings("unused")
+	private static final long serialVersionUID = 2L;
+	private static final int WIRE_VERSION = 1;
 	private Vertex sourceNode = null;
-	@SuppressWarnings("unused")
 	private Vertex targetNode = null;
 	private String sourceIntPort = null;
 	private String sourceIPaddress = null;
@@ -81,6 +89,83 @@ public class Link extends DefaultWeightedEdge {
 		this.targetIntPort = PortOut;
 	}
 
+	/**
+	 * Write the fields of this class in the compact wire format.
+	 * 
+	 * @param out
+	 *            - The stream to write to.
+	 * @throws IOException
+	 *             If the link could not be written.
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		WireFormat.StringTable table = WireFormat.getStringTable(out);
+
+		out.writeByte(WIRE_VERSION);
+		out.writeObject(sourceNode);
+		out.writeObject(targetNode);
+		WireFormat.writeString(out, sourceIntPort, table);
+		WireFormat.writeAddress(out, sourceIPaddress, table);
+		WireFormat.writeString(out, targetIntPort, table);
+		WireFormat.writeAddress(out, targetIPaddress, table);
+		WireFormat.writeAddress(out, subnetAddress, table);
+		out.writeByte(subnetPrefix);
+		out.writeBoolean(isUp);
+
+		if (MetricFeedRelation == null) {
+			WireFormat.writeVarInt(out, 0);
+			return;
+		}
+
+		WireFormat.writeVarInt(out, MetricFeedRelation.size() + 1);
+		for (Map.Entry<String, String> entry : MetricFeedRelation.entrySet()) {
+			WireFormat.writeString(out, entry.getKey(), table);
+			WireFormat.writeString(out, entry.getValue(), table);
+		}
+	}
+
+	/**
+	 * Read the fields of this class written by writeObject().
+	 * 
+	 * @param in
+	 *            - The stream to read from.
+	 * @throws IOException
+	 *             If the link could not be read.
+	 * @throws ClassNotFoundException
+	 *             If the class of a vertex is unknown.
+	 */
+	private void readObject(ObjectInputStream in) throws IOException,
+			ClassNotFoundException {
+		WireFormat.StringTable table = WireFormat.getStringTable(in);
+
+		int version = in.readUnsignedByte();
+		if (version != WIRE_VERSION) {
+			throw new IOException("Unsupported Link wire version " + version
+					+ ".");
+		}
+
+		sourceNode = (Vertex) in.readObject();
+		targetNode = (Vertex) in.readObject();
+		sourceIntPort = WireFormat.readString(in, table);
+		sourceIPaddress = WireFormat.readAddress(in, table);
+		targetIntPort = WireFormat.readString(in, table);
+		targetIPaddress = WireFormat.readAddress(in, table);
+		subnetAddress = WireFormat.readAddress(in, table);
+		subnetPrefix = in.readUnsignedByte();
+		isUp = in.readBoolean();
+
+		int feedCount = WireFormat.readVarInt(in) - 1;
+		if (feedCount < 0) {
+			MetricFeedRelation = null;
+			return;
+		}
+
+		MetricFeedRelation = new HashMap<String, String>();
+		for (int i = 0; i < feedCount; i++) {
+			String metric = WireFormat.readString(in, table);
+			MetricFeedRelation.put(metric, WireFormat.readString(in, table));
+		}
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
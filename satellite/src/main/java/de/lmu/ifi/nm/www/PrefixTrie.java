@@ -0,0 +1,345 @@
+package de.lmu.ifi.nm.www;
+
+/**
+ * Compressed binary (Patricia) trie mapping IPv4 prefixes to values. Nodes
+ * only exist where prefixes are stored or where two stored prefixes branch, so
+ * a lookup visits at most 33 nodes regardless of the number of prefixes.
+ *
+ * The trie is not synchronized.
+ *
+ * @param <V>
+ *            - The type of the stored values.
+ */
+public class PrefixTrie<V> {
+	private Node<V> root = null;
+	private int size = 0;
+
+	/**
+	 * A prefix of the trie. Nodes without value only join two subtrees.
+	 */
+	private static class Node<V> {
+		private final int prefix;
+		private final int length;
+		private V value = null;
+		private boolean hasValue = false;
+		private Node<V> left = null;
+		private Node<V> right = null;
+
+		/**
+		 * @param prefix
+		 *            - The network address, host bits cleared.
+		 * @param length
+		 *            - The prefix length.
+		 */
+		public Node(int prefix, int length) {
+			this.prefix = prefix;
+			this.length = length;
+		}
+
+		/**
+		 * @param value
+		 *            - The value to be stored in the node.
+		 */
+		public void setValue(V value) {
+			this.value = value;
+			this.hasValue = true;
+		}
+
+		/**
+		 * @param bit
+		 *            - 0 for the left, 1 for the right child.
+		 * @return The child.
+		 */
+		public Node<V> getChild(int bit) {
+			return bit == 0 ? left : right;
+		}
+
+		/**
+		 * @param child
+		 *            - The new child, placed according to its bit following
+		 *            this node's prefix.
+		 */
+		public void setChild(Node<V> child) {
+			if (bit(child.prefix, length) == 0) {
+				left = child;
+			} else {
+				right = child;
+			}
+		}
+
+		/**
+		 * @param address
+		 *            - An IPv4-Address.
+		 * @return True if the address lies within this node's prefix.
+		 */
+		public boolean covers(int address) {
+			return IPv4.network(address, length) == prefix;
+		}
+	}
+
+	/**
+	 * Store a value for a prefix.
+	 *
+	 * @param prefix
+	 *            - The network address; host bits are ignored.
+	 * @param length
+	 *            - The prefix length between 0 and 32.
+	 * @param value
+	 *            - The value to be stored.
+	 * @return The value previously stored for the prefix or null.
+	 */
+	public V put(int prefix, int length, V value) {
+		prefix = IPv4.network(prefix, length);
+
+		if (root == null) {
+			root = new Node<V>(prefix, length);
+			root.setValue(value);
+			size++;
+			return null;
+		}
+
+		Node<V> parent = null;
+		Node<V> node = root;
+
+		while (true) {
+			int common = commonLength(node.prefix, node.length, prefix, length);
+
+			if (common < node.length) {
+				// The new prefix branches off above the node
+				Node<V> inserted = null;
+
+				if (common == length) {
+					inserted = new Node<V>(prefix, length);
+					inserted.setValue(value);
+					inserted.setChild(node);
+				} else {
+					Node<V> leaf = new Node<V>(prefix, length);
+					leaf.setValue(value);
+					inserted = new Node<V>(IPv4.network(prefix, common), common);
+					inserted.setChild(node);
+					inserted.setChild(leaf);
+				}
+
+				replace(parent, node, inserted);
+				size++;
+				return null;
+			}
+
+			if (length == node.length) {
+				V old = node.value;
+				if (!node.hasValue) {
+					size++;
+				}
+				node.setValue(value);
+				return old;
+			}
+
+			Node<V> child = node.getChild(bit(prefix, node.length));
+			if (child == null) {
+				Node<V> leaf = new Node<V>(prefix, length);
+				leaf.setValue(value);
+				node.setChild(leaf);
+				size++;
+				return null;
+			}
+
+			parent = node;
+			node = child;
+		}
+	}
+
+	/**
+	 * @param prefix
+	 *            - The network address; host bits are ignored.
+	 * @param length
+	 *            - The prefix length between 0 and 32.
+	 * @return The value stored for exactly this prefix or null.
+	 */
+	public V get(int prefix, int length) {
+		Node<V> node = find(prefix, length);
+		return node == null ? null : node.value;
+	}
+
+	/**
+	 * Longest-prefix match.
+	 *
+	 * @param address
+	 *            - An IPv4-Address.
+	 * @return The value of the longest stored prefix containing the address
+	 *         or null.
+	 */
+	public V lookup(int address) {
+		return lookup(address, 32);
+	}
+
+	/**
+	 * Longest-prefix match among prefixes of limited length, e.g. to find the
+	 * subnet of an address without matching the address itself.
+	 *
+	 * @param address
+	 *            - An IPv4-Address.
+	 * @param maxLength
+	 *            - The maximum length of the matched prefix.
+	 * @return The value of the longest stored prefix containing the address
+	 *         or null.
+	 */
+	public V lookup(int address, int maxLength) {
+		Node<V> best = null;
+		Node<V> node = root;
+
+		while (node != null && node.length <= maxLength && node.covers(address)) {
+			if (node.hasValue) {
+				best = node;
+			}
+			if (node.length == 32) {
+				break;
+			}
+			node = node.getChild(bit(address, node.length));
+		}
+
+		return best == null ? null : best.value;
+	}
+
+	/**
+	 * Remove a prefix and merge nodes that are not needed anymore.
+	 *
+	 * @param prefix
+	 *            - The network address; host bits are ignored.
+	 * @param length
+	 *            - The prefix length between 0 and 32.
+	 * @return The value stored for the prefix or null.
+	 */
+	public V remove(int prefix, int length) {
+		prefix = IPv4.network(prefix, length);
+
+		Node<V> grandparent = null;
+		Node<V> parent = null;
+		Node<V> node = root;
+
+		while (node != null && node.length < length && node.covers(prefix)) {
+			grandparent = parent;
+			parent = node;
+			node = node.getChild(bit(prefix, node.length));
+		}
+
+		if (node == null || node.length != length || node.prefix != prefix
+				|| !node.hasValue) {
+			return null;
+		}
+
+		V old = node.value;
+		node.value = null;
+		node.hasValue = false;
+		size--;
+
+		if (node.left != null && node.right != null) {
+			return old;
+		}
+
+		Node<V> child = node.left != null ? node.left : node.right;
+		if (child != null) {
+			replace(parent, node, child);
+			return old;
+		}
+
+		// Remove the leaf and the joining node above it
+		if (parent == null) {
+			root = null;
+		} else {
+			if (parent.left == node) {
+				parent.left = null;
+			} else {
+				parent.right = null;
+			}
+			if (!parent.hasValue) {
+				replace(grandparent, parent, parent.left != null ? parent.left
+						: parent.right);
+			}
+		}
+		return old;
+	}
+
+	/**
+	 * Remove all prefixes.
+	 */
+	public void clear() {
+		root = null;
+		size = 0;
+	}
+
+	/**
+	 * @return The number of stored prefixes.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @param prefix
+	 *            - The network address; host bits are ignored.
+	 * @param length
+	 *            - The prefix length.
+	 * @return The node storing exactly this prefix or null.
+	 */
+	private Node<V> find(int prefix, int length) {
+		prefix = IPv4.network(prefix, length);
+		Node<V> node = root;
+
+		while (node != null && node.length < length && node.covers(prefix)) {
+			node = node.getChild(bit(prefix, node.length));
+		}
+
+		if (node == null || node.length != length || node.prefix != prefix
+				|| !node.hasValue) {
+			return null;
+		}
+		return node;
+	}
+
+	/**
+	 * @param parent
+	 *            - The parent of 'node', or null if 'node' is the root.
+	 * @param node
+	 *            - The node to be replaced.
+	 * @param replacement
+	 *            - The node taking its place, may be null.
+	 */
+	private void replace(Node<V> parent, Node<V> node, Node<V> replacement) {
+		if (parent == null) {
+			root = replacement;
+		} else if (parent.left == node) {
+			parent.left = replacement;
+		} else {
+			parent.right = replacement;
+		}
+	}
+
+	/**
+	 * @param address
+	 *            - An IPv4-Address.
+	 * @param index
+	 *            - The index of the bit, 0 for the most significant one.
+	 * @return The bit, 0 or 1.
+	 */
+	private static int bit(int address, int index) {
+		return (address >>> (31 - index)) & 1;
+	}
+
+	/**
+	 * @param a
+	 *            - The first prefix.
+	 * @param aLength
+	 *            - The length of the first prefix.
+	 * @param b
+	 *            - The second prefix.
+	 * @param bLength
+	 *            - The length of the second prefix.
+	 * @return The number of leading bits both prefixes have in common, at most
+	 *         the shorter length.
+	 */
+	private static int commonLength(int a, int aLength, int b, int bLength) {
+		int diff = a ^ b;
+		int common = diff == 0 ? 32 : Integer.numberOfLeadingZeros(diff);
+		return Math.min(common, Math.min(aLength, bLength));
+	}
+}
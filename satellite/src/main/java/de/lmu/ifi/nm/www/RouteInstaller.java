@@ -0,0 +1,595 @@
+package de.lmu.ifi.nm.www;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.cisco.onep.core.exception.OnepException;
+import com.cisco.onep.element.NetworkElement;
+import com.cisco.onep.interfaces.NetworkPrefix;
+import com.cisco.onep.routing.AppRouteTable;
+import com.cisco.onep.routing.L3UnicastNextHop;
+import com.cisco.onep.routing.L3UnicastRIBFilter;
+import com.cisco.onep.routing.L3UnicastRoute;
+import com.cisco.onep.routing.L3UnicastRouteOperation;
+import com.cisco.onep.routing.L3UnicastRouteRange;
+import com.cisco.onep.routing.L3UnicastScope;
+import com.cisco.onep.routing.RIB;
+import com.cisco.onep.routing.Route;
+import com.cisco.onep.routing.RouteOperation;
+import com.cisco.onep.routing.RouteRange;
+import com.cisco.onep.routing.Routing;
+import com.cisco.onep.routing.L3UnicastScope.AFIType;
+import com.cisco.onep.routing.L3UnicastScope.SAFIType;
+import com.cisco.onep.routing.RouteOperation.RouteOperationType;
+
+/**
+ * Asynchronous pipeline for installing static routes on network elements.
+ *
+ * Every call to install() returns a Future and is processed by a pool of
+ * 'installThreads' workers, so routes for different network elements are
+ * installed concurrently. Installs on the same network element are
+ * serialized. Instead of waiting a fixed time before updating the application
+ * route table, the update is retried with a growing delay until the session
+ * accepts it or 'readyTimeout' has passed. An install is complete once every
+ * installed route is in the RIB of the network element with the requested
+ * next hop. The RIB is read right after the update, because replacing a
+ * route by the same one changes nothing and is never reported, and the
+ * remaining routes are confirmed by the RIB listener via confirm(). After
+ * 'confirmTimeout' the RIB is read once more before the install fails, so a
+ * late report does not fail an install either.
+ */
+public class RouteInstaller {
+	private static final long INITIAL_RETRY_DELAY = 100;
+	private static final long MAX_RETRY_DELAY = 2000;
+
+	private SessionPool mySessionPool = null;
+	private ExecutorService myExecutor = null;
+	private long readyTimeout = 30000;
+	private long confirmTimeout = 10000;
+	private Map<String, DeviceLock> deviceLocks = new HashMap<String, DeviceLock>();
+	private Map<String, List<PendingInstall>> pendingInstalls = new HashMap<String, List<PendingInstall>>();
+	private Logger myLogger = LoggerFactory.getLogger(RouteInstaller.class);
+
+	/**
+	 * The lock installs on one network element synchronize on. It is dropped
+	 * once no install uses it anymore.
+	 */
+	private static class DeviceLock {
+		private int users = 0;
+	}
+
+	/**
+	 * The routes of an install that have not been found in the RIB yet.
+	 */
+	private static class PendingInstall {
+		private final Map<String, NetworkPrefix> prefixes;
+		private final Map<String, String> nextHops;
+		private final CountDownLatch latch;
+
+		/**
+		 * @param prefixes
+		 *            - The installed prefixes by their key, e.g. 10.1.0.0/24.
+		 * @param nextHops
+		 *            - The next hop of every installed prefix by its key.
+		 */
+		public PendingInstall(Map<String, NetworkPrefix> prefixes,
+				Map<String, String> nextHops) {
+			this.prefixes = prefixes;
+			this.nextHops = nextHops;
+			this.latch = new CountDownLatch(nextHops.size());
+		}
+
+		/**
+		 * @param route
+		 *            - A route of the RIB.
+		 */
+		public void confirm(L3UnicastRoute route) {
+			String key = getKey(route.getPrefix());
+
+			synchronized (nextHops) {
+				String nextHop = nextHops.get(key);
+				if (nextHop == null || !hasNextHop(route, nextHop)) {
+					return;
+				}
+				nextHops.remove(key);
+			}
+			latch.countDown();
+		}
+
+		/**
+		 * @return The prefixes that have not been confirmed yet.
+		 */
+		public List<NetworkPrefix> getPendingPrefixes() {
+			List<NetworkPrefix> pending = new ArrayList<NetworkPrefix>();
+			synchronized (nextHops) {
+				for (String key : nextHops.keySet()) {
+					pending.add(prefixes.get(key));
+				}
+			}
+			return pending;
+		}
+	}
+
+	/**
+	 * @param mySessionPool
+	 *            - The pool the network elements are acquired from.
+	 * @param installThreads
+	 *            - The number of network elements updated concurrently.
+	 */
+	public RouteInstaller(SessionPool mySessionPool, int installThreads) {
+		this.mySessionPool = mySessionPool;
+
+		myExecutor = Executors.newFixedThreadPool(Math.max(1, installThreads),
+				new ThreadFactory() {
+					private int count = 0;
+
+					public synchronized Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable, "RouteInstaller-"
+								+ count++);
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+	}
+
+	/**
+	 * Install routes on a network element in the background.
+	 *
+	 * @param address
+	 *            - The IP-Address of the network element.
+	 * @param routes
+	 *            - The routes to be added or replaced.
+	 * @return A Future that yields true once all routes have been installed
+	 *         and confirmed, and false if the install failed.
+	 */
+	public Future<Boolean> install(final String address,
+			final List<StaticRoute> routes) {
+		return myExecutor.submit(new Callable<Boolean>() {
+			public Boolean call() {
+				long start = System.nanoTime();
+				boolean installed = installNow(address, routes);
+
+				Satellite.myMetrics.record("installRoutes", address, start);
+				Satellite.myMetrics.routesInstalled(routes.size(), installed);
+				return installed;
+			}
+		});
+	}
+
+	/**
+	 * Called by the RIB listener for every route the network element reports.
+	 *
+	 * @param address
+	 *            - The IP-Address of the network element.
+	 * @param route
+	 *            - The reported route.
+	 */
+	public void confirm(String address, Route route) {
+		if (!(route instanceof L3UnicastRoute)) {
+			return;
+		}
+
+		synchronized (pendingInstalls) {
+			List<PendingInstall> installs = pendingInstalls
+					.get(normalize(address));
+			if (installs == null) {
+				return;
+			}
+
+			for (PendingInstall install : installs) {
+				install.confirm((L3UnicastRoute) route);
+			}
+		}
+	}
+
+	/**
+	 * Stop the worker threads.
+	 */
+	public void shutdown() {
+		myExecutor.shutdownNow();
+	}
+
+	/**
+	 * Install routes on a network element and wait for their confirmation.
+	 *
+	 * @param address
+	 *            - The IP-Address of the network element.
+	 * @param routes
+	 *            - The routes to be added or replaced.
+	 * @return True if all routes have been installed and confirmed.
+	 */
+	private boolean installNow(String address, List<StaticRoute> routes) {
+		String key = normalize(address);
+		DeviceLock lock = acquireDeviceLock(key);
+
+		try {
+			synchronized (lock) {
+				return installLocked(address, key, routes);
+			}
+		} finally {
+			releaseDeviceLock(key, lock);
+		}
+	}
+
+	/**
+	 * Install routes while holding the lock of the network element.
+	 *
+	 * @param address
+	 *            - The IP-Address of the network element.
+	 * @param key
+	 *            - The normalized IP-Address of the network element.
+	 * @param routes
+	 *            - The routes to be added or replaced.
+	 * @return True if all routes have been installed and confirmed.
+	 */
+	private boolean installLocked(String address, String key,
+			List<StaticRoute> routes) {
+		PendingInstall install = null;
+
+		try {
+			NetworkElement networkElement = mySessionPool.acquire(address);
+			try {
+				List<RouteOperation> routeOperationList = new ArrayList<RouteOperation>();
+				Map<String, NetworkPrefix> prefixes = new HashMap<String, NetworkPrefix>();
+				Map<String, String> nextHops = new HashMap<String, String>();
+
+				for (StaticRoute route : routes) {
+					routeOperationList.add(createRouteOperation(networkElement,
+							route));
+
+					// Withdrawn routes are not looked for in the RIB
+					if (!route.isWithdrawal()) {
+						NetworkPrefix prefix = new NetworkPrefix(
+								InetAddress.getByName(route.getDestNetwork()),
+								route.getDestNetworkPrefix());
+						prefixes.put(getKey(prefix), prefix);
+						nextHops.put(getKey(prefix),
+								InetAddress.getByName(route.getNextHop())
+										.getHostAddress());
+					}
+				}
+
+				// Register before updating, the RIB may report at once
+				install = new PendingInstall(prefixes, nextHops);
+				addPendingInstall(key, install);
+
+				if (!updateWhenReady(networkElement, routeOperationList)) {
+					myLogger.error("Network element " + address
+							+ " did not accept " + routes.size()
+							+ " routes within " + readyTimeout + " ms.");
+					return false;
+				}
+
+				confirmFromRib(networkElement, install);
+			} finally {
+				mySessionPool.release(address);
+			}
+
+			if (!install.latch.await(confirmTimeout, TimeUnit.MILLISECONDS)) {
+				confirmFromRib(address, install);
+			}
+			if (install.latch.getCount() > 0) {
+				myLogger.warn("RIB of " + address + " did not confirm "
+						+ install.latch.getCount() + " of " + routes.size()
+						+ " routes within " + confirmTimeout + " ms.");
+				return false;
+			}
+
+			myLogger.debug("Installed " + routes.size() + " routes on "
+					+ address + ".");
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		} catch (Exception e) {
+			myLogger.error(e.getLocalizedMessage(), e);
+			return false;
+		} finally {
+			if (install != null) {
+				removePendingInstall(key, install);
+			}
+		}
+	}
+
+	/**
+	 * Look up the pending routes of an install in the RIB of a network
+	 * element, acquiring its session for that.
+	 *
+	 * @param address
+	 *            - The IP-Address of the network element.
+	 * @param install
+	 *            - The install waiting for confirmation.
+	 */
+	private void confirmFromRib(String address, PendingInstall install) {
+		try {
+			NetworkElement networkElement = mySessionPool.acquire(address);
+			try {
+				confirmFromRib(networkElement, install);
+			} finally {
+				mySessionPool.release(address);
+			}
+		} catch (Exception e) {
+			myLogger.debug("Could not read the RIB of " + address + ": "
+					+ e.getLocalizedMessage());
+		}
+	}
+
+	/**
+	 * Look up the pending routes of an install in the RIB of a network
+	 * element. Routes that are there with the requested next hop are
+	 * confirmed, whether the update changed them or not.
+	 *
+	 * @param networkElement
+	 *            - The connected network element.
+	 * @param install
+	 *            - The install waiting for confirmation.
+	 */
+	private void confirmFromRib(NetworkElement networkElement,
+			PendingInstall install) {
+		L3UnicastScope aL3UnicastScope = new L3UnicastScope("", AFIType.IPV4,
+				SAFIType.UNICAST, "base");
+		L3UnicastRIBFilter filter = new L3UnicastRIBFilter();
+
+		try {
+			RIB rib = Routing.getInstance(networkElement).getRib();
+
+			for (NetworkPrefix prefix : install.getPendingPrefixes()) {
+				List<Route> routeList = rib.getRouteList(aL3UnicastScope,
+						filter, new L3UnicastRouteRange(prefix,
+								RouteRange.RangeType.EQUAL_OR_LARGER, 1));
+				if (routeList == null) {
+					continue;
+				}
+				for (Route route : routeList) {
+					if (route instanceof L3UnicastRoute) {
+						install.confirm((L3UnicastRoute) route);
+					}
+				}
+			}
+		} catch (OnepException e) {
+			myLogger.debug("Could not read the RIB: " + e.getLocalizedMessage());
+		}
+	}
+
+	/**
+	 * Update the application route table as soon as the network element
+	 * accepts it. Failed attempts are retried with an exponentially growing
+	 * delay.
+	 *
+	 * @param networkElement
+	 *            - The connected network element.
+	 * @param routeOperationList
+	 *            - The route operations to be applied.
+	 * @return True if the update has been accepted within 'readyTimeout'.
+	 * @throws InterruptedException
+	 *             If the thread was interrupted while waiting.
+	 */
+	private boolean updateWhenReady(NetworkElement networkElement,
+			List<RouteOperation> routeOperationList)
+			throws InterruptedException {
+		L3UnicastScope aL3UnicastScope = new L3UnicastScope("", AFIType.IPV4,
+				SAFIType.UNICAST, "base");
+		long deadline = System.currentTimeMillis() + readyTimeout;
+		long delay = INITIAL_RETRY_DELAY;
+
+		while (true) {
+			if (networkElement.isConnected()) {
+				try {
+					AppRouteTable appRouteTable = Routing.getInstance(
+							networkElement).getAppRouteTable();
+					appRouteTable.updateRoutes(aL3UnicastScope,
+							routeOperationList);
+					return true;
+				} catch (OnepException e) {
+					myLogger.debug("Route table not ready yet: "
+							+ e.getLocalizedMessage());
+				}
+			}
+
+			if (System.currentTimeMillis() + delay > deadline) {
+				return false;
+			}
+			Thread.sleep(delay);
+			delay = Math.min(delay * 2, MAX_RETRY_DELAY);
+		}
+	}
+
+	/**
+	 * Create the operation that adds or replaces a route. This operation will
+	 * have the same effect as the following IOS config command:
+	 *
+	 * ip route 10.1.1.0 255.255.255.0 10.15.1.7
+	 *
+	 * For a withdrawal the route is removed instead.
+	 *
+	 * @param networkElement
+	 *            - The connected network element.
+	 * @param route
+	 *            - The route to be configured.
+	 * @return The route operation.
+	 * @throws OnepException
+	 *             If the outgoing interface could not be found.
+	 * @throws UnknownHostException
+	 *             If an address could not be parsed.
+	 */
+	private RouteOperation createRouteOperation(NetworkElement networkElement,
+			StaticRoute route) throws OnepException, UnknownHostException {
+		NetworkPrefix destNetwork = new NetworkPrefix(
+				InetAddress.getByName(route.getDestNetwork()),
+				route.getDestNetworkPrefix());
+
+		L3UnicastNextHop aL3UnicastNextHop = new L3UnicastNextHop(
+				networkElement.getInterfaceByName(route.getSourceInt()),
+				InetAddress.getByName(route.getNextHop()));
+
+		Set<L3UnicastNextHop> aL3UnicastNextHopList = new HashSet<L3UnicastNextHop>();
+		aL3UnicastNextHopList.add(aL3UnicastNextHop);
+
+		// Change the administrative distance to make the route more trusted
+		L3UnicastRoute aRoute = new L3UnicastRoute(destNetwork,
+				aL3UnicastNextHopList);
+		aRoute.setAdminDistance(1);
+
+		return new L3UnicastRouteOperation(
+				route.isWithdrawal() ? RouteOperationType.REMOVE
+						: RouteOperationType.REPLACE, aRoute);
+	}
+
+	/**
+	 * @param key
+	 *            - The normalized IP-Address of the network element.
+	 * @return The lock installs on the network element synchronize on. It has
+	 *         to be given back with releaseDeviceLock().
+	 */
+	private synchronized DeviceLock acquireDeviceLock(String key) {
+		DeviceLock lock = deviceLocks.get(key);
+		if (lock == null) {
+			lock = new DeviceLock();
+			deviceLocks.put(key, lock);
+		}
+		lock.users++;
+		return lock;
+	}
+
+	/**
+	 * @param key
+	 *            - The normalized IP-Address of the network element.
+	 * @param lock
+	 *            - The lock returned by acquireDeviceLock().
+	 */
+	private synchronized void releaseDeviceLock(String key, DeviceLock lock) {
+		lock.users--;
+		if (lock.users == 0) {
+			deviceLocks.remove(key);
+		}
+	}
+
+	/**
+	 * @param key
+	 *            - The normalized IP-Address of the network element.
+	 * @param install
+	 *            - The install waiting for confirmation.
+	 */
+	private void addPendingInstall(String key, PendingInstall install) {
+		synchronized (pendingInstalls) {
+			List<PendingInstall> installs = pendingInstalls.get(key);
+			if (installs == null) {
+				installs = new ArrayList<PendingInstall>();
+				pendingInstalls.put(key, installs);
+			}
+			installs.add(install);
+		}
+	}
+
+	/**
+	 * @param key
+	 *            - The normalized IP-Address of the network element.
+	 * @param install
+	 *            - The install that is not waiting anymore.
+	 */
+	private void removePendingInstall(String key, PendingInstall install) {
+		synchronized (pendingInstalls) {
+			List<PendingInstall> installs = pendingInstalls.get(key);
+			if (installs != null) {
+				installs.remove(install);
+				if (installs.isEmpty()) {
+					pendingInstalls.remove(key);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param prefix
+	 *            - A prefix.
+	 * @return The prefix as key, e.g. 10.1.0.0/24.
+	 */
+	private static String getKey(NetworkPrefix prefix) {
+		return prefix.getAddress().getHostAddress() + "/"
+				+ prefix.getPrefixLength();
+	}
+
+	/**
+	 * @param route
+	 *            - A route of the RIB.
+	 * @param nextHop
+	 *            - The textual IP-Address of a next hop.
+	 * @return True if the route forwards to the next hop.
+	 */
+	private static boolean hasNextHop(L3UnicastRoute route, String nextHop) {
+		Set<L3UnicastNextHop> nextHopList = route.getNextHopList();
+		if (nextHopList == null) {
+			return false;
+		}
+		for (L3UnicastNextHop hop : nextHopList) {
+			if (hop.getAddress() != null
+					&& nextHop.equals(hop.getAddress().getHostAddress())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param address
+	 *            - An IP-Address or host name.
+	 * @return The textual IP-Address used as key.
+	 */
+	private String normalize(String address) {
+		try {
+			return InetAddress.getByName(address).getHostAddress();
+		} catch (UnknownHostException e) {
+			return address;
+		}
+	}
+
+	/**
+	 * @return The time in milliseconds an install waits for the network
+	 *         element to accept the update.
+	 */
+	public long getReadyTimeout() {
+		return readyTimeout;
+	}
+
+	/**
+	 * @param readyTimeout
+	 *            - The time in milliseconds an install waits for the network
+	 *            element to accept the update.
+	 */
+	public void setReadyTimeout(long readyTimeout) {
+		this.readyTimeout = readyTimeout;
+	}
+
+	/**
+	 * @return The time in milliseconds an install waits for the RIB to report
+	 *         the installed routes.
+	 */
+	public long getConfirmTimeout() {
+		return confirmTimeout;
+	}
+
+	/**
+	 * @param confirmTimeout
+	 *            - The time in milliseconds an install waits for the RIB to
+	 *            report the installed routes.
+	 */
+	public void setConfirmTimeout(long confirmTimeout) {
+		this.confirmTimeout = confirmTimeout;
+	}
+}
@@ -0,0 +1,153 @@
+package de.lmu.ifi.nm.www;
+
+import java.io.Serializable;
+
+/**
+ * A route calculated by the TopologyDiscoverer and sent to a Satellite with
+ * ISatellite.setRoutes(). The network elements of the path are identified by
+ * their host names; the Satellite resolves them against its topology graph to
+ * determine destination network, next hop and outgoing interface.
+ *
+ * A withdrawal only names source and destination and removes the route the
+ * Satellite has installed for them before.
+ */
+public class RouteRequest implements Serializable {
+	private static final long serialVersionUID = 1L;
+	private String source = null;
+	private String next = null;
+	private String secondToLast = null;
+	private String destination = null;
+	private boolean isWithdrawal = false;
+
+	/**
+	 * @param source
+	 *            - The host name of the network element where to configure
+	 *            the route.
+	 * @param next
+	 *            - The host name of the neighbor network element for getting
+	 *            the next-hop IP-Address.
+	 * @param secondToLast
+	 *            - The host name of the second to last network element for
+	 *            calculating the destination network.
+	 * @param destination
+	 *            - The host name of the destination network element.
+	 */
+	public RouteRequest(String source, String next, String secondToLast,
+			String destination) {
+		this.source = source;
+		this.next = next;
+		this.secondToLast = secondToLast;
+		this.destination = destination;
+	}
+
+	/**
+	 * Create the withdrawal of the route between two network elements.
+	 *
+	 * @param source
+	 *            - The host name of the network element where the route is
+	 *            configured.
+	 * @param destination
+	 *            - The host name of the destination network element.
+	 */
+	public RouteRequest(String source, String destination) {
+		this.source = source;
+		this.destination = destination;
+		this.isWithdrawal = true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		if (isWithdrawal) {
+			return "withdraw " + source + " -> " + destination;
+		}
+		return source + " -> " + destination + " via " + next;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(Object object) {
+		if (this == object) {
+			return true;
+		}
+		if (!(object instanceof RouteRequest)) {
+			return false;
+		}
+
+		RouteRequest other = (RouteRequest) object;
+		return isWithdrawal == other.isWithdrawal
+				&& equals(source, other.source) && equals(next, other.next)
+				&& equals(secondToLast, other.secondToLast)
+				&& equals(destination, other.destination);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		int hash = isWithdrawal ? 1 : 0;
+		hash = 31 * hash + (source == null ? 0 : source.hashCode());
+		hash = 31 * hash + (next == null ? 0 : next.hashCode());
+		hash = 31 * hash + (secondToLast == null ? 0 : secondToLast.hashCode());
+		hash = 31 * hash + (destination == null ? 0 : destination.hashCode());
+		return hash;
+	}
+
+	/**
+	 * @param a
+	 *            - A String or null.
+	 * @param b
+	 *            - A String or null.
+	 * @return True if both are null or equal.
+	 */
+	private static boolean equals(String a, String b) {
+		return a == null ? b == null : a.equals(b);
+	}
+
+	/**
+	 * @return The host name of the network element where to configure the
+	 *         route.
+	 */
+	public String getSource() {
+		return source;
+	}
+
+	/**
+	 * @return The host name of the next hop network element.
+	 */
+	public String getNext() {
+		return next;
+	}
+
+	/**
+	 * @return The host name of the second to last network element.
+	 */
+	public String getSecondToLast() {
+		return secondToLast;
+	}
+
+	/**
+	 * @return The host name of the destination network element.
+	 */
+	public String getDestination() {
+		return destination;
+	}
+
+	/**
+	 * @return True if the route is to be removed.
+	 */
+	public boolean isWithdrawal() {
+		return isWithdrawal;
+	}
+}
@@ -0,0 +1,125 @@
+package de.lmu.ifi.nm.www;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cache for the routing tables of the network elements. Routing tables are
+ * not part of the topology graph anymore; they are fetched from the network
+ * agents when they are requested for the first time and kept for
+ * 'timeToLive' milliseconds. Concurrent requests for the same network element
+ * wait for a single fetch.
+ */
+public class RoutingTableCache {
+	private List<INetworkAgent> myAgents = null;
+	private long timeToLive = 60000;
+	private Map<String, CachedTable> tables = new HashMap<String, CachedTable>();
+
+	/**
+	 * A routing table together with the time it has been fetched.
+	 */
+	private static class CachedTable {
+		private List<String> routes = null;
+		private long fetchedAt = 0;
+	}
+
+	/**
+	 * @param myAgents
+	 *            - The network agents asked for routing tables.
+	 */
+	public RoutingTableCache(List<INetworkAgent> myAgents) {
+		this.myAgents = myAgents;
+	}
+
+	/**
+	 * Get the routing table of a network element, fetching it if it is not
+	 * cached or has expired.
+	 *
+	 * @param address
+	 *            - The management IP-Address of the network element.
+	 * @return The routes of the routing table, or an empty list if no network
+	 *         agent could fetch it.
+	 */
+	public List<String> getRoutes(String address) {
+		CachedTable table = null;
+
+		synchronized (this) {
+			table = tables.get(address);
+			if (table == null) {
+				table = new CachedTable();
+				tables.put(address, table);
+			}
+		}
+
+		synchronized (table) {
+			long now = System.currentTimeMillis();
+
+			if (table.routes == null || now - table.fetchedAt > timeToLive) {
+				for (INetworkAgent agent : myAgents) {
+					List<String> routes = agent.getRoutingTable(address);
+					if (routes != null) {
+						table.routes = Collections
+								.unmodifiableList(new ArrayList<String>(routes));
+						table.fetchedAt = now;
+						break;
+					}
+				}
+			}
+
+			if (table.routes == null) {
+				return Collections.emptyList();
+			}
+			return table.routes;
+		}
+	}
+
+	/**
+	 * Get a part of the routing table of a network element.
+	 *
+	 * @param address
+	 *            - The management IP-Address of the network element.
+	 * @param offset
+	 *            - The index of the first route.
+	 * @param limit
+	 *            - The maximum number of routes.
+	 * @return At most 'limit' routes starting at 'offset'.
+	 */
+	public List<String> getRoutes(String address, int offset, int limit) {
+		List<String> routes = getRoutes(address);
+		int from = Math.min(Math.max(0, offset), routes.size());
+		int to = Math.min(routes.size(), from + Math.max(0, limit));
+
+		return new ArrayList<String>(routes.subList(from, to));
+	}
+
+	/**
+	 * Drop the cached routing table of a network element, e.g. after its RIB
+	 * has changed.
+	 *
+	 * @param address
+	 *            - The management IP-Address of the network element.
+	 */
+	public synchronized void invalidate(String address) {
+		tables.remove(address);
+	}
+
+	/**
+	 * @return The time in milliseconds a routing table is cached.
+	 */
+	public long getTimeToLive() {
+		return timeToLive;
+	}
+
+	/**
+	 * Set the time a routing table is cached.
+	 *
+	 * @param timeToLive
+	 *            - The time to live in milliseconds.
+	 */
+	public void setTimeToLive(long timeToLive) {
+		this.timeToLive = timeToLive;
+	}
+}
@@ -1,7 +1,9 @@
 package de.lmu.ifi.nm.www;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.management.ManagementFactory;
 import java.net.MalformedURLException;
 import java.rmi.Naming;
 import java.rmi.NotBoundException;
@@ -11,14 +13,32 @@ import java.rmi.registry.Registry;
 import java.rmi.server.RemoteServer;
 import java.rmi.server.UnicastRemoteObject;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.apache.thrift.transport.TTransportException;
 import org.jgrapht.graph.DirectedWeightedMultigraph;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import controllers.networking.ITopologyDiscoverer;
+import controllers.networking.NetworkEvent;
+import controllers.networking.TopologyDiscovererThriftClient;
 import de.lmu.ifi.nm.www.Link;
 import de.lmu.ifi.nm.www.Vertex;
 
@@ -28,7 +48,8 @@ import de.lmu.ifi.nm.www.Vertex;
  * ... manages the LAN of a specific site by the help of its network agents.
  * ... receives events from the TopologyDiscoverer, e.g. 'Discover local network topology'.
  * ... sends events to the TopologyDiscoverer, e.g. 'Link XY of Network Element Z is down' and
- * ... is implemented as RMI-Server -and Client.
+ * ... is implemented as RMI-Server -and Client, or as Thrift server and
+ * client if 'transport' is set to 'thrift'.
  * 
  * Example call chain:
  * 
@@ -46,20 +67,71 @@ public class Satellite implements ISatellite {
 	private static int satellitePort;
 
 	private ITopologyDiscoverer myTopologyDiscoverer;
+	private EventQueue myEventQueue = null;
 	private static String topologyDiscovererIP = null;
 	private static int topologyDiscovererPort;
 
 	private static String rootElementUserName = null;
 	private static String rootElementPassword = null;
 	private static String rootElementIP = null;
+	private static int discoveryThreads = 8;
+	private static int maxSessions = 256;
+	private static long sessionIdleTimeout = 300000;
+	private static long routingTableTTL = 60000;
+	private static int installThreads = 8;
+	private static long routeConfirmTimeout = 10000;
+	private static long agentTimeout = 120000;
+	private static int eventQueueCapacity = 1024;
+	private static long eventWindow = 500;
+	private static long topologyTTL = 5000;
+	private static String snapshotFile = "topology.snapshot";
+	private static long snapshotInterval = 60000;
+	private static String transport = "rmi";
+	private static int thriftPort = 9090;
+	private static int topologyDiscovererThriftPort = 9091;
+	private static long thriftTimeout = 60000;
+	private static int thriftWorkers = 4;
+	private ThriftServer myThriftServer = null;
 
-	private List<INetworkAgent> myAgents = new ArrayList<INetworkAgent>();
+	// Read by RMI and Thrift threads while main() adds the agents
+	private List<INetworkAgent> myAgents = new CopyOnWriteArrayList<INetworkAgent>();
+	private RoutingTableCache myRoutingTableCache = new RoutingTableCache(
+			myAgents);
+	private Map<String, StaticRoute> installedRoutes = new HashMap<String, StaticRoute>();
 	public static DirectedWeightedMultigraph<Vertex, Link> myGraph = new DirectedWeightedMultigraph<Vertex, Link>(
 			Link.class);
+	public static TopologyStore myTopologyStore = new TopologyStore(myGraph);
+	public static SatelliteMetrics myMetrics = new SatelliteMetrics(
+			myTopologyStore);
+	private ExecutorService myAgentExecutor = Executors
+			.newCachedThreadPool(new ThreadFactory() {
+				private int count = 0;
+
+				public synchronized Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "NetworkAgent-"
+							+ count++);
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+	private Map<INetworkAgent, Future<Void>> agentDiscoveries = new HashMap<INetworkAgent, Future<Void>>();
+	private Map<INetworkAgent, AgentStatus> agentStatus = new LinkedHashMap<INetworkAgent, AgentStatus>();
+	private TopologySnapshotCache myTopologyCache = new TopologySnapshotCache(
+			myTopologyStore, new Runnable() {
+				public void run() {
+					discoverTopology();
+				}
+			});
+	private TopologyStreams myTopologyStreams = new TopologyStreams();
+	private TopologySnapshotFile mySnapshotFile = null;
+	private long snapshotVersion = -1;
+	private Thread mySnapshotWriter = null;
 	private static Logger myLogger = null;
 
 	/**
-	 * Setup RMI-Server and connect to the TopologyDiscoverer via Java RMI.
+	 * Setup RMI-Server and connect to the TopologyDiscoverer via Java RMI. If
+	 * 'transport' is set to 'thrift' the Thrift ports of the properties are
+	 * used instead.
 	 * 
 	 * @param satelliteName
 	 *            - The Satellite's name.
@@ -77,6 +149,11 @@ public class Satellite implements ISatellite {
 			int myTopologyDiscovererPort) {
 		Satellite.satelliteName = satelliteName;
 
+		if (isThrift()) {
+			connectThrift(satelliteIP, myTopologyDiscovererIP);
+			return;
+		}
+
 		try {
 			/*
 			 * Workaround for 'unexpected hostname and/or port number'
@@ -110,6 +187,9 @@ public class Satellite implements ISatellite {
 			// Call remote method connect()
 			myTopologyDiscoverer.connect(satelliteIP, satellitePort,
 					satelliteName);
+
+			myEventQueue = new EventQueue(myTopologyDiscoverer,
+					satelliteName, eventQueueCapacity, eventWindow);
 		} catch (RemoteException e) {
 			e.printStackTrace();
 		} catch (MalformedURLException e) {
@@ -119,6 +199,47 @@ public class Satellite implements ISatellite {
 		}
 	}
 
+	/**
+	 * Offer the Satellite as Thrift service and connect to the
+	 * TopologyDiscoverer's Thrift service instead of using RMI.
+	 * 
+	 * @param satelliteIP
+	 *            - The local IP-Address to setup the Thrift server.
+	 * @param myTopologyDiscovererIP
+	 *            - Destination IP-Address of the TopologyDiscoverer.
+	 */
+	private void connectThrift(String satelliteIP,
+			String myTopologyDiscovererIP) {
+		try {
+			myThriftServer = new ThriftServer(satelliteIP, thriftPort,
+					new SatelliteThriftService(this), thriftWorkers);
+			myThriftServer.start();
+
+			myTopologyDiscoverer = new TopologyDiscovererThriftClient(
+					myTopologyDiscovererIP, topologyDiscovererThriftPort,
+					thriftTimeout);
+			myTopologyDiscoverer.connect(satelliteIP, thriftPort,
+					satelliteName);
+
+			myEventQueue = new EventQueue(myTopologyDiscoverer,
+					satelliteName, eventQueueCapacity, eventWindow);
+		} catch (TTransportException e) {
+			getLogger().error(
+					"Could not start the Thrift server on port " + thriftPort
+							+ ": " + e.getLocalizedMessage());
+		} catch (RemoteException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * @return True if the Satellite talks to the TopologyDiscoverer over
+	 *         Thrift instead of RMI.
+	 */
+	private static boolean isThrift() {
+		return "thrift".equalsIgnoreCase(transport);
+	}
+
 	/**
 	 * Call remote receiveEvent() method to send an event.
 	 * 
@@ -136,6 +257,19 @@ public class Satellite implements ISatellite {
 		getServer().receiveEvent(satelliteName, message);
 	}
 
+	/**
+	 * Queue an event for the TopologyDiscoverer without waiting for it to be
+	 * sent. Used by the event listeners of the network agents.
+	 * 
+	 * @param event
+	 *            - The event, e.g. 'Interface XY on device Z is down'.
+	 */
+	public void queueEvent(NetworkEvent event) {
+		if (myEventQueue == null || !myEventQueue.offer(event)) {
+			getLogger().debug("Dropped event " + event + ".");
+		}
+	}
+
 	/**
 	 * Call remote disconnect() method to remove Satellite from the
 	 * TopologyDiscoverer's ArrayList.
@@ -146,7 +280,18 @@ public class Satellite implements ISatellite {
 	 *             execution of a remote method call.
 	 */
 	public void disconnect() throws RemoteException {
-		getServer().disconnect(satelliteIP, satellitePort, getSatelliteName());
+		if (myEventQueue != null) {
+			myEventQueue.shutdown();
+		}
+		if (mySnapshotWriter != null) {
+			mySnapshotWriter.interrupt();
+			writeSnapshot();
+		}
+		getServer().disconnect(satelliteIP,
+				isThrift() ? thriftPort : satellitePort, getSatelliteName());
+		if (myThriftServer != null) {
+			myThriftServer.stop();
+		}
 		getLogger().debug(
 				"Removing Satellite from TopologyDiscoverer queue ...");
 	}
@@ -159,65 +304,311 @@ public class Satellite implements ISatellite {
 	 */
 	public boolean setRoute(Vertex source, Vertex next, Vertex secondToLast,
 			Vertex destination) throws RemoteException {
-		String destNetwork = "";
-		String sourceAddress = source.getManagementIP();
-
-		for (Vertex v : myGraph.vertexSet()) {
-			if (v.getHostname().equals(source.getHostname())) {
-				source = v;
-				// getLogger().info("\n source: " + source.hashCode() + " and "
-				// + v.hashCode());
+		// Goes through setRoutes() so the installed route is remembered and
+		// replaced or withdrawn later
+		List<RouteRequest> routes = new ArrayList<RouteRequest>(1);
+		routes.add(new RouteRequest(source.getHostname(), next.getHostname(),
+				secondToLast.getHostname(), destination.getHostname()));
+
+		return setRoutes(routes).isEmpty();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see satellite.ISatellite#setRoutes(java.util.List)
+	 */
+	public List<RouteRequest> setRoutes(List<RouteRequest> routes)
+			throws RemoteException {
+		long start = System.nanoTime();
+		List<RouteRequest> failed = new ArrayList<RouteRequest>();
+		Map<String, List<StaticRoute>> deviceRoutes = new LinkedHashMap<String, List<StaticRoute>>();
+		Map<String, List<RouteRequest>> deviceRequests = new HashMap<String, List<RouteRequest>>();
+		Map<RouteRequest, StaticRoute> resolvedRoutes = new HashMap<RouteRequest, StaticRoute>();
+
+		// Group the routes by the network element they are configured on
+		for (RouteRequest request : routes) {
+			List<StaticRoute> changes = new ArrayList<StaticRoute>();
+			StaticRoute installed = null;
+
+			synchronized (installedRoutes) {
+				installed = installedRoutes.get(getRouteKey(request));
 			}
-			if (v.getHostname().equals(next.getHostname())) {
-				next = v;
-				// getLogger().info("\n next: " + next.hashCode() + " and " +
-				// v.hashCode());
+
+			if (request.isWithdrawal()) {
+				// Nothing to remove if the route has never been installed
+				if (installed == null) {
+					continue;
+				}
+				changes.add(installed.toWithdrawal());
+			} else {
+				StaticRoute route = resolveRoute(request);
+
+				if (route == null) {
+					failed.add(request);
+					continue;
+				}
+
+				// A route to another network would not be replaced
+				if (installed != null && !installed.hasSameDestination(route)) {
+					changes.add(installed.toWithdrawal());
+				}
+				changes.add(route);
+				resolvedRoutes.put(request, route);
 			}
-			if (v.getHostname().equals(secondToLast.getHostname())) {
-				secondToLast = v;
-				// getLogger().info("\n secondToLast: " +
-				// secondToLast.hashCode() +
-				// " and " + v.hashCode());
+
+			String address = changes.get(0).getSourceAddress();
+			if (!deviceRoutes.containsKey(address)) {
+				deviceRoutes.put(address, new ArrayList<StaticRoute>());
+				deviceRequests.put(address, new ArrayList<RouteRequest>());
 			}
-			if (v.getHostname().equals(destination.getHostname())) {
-				destination = v;
-				// getLogger().info("\n destination: " + destination.hashCode()
-				// + " and " + v.hashCode());
+			deviceRoutes.get(address).addAll(changes);
+			deviceRequests.get(address).add(request);
+		}
+
+		// Start the installs on all network elements before waiting for any
+		Map<String, Future<Boolean>> installs = new LinkedHashMap<String, Future<Boolean>>();
+		for (String address : deviceRoutes.keySet()) {
+			for (INetworkAgent agent : myAgents) {
+				installs.put(address,
+						agent.installRoutes(address, deviceRoutes.get(address)));
+				break;
 			}
 		}
 
-		Link secondToLastToDestination = myGraph.getEdge(secondToLast,
-				destination);
+		for (String address : deviceRoutes.keySet()) {
+			boolean isPlaced = false;
 
-		if (secondToLastToDestination != null) {
-			destNetwork = secondToLastToDestination.getSubnetAddress();
-		} else {
+			try {
+				Future<Boolean> install = installs.get(address);
+				isPlaced = install != null && install.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				getLogger().error(e.getLocalizedMessage(), e);
+			}
+
+			if (!isPlaced) {
+				failed.addAll(deviceRequests.get(address));
+				continue;
+			}
+
+			synchronized (installedRoutes) {
+				for (RouteRequest request : deviceRequests.get(address)) {
+					if (request.isWithdrawal()) {
+						installedRoutes.remove(getRouteKey(request));
+					} else {
+						installedRoutes.put(getRouteKey(request),
+								resolvedRoutes.get(request));
+					}
+				}
+			}
+		}
+
+		getLogger().debug(
+				"Placed " + (routes.size() - failed.size()) + " of "
+						+ routes.size() + " routes on " + deviceRoutes.size()
+						+ " network elements.");
+
+		myMetrics.record("setRoutes", null, start);
+		return failed;
+	}
+
+	/**
+	 * @param request
+	 *            - A route or withdrawal.
+	 * @return The key of the route in 'installedRoutes'.
+	 */
+	private static String getRouteKey(RouteRequest request) {
+		return request.getSource() + "|" + request.getDestination();
+	}
+
+	/**
+	 * Determine destination network, next hop and outgoing interface of a
+	 * route from the topology graph.
+	 * 
+	 * @param request
+	 *            - The route calculated by the TopologyDiscoverer.
+	 * @return The static route to be configured, or null if the path does not
+	 *         match the topology graph.
+	 */
+	private StaticRoute resolveRoute(RouteRequest request) {
+		Link secondToLastToDestination = null;
+		Link sourceToNextHop = null;
+		Vertex source = null;
+
+		synchronized (myGraph) {
+			source = myTopologyStore.getVertex(request.getSource());
+			Vertex next = myTopologyStore.getVertex(request.getNext());
+			Vertex secondToLast = myTopologyStore.getVertex(request
+					.getSecondToLast());
+			Vertex destination = myTopologyStore.getVertex(request
+					.getDestination());
+
+			if (source == null || next == null || secondToLast == null
+					|| destination == null) {
+				getLogger().error("Unknown network element in route " + request
+						+ "!");
+				return null;
+			}
+
+			secondToLastToDestination = myGraph.getEdge(secondToLast,
+					destination);
+			sourceToNextHop = myGraph.getEdge(source, next);
+		}
+
+		if (secondToLastToDestination == null) {
 			getLogger().error("Could not determine subnet address!");
-			return false;
+			return null;
 		}
 
+		String destNetwork = secondToLastToDestination.getSubnetAddress();
 		int destPrefixLength = secondToLastToDestination.getSubnetPrefix();
 
 		if (destPrefixLength == 0) {
 			getLogger().error("Could not determine destination prefix length!");
-			return false;
+			return null;
+		}
+
+		if (sourceToNextHop == null) {
+			getLogger().error("Could not determine next hop!");
+			return null;
 		}
 
-		Link sourceToNextHop = myGraph.getEdge(source, next);
 		String nextHopAddress = sourceToNextHop.getTargetIPaddress();
 
 		getLogger().debug(
-				"\n Node where to configure route: " + sourceAddress + "\n"
-						+ " Command: " + "ip route " + destNetwork + " "
+				"\n Node where to configure route: " + source.getManagementIP()
+						+ "\n" + " Command: " + "ip route " + destNetwork + " "
 						+ destPrefixLength + " " + nextHopAddress);
 
-		Link myLink = myGraph.getEdge(source, next);
+		return new StaticRoute(source.getManagementIP(), destNetwork,
+				destPrefixLength, nextHopAddress,
+				sourceToNextHop.getSourceIntPort());
+	}
 
-		for (INetworkAgent agent : myAgents) {
-			return agent.setRoute(sourceAddress, destNetwork, destPrefixLength,
-					nextHopAddress, myLink.getSourceIntPort());
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see satellite.ISatellite#getRoutingTable(java.lang.String, int, int)
+	 */
+	public List<String> getRoutingTable(String hostname, int offset, int limit)
+			throws RemoteException {
+		Vertex vertex = myTopologyStore.getVertex(hostname);
+
+		if (vertex == null) {
+			getLogger().error("Unknown network element " + hostname + "!");
+			return new ArrayList<String>();
+		}
+
+		return getRoutingTableCache().getRoutes(vertex.getManagementIP(),
+				offset, limit);
+	}
+
+	/**
+	 * @return The cache of the routing tables fetched from the network
+	 *         agents.
+	 */
+	public RoutingTableCache getRoutingTableCache() {
+		return myRoutingTableCache;
+	}
+
+	/**
+	 * Load the topology written by a previous run into the empty topology
+	 * store. It is served as a provisional topology until the network agents
+	 * have rediscovered the network, see TopologyStore.reconcile().
+	 * 
+	 * @param file
+	 *            - The snapshot file.
+	 * @return True if a topology has been restored.
+	 */
+	public static boolean restoreSnapshot(TopologySnapshotFile file) {
+		try {
+			long startTime = System.currentTimeMillis();
+			TopologyDelta snapshot = file.read();
+
+			if (snapshot == null || !myTopologyStore.restore(snapshot)) {
+				return false;
+			}
+
+			getLogger().info(
+					"Restored " + snapshot.getVertices().size()
+							+ " network elements and "
+							+ snapshot.getLinks().size() + " links from "
+							+ file.getFile() + " in "
+							+ (System.currentTimeMillis() - startTime)
+							+ " ms.");
+			return true;
+		} catch (IOException e) {
+			getLogger().warn(
+					"Could not restore the topology from " + file.getFile()
+							+ ": " + e.getLocalizedMessage());
+			return false;
 		}
-		return false;
+	}
+
+	/**
+	 * Write the topology to the snapshot file every 'interval' milliseconds
+	 * if it has changed, and once more on disconnect().
+	 * 
+	 * @param file
+	 *            - The snapshot file.
+	 * @param interval
+	 *            - The time in milliseconds between two writes.
+	 */
+	public void startSnapshotWriter(TopologySnapshotFile file,
+			final long interval) {
+		mySnapshotFile = file;
+		mySnapshotWriter = new Thread(new Runnable() {
+			public void run() {
+				try {
+					while (!Thread.currentThread().isInterrupted()) {
+						Thread.sleep(interval);
+						writeSnapshot();
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}, "SnapshotWriter");
+		mySnapshotWriter.setDaemon(true);
+		mySnapshotWriter.start();
+	}
+
+	/**
+	 * Write the topology to the snapshot file unless it is unchanged since
+	 * the last write or still provisional.
+	 */
+	private void writeSnapshot() {
+		if (mySnapshotFile == null || myTopologyStore.isProvisional()
+				|| myTopologyStore.isEmpty()) {
+			return;
+		}
+
+		// Not synchronized on the Satellite, a running discovery holds it
+		synchronized (mySnapshotFile) {
+			TopologyDelta snapshot = myTopologyStore.getDelta(0);
+			if (snapshot.getToVersion() == snapshotVersion) {
+				return;
+			}
+
+			try {
+				mySnapshotFile.write(snapshot);
+				snapshotVersion = snapshot.getToVersion();
+			} catch (IOException e) {
+				getLogger().error(
+						"Could not write the topology to "
+								+ mySnapshotFile.getFile() + ": "
+								+ e.getLocalizedMessage());
+			}
+		}
+	}
+
+	/**
+	 * @return The cache of the topology snapshots handed out by getTopology().
+	 */
+	public TopologySnapshotCache getTopologyCache() {
+		return myTopologyCache;
 	}
 
 	/*
@@ -254,11 +645,240 @@ public class Satellite implements ISatellite {
 	 */
 	public DirectedWeightedMultigraph<Vertex, Link> getTopology()
 			throws RemoteException {
+		return getTopology(false);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see satellite.ISatellite#getTopology(boolean)
+	 */
+	public DirectedWeightedMultigraph<Vertex, Link> getTopology(
+			boolean allowStale) throws RemoteException {
+		long start = System.nanoTime();
+		try {
+			// A restored topology is served while it is being rediscovered
+			return myTopologyCache.get(allowStale
+					|| myTopologyStore.isProvisional());
+		} finally {
+			myMetrics.record("getTopology", null, start);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see satellite.ISatellite#getTopologyDelta(long)
+	 */
+	public TopologyDelta getTopologyDelta(long sinceVersion)
+			throws RemoteException {
+		return getTopologyDelta(sinceVersion, false);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see satellite.ISatellite#getTopologyDelta(long, boolean)
+	 */
+	public TopologyDelta getTopologyDelta(long sinceVersion, boolean allowStale)
+			throws RemoteException {
+		long start = System.nanoTime();
+		try {
+			if (allowStale || myTopologyStore.isProvisional()) {
+				myTopologyCache.refreshInBackground();
+			} else {
+				discoverTopology();
+			}
+			return myTopologyStore.getDelta(sinceVersion);
+		} finally {
+			myMetrics.record("getTopologyDelta", null, start);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see satellite.ISatellite#openTopologyStream(long, boolean, int)
+	 */
+	public TopologyChunk openTopologyStream(long sinceVersion,
+			boolean allowStale, int maxElements) throws RemoteException {
+		return myTopologyStreams.open(
+				getTopologyDelta(sinceVersion, allowStale), maxElements);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see satellite.ISatellite#nextTopologyChunk(long)
+	 */
+	public TopologyChunk nextTopologyChunk(long streamId)
+			throws RemoteException {
+		long start = System.nanoTime();
+		try {
+			return myTopologyStreams.next(streamId);
+		} finally {
+			myMetrics.record("nextTopologyChunk", null, start);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see satellite.ISatellite#getAgentStatus()
+	 */
+	public List<AgentStatus> getAgentStatus() throws RemoteException {
+		synchronized (agentStatus) {
+			return new ArrayList<AgentStatus>(agentStatus.values());
+		}
+	}
+
+	/**
+	 * Let the network agents crawl the network concurrently unless they have
+	 * done so before. Afterwards the listeners of the network agents keep
+	 * 'myGraph' up to date.
+	 * 
+	 * Waits at most 'agentTimeout' for all agents. An agent that does not
+	 * finish in time keeps running in the background and is not waited for
+	 * again; its part of the network appears once it completes. Failed agents
+	 * are started again on the next call. Once all agents have completed, the
+	 * parts of a restored topology they have not found again are removed.
+	 */
+	private synchronized void discoverTopology() {
+		long deadline = System.currentTimeMillis() + agentTimeout;
+		Map<INetworkAgent, Future<Void>> waiting = new LinkedHashMap<INetworkAgent, Future<Void>>();
+
 		for (INetworkAgent agent : myAgents) {
-			agent.getTopology();
+			AgentStatus status = null;
+			synchronized (agentStatus) {
+				status = agentStatus.get(agent);
+			}
+			Future<Void> discovery = agentDiscoveries.get(agent);
+
+			// Completed agents are kept up to date by their listeners
+			if (status != null
+					&& status.getState() == AgentStatus.State.COMPLETED) {
+				continue;
+			}
+
+			if (discovery != null && !discovery.isDone()) {
+				// Agents that have timed out before are not waited for again
+				if (status != null
+						&& status.getState() == AgentStatus.State.TIMED_OUT) {
+					continue;
+				}
+			} else {
+				discovery = startDiscovery(agent);
+				agentDiscoveries.put(agent, discovery);
+			}
+			waiting.put(agent, discovery);
+		}
+
+		for (Map.Entry<INetworkAgent, Future<Void>> entry : waiting.entrySet()) {
+			try {
+				entry.getValue().get(
+						Math.max(0, deadline - System.currentTimeMillis()),
+						TimeUnit.MILLISECONDS);
+			} catch (TimeoutException e) {
+				setAgentStatus(entry.getKey(), AgentStatus.State.TIMED_OUT,
+						"No result within " + agentTimeout + " ms.");
+				getLogger().warn(
+						"Network agent " + entry.getKey().getName()
+								+ " did not finish within " + agentTimeout
+								+ " ms.");
+			} catch (ExecutionException e) {
+				// Reported by the discovery itself
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
 		}
 
-		return myGraph;
+		if (myTopologyStore.isProvisional() && isDiscoveryCompleted()) {
+			int removed = myTopologyStore.reconcile();
+			getLogger().info(
+					"Rediscovery completed, removed " + removed
+							+ " vertices and links of the restored topology.");
+		}
+	}
+
+	/**
+	 * @return True if every network agent has completed its discovery, false
+	 *         as long as no network agent has been added.
+	 */
+	private boolean isDiscoveryCompleted() {
+		if (myAgents.isEmpty()) {
+			return false;
+		}
+
+		synchronized (agentStatus) {
+			for (INetworkAgent agent : myAgents) {
+				AgentStatus status = agentStatus.get(agent);
+				if (status == null
+						|| status.getState() != AgentStatus.State.COMPLETED) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Run the discovery of a network agent in the background and track its
+	 * status.
+	 * 
+	 * @param agent
+	 *            - The network agent.
+	 * @return The Future of the discovery.
+	 */
+	private Future<Void> startDiscovery(final INetworkAgent agent) {
+		final long startTime = System.currentTimeMillis();
+		synchronized (agentStatus) {
+			agentStatus.put(agent, new AgentStatus(agent.getName(),
+					AgentStatus.State.RUNNING, startTime, 0, null));
+		}
+
+		return myAgentExecutor.submit(new Callable<Void>() {
+			public Void call() {
+				try {
+					agent.getTopology();
+					setAgentStatus(agent, AgentStatus.State.COMPLETED, null);
+				} catch (RuntimeException e) {
+					setAgentStatus(agent, AgentStatus.State.FAILED,
+							e.toString());
+					getLogger().error(
+							"Network agent " + agent.getName() + " failed: "
+									+ e.getLocalizedMessage(), e);
+					throw e;
+				}
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * @param agent
+	 *            - The network agent.
+	 * @param state
+	 *            - The new state of its discovery.
+	 * @param message
+	 *            - The reason of a failure or null.
+	 */
+	private void setAgentStatus(INetworkAgent agent, AgentStatus.State state,
+			String message) {
+		synchronized (agentStatus) {
+			AgentStatus status = agentStatus.get(agent);
+			long startTime = status == null ? System.currentTimeMillis()
+					: status.getStartTime();
+
+			// A late result replaces the timeout, not the other way round
+			if (state == AgentStatus.State.TIMED_OUT && status != null
+					&& status.getState() != AgentStatus.State.RUNNING) {
+				return;
+			}
+
+			agentStatus.put(agent, new AgentStatus(agent.getName(), state,
+					startTime, System.currentTimeMillis() - startTime, message));
+		}
 	}
 
 	/**
@@ -330,8 +950,8 @@ public class Satellite implements ISatellite {
 	/**
 	 * Read the connection properties - Satellite name, Satellite IP-Address,
 	 * Satellite port number, TopologyDiscoverer IP-Address, TopologyDiscoverer
-	 * port number, root element IP-Address, root element username and password
-	 * - from a file named 'connection.properties' that is a resource on the
+	 * port number, root element IP-Address, root element username, password,
+	 * the number of discovery threads and the onePK session limits - from a file named 'connection.properties' that is a resource on the
 	 * classpath.
 	 * 
 	 * @return True if the properties are read successfully.
@@ -356,6 +976,39 @@ public class Satellite implements ISatellite {
 			rootElementIP = properties.getProperty("rootElement", "10.1.1.4");
 			rootElementUserName = properties.getProperty("userName", "user1");
 			rootElementPassword = properties.getProperty("password", "pass1");
+			discoveryThreads = Integer.parseInt(properties.getProperty(
+					"discoveryThreads", "8"));
+			maxSessions = Integer.parseInt(properties.getProperty(
+					"maxSessions", "256"));
+			sessionIdleTimeout = Long.parseLong(properties.getProperty(
+					"sessionIdleTimeout", "300000"));
+			routingTableTTL = Long.parseLong(properties.getProperty(
+					"routingTableTTL", "60000"));
+			installThreads = Integer.parseInt(properties.getProperty(
+					"installThreads", "8"));
+			routeConfirmTimeout = Long.parseLong(properties.getProperty(
+					"routeConfirmTimeout", "10000"));
+			agentTimeout = Long.parseLong(properties.getProperty(
+					"agentTimeout", "120000"));
+			eventQueueCapacity = Integer.parseInt(properties.getProperty(
+					"eventQueueCapacity", "1024"));
+			eventWindow = Long.parseLong(properties.getProperty(
+					"eventWindow", "500"));
+			topologyTTL = Long.parseLong(properties.getProperty(
+					"topologyTTL", "5000"));
+			snapshotFile = properties.getProperty("snapshotFile",
+					"topology.snapshot");
+			snapshotInterval = Long.parseLong(properties.getProperty(
+					"snapshotInterval", "60000"));
+			transport = properties.getProperty("transport", "rmi");
+			thriftPort = Integer.parseInt(properties.getProperty(
+					"thriftPort", "9090"));
+			topologyDiscovererThriftPort = Integer.parseInt(properties
+					.getProperty("topoDisThriftPort", "9091"));
+			thriftTimeout = Long.parseLong(properties.getProperty(
+					"thriftTimeout", "60000"));
+			thriftWorkers = Integer.parseInt(properties.getProperty(
+					"thriftWorkers", "4"));
 		} catch (IOException e) {
 			getLogger().error(e.getLocalizedMessage());
 			e.printStackTrace();
@@ -371,6 +1024,23 @@ public class Satellite implements ISatellite {
 		return satelliteName;
 	}
 
+	/**
+	 * Register 'myMetrics' with the platform MBean server, so the counters and
+	 * latencies can be read with jconsole or any other JMX client.
+	 */
+	private static void registerMetrics() {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(
+					myMetrics,
+					new ObjectName("de.lmu.ifi.nm.www:type=Satellite,name="
+							+ ObjectName.quote(satelliteName)));
+		} catch (JMException e) {
+			getLogger().error(
+					"Failed to register the Satellite MBean: "
+							+ e.getLocalizedMessage());
+		}
+	}
+
 	/**
 	 * Create objects, add CiscoAgent to ArrayList 'myAgents' and setup the
 	 * shutdown hook.
@@ -385,6 +1055,11 @@ public class Satellite implements ISatellite {
 			parseCommandLine(args);
 		}
 
+		// Serve the topology of the last run until it has been rediscovered
+		TopologySnapshotFile myTopologySnapshot = new TopologySnapshotFile(
+				new File(snapshotFile));
+		boolean isRestored = restoreSnapshot(myTopologySnapshot);
+
 		// Create Satellite object
 		final Satellite mySatellite = new Satellite("Berlin", satelliteIP,
 				satellitePort, topologyDiscovererIP, topologyDiscovererPort);
@@ -392,11 +1067,30 @@ public class Satellite implements ISatellite {
 		// Create CiscoAgent object
 		final CiscoAgent myFirstCiscoAgent = new CiscoAgent(mySatellite,
 				"my1stCiscoAgent", rootElementIP, rootElementUserName,
-				rootElementPassword);
+				rootElementPassword, installThreads);
 		
+		myFirstCiscoAgent.setDiscoveryThreads(discoveryThreads);
+		myFirstCiscoAgent.getSessionPool().setMaxSessions(maxSessions);
+		myFirstCiscoAgent.getSessionPool().setIdleTimeout(sessionIdleTimeout);
+		mySatellite.getRoutingTableCache().setTimeToLive(routingTableTTL);
+		mySatellite.getTopologyCache().setTimeToLive(topologyTTL);
+
+		myFirstCiscoAgent.getRouteInstaller().setConfirmTimeout(
+				routeConfirmTimeout);
+		myMetrics.setSessionPool(myFirstCiscoAgent.getSessionPool());
+		registerMetrics();
+
 		// Add 'myFirstCiscoAgent' to the ArrayList 'myAgents'
 		mySatellite.addNetworkAgent(myFirstCiscoAgent);
 
+		if (isRestored) {
+			mySatellite.getTopologyCache().refreshInBackground();
+		}
+		if (snapshotInterval > 0) {
+			mySatellite.startSnapshotWriter(myTopologySnapshot,
+					snapshotInterval);
+		}
+
 		// Shutdown hook for removing Satellite from the
 		// TopologyDiscoverer's list
 		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
@@ -0,0 +1,274 @@
+package de.lmu.ifi.nm.www;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters and latency histograms of the Satellite.
+ *
+ * Every timed operation is recorded twice: in a histogram over all network
+ * elements and in one for the network element it concerned, so the elements
+ * that dominate e.g. the discovery time can be told apart. Recording only
+ * touches atomic variables and never blocks the caller.
+ *
+ * Typical use:
+ *
+ * long start = System.nanoTime(); try { ... } finally {
+ * Satellite.myMetrics.record("discoverAddresses", address, start); }
+ */
+public class SatelliteMetrics implements SatelliteMetricsMXBean {
+	private ConcurrentMap<String, LatencyHistogram> operations = new ConcurrentHashMap<String, LatencyHistogram>();
+	private ConcurrentMap<String, ConcurrentMap<String, LatencyHistogram>> devices = new ConcurrentHashMap<String, ConcurrentMap<String, LatencyHistogram>>();
+	private AtomicLong sessionConnects = new AtomicLong();
+	private AtomicLong eventsQueued = new AtomicLong();
+	private AtomicLong eventsDropped = new AtomicLong();
+	private AtomicLong eventsSent = new AtomicLong();
+	private AtomicLong routesInstalled = new AtomicLong();
+	private AtomicLong routesFailed = new AtomicLong();
+	private SessionPool mySessionPool = null;
+	private TopologyStore myTopologyStore = null;
+
+	/**
+	 * @param myTopologyStore
+	 *            - The topology whose size is reported.
+	 */
+	public SatelliteMetrics(TopologyStore myTopologyStore) {
+		this.myTopologyStore = myTopologyStore;
+	}
+
+	/**
+	 * Record the duration of an operation.
+	 *
+	 * @param operation
+	 *            - The name of the operation.
+	 * @param device
+	 *            - The IP-Address or host name of the network element, null
+	 *            if the operation does not concern a single one.
+	 * @param startNanos
+	 *            - The value of System.nanoTime() when the operation started.
+	 */
+	public void record(String operation, String device, long startNanos) {
+		long nanos = System.nanoTime() - startNanos;
+
+		getHistogram(operations, operation).record(nanos);
+		if (device != null) {
+			ConcurrentMap<String, LatencyHistogram> histograms = devices
+					.get(operation);
+			if (histograms == null) {
+				histograms = new ConcurrentHashMap<String, LatencyHistogram>();
+				ConcurrentMap<String, LatencyHistogram> existing = devices
+						.putIfAbsent(operation, histograms);
+				if (existing != null) {
+					histograms = existing;
+				}
+			}
+			getHistogram(histograms, device).record(nanos);
+		}
+	}
+
+	/**
+	 * Count a newly connected onePK session.
+	 */
+	public void sessionConnected() {
+		sessionConnects.incrementAndGet();
+	}
+
+	/**
+	 * @param queued
+	 *            - True if the event has been queued, false if it has been
+	 *            dropped.
+	 */
+	public void eventOffered(boolean queued) {
+		(queued ? eventsQueued : eventsDropped).incrementAndGet();
+	}
+
+	/**
+	 * @param count
+	 *            - The number of events sent in a batch.
+	 */
+	public void eventsSent(int count) {
+		eventsSent.addAndGet(count);
+	}
+
+	/**
+	 * @param count
+	 *            - The number of routes of an install.
+	 * @param installed
+	 *            - True if the routes have been installed and confirmed.
+	 */
+	public void routesInstalled(int count, boolean installed) {
+		(installed ? routesInstalled : routesFailed).addAndGet(count);
+	}
+
+	/**
+	 * @param mySessionPool
+	 *            - The pool whose open sessions are reported.
+	 */
+	public void setSessionPool(SessionPool mySessionPool) {
+		this.mySessionPool = mySessionPool;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see de.lmu.ifi.nm.www.SatelliteMetricsMXBean#getSessionConnects()
+	 */
+	public long getSessionConnects() {
+		return sessionConnects.get();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see de.lmu.ifi.nm.www.SatelliteMetricsMXBean#getOpenSessions()
+	 */
+	public int getOpenSessions() {
+		return mySessionPool == null ? 0 : mySessionPool.size();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see de.lmu.ifi.nm.www.SatelliteMetricsMXBean#getEventsQueued()
+	 */
+	public long getEventsQueued() {
+		return eventsQueued.get();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see de.lmu.ifi.nm.www.SatelliteMetricsMXBean#getEventsDropped()
+	 */
+	public long getEventsDropped() {
+		return eventsDropped.get();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see de.lmu.ifi.nm.www.SatelliteMetricsMXBean#getEventsSent()
+	 */
+	public long getEventsSent() {
+		return eventsSent.get();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see de.lmu.ifi.nm.www.SatelliteMetricsMXBean#getRoutesInstalled()
+	 */
+	public long getRoutesInstalled() {
+		return routesInstalled.get();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see de.lmu.ifi.nm.www.SatelliteMetricsMXBean#getRoutesFailed()
+	 */
+	public long getRoutesFailed() {
+		return routesFailed.get();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see de.lmu.ifi.nm.www.SatelliteMetricsMXBean#getVertexCount()
+	 */
+	public int getVertexCount() {
+		return myTopologyStore.getVertexCount();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see de.lmu.ifi.nm.www.SatelliteMetricsMXBean#getLinkCount()
+	 */
+	public int getLinkCount() {
+		return myTopologyStore.getLinkCount();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see de.lmu.ifi.nm.www.SatelliteMetricsMXBean#getOperations()
+	 */
+	public List<LatencySnapshot> getOperations() {
+		List<LatencySnapshot> snapshots = new ArrayList<LatencySnapshot>();
+		for (Map.Entry<String, LatencyHistogram> entry : operations.entrySet()) {
+			snapshots.add(LatencySnapshot.of(entry.getKey(), null,
+					entry.getValue()));
+		}
+		return snapshots;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * de.lmu.ifi.nm.www.SatelliteMetricsMXBean#getSlowestDevices(java.lang.
+	 * String, int)
+	 */
+	public List<LatencySnapshot> getSlowestDevices(String operation, int limit) {
+		List<LatencySnapshot> snapshots = new ArrayList<LatencySnapshot>();
+		Map<String, LatencyHistogram> histograms = devices.get(operation);
+		if (histograms == null) {
+			return snapshots;
+		}
+
+		for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+			snapshots.add(LatencySnapshot.of(operation, entry.getKey(),
+					entry.getValue()));
+		}
+		Collections.sort(snapshots, new Comparator<LatencySnapshot>() {
+			public int compare(LatencySnapshot a, LatencySnapshot b) {
+				return Double.compare(b.getTotalMillis(), a.getTotalMillis());
+			}
+		});
+		return snapshots.subList(0, Math.max(0, Math.min(limit,
+				snapshots.size())));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see de.lmu.ifi.nm.www.SatelliteMetricsMXBean#reset()
+	 */
+	public void reset() {
+		operations.clear();
+		devices.clear();
+		sessionConnects.set(0);
+		eventsQueued.set(0);
+		eventsDropped.set(0);
+		eventsSent.set(0);
+		routesInstalled.set(0);
+		routesFailed.set(0);
+	}
+
+	/**
+	 * @param histograms
+	 *            - The histograms by key.
+	 * @param key
+	 *            - The operation or network element.
+	 * @return The histogram of the key, created if necessary.
+	 */
+	private static LatencyHistogram getHistogram(
+			ConcurrentMap<String, LatencyHistogram> histograms, String key) {
+		LatencyHistogram histogram = histograms.get(key);
+		if (histogram == null) {
+			histogram = new LatencyHistogram();
+			LatencyHistogram existing = histograms.putIfAbsent(key, histogram);
+			if (existing != null) {
+				histogram = existing;
+			}
+		}
+		return histogram;
+	}
+}
@@ -0,0 +1,76 @@
+package de.lmu.ifi.nm.www;
+
+import java.util.List;
+
+/**
+ * Management interface of the Satellite, registered with the platform MBean
+ * server as de.lmu.ifi.nm.www:type=Satellite,name=&lt;satName&gt; and
+ * readable with jconsole or any other JMX client.
+ */
+public interface SatelliteMetricsMXBean {
+	/**
+	 * @return The number of onePK sessions that have been connected.
+	 */
+	public long getSessionConnects();
+
+	/**
+	 * @return The number of onePK sessions currently held by the pool.
+	 */
+	public int getOpenSessions();
+
+	/**
+	 * @return The number of network events queued for the TopologyDiscoverer.
+	 */
+	public long getEventsQueued();
+
+	/**
+	 * @return The number of network events dropped because the queue was
+	 *         full.
+	 */
+	public long getEventsDropped();
+
+	/**
+	 * @return The number of network events sent to the TopologyDiscoverer.
+	 */
+	public long getEventsSent();
+
+	/**
+	 * @return The number of routes installed and confirmed.
+	 */
+	public long getRoutesInstalled();
+
+	/**
+	 * @return The number of routes that could not be installed.
+	 */
+	public long getRoutesFailed();
+
+	/**
+	 * @return The number of vertices of the topology.
+	 */
+	public int getVertexCount();
+
+	/**
+	 * @return The number of links of the topology.
+	 */
+	public int getLinkCount();
+
+	/**
+	 * @return The latency of every operation over all network elements.
+	 */
+	public List<LatencySnapshot> getOperations();
+
+	/**
+	 * @param operation
+	 *            - The name of the operation, e.g. 'discoverAddresses'.
+	 * @param limit
+	 *            - The maximum number of network elements returned.
+	 * @return The latency of the operation on the network elements that took
+	 *         the longest in total, slowest first.
+	 */
+	public List<LatencySnapshot> getSlowestDevices(String operation, int limit);
+
+	/**
+	 * Reset all counters and latencies.
+	 */
+	public void reset();
+}
@@ -0,0 +1,217 @@
+package de.lmu.ifi.nm.www;
+
+import java.io.IOException;
+import java.rmi.RemoteException;
+import java.util.List;
+
+import org.jgrapht.graph.DirectedWeightedMultigraph;
+
+/**
+ * ISatellite on top of the Thrift service 'Satellite' of starfish.thrift.
+ * Used by the TopologyDiscoverer in place of the RMI stub for Satellites that
+ * have connected over Thrift.
+ */
+public class SatelliteThriftClient implements ISatellite {
+	private ThriftClient myClient = null;
+
+	/**
+	 * @param host
+	 *            - The host name or IP-Address of the Satellite.
+	 * @param port
+	 *            - The port of the Satellite's Thrift server.
+	 * @param timeout
+	 *            - The timeout of a call in milliseconds, 0 for none.
+	 */
+	public SatelliteThriftClient(String host, int port, long timeout) {
+		myClient = new ThriftClient(host, port, timeout);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see satellite.ISatellite#getTopology()
+	 */
+	public DirectedWeightedMultigraph<?, ?> getTopology()
+			throws RemoteException {
+		return getTopology(false);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see satellite.ISatellite#getTopology(boolean)
+	 */
+	public DirectedWeightedMultigraph<?, ?> getTopology(boolean allowStale)
+			throws RemoteException {
+		return (DirectedWeightedMultigraph<?, ?>) deserialize(myClient.call(
+				"getTopology", allowStale));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see satellite.ISatellite#getTopologyDelta(long)
+	 */
+	public TopologyDelta getTopologyDelta(long sinceVersion)
+			throws RemoteException {
+		return getTopologyDelta(sinceVersion, false);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see satellite.ISatellite#getTopologyDelta(long, boolean)
+	 */
+	public TopologyDelta getTopologyDelta(long sinceVersion, boolean allowStale)
+			throws RemoteException {
+		return (TopologyDelta) deserialize(myClient.call("getTopologyDelta",
+				sinceVersion, allowStale));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see satellite.ISatellite#openTopologyStream(long, boolean, int)
+	 */
+	public TopologyChunk openTopologyStream(long sinceVersion,
+			boolean allowStale, int maxElements) throws RemoteException {
+		return (TopologyChunk) deserialize(myClient.call("openTopologyStream",
+				sinceVersion, allowStale, maxElements));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see satellite.ISatellite#nextTopologyChunk(long)
+	 */
+	public TopologyChunk nextTopologyChunk(long streamId)
+			throws RemoteException {
+		return (TopologyChunk) deserialize(myClient.call("nextTopologyChunk",
+				streamId));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see satellite.ISatellite#getRoutingTable(java.lang.String, int, int)
+	 */
+	public List<String> getRoutingTable(String hostname, int offset, int limit)
+			throws RemoteException {
+		return ThriftCodec.toStringList(myClient.call("getRoutingTable",
+				hostname, offset, limit));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see satellite.ISatellite#setRoute(satellite.Vertex, satellite.Vertex,
+	 * satellite.Vertex, satellite.Vertex)
+	 */
+	public boolean setRoute(Vertex source, Vertex next, Vertex nextToLast,
+			Vertex destination) throws RemoteException {
+		return Boolean.TRUE.equals(myClient.call("setRoute",
+				serialize(source), serialize(next), serialize(nextToLast),
+				serialize(destination)));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see satellite.ISatellite#setRoutes(java.util.List)
+	 */
+	@SuppressWarnings("unchecked")
+	public List<RouteRequest> setRoutes(List<RouteRequest> routes)
+			throws RemoteException {
+		return (List<RouteRequest>) deserialize(myClient.call("setRoutes",
+				serialize(routes)));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see satellite.ISatellite#getAgentStatus()
+	 */
+	@SuppressWarnings("unchecked")
+	public List<AgentStatus> getAgentStatus() throws RemoteException {
+		return (List<AgentStatus>) deserialize(myClient
+				.call("getAgentStatus"));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see satellite.ISatellite#isAlive()
+	 */
+	public boolean isAlive() throws RemoteException {
+		return Boolean.TRUE.equals(myClient.call("isAlive"));
+	}
+
+	/**
+	 * Close the connection to the Satellite.
+	 */
+	public void close() {
+		myClient.close();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(Object object) {
+		return object instanceof SatelliteThriftClient
+				&& myClient.equals(((SatelliteThriftClient) object).myClient);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		return myClient.hashCode();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "Satellite " + myClient;
+	}
+
+	/**
+	 * @param object
+	 *            - An argument of a call.
+	 * @return The Java serialization of the argument.
+	 * @throws RemoteException
+	 *             If the argument could not be serialized.
+	 */
+	private static byte[] serialize(Object object) throws RemoteException {
+		try {
+			return ThriftCodec.serialize(object);
+		} catch (IOException e) {
+			throw new RemoteException("Could not serialize " + object, e);
+		}
+	}
+
+	/**
+	 * @param value
+	 *            - A binary return value.
+	 * @return The deserialized object or null.
+	 * @throws RemoteException
+	 *             If the value could not be deserialized.
+	 */
+	private static Object deserialize(Object value) throws RemoteException {
+		try {
+			return value == null ? null : ThriftCodec
+					.deserialize((byte[]) value);
+		} catch (IOException e) {
+			throw new RemoteException("Could not deserialize the reply", e);
+		}
+	}
+}
@@ -0,0 +1,62 @@
+package de.lmu.ifi.nm.www;
+
+import java.util.List;
+
+/**
+ * Thrift service 'Satellite' of starfish.thrift, the counterpart of the RMI
+ * interface ISatellite. Passes the calls on to the Satellite.
+ */
+public class SatelliteThriftService extends ThriftService {
+	private ISatellite mySatellite = null;
+
+	/**
+	 * @param mySatellite
+	 *            - The Satellite handling the calls.
+	 */
+	public SatelliteThriftService(ISatellite mySatellite) {
+		this.mySatellite = mySatellite;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see de.lmu.ifi.nm.www.ThriftService#invoke(java.lang.String,
+	 * de.lmu.ifi.nm.www.ThriftService.Arguments)
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	protected Object invoke(String method, Arguments arguments)
+			throws Exception {
+		if (method.equals("getTopology")) {
+			return ThriftCodec.serialize(mySatellite.getTopology(arguments
+					.getBoolean(1)));
+		} else if (method.equals("getTopologyDelta")) {
+			return ThriftCodec.serialize(mySatellite.getTopologyDelta(
+					arguments.getLong(1), arguments.getBoolean(2)));
+		} else if (method.equals("openTopologyStream")) {
+			return ThriftCodec.serialize(mySatellite.openTopologyStream(
+					arguments.getLong(1), arguments.getBoolean(2),
+					arguments.getInt(3)));
+		} else if (method.equals("nextTopologyChunk")) {
+			TopologyChunk chunk = mySatellite.nextTopologyChunk(arguments
+					.getLong(1));
+			return chunk == null ? null : ThriftCodec.serialize(chunk);
+		} else if (method.equals("getRoutingTable")) {
+			return mySatellite.getRoutingTable(arguments.getString(1),
+					arguments.getInt(2), arguments.getInt(3));
+		} else if (method.equals("setRoute")) {
+			return mySatellite.setRoute((Vertex) arguments.getObject(1),
+					(Vertex) arguments.getObject(2),
+					(Vertex) arguments.getObject(3),
+					(Vertex) arguments.getObject(4));
+		} else if (method.equals("setRoutes")) {
+			return ThriftCodec.serialize(mySatellite
+					.setRoutes((List<RouteRequest>) arguments.getObject(1)));
+		} else if (method.equals("getAgentStatus")) {
+			return ThriftCodec.serialize(mySatellite.getAgentStatus());
+		} else if (method.equals("isAlive")) {
+			return mySatellite.isAlive();
+		}
+		throw unknownMethod(method);
+	}
+}
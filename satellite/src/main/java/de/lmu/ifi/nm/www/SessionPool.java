@@ -0,0 +1,438 @@
+package de.lmu.ifi.nm.www;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.cisco.onep.core.exception.OnepException;
+import com.cisco.onep.element.NetworkApplication;
+import com.cisco.onep.element.NetworkElement;
+import com.cisco.onep.element.SessionConfig;
+
+/**
+ * Pool of onePK sessions keyed by the address of the network element.
+ *
+ * Network discovery, route programming and RIB reads of the CiscoAgent
+ * acquire their NetworkElement from this pool instead of connecting on every
+ * call. A session is checked with isConnected() before it is handed out and
+ * reconnected if the check fails. Sessions that have not been used for
+ * 'idleTimeout' milliseconds are disconnected by a background thread, unless
+ * they have been pinned because event listeners are registered on them. The
+ * pool never holds more than 'maxSessions' sessions besides the pinned ones:
+ * when the cap is reached, the least recently used idle session is evicted or
+ * the caller waits for one to become idle. Pinned sessions do not count
+ * against the cap, since one is kept for every discovered network element.
+ *
+ * Every acquire() must be followed by a release() for the same address.
+ */
+public class SessionPool {
+	private static final long EVICTION_INTERVAL = 30000;
+	private static final long ACQUIRE_TIMEOUT = 60000;
+
+	private NetworkApplication myNetworkApplication = null;
+	private String userName = null;
+	private String password = null;
+	private SessionConfig mySessionConf = null;
+	private int maxSessions = 256;
+	private long idleTimeout = 300000;
+	private Map<String, PooledSession> sessions = new LinkedHashMap<String, PooledSession>(
+			16, 0.75f, true);
+	private int pinnedSessions = 0;
+	private ScheduledExecutorService evictor = null;
+	private Logger myLogger = LoggerFactory.getLogger(SessionPool.class);
+
+	/**
+	 * A session to a single network element together with its bookkeeping.
+	 */
+	private static class PooledSession {
+		private final String address;
+		private NetworkElement networkElement = null;
+		private int inUse = 0;
+		private boolean pinned = false;
+		private long lastUsed = System.currentTimeMillis();
+
+		/**
+		 * @param address
+		 *            - The IP-Address of the network element.
+		 */
+		public PooledSession(String address) {
+			this.address = address;
+		}
+
+		/**
+		 * @return True if the session may be disconnected by the pool.
+		 */
+		public boolean isEvictable() {
+			return inUse == 0 && !pinned;
+		}
+	}
+
+	/**
+	 * @param myNetworkApplication
+	 *            - The onePK application that creates the network elements.
+	 * @param userName
+	 *            - The username to authorize with the network elements.
+	 * @param password
+	 *            - The password to authorize with the network elements.
+	 * @param mySessionConf
+	 *            - The session configuration used for every connect.
+	 */
+	public SessionPool(NetworkApplication myNetworkApplication,
+			String userName, String password, SessionConfig mySessionConf) {
+		this.myNetworkApplication = myNetworkApplication;
+		this.userName = userName;
+		this.password = password;
+		this.mySessionConf = mySessionConf;
+
+		evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "SessionPool-evictor");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		evictor.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				evictIdleSessions();
+			}
+		}, EVICTION_INTERVAL, EVICTION_INTERVAL, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Get a connected session to a network element. An existing session is
+	 * reused if it is still connected, otherwise a new one is established.
+	 *
+	 * @param address
+	 *            - The IP-Address of the network element.
+	 * @return The connected network element.
+	 * @throws OnepException
+	 *             If the network element could not be connected, or a
+	 *             SessionPoolExhaustedException if no session became free in
+	 *             time.
+	 * @throws UnknownHostException
+	 *             If the address could not be resolved.
+	 * @throws InterruptedException
+	 *             If the thread was interrupted while waiting for a free
+	 *             session.
+	 */
+	public NetworkElement acquire(String address) throws OnepException,
+			UnknownHostException, InterruptedException {
+		String key = InetAddress.getByName(address).getHostAddress();
+		PooledSession session = reserve(key);
+		boolean connected = false;
+
+		try {
+			synchronized (session) {
+				if (session.networkElement == null) {
+					session.networkElement = myNetworkApplication
+							.getNetworkElement(InetAddress.getByName(key));
+				}
+
+				// Health check: re-establish sessions that have been dropped
+				if (!session.networkElement.isConnected()) {
+					myLogger.info("Connecting to address " + key + ".");
+					long start = System.nanoTime();
+					try {
+						session.networkElement.connect(userName, password,
+								mySessionConf);
+						Satellite.myMetrics.sessionConnected();
+					} finally {
+						Satellite.myMetrics.record("connect", key, start);
+					}
+				}
+			}
+			connected = true;
+		} finally {
+			if (!connected) {
+				release(key);
+			}
+		}
+
+		return session.networkElement;
+	}
+
+	/**
+	 * Hand a session back to the pool.
+	 *
+	 * @param address
+	 *            - The IP-Address the session has been acquired for.
+	 */
+	public void release(String address) {
+		String key = normalize(address);
+
+		synchronized (this) {
+			PooledSession session = sessions.get(key);
+			if (session != null && session.inUse > 0) {
+				session.inUse--;
+				session.lastUsed = System.currentTimeMillis();
+			}
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Keep a session open regardless of its idle time. Used for network
+	 * elements that deliver events to registered listeners.
+	 *
+	 * @param address
+	 *            - The IP-Address of the network element.
+	 */
+	public synchronized void pin(String address) {
+		PooledSession session = sessions.get(normalize(address));
+		if (session != null && !session.pinned) {
+			session.pinned = true;
+			pinnedSessions++;
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Drop and disconnect a session, e.g. after an operation failed because
+	 * the session was broken.
+	 *
+	 * @param address
+	 *            - The IP-Address of the network element.
+	 */
+	public void invalidate(String address) {
+		PooledSession session = null;
+
+		synchronized (this) {
+			session = remove(normalize(address));
+			notifyAll();
+		}
+
+		if (session != null) {
+			disconnect(session);
+		}
+	}
+
+	/**
+	 * @return The number of sessions currently held by the pool.
+	 */
+	public synchronized int size() {
+		return sessions.size();
+	}
+
+	/**
+	 * Disconnect all sessions and stop the eviction thread.
+	 */
+	public void close() {
+		List<PooledSession> closed = null;
+
+		synchronized (this) {
+			closed = new ArrayList<PooledSession>(sessions.values());
+			sessions.clear();
+			pinnedSessions = 0;
+			notifyAll();
+		}
+
+		evictor.shutdownNow();
+		for (PooledSession session : closed) {
+			disconnect(session);
+		}
+	}
+
+	/**
+	 * @return The maximum number of sessions held by the pool besides the
+	 *         pinned ones.
+	 */
+	public int getMaxSessions() {
+		return maxSessions;
+	}
+
+	/**
+	 * Set the maximum number of sessions held by the pool.
+	 *
+	 * @param maxSessions
+	 *            - The maximum number of sessions to be set.
+	 */
+	public synchronized void setMaxSessions(int maxSessions) {
+		this.maxSessions = Math.max(1, maxSessions);
+		notifyAll();
+	}
+
+	/**
+	 * @return The time in milliseconds after which unused sessions are
+	 *         disconnected.
+	 */
+	public long getIdleTimeout() {
+		return idleTimeout;
+	}
+
+	/**
+	 * Set the time after which unused sessions are disconnected.
+	 *
+	 * @param idleTimeout
+	 *            - The idle timeout in milliseconds.
+	 */
+	public void setIdleTimeout(long idleTimeout) {
+		this.idleTimeout = idleTimeout;
+	}
+
+	/**
+	 * Look up or create the session entry for an address and mark it as used.
+	 * Waits for an idle session if the pool is full.
+	 *
+	 * @param key
+	 *            - The normalized IP-Address of the network element.
+	 * @return The reserved session entry.
+	 * @throws SessionPoolExhaustedException
+	 *             If no session became idle within ACQUIRE_TIMEOUT.
+	 * @throws InterruptedException
+	 *             If the thread was interrupted while waiting.
+	 */
+	private PooledSession reserve(String key)
+			throws SessionPoolExhaustedException, InterruptedException {
+		List<PooledSession> evicted = new ArrayList<PooledSession>();
+		PooledSession session = null;
+
+		synchronized (this) {
+			long deadline = System.currentTimeMillis() + ACQUIRE_TIMEOUT;
+
+			while (!sessions.containsKey(key)
+					&& sessions.size() - pinnedSessions >= maxSessions) {
+				PooledSession victim = leastRecentlyUsedIdleSession();
+				if (victim != null) {
+					remove(victim.address);
+					evicted.add(victim);
+					continue;
+				}
+
+				long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0) {
+					throw new SessionPoolExhaustedException("All "
+							+ maxSessions + " onePK sessions are in use."
+							+ " Could not connect to " + key + ".");
+				}
+				wait(remaining);
+			}
+
+			session = sessions.get(key);
+			if (session == null) {
+				session = new PooledSession(key);
+				sessions.put(key, session);
+			}
+			session.inUse++;
+			session.lastUsed = System.currentTimeMillis();
+		}
+
+		for (PooledSession victim : evicted) {
+			disconnect(victim);
+		}
+
+		return session;
+	}
+
+	/**
+	 * @return The least recently used session that may be evicted or null.
+	 */
+	private PooledSession leastRecentlyUsedIdleSession() {
+		// LinkedHashMap in access order iterates from the eldest entry
+		for (PooledSession session : sessions.values()) {
+			if (session.isEvictable()) {
+				return session;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Disconnect sessions that have been idle for longer than 'idleTimeout'
+	 * and drop sessions that are no longer connected.
+	 */
+	private void evictIdleSessions() {
+		List<PooledSession> evicted = new ArrayList<PooledSession>();
+		long now = System.currentTimeMillis();
+
+		synchronized (this) {
+			Iterator<PooledSession> iterator = sessions.values().iterator();
+			while (iterator.hasNext()) {
+				PooledSession session = iterator.next();
+				if (session.inUse > 0) {
+					continue;
+				}
+
+				boolean expired = !session.pinned
+						&& now - session.lastUsed > idleTimeout;
+				boolean dead = session.networkElement != null
+						&& !session.networkElement.isConnected();
+
+				if (expired || dead) {
+					iterator.remove();
+					if (session.pinned) {
+						pinnedSessions--;
+					}
+					evicted.add(session);
+				}
+			}
+			if (!evicted.isEmpty()) {
+				notifyAll();
+			}
+		}
+
+		for (PooledSession session : evicted) {
+			myLogger.debug("Closing idle onePK session to " + session.address
+					+ ".");
+			disconnect(session);
+		}
+	}
+
+	/**
+	 * Drop the session entry for an address. The caller holds the lock of the
+	 * pool.
+	 *
+	 * @param key
+	 *            - The normalized IP-Address of the network element.
+	 * @return The dropped session entry or null.
+	 */
+	private PooledSession remove(String key) {
+		PooledSession session = sessions.remove(key);
+		if (session != null && session.pinned) {
+			pinnedSessions--;
+		}
+		return session;
+	}
+
+	/**
+	 * Disconnect a session, ignoring errors.
+	 *
+	 * @param session
+	 *            - The session to be disconnected.
+	 */
+	private void disconnect(PooledSession session) {
+		synchronized (session) {
+			try {
+				if (session.networkElement != null
+						&& session.networkElement.isConnected()) {
+					session.networkElement.disconnect();
+				}
+			} catch (Exception e) {
+				myLogger.error("Failed to disconnect from " + session.address);
+			}
+		}
+	}
+
+	/**
+	 * @param address
+	 *            - An IP-Address or host name.
+	 * @return The textual IP-Address used as pool key.
+	 */
+	private String normalize(String address) {
+		try {
+			return InetAddress.getByName(address).getHostAddress();
+		} catch (UnknownHostException e) {
+			return address;
+		}
+	}
+}
@@ -0,0 +1,20 @@
+package de.lmu.ifi.nm.www;
+
+import com.cisco.onep.core.exception.OnepException;
+
+/**
+ * Thrown by SessionPool.acquire() if all sessions stay in use for longer than
+ * the pool waits for one to become idle. Callers handle it like any other
+ * network element that could not be connected.
+ */
+public class SessionPoolExhaustedException extends OnepException {
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * @param message
+	 *            - The description of the exhausted pool.
+	 */
+	public SessionPoolExhaustedException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,112 @@
+package de.lmu.ifi.nm.www;
+
+/**
+ * This class represents a static route to be configured on a network element,
+ * e.g. 'ip route 10.1.1.0 255.255.255.0 10.15.1.7'. It is the result of
+ * resolving a RouteRequest against the Satellite's topology graph.
+ */
+public class StaticRoute {
+	private String sourceAddress = null;
+	private String destNetwork = null;
+	private int destNetworkPrefix;
+	private String nextHop = null;
+	private String sourceInt = null;
+	private boolean isWithdrawal = false;
+
+	/**
+	 * @param sourceAddress
+	 *            - The management IP-Address of the network element where to
+	 *            configure the route.
+	 * @param destNetwork
+	 *            - The destination network address.
+	 * @param destNetworkPrefix
+	 *            - The prefix length of the destination network.
+	 * @param nextHop
+	 *            - The IP-Address of the next hop.
+	 * @param sourceInt
+	 *            - The outgoing interface of the network element.
+	 */
+	public StaticRoute(String sourceAddress, String destNetwork,
+			int destNetworkPrefix, String nextHop, String sourceInt) {
+		this.sourceAddress = sourceAddress;
+		this.destNetwork = destNetwork;
+		this.destNetworkPrefix = destNetworkPrefix;
+		this.nextHop = nextHop;
+		this.sourceInt = sourceInt;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return sourceAddress + ": " + (isWithdrawal ? "no " : "") + "ip route "
+				+ destNetwork + "/" + destNetworkPrefix + " " + nextHop + " ("
+				+ sourceInt + ")";
+	}
+
+	/**
+	 * @return A copy of this route that removes it from the network element.
+	 */
+	public StaticRoute toWithdrawal() {
+		StaticRoute withdrawal = new StaticRoute(sourceAddress, destNetwork,
+				destNetworkPrefix, nextHop, sourceInt);
+		withdrawal.isWithdrawal = true;
+		return withdrawal;
+	}
+
+	/**
+	 * @param route
+	 *            - Another route.
+	 * @return True if both routes lead to the same destination network.
+	 */
+	public boolean hasSameDestination(StaticRoute route) {
+		return destNetworkPrefix == route.destNetworkPrefix
+				&& destNetwork.equals(route.destNetwork);
+	}
+
+	/**
+	 * @return The management IP-Address of the network element where to
+	 *         configure the route.
+	 */
+	public String getSourceAddress() {
+		return sourceAddress;
+	}
+
+	/**
+	 * @return The destination network address.
+	 */
+	public String getDestNetwork() {
+		return destNetwork;
+	}
+
+	/**
+	 * @return The prefix length of the destination network.
+	 */
+	public int getDestNetworkPrefix() {
+		return destNetworkPrefix;
+	}
+
+	/**
+	 * @return The IP-Address of the next hop.
+	 */
+	public String getNextHop() {
+		return nextHop;
+	}
+
+	/**
+	 * @return The outgoing interface of the network element.
+	 */
+	public String getSourceInt() {
+		return sourceInt;
+	}
+
+	/**
+	 * @return True if the route is to be removed from the network element.
+	 */
+	public boolean isWithdrawal() {
+		return isWithdrawal;
+	}
+}
@@ -69,24 +69,23 @@ package de.lmu.ifi.nm.www;
 			 */
 			sub_mask = ip;
 
-			subnet_addr = Iandr.and(ip_addr, sub_mask);
-			broadcast_addr = Iandr.broadcast(subnet_addr, sub_mask);
+			int address = IPv4.toInt(ip_addr);
+			int mask = IPv4.toInt(sub_mask);
+			int subnet = address & mask;
+			int broadcast = subnet | ~mask;
+
+			subnet_addr = IPv4.toString(subnet);
+			broadcast_addr = IPv4.toString(broadcast);
 
 			calculateBitInformation(sub_mask, getNetworkClass());
 
-			// minimum host address is subnet address plus one.
-			String[] minimumHostAddress = subnet_addr.split("[.]");
-			minimumHostAddress[3] = Integer.toString(Integer
-					.parseInt(minimumHostAddress[3]) + 1);
-			min_host_range = minimumHostAddress[0] + "." + minimumHostAddress[1]
-					+ "." + minimumHostAddress[2] + "." + minimumHostAddress[3];
-
-			// maximum host address, is the broadcast address minus one.
-			String[] maximumHostAddress = broadcast_addr.split("[.]");
-			maximumHostAddress[3] = Integer.toString(Integer
-					.parseInt(maximumHostAddress[3]) - 1);
-			max_host_range = maximumHostAddress[0] + "." + maximumHostAddress[1]
-					+ "." + maximumHostAddress[2] + "." + maximumHostAddress[3];
+			// minimum host address is subnet address plus one, maximum host
+			// address is the broadcast address minus one. /31 and /32 subnets
+			// have neither, so all their addresses are hosts.
+			boolean pointToPoint = masked_bits >= 31;
+			min_host_range = IPv4.toString(pointToPoint ? subnet : subnet + 1);
+			max_host_range = IPv4.toString(pointToPoint ? broadcast
+					: broadcast - 1);
 		}
 
 		/**
@@ -98,17 +97,7 @@ package de.lmu.ifi.nm.www;
 		 * @since 1.0
 		 */
 		public void calculateBitInformation(String sub_mask, char network_class) {
-			char[][] bin_sub_mask = Conv.ipToBin(sub_mask);
-			int num_bits = 0;
-
-			// For every bit in the IP, if it equals '1' add it to bin_sub_mask
-			for (int i = 0; i < 4; i++) {
-				for (int n = 0; n < 8; n++) {
-					if (bin_sub_mask[i][n] == '1') {
-						num_bits++;
-					}
-				}
-			}
+			int num_bits = IPv4.prefixLength(IPv4.toInt(sub_mask));
 
 			// The subnet bits are the bits, minus the default bits of that class
 			int subnet_bits = num_bits - class_subnets.get(network_class);
@@ -140,34 +129,8 @@ package de.lmu.ifi.nm.www;
 			sub_bits = subnetBits;
 
 			int bits = subnetBits + class_subnets.get(net_class);
-			int re = 32 - bits;
-			int mb = 32;
-			String strt = "00000000000000000000000000000000";
-			char[] b = strt.toCharArray();
-
-			for (int n = 0; n <= re; n++) {
-				mb--;
-			}
-
-			for (int i = 0; i <= mb; i++) {
-				b[i] = '1';
-			}
 
-			String s = new String(b);
-			char[][] ip = { s.substring(0, 8).toCharArray(),
-					s.substring(8, 16).toCharArray(),
-					s.substring(16, 24).toCharArray(),
-					s.substring(24, 32).toCharArray() };
-
-			String mask = Integer.toString(Integer.parseInt(new String(ip[0]), 2))
-					+ "."
-					+ Integer.toString(Integer.parseInt(new String(ip[1]), 2))
-					+ "."
-					+ Integer.toString(Integer.parseInt(new String(ip[2]), 2))
-					+ "."
-					+ Integer.toString(Integer.parseInt(new String(ip[3]), 2));
-
-			setSubnetMask(mask);
+			setSubnetMask(IPv4.toString(IPv4.mask(bits)));
 		}
 		
 		/**
@@ -0,0 +1,341 @@
+package de.lmu.ifi.nm.www;
+
+import java.io.IOException;
+import java.rmi.RemoteException;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.thrift.TApplicationException;
+import org.apache.thrift.TException;
+import org.apache.thrift.async.AsyncMethodCallback;
+import org.apache.thrift.async.TAsyncClient;
+import org.apache.thrift.async.TAsyncClientManager;
+import org.apache.thrift.async.TAsyncMethodCall;
+import org.apache.thrift.protocol.TMessage;
+import org.apache.thrift.protocol.TMessageType;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.transport.TMemoryInputTransport;
+import org.apache.thrift.transport.TNonblockingSocket;
+import org.apache.thrift.transport.TNonblockingTransport;
+
+/**
+ * Client side of a Thrift service, see ThriftService.
+ *
+ * Calls are sent over a non-blocking socket that is driven by the selector
+ * thread of a TAsyncClientManager. call() waits for the reply, so the
+ * interfaces on top of this class keep the synchronous semantics of their RMI
+ * counterparts. Errors are reported as RemoteException; the connection is
+ * opened again on the next call.
+ */
+public class ThriftClient {
+	private static TAsyncClientManager myManager = null;
+
+	private String host = null;
+	private int port;
+	private long timeout = 0;
+	private Client myClient = null;
+	private int sequenceId = 0;
+
+	/**
+	 * The connection to the server.
+	 */
+	private static class Client extends TAsyncClient {
+		/**
+		 * @param transport
+		 *            - The non-blocking socket.
+		 * @param timeout
+		 *            - The timeout of a call in milliseconds, 0 for none.
+		 */
+		public Client(TNonblockingSocket transport, long timeout) {
+			super(ThriftCodec.PROTOCOL, myManager, transport, timeout);
+		}
+
+		/**
+		 * @param call
+		 *            - The call to be sent.
+		 * @throws TException
+		 *             If the call could not be started.
+		 */
+		public void send(MethodCall call) throws TException {
+			checkReady();
+			currentMethod = call;
+			manager.call(call);
+		}
+
+		/**
+		 * @return The non-blocking socket.
+		 */
+		public TNonblockingTransport getTransport() {
+			return transport;
+		}
+
+		/**
+		 * Close the connection.
+		 */
+		public void close() {
+			transport.close();
+		}
+	}
+
+	/**
+	 * A single call and its reply frame.
+	 */
+	private static class MethodCall extends TAsyncMethodCall<MethodCall> {
+		private String method = null;
+		private int sequenceId;
+		private Object[] arguments = null;
+
+		/**
+		 * @param client
+		 *            - The connection.
+		 * @param callback
+		 *            - Informed about the reply.
+		 * @param method
+		 *            - The name of the method.
+		 * @param sequenceId
+		 *            - The number of the call on this connection.
+		 * @param arguments
+		 *            - The arguments of the call.
+		 */
+		public MethodCall(Client client, AsyncMethodCallback<MethodCall> callback,
+				String method, int sequenceId, Object[] arguments) {
+			super(client, ThriftCodec.PROTOCOL, client.getTransport(), callback,
+					false);
+			this.method = method;
+			this.sequenceId = sequenceId;
+			this.arguments = arguments;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see
+		 * org.apache.thrift.async.TAsyncMethodCall#write_args(org.apache.thrift
+		 * .protocol.TProtocol)
+		 */
+		@Override
+		protected void write_args(TProtocol out) throws TException {
+			out.writeMessageBegin(new TMessage(method, TMessageType.CALL,
+					sequenceId));
+			ThriftCodec.writeArguments(out, arguments);
+			out.writeMessageEnd();
+		}
+
+		/**
+		 * @return The reply frame.
+		 */
+		public byte[] getReply() {
+			return getFrameBuffer().array();
+		}
+	}
+
+	/**
+	 * Waits for a MethodCall to complete.
+	 */
+	private static class Reply implements AsyncMethodCallback<MethodCall> {
+		private CountDownLatch done = new CountDownLatch(1);
+		private MethodCall call = null;
+		private Exception error = null;
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see
+		 * org.apache.thrift.async.AsyncMethodCallback#onComplete(java.lang.Object
+		 * )
+		 */
+		public void onComplete(MethodCall call) {
+			this.call = call;
+			done.countDown();
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see
+		 * org.apache.thrift.async.AsyncMethodCallback#onError(java.lang.Exception
+		 * )
+		 */
+		public void onError(Exception error) {
+			this.error = error;
+			done.countDown();
+		}
+	}
+
+	/**
+	 * @param host
+	 *            - The host name or IP-Address of the server.
+	 * @param port
+	 *            - The port of the server.
+	 * @param timeout
+	 *            - The timeout of a call in milliseconds, 0 for none.
+	 */
+	public ThriftClient(String host, int port, long timeout) {
+		this.host = host;
+		this.port = port;
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Call a method of the service and wait for its result.
+	 *
+	 * @param method
+	 *            - The name of the method.
+	 * @param arguments
+	 *            - The arguments, see ThriftCodec for the supported types.
+	 * @return The return value as read by ThriftCodec.readStruct(), null for
+	 *         none.
+	 * @throws RemoteException
+	 *             If the call failed or the service has reported an error.
+	 */
+	public synchronized Object call(String method, Object... arguments)
+			throws RemoteException {
+		Reply reply = new Reply();
+
+		try {
+			if (myClient == null || myClient.hasError()) {
+				startManager();
+				myClient = new Client(new TNonblockingSocket(host, port),
+						timeout);
+			}
+			myClient.send(new MethodCall(myClient, reply, method,
+					++sequenceId, arguments));
+
+			// The manager enforces the timeout, this is only a safeguard
+			if (timeout > 0) {
+				if (!reply.done.await(timeout + 1000, TimeUnit.MILLISECONDS)) {
+					close();
+					throw new RemoteException("No reply to " + method
+							+ " within " + timeout + " ms.");
+				}
+			} else {
+				reply.done.await();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			close();
+			throw new RemoteException("Interrupted while calling " + method);
+		} catch (IOException e) {
+			close();
+			throw new RemoteException("Could not call " + method, e);
+		} catch (TException e) {
+			close();
+			throw new RemoteException("Could not call " + method, e);
+		}
+
+		if (reply.error != null) {
+			close();
+			throw new RemoteException("Could not call " + method, reply.error);
+		}
+		return readReply(method, reply.call.getReply());
+	}
+
+	/**
+	 * Close the connection. The next call opens a new one.
+	 */
+	public synchronized void close() {
+		if (myClient != null) {
+			myClient.close();
+			myClient = null;
+		}
+	}
+
+	/**
+	 * @param method
+	 *            - The name of the method.
+	 * @param frame
+	 *            - The reply frame.
+	 * @return The return value or null.
+	 * @throws RemoteException
+	 *             If the reply contains an error.
+	 */
+	@SuppressWarnings("unchecked")
+	private Object readReply(String method, byte[] frame)
+			throws RemoteException {
+		try {
+			TProtocol in = ThriftCodec.PROTOCOL
+					.getProtocol(new TMemoryInputTransport(frame));
+			TMessage message = in.readMessageBegin();
+
+			if (message.type == TMessageType.EXCEPTION) {
+				TApplicationException e = TApplicationException.read(in);
+				throw new RemoteException(e.getMessage(), e);
+			}
+
+			Map<Short, Object> result = ThriftCodec.readStruct(in);
+			in.readMessageEnd();
+
+			Map<Short, Object> error = (Map<Short, Object>) result
+					.get((short) 1);
+			if (error != null) {
+				throw new RemoteException(ThriftCodec.toString(error
+						.get((short) 1)));
+			}
+			return result.get((short) 0);
+		} catch (TException e) {
+			close();
+			throw new RemoteException("Invalid reply to " + method, e);
+		}
+	}
+
+	/**
+	 * @return The host name or IP-Address of the server.
+	 */
+	public String getHost() {
+		return host;
+	}
+
+	/**
+	 * @return The port of the server.
+	 */
+	public int getPort() {
+		return port;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(Object object) {
+		if (!(object instanceof ThriftClient)) {
+			return false;
+		}
+		ThriftClient other = (ThriftClient) object;
+		return host.equals(other.host) && port == other.port;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		return host.hashCode() * 31 + port;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "thrift://" + host + ":" + port;
+	}
+
+	/**
+	 * Start the selector thread shared by all clients on first use.
+	 *
+	 * @throws IOException
+	 *             If the selector could not be opened.
+	 */
+	private static synchronized void startManager() throws IOException {
+		if (myManager == null || !myManager.isRunning()) {
+			myManager = new TAsyncClientManager();
+		}
+	}
+}
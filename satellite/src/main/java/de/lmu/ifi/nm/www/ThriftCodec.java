@@ -0,0 +1,270 @@
+package de.lmu.ifi.nm.www;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TCompactProtocol;
+import org.apache.thrift.protocol.TField;
+import org.apache.thrift.protocol.TList;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.protocol.TProtocolFactory;
+import org.apache.thrift.protocol.TProtocolUtil;
+import org.apache.thrift.protocol.TStruct;
+import org.apache.thrift.protocol.TType;
+
+/**
+ * Encoding of the values exchanged over the Thrift transport, see
+ * src/main/thrift/starfish.thrift.
+ *
+ * Arguments and results are Thrift structs whose fields are numbered in the
+ * order of the parameters of the Java method; field 0 of a result holds the
+ * return value and field 1 a RemoteError. Booleans, integers, strings and
+ * lists of strings are native Thrift values. Vertices, routes, deltas and the
+ * other objects of the RMI interfaces are 'binary' fields holding their Java
+ * serialization, i.e. the compact wire format of Vertex and Link.
+ */
+public final class ThriftCodec {
+	/** Protocol used by both ends of the Thrift transport. */
+	public static final TProtocolFactory PROTOCOL = new TCompactProtocol.Factory();
+
+	/** Largest frame accepted by a Thrift server, in bytes. */
+	public static final int MAX_FRAME_SIZE = 256 * 1024 * 1024;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final TStruct ARGUMENTS = new TStruct("arguments");
+	private static final TStruct RESULT = new TStruct("result");
+	private static final TStruct ERROR = new TStruct("RemoteError");
+
+	private ThriftCodec() {
+	}
+
+	/**
+	 * @param object
+	 *            - A serializable object.
+	 * @return The Java serialization of the object.
+	 * @throws IOException
+	 *             If the object could not be serialized.
+	 */
+	public static byte[] serialize(Object object) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(object);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * @param bytes
+	 *            - The Java serialization of an object.
+	 * @return The deserialized object.
+	 * @throws IOException
+	 *             If the object could not be deserialized.
+	 */
+	public static Object deserialize(byte[] bytes) throws IOException {
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(
+				bytes));
+		try {
+			return in.readObject();
+		} catch (ClassNotFoundException e) {
+			throw new IOException(e);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * @param bytes
+	 *            - A string field as read by readStruct().
+	 * @return The decoded string or null.
+	 */
+	public static String toString(Object bytes) {
+		return bytes == null ? null : new String((byte[]) bytes, UTF8);
+	}
+
+	/**
+	 * @param list
+	 *            - A list of string fields as read by readStruct().
+	 * @return The decoded strings or null.
+	 */
+	public static List<String> toStringList(Object list) {
+		if (list == null) {
+			return null;
+		}
+
+		List<String> strings = new ArrayList<String>();
+		for (Object bytes : (List<?>) list) {
+			strings.add(toString(bytes));
+		}
+		return strings;
+	}
+
+	/**
+	 * Write the arguments of a call as a struct with the fields 1 to n.
+	 *
+	 * @param out
+	 *            - The protocol to write to.
+	 * @param arguments
+	 *            - The arguments.
+	 * @throws TException
+	 *             If the protocol fails or a value is not supported.
+	 */
+	static void writeArguments(TProtocol out, Object[] arguments)
+			throws TException {
+		out.writeStructBegin(ARGUMENTS);
+		for (int i = 0; i < arguments.length; i++) {
+			writeField(out, (short) (i + 1), arguments[i]);
+		}
+		out.writeFieldStop();
+		out.writeStructEnd();
+	}
+
+	/**
+	 * Write the result of a call.
+	 *
+	 * @param out
+	 *            - The protocol to write to.
+	 * @param value
+	 *            - The return value, null for none.
+	 * @param error
+	 *            - The message of an error or null.
+	 * @throws TException
+	 *             If the protocol fails or a value is not supported.
+	 */
+	static void writeResult(TProtocol out, Object value, String error)
+			throws TException {
+		out.writeStructBegin(RESULT);
+		if (error != null) {
+			out.writeFieldBegin(new TField("error", TType.STRUCT, (short) 1));
+			out.writeStructBegin(ERROR);
+			writeField(out, (short) 1, error);
+			out.writeFieldStop();
+			out.writeStructEnd();
+			out.writeFieldEnd();
+		} else if (value != null) {
+			writeField(out, (short) 0, value);
+		}
+		out.writeFieldStop();
+		out.writeStructEnd();
+	}
+
+	/**
+	 * Read a struct into a map of its fields. Strings and binaries are read
+	 * as byte arrays, lists as lists and structs as maps.
+	 *
+	 * @param in
+	 *            - The protocol to read from.
+	 * @return The values of the struct by field id.
+	 * @throws TException
+	 *             If the protocol fails.
+	 */
+	static Map<Short, Object> readStruct(TProtocol in) throws TException {
+		Map<Short, Object> fields = new HashMap<Short, Object>();
+
+		in.readStructBegin();
+		while (true) {
+			TField field = in.readFieldBegin();
+			if (field.type == TType.STOP) {
+				break;
+			}
+			fields.put(field.id, readValue(in, field.type));
+			in.readFieldEnd();
+		}
+		in.readStructEnd();
+		return fields;
+	}
+
+	/**
+	 * @param out
+	 *            - The protocol to write to.
+	 * @param id
+	 *            - The field id.
+	 * @param value
+	 *            - The value of the field, null to leave it out.
+	 * @throws TException
+	 *             If the protocol fails or the value is not supported.
+	 */
+	private static void writeField(TProtocol out, short id, Object value)
+			throws TException {
+		if (value == null) {
+			return;
+		}
+
+		if (value instanceof Boolean) {
+			out.writeFieldBegin(new TField("", TType.BOOL, id));
+			out.writeBool((Boolean) value);
+		} else if (value instanceof Integer) {
+			out.writeFieldBegin(new TField("", TType.I32, id));
+			out.writeI32((Integer) value);
+		} else if (value instanceof Long) {
+			out.writeFieldBegin(new TField("", TType.I64, id));
+			out.writeI64((Long) value);
+		} else if (value instanceof String) {
+			out.writeFieldBegin(new TField("", TType.STRING, id));
+			out.writeString((String) value);
+		} else if (value instanceof byte[]) {
+			out.writeFieldBegin(new TField("", TType.STRING, id));
+			out.writeBinary(ByteBuffer.wrap((byte[]) value));
+		} else if (value instanceof List) {
+			List<?> list = (List<?>) value;
+			out.writeFieldBegin(new TField("", TType.LIST, id));
+			out.writeListBegin(new TList(TType.STRING, list.size()));
+			for (Object element : list) {
+				out.writeString((String) element);
+			}
+			out.writeListEnd();
+		} else {
+			throw new TException("Unsupported value " + value.getClass());
+		}
+		out.writeFieldEnd();
+	}
+
+	/**
+	 * @param in
+	 *            - The protocol to read from.
+	 * @param type
+	 *            - The Thrift type of the value.
+	 * @return The value, or null if the type is not supported and has been
+	 *         skipped.
+	 * @throws TException
+	 *             If the protocol fails.
+	 */
+	private static Object readValue(TProtocol in, byte type)
+			throws TException {
+		switch (type) {
+		case TType.BOOL:
+			return in.readBool();
+		case TType.I32:
+			return in.readI32();
+		case TType.I64:
+			return in.readI64();
+		case TType.STRING:
+			ByteBuffer buffer = in.readBinary();
+			byte[] bytes = new byte[buffer.remaining()];
+			buffer.get(bytes);
+			return bytes;
+		case TType.LIST:
+			TList header = in.readListBegin();
+			List<Object> list = new ArrayList<Object>(header.size);
+			for (int i = 0; i < header.size; i++) {
+				list.add(readValue(in, header.elemType));
+			}
+			in.readListEnd();
+			return list;
+		case TType.STRUCT:
+			return readStruct(in);
+		default:
+			TProtocolUtil.skip(in, type);
+			return null;
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package de.lmu.ifi.nm.www;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.thrift.server.THsHaServer;
+import org.apache.thrift.transport.TFramedTransport;
+import org.apache.thrift.transport.TNonblockingServerSocket;
+import org.apache.thrift.transport.TTransportException;
+
+/**
+ * Non-blocking Thrift server for a ThriftService.
+ *
+ * A single selector thread handles the connections with framed transport and
+ * compact protocol; the calls run on a small pool of worker threads, so a call
+ * that waits for the discovery does not hold up the others.
+ */
+public class ThriftServer {
+	private THsHaServer myServer = null;
+	private Thread myServerThread = null;
+
+	/**
+	 * Bind the server socket. The server does not accept calls before start()
+	 * has been called.
+	 *
+	 * @param address
+	 *            - The local address to listen on, e.g. the loopback
+	 *            address.
+	 * @param port
+	 *            - The port to listen on.
+	 * @param service
+	 *            - The service handling the calls.
+	 * @param workerThreads
+	 *            - The number of calls handled at the same time.
+	 * @throws TTransportException
+	 *             If the port could not be bound.
+	 */
+	public ThriftServer(String address, int port, ThriftService service,
+			int workerThreads) throws TTransportException {
+		final String name = service.getClass().getSimpleName();
+		ExecutorService myWorkers = Executors.newFixedThreadPool(
+				Math.max(1, workerThreads), new ThreadFactory() {
+					private int count = 0;
+
+					public synchronized Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable, name + "-"
+								+ count++);
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+
+		THsHaServer.Args args = new THsHaServer.Args(
+				new TNonblockingServerSocket(new InetSocketAddress(address,
+						port)));
+		args.processor(service);
+		args.protocolFactory(ThriftCodec.PROTOCOL);
+		args.transportFactory(new TFramedTransport.Factory());
+		args.executorService(myWorkers);
+		args.maxReadBufferBytes = ThriftCodec.MAX_FRAME_SIZE;
+
+		myServer = new THsHaServer(args);
+		myServerThread = new Thread(new Runnable() {
+			public void run() {
+				myServer.serve();
+			}
+		}, name);
+		myServerThread.setDaemon(true);
+	}
+
+	/**
+	 * Start serving calls on a background thread.
+	 */
+	public void start() {
+		myServerThread.start();
+	}
+
+	/**
+	 * Stop serving calls.
+	 */
+	public void stop() {
+		myServer.stop();
+	}
+
+	/**
+	 * @return True while the server accepts calls.
+	 */
+	public boolean isServing() {
+		return myServer.isServing();
+	}
+}
@@ -0,0 +1,148 @@
+package de.lmu.ifi.nm.www;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.apache.thrift.TApplicationException;
+import org.apache.thrift.TException;
+import org.apache.thrift.TProcessor;
+import org.apache.thrift.protocol.TMessage;
+import org.apache.thrift.protocol.TMessageType;
+import org.apache.thrift.protocol.TProtocol;
+
+/**
+ * Server side of a Thrift service. Reads a call, passes its name and
+ * arguments to invoke() and writes the return value or the error back, see
+ * ThriftCodec for the encoding.
+ */
+public abstract class ThriftService implements TProcessor {
+	/**
+	 * The arguments of a call by field id, i.e. by the position of the
+	 * parameter starting at 1.
+	 */
+	public static class Arguments {
+		private Map<Short, Object> fields = null;
+
+		/**
+		 * @param fields
+		 *            - The fields of the argument struct.
+		 */
+		public Arguments(Map<Short, Object> fields) {
+			this.fields = fields;
+		}
+
+		/**
+		 * @param id
+		 *            - The field id.
+		 * @return The boolean argument, false if it is missing.
+		 */
+		public boolean getBoolean(int id) {
+			Object value = fields.get((short) id);
+			return value != null && (Boolean) value;
+		}
+
+		/**
+		 * @param id
+		 *            - The field id.
+		 * @return The i32 argument, 0 if it is missing.
+		 */
+		public int getInt(int id) {
+			Object value = fields.get((short) id);
+			return value == null ? 0 : (Integer) value;
+		}
+
+		/**
+		 * @param id
+		 *            - The field id.
+		 * @return The i64 argument, 0 if it is missing.
+		 */
+		public long getLong(int id) {
+			Object value = fields.get((short) id);
+			return value == null ? 0 : (Long) value;
+		}
+
+		/**
+		 * @param id
+		 *            - The field id.
+		 * @return The string argument or null.
+		 */
+		public String getString(int id) {
+			return ThriftCodec.toString(fields.get((short) id));
+		}
+
+		/**
+		 * @param id
+		 *            - The field id.
+		 * @return The deserialized binary argument or null.
+		 * @throws IOException
+		 *             If the argument could not be deserialized.
+		 */
+		public Object getObject(int id) throws IOException {
+			byte[] bytes = (byte[]) fields.get((short) id);
+			return bytes == null ? null : ThriftCodec.deserialize(bytes);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.apache.thrift.TProcessor#process(org.apache.thrift.protocol.
+	 * TProtocol, org.apache.thrift.protocol.TProtocol)
+	 */
+	public boolean process(TProtocol in, TProtocol out) throws TException {
+		TMessage message = in.readMessageBegin();
+		Arguments arguments = new Arguments(ThriftCodec.readStruct(in));
+		in.readMessageEnd();
+
+		Object value = null;
+		String error = null;
+		try {
+			value = invoke(message.name, arguments);
+		} catch (TApplicationException e) {
+			out.writeMessageBegin(new TMessage(message.name,
+					TMessageType.EXCEPTION, message.seqid));
+			e.write(out);
+			out.writeMessageEnd();
+			out.getTransport().flush();
+			return true;
+		} catch (Exception e) {
+			error = e.toString();
+		}
+
+		out.writeMessageBegin(new TMessage(message.name, TMessageType.REPLY,
+				message.seqid));
+		ThriftCodec.writeResult(out, value, error);
+		out.writeMessageEnd();
+		out.getTransport().flush();
+		return true;
+	}
+
+	/**
+	 * Call a method of the service.
+	 *
+	 * @param method
+	 *            - The name of the method.
+	 * @param arguments
+	 *            - The arguments of the call.
+	 * @return The return value, null for none. Objects that are not a Boolean,
+	 *         Integer, Long, String or List of Strings have to be serialized
+	 *         with ThriftCodec.serialize().
+	 * @throws TApplicationException
+	 *             If the method is unknown.
+	 * @throws Exception
+	 *             Any other exception is reported to the caller as a
+	 *             RemoteError.
+	 */
+	protected abstract Object invoke(String method, Arguments arguments)
+			throws Exception;
+
+	/**
+	 * @param method
+	 *            - The name of the method.
+	 * @return The exception to be thrown by invoke() for an unknown method.
+	 */
+	protected static TApplicationException unknownMethod(String method) {
+		return new TApplicationException(TApplicationException.UNKNOWN_METHOD,
+				"Unknown method " + method);
+	}
+}
@@ -0,0 +1,71 @@
+package de.lmu.ifi.nm.www;
+
+import java.io.Serializable;
+
+/**
+ * A bounded part of a topology delta, as returned by
+ * ISatellite.openTopologyStream() and ISatellite.nextTopologyChunk().
+ *
+ * A stream transfers the removed links and vertices first, then the added or
+ * changed vertices and finally the links, so the end points of a link are
+ * always known when it arrives. Every chunk carries at most the requested
+ * number of elements in a delta that is never marked as full; isFull() tells
+ * whether the stream as a whole replaces the receiver's topology.
+ */
+public class TopologyChunk implements Serializable {
+	private static final long serialVersionUID = 1L;
+	private long streamId;
+	private boolean isFull = false;
+	private boolean isLast = false;
+	private TopologyDelta delta = null;
+
+	/**
+	 * @param streamId
+	 *            - The stream the chunk belongs to.
+	 * @param isFull
+	 *            - True if the stream contains the complete topology.
+	 * @param isLast
+	 *            - True if this is the last chunk of the stream.
+	 * @param delta
+	 *            - The elements of the chunk.
+	 */
+	public TopologyChunk(long streamId, boolean isFull, boolean isLast,
+			TopologyDelta delta) {
+		this.streamId = streamId;
+		this.isFull = isFull;
+		this.isLast = isLast;
+		this.delta = delta;
+	}
+
+	/**
+	 * @return The stream the chunk belongs to, see
+	 *         ISatellite.nextTopologyChunk().
+	 */
+	public long getStreamId() {
+		return streamId;
+	}
+
+	/**
+	 * @return True if the stream contains the complete topology and the
+	 *         receiver has to replace its graph once the last chunk has been
+	 *         applied.
+	 */
+	public boolean isFull() {
+		return isFull;
+	}
+
+	/**
+	 * @return True if this is the last chunk of the stream.
+	 */
+	public boolean isLast() {
+		return isLast;
+	}
+
+	/**
+	 * @return The elements of the chunk. The versions are those of the whole
+	 *         stream.
+	 */
+	public TopologyDelta getDelta() {
+		return delta;
+	}
+}
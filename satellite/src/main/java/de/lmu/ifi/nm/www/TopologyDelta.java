@@ -0,0 +1,312 @@
+package de.lmu.ifi.nm.www;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jgrapht.graph.DirectedWeightedMultigraph;
+
+/**
+ * This class represents the changes of a Satellite's topology graph between
+ * two versions. It is returned by ISatellite.getTopologyDelta() and applied to
+ * the graph of the TopologyDiscoverer with applyTo().
+ *
+ * Links are transferred without references to their vertices. Their end points
+ * are identified by the host names of the vertices, so an unchanged vertex is
+ * never serialized again.
+ *
+ * If the delta is marked as full, it contains the complete topology and the
+ * receiver has to drop its graph before applying it.
+ */
+public class TopologyDelta implements Serializable {
+	private static final long serialVersionUID = 1L;
+	private long fromVersion;
+	private long toVersion;
+	private boolean isFull = false;
+	private List<Vertex> vertices = new ArrayList<Vertex>();
+	private List<String> removedVertices = new ArrayList<String>();
+	private List<LinkEntry> links = new ArrayList<LinkEntry>();
+	private List<LinkEntry> removedLinks = new ArrayList<LinkEntry>();
+
+	/**
+	 * A link of the delta together with the host names of its end points.
+	 */
+	public static class LinkEntry implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private String sourceHostname = null;
+		private String targetHostname = null;
+		private String sourceIntPort = null;
+		private Link link = null;
+		private double weight;
+
+		/**
+		 * Create an entry for an added or changed link. The link is copied
+		 * without its source and target vertex.
+		 *
+		 * @param sourceHostname
+		 *            - The host name of the source vertex.
+		 * @param targetHostname
+		 *            - The host name of the destination vertex.
+		 * @param link
+		 *            - The link of the topology graph.
+		 * @param weight
+		 *            - The weight of the link.
+		 */
+		public LinkEntry(String sourceHostname, String targetHostname,
+				Link link, double weight) {
+			this.sourceHostname = sourceHostname;
+			this.targetHostname = targetHostname;
+			this.sourceIntPort = link.getSourceIntPort();
+			this.weight = weight;
+
+			this.link = new Link(link.getSourceIntPort(),
+					link.getTargetIntPort());
+			this.link.setSourceIPaddress(link.getSourceIPaddress());
+			this.link.setTargetIPaddress(link.getTargetIPaddress());
+			this.link.setSubnetAddress(link.getSubnetAddress());
+			this.link.setSubnetPrefix(link.getSubnetPrefix());
+			this.link.setUp(link.isUp());
+			this.link.setMetricFeedRelation(new HashMap<String, String>());
+		}
+
+		/**
+		 * Create an entry for a removed link.
+		 *
+		 * @param sourceHostname
+		 *            - The host name of the source vertex.
+		 * @param sourceIntPort
+		 *            - The source interface port.
+		 * @param targetHostname
+		 *            - The host name of the destination vertex.
+		 */
+		public LinkEntry(String sourceHostname, String sourceIntPort,
+				String targetHostname) {
+			this.sourceHostname = sourceHostname;
+			this.sourceIntPort = sourceIntPort;
+			this.targetHostname = targetHostname;
+		}
+
+		/**
+		 * @return The host name of the source vertex.
+		 */
+		public String getSourceHostname() {
+			return sourceHostname;
+		}
+
+		/**
+		 * @return The host name of the destination vertex.
+		 */
+		public String getTargetHostname() {
+			return targetHostname;
+		}
+
+		/**
+		 * @return The source interface port.
+		 */
+		public String getSourceIntPort() {
+			return sourceIntPort;
+		}
+
+		/**
+		 * @return The link without vertices, or null for a removed link.
+		 */
+		public Link getLink() {
+			return link;
+		}
+
+		/**
+		 * @return The weight of the link.
+		 */
+		public double getWeight() {
+			return weight;
+		}
+	}
+
+	/**
+	 * @param fromVersion
+	 *            - The version the delta starts from.
+	 * @param toVersion
+	 *            - The version of the topology after applying the delta.
+	 * @param isFull
+	 *            - True if the delta contains the complete topology.
+	 */
+	public TopologyDelta(long fromVersion, long toVersion, boolean isFull) {
+		this.fromVersion = fromVersion;
+		this.toVersion = toVersion;
+		this.isFull = isFull;
+	}
+
+	/**
+	 * Apply the delta to a graph. Removals are applied before additions.
+	 * Vertices and links that already exist are updated in place, so the
+	 * weights and metric feeds of the receiver are kept.
+	 *
+	 * @param graph
+	 *            - The graph to be updated.
+	 */
+	public void applyTo(DirectedWeightedMultigraph<Vertex, Link> graph) {
+		HashMap<String, Vertex> vertexMap = new HashMap<String, Vertex>();
+
+		if (isFull) {
+			graph.removeAllVertices(new ArrayList<Vertex>(graph.vertexSet()));
+		}
+
+		for (Vertex vertex : graph.vertexSet()) {
+			vertexMap.put(vertex.getHostname(), vertex);
+		}
+
+		applyTo(graph, vertexMap);
+	}
+
+	/**
+	 * Apply the delta like applyTo(graph), but look up vertices in a map the
+	 * caller keeps across several deltas, e.g. the chunks of a
+	 * TopologyChunk stream. A full delta does not clear the graph here.
+	 *
+	 * @param graph
+	 *            - The graph to be updated.
+	 * @param vertexMap
+	 *            - The vertices of the graph by host name. Updated along
+	 *            with the graph.
+	 */
+	public void applyTo(DirectedWeightedMultigraph<Vertex, Link> graph,
+			Map<String, Vertex> vertexMap) {
+		for (LinkEntry entry : removedLinks) {
+			Link link = findLink(graph, vertexMap, entry);
+			if (link != null) {
+				graph.removeEdge(link);
+			}
+		}
+
+		for (String hostname : removedVertices) {
+			Vertex vertex = vertexMap.remove(hostname);
+			if (vertex != null) {
+				graph.removeVertex(vertex);
+			}
+		}
+
+		for (Vertex vertex : vertices) {
+			Vertex existing = vertexMap.get(vertex.getHostname());
+			if (existing == null) {
+				graph.addVertex(vertex);
+				vertexMap.put(vertex.getHostname(), vertex);
+			} else {
+				existing.setUniqueIdentifier(vertex.getUniqueIdentifier());
+				existing.setUserName(vertex.getUserName());
+				existing.setPassword(vertex.getPassword());
+				existing.setInterfaceHash(vertex.getInterfaceHash());
+				existing.setUpTime(vertex.getUpTime());
+				existing.setManagementIP(vertex.getManagementIP());
+				existing.setLatitude(vertex.getLatitude());
+				existing.setLongitude(vertex.getLongitude());
+			}
+		}
+
+		for (LinkEntry entry : links) {
+			Link existing = findLink(graph, vertexMap, entry);
+			Link link = entry.getLink();
+
+			if (existing == null) {
+				Vertex source = vertexMap.get(entry.getSourceHostname());
+				Vertex target = vertexMap.get(entry.getTargetHostname());
+				if (source != null && target != null
+						&& graph.addEdge(source, target, link)) {
+					graph.setEdgeWeight(link, entry.getWeight());
+				}
+			} else {
+				existing.setTargetIntPort(link.getTargetIntPort());
+				existing.setSourceIPaddress(link.getSourceIPaddress());
+				existing.setTargetIPaddress(link.getTargetIPaddress());
+				existing.setSubnetAddress(link.getSubnetAddress());
+				existing.setSubnetPrefix(link.getSubnetPrefix());
+				existing.setUp(link.isUp());
+			}
+		}
+	}
+
+	/**
+	 * @param graph
+	 *            - The graph to be searched.
+	 * @param vertexMap
+	 *            - The vertices of the graph by host name.
+	 * @param entry
+	 *            - The entry identifying the link.
+	 * @return The link of the graph matching the entry or null.
+	 */
+	private Link findLink(DirectedWeightedMultigraph<Vertex, Link> graph,
+			Map<String, Vertex> vertexMap, LinkEntry entry) {
+		Vertex source = vertexMap.get(entry.getSourceHostname());
+		Vertex target = vertexMap.get(entry.getTargetHostname());
+
+		if (source == null || target == null) {
+			return null;
+		}
+
+		for (Link link : graph.getAllEdges(source, target)) {
+			if (entry.getSourceIntPort() == null
+					|| entry.getSourceIntPort().equals(link.getSourceIntPort())) {
+				return link;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return True if the delta does not contain any change.
+	 */
+	public boolean isEmpty() {
+		return !isFull && vertices.isEmpty() && removedVertices.isEmpty()
+				&& links.isEmpty() && removedLinks.isEmpty();
+	}
+
+	/**
+	 * @return The version the delta starts from.
+	 */
+	public long getFromVersion() {
+		return fromVersion;
+	}
+
+	/**
+	 * @return The version of the topology after applying the delta.
+	 */
+	public long getToVersion() {
+		return toVersion;
+	}
+
+	/**
+	 * @return True if the delta contains the complete topology.
+	 */
+	public boolean isFull() {
+		return isFull;
+	}
+
+	/**
+	 * @return The added or changed vertices.
+	 */
+	public List<Vertex> getVertices() {
+		return vertices;
+	}
+
+	/**
+	 * @return The host names of the removed vertices.
+	 */
+	public List<String> getRemovedVertices() {
+		return removedVertices;
+	}
+
+	/**
+	 * @return The added or changed links.
+	 */
+	public List<LinkEntry> getLinks() {
+		return links;
+	}
+
+	/**
+	 * @return The removed links.
+	 */
+	public List<LinkEntry> getRemovedLinks() {
+		return removedLinks;
+	}
+}
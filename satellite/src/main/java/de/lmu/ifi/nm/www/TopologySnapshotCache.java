@@ -0,0 +1,173 @@
+package de.lmu.ifi.nm.www;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.jgrapht.graph.DirectedWeightedMultigraph;
+
+/**
+ * Cache for the snapshot of the Satellite's topology graph handed out by
+ * getTopology().
+ *
+ * A snapshot is reused for 'timeToLive' milliseconds. Refreshing it first
+ * runs the discovery, which may have to talk to the network elements, and then
+ * copies the graph unless its version is unchanged. Only one refresh runs at a
+ * time; callers arriving meanwhile wait for it instead of starting their own.
+ * Callers that accept a stale snapshot never wait: they receive the last one,
+ * or the graph as discovered so far, and the refresh continues in the
+ * background.
+ */
+public class TopologySnapshotCache {
+	private TopologyStore myTopologyStore = null;
+	private Runnable myDiscovery = null;
+	private long timeToLive = 5000;
+	private DirectedWeightedMultigraph<Vertex, Link> snapshot = null;
+	private long snapshotVersion = -1;
+	private long takenAt = 0;
+	private FutureTask<DirectedWeightedMultigraph<Vertex, Link>> refresh = null;
+
+	/**
+	 * @param myTopologyStore
+	 *            - The store the snapshots are taken from.
+	 * @param myDiscovery
+	 *            - Brings the store up to date before a snapshot is taken.
+	 */
+	public TopologySnapshotCache(TopologyStore myTopologyStore,
+			Runnable myDiscovery) {
+		this.myTopologyStore = myTopologyStore;
+		this.myDiscovery = myDiscovery;
+	}
+
+	/**
+	 * @param allowStale
+	 *            - True to return at once even if the snapshot has expired.
+	 * @return A snapshot of the topology graph.
+	 */
+	public DirectedWeightedMultigraph<Vertex, Link> get(boolean allowStale) {
+		FutureTask<DirectedWeightedMultigraph<Vertex, Link>> task = null;
+		boolean isOwner = false;
+
+		synchronized (this) {
+			if (isFresh()) {
+				return snapshot;
+			}
+
+			if (allowStale) {
+				refreshInBackground();
+				return snapshot != null ? snapshot : myTopologyStore
+						.snapshot();
+			}
+
+			if (refresh == null) {
+				refresh = createRefresh();
+				isOwner = true;
+			}
+			task = refresh;
+		}
+
+		if (isOwner) {
+			task.run();
+		}
+
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			synchronized (this) {
+				return snapshot != null ? snapshot : myTopologyStore
+						.snapshot();
+			}
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * Start a refresh on a background thread unless the snapshot is fresh or a
+	 * refresh is running already.
+	 */
+	public synchronized void refreshInBackground() {
+		if (isFresh() || refresh != null) {
+			return;
+		}
+
+		refresh = createRefresh();
+		Thread thread = new Thread(refresh, "TopologyRefresh");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Drop the snapshot, e.g. after the topology has been changed by hand.
+	 */
+	public synchronized void invalidate() {
+		takenAt = 0;
+	}
+
+	/**
+	 * @return The time in milliseconds a snapshot is reused.
+	 */
+	public long getTimeToLive() {
+		return timeToLive;
+	}
+
+	/**
+	 * Set the time a snapshot is reused.
+	 *
+	 * @param timeToLive
+	 *            - The time to live in milliseconds.
+	 */
+	public void setTimeToLive(long timeToLive) {
+		this.timeToLive = timeToLive;
+	}
+
+	/**
+	 * @return True if the snapshot may be handed out without a refresh.
+	 */
+	private boolean isFresh() {
+		return snapshot != null
+				&& System.currentTimeMillis() - takenAt <= timeToLive;
+	}
+
+	/**
+	 * @return A task that runs the discovery and renews the snapshot.
+	 */
+	private FutureTask<DirectedWeightedMultigraph<Vertex, Link>> createRefresh() {
+		return new FutureTask<DirectedWeightedMultigraph<Vertex, Link>>(
+				new Callable<DirectedWeightedMultigraph<Vertex, Link>>() {
+					public DirectedWeightedMultigraph<Vertex, Link> call() {
+						try {
+							myDiscovery.run();
+
+							// Read the version first, a later change only
+							// causes another copy next time
+							long version = myTopologyStore.getVersion();
+							DirectedWeightedMultigraph<Vertex, Link> graph = null;
+							synchronized (TopologySnapshotCache.this) {
+								if (version == snapshotVersion) {
+									graph = snapshot;
+								}
+							}
+							if (graph == null) {
+								graph = myTopologyStore.snapshot();
+							}
+
+							synchronized (TopologySnapshotCache.this) {
+								snapshot = graph;
+								snapshotVersion = version;
+								takenAt = System.currentTimeMillis();
+								return snapshot;
+							}
+						} finally {
+							synchronized (TopologySnapshotCache.this) {
+								refresh = null;
+							}
+						}
+					}
+				});
+	}
+}
@@ -0,0 +1,208 @@
+package de.lmu.ifi.nm.www;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+
+/**
+ * File holding the last known topology of the Satellite, so that a restarted
+ * Satellite can serve it at once instead of waiting for the network agents.
+ *
+ * The file consists of a header (magic number, format version, length and
+ * CRC32 checksum of the payload) followed by a full TopologyDelta in the
+ * compact wire format of Vertex and Link. It is written to a temporary file
+ * that then replaces the old one, so a crash never leaves a truncated
+ * snapshot behind. Both directions go through a memory-mapped buffer; reading
+ * deserializes straight from the mapping without copying the file first.
+ */
+public class TopologySnapshotFile {
+	private static final int MAGIC = 0x53544653;
+	private static final int FORMAT_VERSION = 1;
+	private static final int HEADER_SIZE = 16;
+
+	private File myFile = null;
+
+	/**
+	 * @param myFile
+	 *            - The snapshot file.
+	 */
+	public TopologySnapshotFile(File myFile) {
+		this.myFile = myFile;
+	}
+
+	/**
+	 * Replace the snapshot file with the given topology.
+	 *
+	 * @param snapshot
+	 *            - A full delta of the topology, see TopologyStore.getDelta().
+	 * @throws IOException
+	 *             If the file could not be written.
+	 */
+	public void write(TopologyDelta snapshot) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * 1024);
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(snapshot);
+		out.close();
+		byte[] payload = bytes.toByteArray();
+
+		CRC32 crc = new CRC32();
+		crc.update(payload);
+
+		File temp = new File(myFile.getPath() + ".tmp");
+		RandomAccessFile file = new RandomAccessFile(temp, "rw");
+		try {
+			file.setLength(HEADER_SIZE + payload.length);
+			MappedByteBuffer buffer = file.getChannel().map(
+					FileChannel.MapMode.READ_WRITE, 0,
+					HEADER_SIZE + payload.length);
+			buffer.putInt(MAGIC);
+			buffer.putInt(FORMAT_VERSION);
+			buffer.putInt(payload.length);
+			buffer.putInt((int) crc.getValue());
+			buffer.put(payload);
+			buffer.force();
+		} finally {
+			file.close();
+		}
+
+		Files.move(temp.toPath(), myFile.toPath(),
+				StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * @return The topology of the snapshot file, or null if there is none.
+	 * @throws IOException
+	 *             If the file is damaged or could not be read.
+	 */
+	public TopologyDelta read() throws IOException {
+		if (!myFile.isFile()) {
+			return null;
+		}
+
+		RandomAccessFile file = new RandomAccessFile(myFile, "r");
+		try {
+			long size = file.length();
+			if (size < HEADER_SIZE) {
+				throw new IOException("Snapshot file is truncated.");
+			}
+
+			MappedByteBuffer buffer = file.getChannel().map(
+					FileChannel.MapMode.READ_ONLY, 0, size);
+			if (buffer.getInt() != MAGIC) {
+				throw new IOException("Not a topology snapshot file.");
+			}
+			if (buffer.getInt() != FORMAT_VERSION) {
+				throw new IOException("Unsupported snapshot format.");
+			}
+			int length = buffer.getInt();
+			int checksum = buffer.getInt();
+			if (length < 0 || length > size - HEADER_SIZE) {
+				throw new IOException("Snapshot file is truncated.");
+			}
+
+			ByteBuffer payload = buffer.slice();
+			payload.limit(length);
+
+			if (checksum(payload.duplicate()) != checksum) {
+				throw new IOException("Snapshot file is corrupt.");
+			}
+
+			ObjectInputStream in = new ObjectInputStream(
+					new ByteBufferInputStream(payload));
+			try {
+				return (TopologyDelta) in.readObject();
+			} catch (ClassNotFoundException e) {
+				throw new IOException(e);
+			} finally {
+				in.close();
+			}
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * @param buffer
+	 *            - The bytes to be checked.
+	 * @return The CRC32 checksum of the remaining bytes of the buffer.
+	 */
+	private static int checksum(ByteBuffer buffer) {
+		CRC32 crc = new CRC32();
+		byte[] chunk = new byte[8192];
+
+		while (buffer.hasRemaining()) {
+			int length = Math.min(chunk.length, buffer.remaining());
+			buffer.get(chunk, 0, length);
+			crc.update(chunk, 0, length);
+		}
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * @return The snapshot file.
+	 */
+	public File getFile() {
+		return myFile;
+	}
+
+	/**
+	 * InputStream reading the remaining bytes of a buffer.
+	 */
+	private static class ByteBufferInputStream extends InputStream {
+		private ByteBuffer buffer = null;
+
+		/**
+		 * @param buffer
+		 *            - The buffer to be read.
+		 */
+		public ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.io.InputStream#read()
+		 */
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.io.InputStream#read(byte[], int, int)
+		 */
+		@Override
+		public int read(byte[] bytes, int offset, int length) {
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+			length = Math.min(length, buffer.remaining());
+			buffer.get(bytes, offset, length);
+			return length;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.io.InputStream#available()
+		 */
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+	}
+}
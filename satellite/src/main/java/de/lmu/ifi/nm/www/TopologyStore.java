@@ -0,0 +1,588 @@
+package de.lmu.ifi.nm.www;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jgrapht.graph.DirectedWeightedMultigraph;
+
+/**
+ * The TopologyStore maintains the Satellite's topology graph. Network
+ * discovery as well as the event listeners of the network agents apply their
+ * changes through this class, so the graph always reflects the latest known
+ * state of the site without rediscovering it.
+ *
+ * Every change increments the version of the store and stamps the changed
+ * vertex or link with it. Removed vertices and links are remembered as
+ * tombstones, so getDelta() can tell a client exactly what has changed since
+ * the version it has seen last. Only the latest MAX_TOMBSTONES removals are
+ * kept; clients that are older than that receive the full topology.
+ *
+ * Vertices are indexed by host name and by management IP-Address, and their
+ * interface addresses in an InterfaceIndex, so looking them up does not
+ * require a scan of the graph. The indexes are only correct as long as
+ * vertices are added and removed through this class.
+ *
+ * A store can be restored from a snapshot written before the Satellite was
+ * restarted. The restored vertices and links are provisional until the
+ * discovery finds them again; reconcile() removes the ones it has not found.
+ * Versions start at a value derived from the clock and everything older is
+ * treated as beyond the tombstone horizon, so a client that has seen a
+ * previous run of the Satellite always receives the full topology.
+ *
+ * All methods synchronize on the graph object. Code that reads the graph
+ * directly has to do the same.
+ */
+public class TopologyStore {
+	private static final int MAX_TOMBSTONES = 4096;
+
+	private DirectedWeightedMultigraph<Vertex, Link> myGraph = null;
+	private long version = 0;
+	private long tombstoneHorizon = 0;
+	private Map<String, Vertex> verticesByHostname = new HashMap<String, Vertex>();
+	private Map<String, Vertex> verticesByAddress = new HashMap<String, Vertex>();
+	private InterfaceIndex interfaces = new InterfaceIndex();
+	private Map<String, Long> vertexVersions = new HashMap<String, Long>();
+	private Map<Link, Long> linkVersions = new IdentityHashMap<Link, Long>();
+	private LinkedList<Tombstone> tombstones = new LinkedList<Tombstone>();
+	private Set<String> provisionalVertices = new HashSet<String>();
+	private Map<Link, Boolean> provisionalLinks = new IdentityHashMap<Link, Boolean>();
+
+	/**
+	 * A removed vertex or link together with the version of its removal.
+	 */
+	private static class Tombstone {
+		private final long version;
+		private final String hostname;
+		private final TopologyDelta.LinkEntry link;
+
+		/**
+		 * @param version
+		 *            - The version of the removal.
+		 * @param hostname
+		 *            - The host name of a removed vertex or null.
+		 * @param link
+		 *            - The entry of a removed link or null.
+		 */
+		public Tombstone(long version, String hostname,
+				TopologyDelta.LinkEntry link) {
+			this.version = version;
+			this.hostname = hostname;
+			this.link = link;
+		}
+	}
+
+	/**
+	 * @param myGraph
+	 *            - The graph object maintained by this store.
+	 */
+	public TopologyStore(DirectedWeightedMultigraph<Vertex, Link> myGraph) {
+		this.myGraph = myGraph;
+
+		// Stay above every version handed out by a previous run
+		this.version = System.currentTimeMillis() << 10;
+		this.tombstoneHorizon = version;
+
+		for (Vertex vertex : myGraph.vertexSet()) {
+			index(vertex);
+		}
+	}
+
+	/**
+	 * Add a vertex unless a vertex with the same host name already exists. A
+	 * provisional vertex with the same host name is confirmed and takes over
+	 * the attributes of the discovered one.
+	 *
+	 * @param vertex
+	 *            - The vertex to be added.
+	 * @return The vertex that is part of the graph afterwards.
+	 */
+	public Vertex addVertex(Vertex vertex) {
+		synchronized (myGraph) {
+			Vertex existing = getVertex(vertex.getHostname());
+			if (existing != null) {
+				if (provisionalVertices.remove(existing.getHostname())) {
+					confirm(existing, vertex);
+				}
+				return existing;
+			}
+
+			myGraph.addVertex(vertex);
+			index(vertex);
+			vertexVersions.put(vertex.getHostname(), ++version);
+			return vertex;
+		}
+	}
+
+	/**
+	 * Remove a vertex and all of its links.
+	 *
+	 * @param hostname
+	 *            - The host name of the vertex to be removed.
+	 * @return True if the vertex was part of the graph.
+	 */
+	public boolean removeVertex(String hostname) {
+		synchronized (myGraph) {
+			Vertex vertex = getVertex(hostname);
+			if (vertex == null) {
+				return false;
+			}
+
+			// The links vanish together with the vertex on the client side
+			for (Link link : myGraph.edgesOf(vertex)) {
+				linkVersions.remove(link);
+				provisionalLinks.remove(link);
+			}
+			myGraph.removeVertex(vertex);
+			verticesByHostname.remove(hostname);
+			interfaces.remove(hostname);
+			if (vertex.getManagementIP() != null
+					&& verticesByAddress.get(vertex.getManagementIP()) == vertex) {
+				verticesByAddress.remove(vertex.getManagementIP());
+			}
+			vertexVersions.remove(hostname);
+			provisionalVertices.remove(hostname);
+			addTombstone(new Tombstone(++version, hostname, null));
+			return true;
+		}
+	}
+
+	/**
+	 * @param hostname
+	 *            - The host name of the vertex.
+	 * @return The vertex with the given host name or null.
+	 */
+	public Vertex getVertex(String hostname) {
+		synchronized (myGraph) {
+			return verticesByHostname.get(hostname);
+		}
+	}
+
+	/**
+	 * @param managementIP
+	 *            - The management IP-Address of the vertex.
+	 * @return The vertex with the given management IP-Address or null.
+	 */
+	public Vertex getVertexByAddress(String managementIP) {
+		synchronized (myGraph) {
+			return verticesByAddress.get(managementIP);
+		}
+	}
+
+	/**
+	 * @param address
+	 *            - An IP-Address.
+	 * @return The interface configured with this address, or null if no
+	 *         vertex owns it.
+	 */
+	public InterfaceIndex.Entry getInterface(String address) {
+		synchronized (myGraph) {
+			return interfaces.getOwner(address);
+		}
+	}
+
+	/**
+	 * @param address
+	 *            - An IP-Address.
+	 * @return The interface owning the address, or else the interfaces
+	 *         attached to the most specific subnet containing it.
+	 */
+	public List<InterfaceIndex.Entry> lookupInterfaces(String address) {
+		synchronized (myGraph) {
+			return new ArrayList<InterfaceIndex.Entry>(
+					interfaces.lookup(address));
+		}
+	}
+
+	/**
+	 * Add a link between two known vertices. The subnet address is calculated
+	 * from the IP-Addresses of both ends. A link is identified by its source
+	 * vertex and source interface, so parallel links between the same
+	 * vertices are kept apart, and a link whose interface now leads to
+	 * another vertex is replaced.
+	 *
+	 * @param headHostname
+	 *            - The host name of the source vertex.
+	 * @param headInt
+	 *            - The source interface port.
+	 * @param headIP
+	 *            - The source IP-Address.
+	 * @param tailHostname
+	 *            - The host name of the destination vertex.
+	 * @param tailInt
+	 *            - The destination interface port.
+	 * @param tailIP
+	 *            - The destination IP-Address.
+	 * @return True if the link has been added, false if it already existed or
+	 *         one of its vertices is unknown.
+	 */
+	public boolean addLink(String headHostname, String headInt, String headIP,
+			String tailHostname, String tailInt, String tailIP) {
+		synchronized (myGraph) {
+			Vertex headNode = getVertex(headHostname);
+			Vertex tailNode = getVertex(tailHostname);
+
+			if (headNode == null || tailNode == null) {
+				return false;
+			}
+
+			for (Link link : new ArrayList<Link>(
+					myGraph.outgoingEdgesOf(headNode))) {
+				if (headInt != null && headInt.equals(link.getSourceIntPort())) {
+					if (myGraph.getEdgeTarget(link) == tailNode) {
+						provisionalLinks.remove(link);
+						return false;
+					}
+					removeLink(link);
+				}
+			}
+
+			// Calculate subnet address from source and destination IP address
+			int subnet = IPv4.toInt(headIP) & IPv4.toInt(tailIP);
+
+			Link myLink = new Link(headInt, headIP, tailInt, tailIP,
+					IPv4.toString(subnet), headNode, tailNode);
+
+			// Clear host bits both addresses have in common
+			if (myLink.getSubnetPrefix() > 0) {
+				myLink.setSubnetAddress(IPv4.toString(IPv4.network(subnet,
+						myLink.getSubnetPrefix())));
+			}
+
+			if (!myGraph.addEdge(headNode, tailNode, myLink)) {
+				return false;
+			}
+			linkVersions.put(myLink, ++version);
+			return true;
+		}
+	}
+
+	/**
+	 * Remove the link that leaves a vertex through the given interface towards
+	 * another vertex.
+	 *
+	 * @param headHostname
+	 *            - The host name of the source vertex.
+	 * @param headInt
+	 *            - The source interface port.
+	 * @param tailHostname
+	 *            - The host name of the destination vertex.
+	 * @return True if a link has been removed.
+	 */
+	public boolean removeLink(String headHostname, String headInt,
+			String tailHostname) {
+		synchronized (myGraph) {
+			Vertex headNode = getVertex(headHostname);
+			Vertex tailNode = getVertex(tailHostname);
+
+			if (headNode == null || tailNode == null) {
+				return false;
+			}
+
+			for (Link link : myGraph.getAllEdges(headNode, tailNode)) {
+				if (headInt == null || headInt.equals(link.getSourceIntPort())) {
+					removeLink(link);
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Remove a link of the graph and remember it for the deltas. Has to be
+	 * called while holding the lock of the graph.
+	 *
+	 * @param link
+	 *            - The link to be removed.
+	 */
+	private void removeLink(Link link) {
+		String headHostname = myGraph.getEdgeSource(link).getHostname();
+		String tailHostname = myGraph.getEdgeTarget(link).getHostname();
+
+		myGraph.removeEdge(link);
+		linkVersions.remove(link);
+		provisionalLinks.remove(link);
+		addTombstone(new Tombstone(++version, null,
+				new TopologyDelta.LinkEntry(headHostname,
+						link.getSourceIntPort(), tailHostname)));
+	}
+
+	/**
+	 * Mark all links attached to an interface as up or down.
+	 *
+	 * @param hostname
+	 *            - The host name of the vertex owning the interface.
+	 * @param interfaceName
+	 *            - The name of the interface.
+	 * @param isUp
+	 *            - True = interface is up, false = interface is down.
+	 * @return The links whose state has changed.
+	 */
+	public List<Link> setInterfaceState(String hostname, String interfaceName,
+			boolean isUp) {
+		List<Link> changed = new ArrayList<Link>();
+
+		synchronized (myGraph) {
+			Vertex vertex = getVertex(hostname);
+			if (vertex == null) {
+				return changed;
+			}
+
+			for (Link link : myGraph.outgoingEdgesOf(vertex)) {
+				if (interfaceName.equals(link.getSourceIntPort())
+						&& link.isUp() != isUp) {
+					link.setUp(isUp);
+					linkVersions.put(link, ++version);
+					changed.add(link);
+				}
+			}
+			for (Link link : myGraph.incomingEdgesOf(vertex)) {
+				if (interfaceName.equals(link.getTargetIntPort())
+						&& link.isUp() != isUp) {
+					link.setUp(isUp);
+					linkVersions.put(link, ++version);
+					changed.add(link);
+				}
+			}
+		}
+
+		return changed;
+	}
+
+	/**
+	 * Collect all changes made after a given version.
+	 *
+	 * @param sinceVersion
+	 *            - The version the client has seen last, 0 for none.
+	 * @return The vertices and links that have been added, changed or removed
+	 *         since 'sinceVersion'. The delta contains the full topology if
+	 *         the client is too old or claims a version from the future.
+	 */
+	public TopologyDelta getDelta(long sinceVersion) {
+		synchronized (myGraph) {
+			boolean isFull = sinceVersion < tombstoneHorizon
+					|| sinceVersion > version;
+			long since = isFull ? 0 : sinceVersion;
+			TopologyDelta delta = new TopologyDelta(since, version, isFull);
+
+			for (Vertex vertex : myGraph.vertexSet()) {
+				if (vertexVersions.get(vertex.getHostname()) > since) {
+					delta.getVertices().add(vertex);
+				}
+			}
+
+			for (Link link : myGraph.edgeSet()) {
+				if (linkVersions.get(link) > since) {
+					delta.getLinks().add(
+							new TopologyDelta.LinkEntry(myGraph.getEdgeSource(
+									link).getHostname(), myGraph
+									.getEdgeTarget(link).getHostname(), link,
+									myGraph.getEdgeWeight(link)));
+				}
+			}
+
+			if (!isFull) {
+				for (Tombstone tombstone : tombstones) {
+					if (tombstone.version <= since) {
+						continue;
+					}
+					if (tombstone.hostname != null) {
+						delta.getRemovedVertices().add(tombstone.hostname);
+					} else {
+						delta.getRemovedLinks().add(tombstone.link);
+					}
+				}
+			}
+
+			return delta;
+		}
+	}
+
+	/**
+	 * Fill an empty store with a previously written topology. All restored
+	 * vertices and links are provisional until the discovery confirms them.
+	 *
+	 * @param snapshot
+	 *            - A full delta of the topology, see getDelta().
+	 * @return False if the store was not empty and nothing has been restored.
+	 */
+	public boolean restore(TopologyDelta snapshot) {
+		synchronized (myGraph) {
+			if (!myGraph.vertexSet().isEmpty()) {
+				return false;
+			}
+
+			snapshot.applyTo(myGraph);
+
+			for (Vertex vertex : myGraph.vertexSet()) {
+				index(vertex);
+				vertexVersions.put(vertex.getHostname(), ++version);
+				provisionalVertices.add(vertex.getHostname());
+			}
+			for (Link link : myGraph.edgeSet()) {
+				linkVersions.put(link, ++version);
+				provisionalLinks.put(link, Boolean.TRUE);
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Remove the restored vertices and links the discovery has not found
+	 * again. Called once every network agent has completed its discovery.
+	 *
+	 * @return The number of removed vertices and links.
+	 */
+	public int reconcile() {
+		synchronized (myGraph) {
+			int removed = 0;
+
+			for (Link link : new ArrayList<Link>(provisionalLinks.keySet())) {
+				if (removeLink(myGraph.getEdgeSource(link).getHostname(),
+						link.getSourceIntPort(), myGraph.getEdgeTarget(link)
+								.getHostname())) {
+					removed++;
+				}
+			}
+			for (String hostname : new ArrayList<String>(provisionalVertices)) {
+				if (removeVertex(hostname)) {
+					removed++;
+				}
+			}
+
+			provisionalLinks.clear();
+			provisionalVertices.clear();
+			return removed;
+		}
+	}
+
+	/**
+	 * @return True while restored vertices or links have not been confirmed
+	 *         by the discovery.
+	 */
+	public boolean isProvisional() {
+		synchronized (myGraph) {
+			return !provisionalVertices.isEmpty()
+					|| !provisionalLinks.isEmpty();
+		}
+	}
+
+	/**
+	 * @return The current version of the topology.
+	 */
+	public long getVersion() {
+		synchronized (myGraph) {
+			return version;
+		}
+	}
+
+	/**
+	 * Add a vertex to the host name, address and interface indexes.
+	 *
+	 * @param vertex
+	 *            - A vertex of the graph.
+	 */
+	private void index(Vertex vertex) {
+		verticesByHostname.put(vertex.getHostname(), vertex);
+		interfaces.put(vertex);
+		if (vertex.getManagementIP() != null) {
+			verticesByAddress.put(vertex.getManagementIP(), vertex);
+		}
+	}
+
+	/**
+	 * Take over the attributes of a discovered vertex into the restored one,
+	 * which stays part of the graph together with its links.
+	 *
+	 * @param restored
+	 *            - The provisional vertex of the graph.
+	 * @param discovered
+	 *            - The vertex created by the discovery.
+	 */
+	private void confirm(Vertex restored, Vertex discovered) {
+		if (restored.getManagementIP() != null
+				&& verticesByAddress.get(restored.getManagementIP()) == restored) {
+			verticesByAddress.remove(restored.getManagementIP());
+		}
+		interfaces.remove(restored.getHostname());
+
+		restored.setUniqueIdentifier(discovered.getUniqueIdentifier());
+		restored.setUserName(discovered.getUserName());
+		restored.setPassword(discovered.getPassword());
+		restored.setInterfaceHash(discovered.getInterfaceHash());
+		restored.setUpTime(discovered.getUpTime());
+		restored.setManagementIP(discovered.getManagementIP());
+		restored.setLatitude(discovered.getLatitude());
+		restored.setLongitude(discovered.getLongitude());
+
+		index(restored);
+		vertexVersions.put(restored.getHostname(), ++version);
+	}
+
+	/**
+	 * Remember a removal and forget the oldest ones beyond MAX_TOMBSTONES.
+	 *
+	 * @param tombstone
+	 *            - The tombstone to be added.
+	 */
+	private void addTombstone(Tombstone tombstone) {
+		tombstones.addLast(tombstone);
+		while (tombstones.size() > MAX_TOMBSTONES) {
+			tombstoneHorizon = tombstones.removeFirst().version;
+		}
+	}
+
+	/**
+	 * @return True if the graph does not contain any vertex.
+	 */
+	public boolean isEmpty() {
+		synchronized (myGraph) {
+			return myGraph.vertexSet().isEmpty();
+		}
+	}
+
+	/**
+	 * @return The number of vertices in the graph.
+	 */
+	public int getVertexCount() {
+		synchronized (myGraph) {
+			return myGraph.vertexSet().size();
+		}
+	}
+
+	/**
+	 * @return The number of links in the graph.
+	 */
+	public int getLinkCount() {
+		synchronized (myGraph) {
+			return myGraph.edgeSet().size();
+		}
+	}
+
+	/**
+	 * Create a copy of the graph that shares vertices and links with the
+	 * maintained graph, but whose structure is not changed by later events.
+	 * Used to hand out the topology while listeners keep updating it.
+	 *
+	 * @return A snapshot of the topology graph.
+	 */
+	@SuppressWarnings("unchecked")
+	public DirectedWeightedMultigraph<Vertex, Link> snapshot() {
+		synchronized (myGraph) {
+			return (DirectedWeightedMultigraph<Vertex, Link>) myGraph.clone();
+		}
+	}
+
+	/**
+	 * @return The maintained graph object.
+	 */
+	public DirectedWeightedMultigraph<Vertex, Link> getGraph() {
+		return myGraph;
+	}
+}
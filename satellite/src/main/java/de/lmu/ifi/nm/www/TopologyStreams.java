@@ -0,0 +1,188 @@
+package de.lmu.ifi.nm.www;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The topology streams a Satellite has opened for its clients, see
+ * ISatellite.openTopologyStream().
+ *
+ * A stream keeps the delta it was opened for, which only references the
+ * vertices of the topology graph, and hands it out in chunks of at most
+ * 'maxElements' elements. Only a chunk is ever serialized at a time. Streams
+ * that have not been read for 'idleTimeout' milliseconds are dropped, and at
+ * most 'maxStreams' are kept; the oldest one is dropped first.
+ */
+public class TopologyStreams {
+	/** Upper bound of the elements of a chunk, whatever the client asks for. */
+	public static final int MAX_CHUNK_SIZE = 10000;
+
+	private Map<Long, Stream> streams = new LinkedHashMap<Long, Stream>();
+	private long nextId = 1;
+	private int maxStreams = 16;
+	private long idleTimeout = 60000;
+
+	/**
+	 * The position of a client within a delta.
+	 */
+	private static class Stream {
+		private long id;
+		private TopologyDelta delta = null;
+		private int maxElements;
+		private int removedLinks = 0;
+		private int removedVertices = 0;
+		private int vertices = 0;
+		private int links = 0;
+		private long lastAccess = System.currentTimeMillis();
+
+		/**
+		 * @param id
+		 *            - The id of the stream.
+		 * @param delta
+		 *            - The delta to be transferred.
+		 * @param maxElements
+		 *            - The maximum number of elements of a chunk.
+		 */
+		public Stream(long id, TopologyDelta delta, int maxElements) {
+			this.id = id;
+			this.delta = delta;
+			this.maxElements = maxElements;
+		}
+
+		/**
+		 * @return The next chunk of the delta.
+		 */
+		public TopologyChunk next() {
+			TopologyDelta chunk = new TopologyDelta(delta.getFromVersion(),
+					delta.getToVersion(), false);
+			int room = maxElements;
+
+			room -= copy(delta.getRemovedLinks(), removedLinks, room,
+					chunk.getRemovedLinks());
+			removedLinks += chunk.getRemovedLinks().size();
+			room -= copy(delta.getRemovedVertices(), removedVertices, room,
+					chunk.getRemovedVertices());
+			removedVertices += chunk.getRemovedVertices().size();
+			room -= copy(delta.getVertices(), vertices, room,
+					chunk.getVertices());
+			vertices += chunk.getVertices().size();
+			copy(delta.getLinks(), links, room, chunk.getLinks());
+			links += chunk.getLinks().size();
+
+			lastAccess = System.currentTimeMillis();
+			return new TopologyChunk(id, delta.isFull(), isDone(), chunk);
+		}
+
+		/**
+		 * @return True if every element has been handed out.
+		 */
+		private boolean isDone() {
+			return removedLinks == delta.getRemovedLinks().size()
+					&& removedVertices == delta.getRemovedVertices().size()
+					&& vertices == delta.getVertices().size()
+					&& links == delta.getLinks().size();
+		}
+	}
+
+	/**
+	 * Open a stream for a delta.
+	 *
+	 * @param delta
+	 *            - The delta to be transferred.
+	 * @param maxElements
+	 *            - The maximum number of elements of a chunk.
+	 * @return The first chunk. If it is the last one as well, the stream is
+	 *         not kept.
+	 */
+	public synchronized TopologyChunk open(TopologyDelta delta, int maxElements) {
+		expire();
+
+		Stream stream = new Stream(nextId++, delta, Math.max(1,
+				Math.min(maxElements, MAX_CHUNK_SIZE)));
+		TopologyChunk chunk = stream.next();
+
+		if (!chunk.isLast()) {
+			while (streams.size() >= maxStreams) {
+				Iterator<Long> oldest = streams.keySet().iterator();
+				oldest.next();
+				oldest.remove();
+			}
+			streams.put(stream.id, stream);
+		}
+		return chunk;
+	}
+
+	/**
+	 * @param streamId
+	 *            - The id of an open stream.
+	 * @return The next chunk of the stream, or null if the stream is unknown
+	 *         or has expired.
+	 */
+	public synchronized TopologyChunk next(long streamId) {
+		expire();
+
+		Stream stream = streams.get(streamId);
+		if (stream == null) {
+			return null;
+		}
+
+		TopologyChunk chunk = stream.next();
+		if (chunk.isLast()) {
+			streams.remove(streamId);
+		}
+		return chunk;
+	}
+
+	/**
+	 * @param maxStreams
+	 *            - The maximum number of open streams.
+	 */
+	public synchronized void setMaxStreams(int maxStreams) {
+		this.maxStreams = Math.max(1, maxStreams);
+	}
+
+	/**
+	 * @param idleTimeout
+	 *            - The time in milliseconds after which an unread stream is
+	 *            dropped.
+	 */
+	public synchronized void setIdleTimeout(long idleTimeout) {
+		this.idleTimeout = idleTimeout;
+	}
+
+	/**
+	 * Drop the streams that have not been read for 'idleTimeout'.
+	 */
+	private void expire() {
+		long now = System.currentTimeMillis();
+		for (Iterator<Stream> iter = streams.values().iterator(); iter
+				.hasNext();) {
+			if (now - iter.next().lastAccess > idleTimeout) {
+				iter.remove();
+			}
+		}
+	}
+
+	/**
+	 * Copy up to 'room' elements of a list starting at 'offset'.
+	 *
+	 * @param from
+	 *            - The list of the delta.
+	 * @param offset
+	 *            - The index of the first element to be copied.
+	 * @param room
+	 *            - The maximum number of elements to be copied.
+	 * @param to
+	 *            - The list of the chunk.
+	 * @return The number of copied elements.
+	 */
+	private static <T> int copy(List<T> from, int offset, int room, List<T> to) {
+		int end = Math.min(from.size(), offset + Math.max(0, room));
+		for (int i = offset; i < end; i++) {
+			to.add(from.get(i));
+		}
+		return Math.max(0, end - offset);
+	}
+}
@@ -1,24 +1,32 @@
 package de.lmu.ifi.nm.www;
 
-import java.io.Serializable;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 /**
  * This class represents a vertex in the topology graph.
  * 
+ * Vertices are transferred in the compact format of WireFormat. User name and
+ * password stay on the Satellite and are not part of the transferred vertex.
+ * 
  * @author Dawin Schmidt, dawin.schmidt@lmu.de
  * @since October 2, 2013
  */
-public class Vertex implements Serializable {
-	private static final long serialVersionUID = 1L;
+public class Vertex implements Externalizable {
+	private static final long serialVersionUID = 2L;
+	private static final int WIRE_VERSION = 2;
 	private String uniqueIdentifier;
 	private String userName = null;
 	private String password = null;
 	private HashMap<String, List<NetworkPrefix>> interfaceHash = null;
 	private String managementIP = null;
-	private String routingTable = null;
 	private double latitude;
 	private double longitude;
 	private long upTime = 0;
@@ -33,8 +41,6 @@ public class Vertex implements Serializable {
 	 *            - The password of the vertex.
 	 * @param interfaceHash
 	 *            - The interfaces of the vertex.
-	 * @param routingTable
-	 *            - The routing information base of the vertex.
 	 * @param upTime
 	 *            - The uptime of the vertex.
 	 * @param hostname
@@ -47,15 +53,14 @@ public class Vertex implements Serializable {
 	 *            - The longitude PS coordinate of the the vertex.
 	 */
 	public Vertex(String uniqueIdentifier, String userName, String password,
-			HashMap<String, List<NetworkPrefix>> interfaceHash,
-			String routingTable, long upTime, String hostname,
-			String managementIP, double latitude, double longitude) {
+			HashMap<String, List<NetworkPrefix>> interfaceHash, long upTime,
+			String hostname, String managementIP, double latitude,
+			double longitude) {
 		super();
 		this.uniqueIdentifier = uniqueIdentifier;
 		this.userName = userName;
 		this.password = password;
 		this.interfaceHash = interfaceHash;
-		this.routingTable = routingTable;
 		this.upTime = upTime;
 		this.hostname = hostname;
 		this.managementIP = managementIP;
@@ -63,6 +68,89 @@ public class Vertex implements Serializable {
 		this.longitude = longitude;
 	}
 
+	/**
+	 * Only used for deserialization.
+	 */
+	public Vertex() {
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.Externalizable#writeExternal(java.io.ObjectOutput)
+	 */
+	public void writeExternal(ObjectOutput out) throws IOException {
+		WireFormat.StringTable table = WireFormat.getStringTable(out);
+
+		out.writeByte(WIRE_VERSION);
+		WireFormat.writeString(out, hostname, table);
+		WireFormat.writeString(out, uniqueIdentifier, table);
+		WireFormat.writeAddress(out, managementIP, table);
+		WireFormat.writeVarLong(out, Math.max(0, upTime));
+		out.writeDouble(latitude);
+		out.writeDouble(longitude);
+
+		if (interfaceHash == null) {
+			WireFormat.writeVarInt(out, 0);
+			return;
+		}
+
+		WireFormat.writeVarInt(out, interfaceHash.size() + 1);
+		for (Map.Entry<String, List<NetworkPrefix>> entry : interfaceHash
+				.entrySet()) {
+			List<NetworkPrefix> prefixList = entry.getValue();
+
+			WireFormat.writeString(out, entry.getKey(), table);
+			WireFormat.writeVarInt(out, prefixList.size());
+			for (NetworkPrefix prefix : prefixList) {
+				WireFormat.writeInetAddress(out, prefix.getAddress());
+				out.writeByte(prefix.getPrefixLen());
+			}
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.Externalizable#readExternal(java.io.ObjectInput)
+	 */
+	public void readExternal(ObjectInput in) throws IOException {
+		WireFormat.StringTable table = WireFormat.getStringTable(in);
+
+		int version = in.readUnsignedByte();
+		if (version != WIRE_VERSION) {
+			throw new IOException("Unsupported Vertex wire version " + version
+					+ ".");
+		}
+
+		hostname = WireFormat.readString(in, table);
+		uniqueIdentifier = WireFormat.readString(in, table);
+		managementIP = WireFormat.readAddress(in, table);
+		upTime = WireFormat.readVarLong(in);
+		latitude = in.readDouble();
+		longitude = in.readDouble();
+
+		int interfaceCount = WireFormat.readVarInt(in) - 1;
+		if (interfaceCount < 0) {
+			interfaceHash = null;
+			return;
+		}
+
+		interfaceHash = new HashMap<String, List<NetworkPrefix>>();
+		for (int i = 0; i < interfaceCount; i++) {
+			String interfaceName = WireFormat.readString(in, table);
+			int prefixCount = WireFormat.readVarInt(in);
+			List<NetworkPrefix> prefixList = new ArrayList<NetworkPrefix>(
+					prefixCount);
+
+			for (int j = 0; j < prefixCount; j++) {
+				prefixList.add(new NetworkPrefix(WireFormat
+						.readInetAddress(in), in.readUnsignedByte()));
+			}
+			interfaceHash.put(interfaceName, prefixList);
+		}
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -103,11 +191,7 @@ public class Vertex implements Serializable {
 				+ getLongitude()
 				+ "\n"
 				+ "---------- Interfaces ----------"
-				+ interfaceHashToString()
-				+ "\n"
-				+ "---------- Routing Table ----------"
-				+ "\n"
-				+ getRoutingTable();
+				+ interfaceHashToString();
 	}
 
 	/**
@@ -168,13 +252,6 @@ public class Vertex implements Serializable {
 		return interfaceString;
 	}
 
-	/**
-	 * @return The routing table of the vertex.
-	 */
-	public String getRoutingTable() {
-		return routingTable;
-	}
-
 	/**
 	 * @return The uptime of the vertex.
 	 */
@@ -230,16 +307,6 @@ public class Vertex implements Serializable {
 		this.interfaceHash = interfaceHash;
 	}
 
-	/**
-	 * Set the RIB of the vertex.
-	 * 
-	 * @param routingTable
-	 *            - The RIB to be set.
-	 */
-	public void setRouteList(String routingTable) {
-		this.routingTable = routingTable;
-	}
-
 	/**
 	 * Set the uptime of the vertex.
 	 * 
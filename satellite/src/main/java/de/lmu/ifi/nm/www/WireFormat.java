@@ -0,0 +1,335 @@
+package de.lmu.ifi.nm.www;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.net.InetAddress;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Helper functions for the compact wire format of Vertex and Link.
+ *
+ * Integers are written as varints, IPv4-Addresses as four bytes and strings
+ * through a string table: the first occurrence of a string is written in
+ * UTF-8, every further occurrence as the index of the first one. The string
+ * table lives as long as the object stream it belongs to, so interface names
+ * and addresses that appear in many vertices and links of one topology graph
+ * are only transferred once.
+ */
+final class WireFormat {
+	/** Strings longer than this are written inline and never interned. */
+	private static final int MAX_INTERNED_LENGTH = 256;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final int STRING_NULL = 0;
+	private static final int STRING_INLINE = 1;
+	private static final int STRING_NEW = 2;
+	private static final int STRING_REFERENCE = 3;
+
+	private static final int ADDRESS_NULL = 0;
+	private static final int ADDRESS_IPV4 = 1;
+	private static final int ADDRESS_STRING = 2;
+
+	private static final Map<Object, StringTable> tables = new WeakHashMap<Object, StringTable>();
+
+	/**
+	 * The strings written to or read from one object stream.
+	 */
+	static class StringTable {
+		private Map<String, Integer> indexes = new HashMap<String, Integer>();
+		private List<String> strings = new ArrayList<String>();
+	}
+
+	private WireFormat() {
+	}
+
+	/**
+	 * @param stream
+	 *            - The ObjectOutput or ObjectInput an object is written to or
+	 *            read from.
+	 * @return The string table shared by all objects of the stream.
+	 */
+	static StringTable getStringTable(Object stream) {
+		synchronized (tables) {
+			StringTable table = tables.get(stream);
+			if (table == null) {
+				table = new StringTable();
+				tables.put(stream, table);
+			}
+			return table;
+		}
+	}
+
+	/**
+	 * Write a non-negative int in 1 to 5 bytes.
+	 *
+	 * @param out
+	 *            - The output to write to.
+	 * @param value
+	 *            - The value to be written.
+	 * @throws IOException
+	 *             If the value could not be written.
+	 */
+	static void writeVarInt(DataOutput out, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	/**
+	 * @param in
+	 *            - The input to read from.
+	 * @return The int written by writeVarInt().
+	 * @throws IOException
+	 *             If the value could not be read.
+	 */
+	static int readVarInt(DataInput in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new StreamCorruptedException("Malformed varint.");
+	}
+
+	/**
+	 * Write a non-negative long in 1 to 10 bytes.
+	 *
+	 * @param out
+	 *            - The output to write to.
+	 * @param value
+	 *            - The value to be written.
+	 * @throws IOException
+	 *             If the value could not be written.
+	 */
+	static void writeVarLong(DataOutput out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) (value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	/**
+	 * @param in
+	 *            - The input to read from.
+	 * @return The long written by writeVarLong().
+	 * @throws IOException
+	 *             If the value could not be read.
+	 */
+	static long readVarLong(DataInput in) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 70; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new StreamCorruptedException("Malformed varint.");
+	}
+
+	/**
+	 * Write a string, or a reference to it if it has been written to the same
+	 * stream before.
+	 *
+	 * @param out
+	 *            - The output to write to.
+	 * @param value
+	 *            - The string to be written, may be null.
+	 * @param table
+	 *            - The string table of the stream.
+	 * @throws IOException
+	 *             If the string could not be written.
+	 */
+	static void writeString(DataOutput out, String value, StringTable table)
+			throws IOException {
+		if (value == null) {
+			writeVarInt(out, STRING_NULL);
+			return;
+		}
+
+		if (value.length() > MAX_INTERNED_LENGTH) {
+			writeVarInt(out, STRING_INLINE);
+			writeUTF8(out, value);
+			return;
+		}
+
+		Integer index = table.indexes.get(value);
+		if (index != null) {
+			writeVarInt(out, STRING_REFERENCE + index);
+			return;
+		}
+
+		table.indexes.put(value, table.strings.size());
+		table.strings.add(value);
+		writeVarInt(out, STRING_NEW);
+		writeUTF8(out, value);
+	}
+
+	/**
+	 * @param in
+	 *            - The input to read from.
+	 * @param table
+	 *            - The string table of the stream.
+	 * @return The string written by writeString().
+	 * @throws IOException
+	 *             If the string could not be read.
+	 */
+	static String readString(DataInput in, StringTable table)
+			throws IOException {
+		int tag = readVarInt(in);
+
+		switch (tag) {
+		case STRING_NULL:
+			return null;
+		case STRING_INLINE:
+			return readUTF8(in);
+		case STRING_NEW:
+			String value = readUTF8(in);
+			table.strings.add(value);
+			return value;
+		default:
+			int index = tag - STRING_REFERENCE;
+			if (index >= table.strings.size()) {
+				throw new StreamCorruptedException("Unknown string reference "
+						+ index + ".");
+			}
+			return table.strings.get(index);
+		}
+	}
+
+	/**
+	 * Write an address given as string. IPv4-Addresses in dotted notation take
+	 * five bytes, anything else is written as string.
+	 *
+	 * @param out
+	 *            - The output to write to.
+	 * @param address
+	 *            - The address to be written, may be null.
+	 * @param table
+	 *            - The string table of the stream.
+	 * @throws IOException
+	 *             If the address could not be written.
+	 */
+	static void writeAddress(DataOutput out, String address, StringTable table)
+			throws IOException {
+		long ipv4 = address == null ? -1 : IPv4.parse(address);
+
+		if (address == null) {
+			out.writeByte(ADDRESS_NULL);
+		} else if (ipv4 >= 0) {
+			out.writeByte(ADDRESS_IPV4);
+			out.writeInt((int) ipv4);
+		} else {
+			out.writeByte(ADDRESS_STRING);
+			writeString(out, address, table);
+		}
+	}
+
+	/**
+	 * @param in
+	 *            - The input to read from.
+	 * @param table
+	 *            - The string table of the stream.
+	 * @return The address written by writeAddress().
+	 * @throws IOException
+	 *             If the address could not be read.
+	 */
+	static String readAddress(DataInput in, StringTable table)
+			throws IOException {
+		int tag = in.readUnsignedByte();
+
+		switch (tag) {
+		case ADDRESS_NULL:
+			return null;
+		case ADDRESS_IPV4:
+			return IPv4.toString(in.readInt());
+		case ADDRESS_STRING:
+			return readString(in, table);
+		default:
+			throw new StreamCorruptedException("Unknown address type " + tag
+					+ ".");
+		}
+	}
+
+	/**
+	 * Write an InetAddress as its raw bytes, preceded by their number.
+	 *
+	 * @param out
+	 *            - The output to write to.
+	 * @param address
+	 *            - The address to be written, may be null.
+	 * @throws IOException
+	 *             If the address could not be written.
+	 */
+	static void writeInetAddress(DataOutput out, InetAddress address)
+			throws IOException {
+		if (address == null) {
+			out.writeByte(0);
+			return;
+		}
+
+		byte[] bytes = address.getAddress();
+		out.writeByte(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * @param in
+	 *            - The input to read from.
+	 * @return The address written by writeInetAddress(). No name lookup is
+	 *         done.
+	 * @throws IOException
+	 *             If the address could not be read.
+	 */
+	static InetAddress readInetAddress(DataInput in) throws IOException {
+		int length = in.readUnsignedByte();
+		if (length == 0) {
+			return null;
+		}
+
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return InetAddress.getByAddress(bytes);
+	}
+
+	/**
+	 * @param out
+	 *            - The output to write to.
+	 * @param value
+	 *            - The string to be written as length and UTF-8 bytes.
+	 * @throws IOException
+	 *             If the string could not be written.
+	 */
+	private static void writeUTF8(DataOutput out, String value)
+			throws IOException {
+		byte[] bytes = value.getBytes(UTF8);
+		writeVarInt(out, bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * @param in
+	 *            - The input to read from.
+	 * @return The string written by writeUTF8().
+	 * @throws IOException
+	 *             If the string could not be read.
+	 */
+	private static String readUTF8(DataInput in) throws IOException {
+		byte[] bytes = new byte[readVarInt(in)];
+		in.readFully(bytes);
+		return new String(bytes, UTF8);
+	}
+}
@@ -0,0 +1,66 @@
+/*
+ * Thrift transport between Satellite and TopologyDiscoverer, an alternative
+ * to the RMI interfaces ISatellite and ITopologyDiscoverer.
+ *
+ * Both ends use the compact protocol over framed, non-blocking transports.
+ * Values that are Java objects on the RMI interfaces are passed as 'binary'
+ * holding their Java serialization, i.e. the compact wire format of Vertex
+ * and Link. The Java side is implemented by hand in ThriftCodec,
+ * ThriftService and ThriftClient; the field ids below are the contract.
+ */
+
+namespace java de.lmu.ifi.nm.www
+
+/** Any exception thrown by the called object. */
+exception RemoteError {
+  1: string message
+}
+
+/** ISatellite */
+service Satellite {
+  /** Serialized DirectedWeightedMultigraph<Vertex, Link> */
+  binary getTopology(1: bool allowStale) throws (1: RemoteError error),
+
+  /** Serialized TopologyDelta */
+  binary getTopologyDelta(1: i64 sinceVersion, 2: bool allowStale)
+      throws (1: RemoteError error),
+
+  /** Serialized TopologyChunk */
+  binary openTopologyStream(1: i64 sinceVersion, 2: bool allowStale,
+      3: i32 maxElements) throws (1: RemoteError error),
+
+  /** Serialized TopologyChunk, unset if the stream has expired */
+  binary nextTopologyChunk(1: i64 streamId) throws (1: RemoteError error),
+
+  list<string> getRoutingTable(1: string hostname, 2: i32 offset,
+      3: i32 limit) throws (1: RemoteError error),
+
+  /** Serialized Vertex arguments */
+  bool setRoute(1: binary source, 2: binary next, 3: binary nextToLast,
+      4: binary destination) throws (1: RemoteError error),
+
+  /** Serialized List<RouteRequest> in and out */
+  binary setRoutes(1: binary routes) throws (1: RemoteError error),
+
+  /** Serialized List<AgentStatus> */
+  binary getAgentStatus() throws (1: RemoteError error),
+
+  bool isAlive() throws (1: RemoteError error)
+}
+
+/** ITopologyDiscoverer */
+service TopologyDiscoverer {
+  /** clientPort is the port of the Satellite's Thrift server */
+  void connect(1: string clientIP, 2: i32 clientPort, 3: string userName)
+      throws (1: RemoteError error),
+
+  void disconnect(1: string clientIP, 2: i32 clientPort, 3: string userName)
+      throws (1: RemoteError error),
+
+  void receiveEvent(1: string userName, 2: string message)
+      throws (1: RemoteError error),
+
+  /** Serialized List<NetworkEvent> */
+  void receiveEvents(1: string userName, 2: binary events)
+      throws (1: RemoteError error)
+}
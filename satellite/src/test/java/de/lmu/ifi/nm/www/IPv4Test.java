@@ -0,0 +1,195 @@
+package de.lmu.ifi.nm.www;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * The int arithmetic of IPv4 and the classes delegating to it.
+ */
+public class IPv4Test extends TestCase {
+
+	public void testRoundTrip() {
+		String[] addresses = { "0.0.0.0", "255.255.255.255", "10.1.0.1",
+				"192.168.255.0", "128.0.0.1", "1.2.3.4" };
+		for (String address : addresses) {
+			assertEquals(address, IPv4.toString(IPv4.toInt(address)));
+		}
+
+		Random random = new Random(1);
+		for (int i = 0; i < 10000; i++) {
+			int address = random.nextInt();
+			assertEquals(address, IPv4.toInt(IPv4.toString(address)));
+			assertEquals(address & 0xFFFFFFFFL,
+					IPv4.parse(IPv4.toString(address)));
+		}
+	}
+
+	public void testParse() {
+		assertEquals(0x0A010001L, IPv4.parse("10.1.0.1"));
+		assertEquals(0xFFFFFFFFL, IPv4.parse("255.255.255.255"));
+
+		String[] invalid = { "", "1.2.3", "1.2.3.4.5", "256.0.0.1", "1..2.3",
+				".1.2.3", "1.2.3.", "1.2.3.a", " 1.2.3.4", "1.2.3.4/24",
+				"-1.2.3.4" };
+		for (String address : invalid) {
+			assertEquals(address, -1, IPv4.parse(address));
+			try {
+				IPv4.toInt(address);
+				fail(address);
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+	}
+
+	public void testOctet() {
+		int address = IPv4.toInt("10.20.30.40");
+		assertEquals(10, IPv4.octet(address, 0));
+		assertEquals(20, IPv4.octet(address, 1));
+		assertEquals(30, IPv4.octet(address, 2));
+		assertEquals(40, IPv4.octet(address, 3));
+		assertEquals(255, IPv4.octet(IPv4.toInt("255.0.0.0"), 0));
+	}
+
+	public void testMask() {
+		assertEquals(0, IPv4.mask(0));
+		assertEquals(0x80000000, IPv4.mask(1));
+		assertEquals(0xFFFFFF00, IPv4.mask(24));
+		assertEquals(0xFFFFFFFE, IPv4.mask(31));
+		assertEquals(-1, IPv4.mask(32));
+
+		for (int length = 0; length <= 32; length++) {
+			assertEquals(length, IPv4.prefixLength(IPv4.mask(length)));
+		}
+	}
+
+	public void testSubnetOfZeroLength() {
+		int address = IPv4.toInt("10.1.2.3");
+
+		assertEquals("0.0.0.0", IPv4.toString(IPv4.network(address, 0)));
+		assertEquals("255.255.255.255",
+				IPv4.toString(IPv4.broadcast(address, 0)));
+		assertEquals("0.0.0.1", IPv4.toString(IPv4.firstHost(address, 0)));
+		assertEquals("255.255.255.254",
+				IPv4.toString(IPv4.lastHost(address, 0)));
+		assertEquals(1L << 32, IPv4.size(0));
+		assertTrue(IPv4.contains(0, 0, address));
+	}
+
+	public void testSubnetOfLength31() {
+		int address = IPv4.toInt("10.0.0.255");
+
+		assertEquals("10.0.0.254", IPv4.toString(IPv4.network(address, 31)));
+		assertEquals("10.0.0.255", IPv4.toString(IPv4.broadcast(address, 31)));
+		assertEquals("10.0.0.254", IPv4.toString(IPv4.firstHost(address, 31)));
+		assertEquals("10.0.0.255", IPv4.toString(IPv4.lastHost(address, 31)));
+		assertEquals(2, IPv4.size(31));
+		assertFalse(IPv4.contains(IPv4.toInt("10.0.0.254"), 31,
+				IPv4.toInt("10.0.1.0")));
+	}
+
+	public void testSubnetOfLength32() {
+		int address = IPv4.toInt("10.0.0.255");
+
+		assertEquals(address, IPv4.network(address, 32));
+		assertEquals(address, IPv4.broadcast(address, 32));
+		assertEquals(address, IPv4.firstHost(address, 32));
+		assertEquals(address, IPv4.lastHost(address, 32));
+		assertEquals(1, IPv4.size(32));
+		assertTrue(IPv4.contains(address, 32, address));
+		assertFalse(IPv4.contains(address, 32, address + 1));
+	}
+
+	public void testHostsAcrossOctets() {
+		int address = IPv4.toInt("10.0.1.77");
+
+		assertEquals("10.0.0.0", IPv4.toString(IPv4.network(address, 23)));
+		assertEquals("10.0.1.255", IPv4.toString(IPv4.broadcast(address, 23)));
+		assertEquals("10.0.0.1", IPv4.toString(IPv4.firstHost(address, 23)));
+		assertEquals("10.0.1.254", IPv4.toString(IPv4.lastHost(address, 23)));
+		assertEquals("10.0.1.0", IPv4.toString(IPv4.toInt("10.0.0.255") + 1));
+		assertEquals("9.255.255.255", IPv4.toString(IPv4.toInt("10.0.0.0") - 1));
+		assertTrue(IPv4.contains(IPv4.toInt("10.0.0.0"), 23,
+				IPv4.toInt("10.0.1.255")));
+		assertFalse(IPv4.contains(IPv4.toInt("10.0.0.0"), 23,
+				IPv4.toInt("10.0.2.0")));
+	}
+
+	public void testIandr() {
+		assertEquals("10.0.0.0", Iandr.and("10.0.1.77", "255.255.254.0"));
+		assertEquals("10.0.1.255",
+				Iandr.broadcast("10.0.0.0", "255.255.254.0"));
+		assertEquals("0.0.0.0", Iandr.and("10.0.1.77", "0.0.0.0"));
+		assertEquals("255.255.255.255", Iandr.broadcast("0.0.0.0", "0.0.0.0"));
+	}
+
+	public void testConv() {
+		char[][] binary = Conv.ipToBin("192.168.1.255");
+		assertEquals("11000000", new String(binary[0]));
+		assertEquals("10101000", new String(binary[1]));
+		assertEquals("00000001", new String(binary[2]));
+		assertEquals("11111111", new String(binary[3]));
+		assertEquals("00000101", Conv.toBinary("5"));
+		assertEquals("5", Conv.toDecimal("101"));
+
+		assertEquals(1, Conv.numRound(0));
+		assertEquals(1, Conv.numRound(1));
+		assertEquals(2, Conv.numRound(2));
+		assertEquals(4, Conv.numRound(3));
+		assertEquals(1024, Conv.numRound(1000));
+		assertEquals(1024, Conv.numRound(1024));
+	}
+
+	public void testSubtool() {
+		Subtool subtool = subtool("10.0.1.77", 23);
+		assertEquals("255.255.254.0", subtool.getSubnetMask());
+		assertEquals("10.0.0.0", subtool.getSubnetAddress());
+		assertEquals("10.0.1.255", subtool.getBroadcastAddress());
+		assertEquals("10.0.0.1", subtool.getMinimumHostAddressRange());
+		assertEquals("10.0.1.254", subtool.getMaximumHostAddressRange());
+		assertEquals(512, subtool.getTotalHosts());
+		assertEquals(15, subtool.getSubnetBits());
+
+		subtool = subtool("192.168.1.130", 24);
+		assertEquals('c', subtool.getNetworkClass());
+		assertEquals("192.168.1.1", subtool.getMinimumHostAddressRange());
+		assertEquals("192.168.1.254", subtool.getMaximumHostAddressRange());
+		assertEquals(254, subtool.getUsableHosts());
+	}
+
+	public void testSubtoolOfZeroLength() {
+		Subtool subtool = subtool("10.1.2.3", 0);
+		assertEquals("0.0.0.0", subtool.getSubnetMask());
+		assertEquals("0.0.0.0", subtool.getSubnetAddress());
+		assertEquals("255.255.255.255", subtool.getBroadcastAddress());
+		assertEquals("0.0.0.1", subtool.getMinimumHostAddressRange());
+		assertEquals("255.255.255.254", subtool.getMaximumHostAddressRange());
+	}
+
+	public void testSubtoolOfLength31() {
+		Subtool subtool = subtool("10.0.0.255", 31);
+		assertEquals("255.255.255.254", subtool.getSubnetMask());
+		assertEquals("10.0.0.254", subtool.getSubnetAddress());
+		assertEquals("10.0.0.255", subtool.getBroadcastAddress());
+		assertEquals("10.0.0.254", subtool.getMinimumHostAddressRange());
+		assertEquals("10.0.0.255", subtool.getMaximumHostAddressRange());
+	}
+
+	public void testSubtoolOfLength32() {
+		// The hosts must not carry over into the third octet
+		Subtool subtool = subtool("10.0.0.255", 32);
+		assertEquals("255.255.255.255", subtool.getSubnetMask());
+		assertEquals("10.0.0.255", subtool.getSubnetAddress());
+		assertEquals("10.0.0.255", subtool.getBroadcastAddress());
+		assertEquals("10.0.0.255", subtool.getMinimumHostAddressRange());
+		assertEquals("10.0.0.255", subtool.getMaximumHostAddressRange());
+	}
+
+	private static Subtool subtool(String address, int maskedBits) {
+		Subtool subtool = new Subtool();
+		subtool.setIPAddress(address);
+		subtool.setMaskedBits(maskedBits);
+		return subtool;
+	}
+}
@@ -0,0 +1,95 @@
+package de.lmu.ifi.nm.www;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Lookups of interface addresses and subnets in the InterfaceIndex.
+ */
+public class InterfaceIndexTest extends TestCase {
+
+	public void testOwnerAndSubnet() throws Exception {
+		InterfaceIndex index = new InterfaceIndex();
+		index.put(createVertex("R1", "Gi0/1", "10.0.0.1", 30, "Gi0/2",
+				"192.168.1.1", 24));
+		index.put(createVertex("R2", "Gi0/1", "10.0.0.2", 30, "Lo0",
+				"172.16.0.2", 32));
+
+		assertEquals("R1", index.getOwner("10.0.0.1").getHostname());
+		assertEquals("Gi0/1", index.getOwner("10.0.0.1").getInterfaceName());
+		assertEquals("R2", index.getOwner("172.16.0.2").getHostname());
+		assertNull(index.getOwner("10.0.0.3"));
+		assertNull(index.getOwner("no address"));
+
+		assertEquals(2, index.getSubnet("10.0.0.0", 30).size());
+		assertEquals(0, index.getSubnet("10.0.0.0", 29).size());
+		assertEquals(1, index.getSubnet("192.168.1.0", 24).size());
+
+		assertEquals(1, index.lookup("10.0.0.2").size());
+		assertEquals("R2", index.lookup("10.0.0.2").get(0).getHostname());
+		assertEquals(2, index.lookup("10.0.0.3").size());
+		assertEquals("R1", index.lookup("192.168.1.200").get(0).getHostname());
+		assertTrue(index.lookup("192.168.2.1").isEmpty());
+		assertTrue(index.lookup("").isEmpty());
+	}
+
+	public void testReplaceAndRemove() throws Exception {
+		InterfaceIndex index = new InterfaceIndex();
+		index.put(createVertex("R1", "Gi0/1", "10.0.0.1", 30, "Gi0/2",
+				"192.168.1.1", 24));
+		index.put(createVertex("R2", "Gi0/1", "10.0.0.2", 30, "Gi0/2",
+				"192.168.2.1", 24));
+
+		index.put(createVertex("R1", "Gi0/1", "10.0.0.1", 30, "Gi0/3",
+				"192.168.3.1", 24));
+		assertNull(index.getOwner("192.168.1.1"));
+		assertTrue(index.lookup("192.168.1.7").isEmpty());
+		assertEquals("Gi0/3", index.getOwner("192.168.3.1").getInterfaceName());
+		assertEquals(2, index.getSubnet("10.0.0.0", 30).size());
+
+		index.remove("R1");
+		assertNull(index.getOwner("10.0.0.1"));
+		assertEquals(1, index.getSubnet("10.0.0.0", 30).size());
+		assertEquals("R2", index.lookup("10.0.0.1").get(0).getHostname());
+
+		index.remove("R3");
+		index.clear();
+		assertNull(index.getOwner("10.0.0.2"));
+		assertTrue(index.lookup("10.0.0.2").isEmpty());
+	}
+
+	public void testVertexWithoutInterfaces() throws Exception {
+		InterfaceIndex index = new InterfaceIndex();
+		Vertex vertex = WireFormatTest.createVertex("R1", "10.0.0.1");
+		vertex.setInterfaceHash(null);
+
+		index.put(vertex);
+
+		assertNull(index.getOwner("10.0.0.1"));
+	}
+
+	/**
+	 * @return A vertex with two interfaces.
+	 */
+	private static Vertex createVertex(String hostname, String firstName,
+			String firstAddress, int firstLength, String secondName,
+			String secondAddress, int secondLength) throws Exception {
+		HashMap<String, List<NetworkPrefix>> interfaceHash = new HashMap<String, List<NetworkPrefix>>();
+		List<NetworkPrefix> first = new ArrayList<NetworkPrefix>();
+		first.add(new NetworkPrefix(InetAddress.getByName(firstAddress),
+				firstLength));
+		interfaceHash.put(firstName, first);
+		List<NetworkPrefix> second = new ArrayList<NetworkPrefix>();
+		second.add(new NetworkPrefix(InetAddress.getByName(secondAddress),
+				secondLength));
+		interfaceHash.put(secondName, second);
+
+		Vertex vertex = WireFormatTest.createVertex(hostname, firstAddress);
+		vertex.setInterfaceHash(interfaceHash);
+		return vertex;
+	}
+}
@@ -0,0 +1,138 @@
+package de.lmu.ifi.nm.www;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * The longest-prefix match of PrefixTrie compared with a scan over all
+ * stored prefixes.
+ */
+public class PrefixTrieTest extends TestCase {
+
+	public void testExactAndLongestMatch() {
+		PrefixTrie<String> trie = new PrefixTrie<String>();
+		trie.put(IPv4.toInt("10.0.0.0"), 8, "a");
+		trie.put(IPv4.toInt("10.1.0.0"), 16, "b");
+		trie.put(IPv4.toInt("10.1.2.0"), 24, "c");
+		trie.put(IPv4.toInt("10.1.2.3"), 32, "d");
+
+		assertEquals(4, trie.size());
+		assertEquals("b", trie.get(IPv4.toInt("10.1.0.0"), 16));
+		assertNull(trie.get(IPv4.toInt("10.1.0.0"), 17));
+		assertEquals("d", trie.lookup(IPv4.toInt("10.1.2.3")));
+		assertEquals("c", trie.lookup(IPv4.toInt("10.1.2.4")));
+		assertEquals("c", trie.lookup(IPv4.toInt("10.1.2.3"), 31));
+		assertEquals("b", trie.lookup(IPv4.toInt("10.1.3.0")));
+		assertEquals("a", trie.lookup(IPv4.toInt("10.200.0.1")));
+		assertNull(trie.lookup(IPv4.toInt("11.0.0.0")));
+	}
+
+	public void testHostBitsIgnored() {
+		PrefixTrie<String> trie = new PrefixTrie<String>();
+		assertNull(trie.put(IPv4.toInt("10.1.2.3"), 24, "a"));
+		assertEquals("a", trie.put(IPv4.toInt("10.1.2.0"), 24, "b"));
+
+		assertEquals(1, trie.size());
+		assertEquals("b", trie.get(IPv4.toInt("10.1.2.255"), 24));
+		assertEquals("b", trie.remove(IPv4.toInt("10.1.2.77"), 24));
+		assertEquals(0, trie.size());
+	}
+
+	public void testDefaultRouteAndHostRoutes() {
+		PrefixTrie<String> trie = new PrefixTrie<String>();
+		trie.put(0, 0, "default");
+		trie.put(0, 32, "zero");
+		trie.put(-1, 32, "ones");
+
+		assertEquals("zero", trie.lookup(0));
+		assertEquals("ones", trie.lookup(-1));
+		assertEquals("default", trie.lookup(IPv4.toInt("128.0.0.0")));
+		assertEquals("default", trie.lookup(0, 31));
+		assertEquals("default", trie.remove(0, 0));
+		assertNull(trie.lookup(IPv4.toInt("128.0.0.0")));
+		assertEquals("ones", trie.lookup(-1));
+	}
+
+	public void testRemove() {
+		PrefixTrie<String> trie = new PrefixTrie<String>();
+		trie.put(IPv4.toInt("10.0.0.0"), 8, "a");
+		trie.put(IPv4.toInt("10.1.0.0"), 16, "b");
+		trie.put(IPv4.toInt("10.2.0.0"), 16, "c");
+
+		assertNull(trie.remove(IPv4.toInt("10.3.0.0"), 16));
+		assertNull(trie.remove(IPv4.toInt("10.0.0.0"), 15));
+		assertEquals("a", trie.remove(IPv4.toInt("10.0.0.0"), 8));
+		assertNull(trie.lookup(IPv4.toInt("10.3.0.0")));
+		assertEquals("b", trie.lookup(IPv4.toInt("10.1.0.1")));
+		assertEquals("c", trie.lookup(IPv4.toInt("10.2.0.1")));
+		assertEquals(2, trie.size());
+
+		trie.clear();
+		assertEquals(0, trie.size());
+		assertNull(trie.lookup(IPv4.toInt("10.1.0.1")));
+	}
+
+	public void testRandomPrefixes() {
+		Random random = new Random(7);
+		PrefixTrie<Integer> trie = new PrefixTrie<Integer>();
+		List<int[]> stored = new ArrayList<int[]>();
+
+		for (int step = 0; step < 3000; step++) {
+			// Few top bits make many prefixes nest and branch
+			int prefix = random.nextInt(4) << 30 | random.nextInt(16) << 22
+					| random.nextInt(1 << 22);
+			int length = random.nextInt(33);
+			prefix = IPv4.network(prefix, length);
+
+			if (random.nextInt(3) == 0 && !stored.isEmpty()) {
+				int[] removed = stored.remove(random.nextInt(stored.size()));
+				assertEquals(Integer.valueOf(removed[2]),
+						trie.remove(removed[0], removed[1]));
+			} else {
+				Integer old = trie.put(prefix, length, step);
+				int[] replaced = find(stored, prefix, length);
+				if (replaced == null) {
+					assertNull(old);
+				} else {
+					assertEquals(Integer.valueOf(replaced[2]), old);
+					stored.remove(replaced);
+				}
+				stored.add(new int[] { prefix, length, step });
+			}
+			assertEquals(stored.size(), trie.size());
+
+			for (int i = 0; i < 20; i++) {
+				int address = i % 2 == 0 ? random.nextInt() : stored.isEmpty() ? 0
+						: stored.get(random.nextInt(stored.size()))[0]
+								| random.nextInt(256);
+				int maxLength = random.nextInt(33);
+				assertEquals(scan(stored, address, 32), trie.lookup(address));
+				assertEquals(scan(stored, address, maxLength),
+						trie.lookup(address, maxLength));
+			}
+		}
+	}
+
+	private static int[] find(List<int[]> stored, int prefix, int length) {
+		for (int[] entry : stored) {
+			if (entry[0] == prefix && entry[1] == length) {
+				return entry;
+			}
+		}
+		return null;
+	}
+
+	private static Integer scan(List<int[]> stored, int address, int maxLength) {
+		int[] best = null;
+		for (int[] entry : stored) {
+			if (entry[1] <= maxLength && IPv4.contains(entry[0], entry[1], address)
+					&& (best == null || entry[1] > best[1])) {
+				best = entry;
+			}
+		}
+		return best == null ? null : Integer.valueOf(best[2]);
+	}
+}
@@ -0,0 +1,160 @@
+package de.lmu.ifi.nm.www;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.jgrapht.graph.DirectedWeightedMultigraph;
+
+/**
+ * Full and incremental TopologyDeltas sent through the wire format and
+ * applied to the graph of the receiver.
+ */
+public class TopologyDeltaTest extends TestCase {
+
+	public void testFullDelta() throws Exception {
+		DirectedWeightedMultigraph<Vertex, Link> graph = WireFormatTest
+				.createGraph(10);
+		TopologyDelta delta = createFullDelta(graph, 7);
+
+		TopologyDelta copy = (TopologyDelta) WireFormatTest.roundTrip(delta);
+
+		assertTrue(copy.isFull());
+		assertFalse(copy.isEmpty());
+		assertEquals(0, copy.getFromVersion());
+		assertEquals(7, copy.getToVersion());
+		assertEquals(graph.vertexSet().size(), copy.getVertices().size());
+		assertEquals(graph.edgeSet().size(), copy.getLinks().size());
+
+		DirectedWeightedMultigraph<Vertex, Link> received = new DirectedWeightedMultigraph<Vertex, Link>(
+				Link.class);
+		copy.applyTo(received);
+		WireFormatTest.assertGraph(graph, received);
+	}
+
+	public void testFullDeltaReplacesGraph() throws Exception {
+		DirectedWeightedMultigraph<Vertex, Link> received = WireFormatTest
+				.createGraph(10);
+		DirectedWeightedMultigraph<Vertex, Link> graph = WireFormatTest
+				.createGraph(4);
+
+		((TopologyDelta) WireFormatTest.roundTrip(createFullDelta(graph, 3)))
+				.applyTo(received);
+
+		WireFormatTest.assertGraph(graph, received);
+	}
+
+	public void testDelta() throws Exception {
+		DirectedWeightedMultigraph<Vertex, Link> graph = WireFormatTest
+				.createGraph(10);
+		DirectedWeightedMultigraph<Vertex, Link> received = new DirectedWeightedMultigraph<Vertex, Link>(
+				Link.class);
+		((TopologyDelta) WireFormatTest.roundTrip(createFullDelta(graph, 1)))
+				.applyTo(received);
+
+		TopologyDelta delta = new TopologyDelta(1, 2, false);
+		List<Vertex> vertices = new ArrayList<Vertex>(graph.vertexSet());
+
+		// Remove a vertex together with its links
+		Vertex removed = findVertex(graph, "R3");
+		for (Link link : new ArrayList<Link>(graph.edgesOf(removed))) {
+			delta.getRemovedLinks().add(
+					new TopologyDelta.LinkEntry(graph.getEdgeSource(link)
+							.getHostname(), link.getSourceIntPort(), graph
+							.getEdgeTarget(link).getHostname()));
+			graph.removeEdge(link);
+		}
+		delta.getRemovedVertices().add(removed.getHostname());
+		graph.removeVertex(removed);
+
+		// Change a vertex and a link
+		Vertex changed = findVertex(graph, "R5");
+		changed.setUpTime(42);
+		changed.setManagementIP("10.0.0.254");
+		delta.getVertices().add(changed);
+
+		Link down = graph.outgoingEdgesOf(changed).iterator().next();
+		down.setUp(false);
+		down.setTargetIPaddress("192.168.1.6");
+		delta.getLinks().add(
+				new TopologyDelta.LinkEntry(changed.getHostname(), graph
+						.getEdgeTarget(down).getHostname(), down, graph
+						.getEdgeWeight(down)));
+
+		// Add a vertex with a link to an existing one
+		Vertex added = WireFormatTest.createVertex("R10", "10.0.0.11");
+		Vertex neighbor = vertices.get(0);
+		Link link = new Link("GigabitEthernet0/1", "192.168.2.1",
+				"GigabitEthernet0/2", "192.168.2.2", "192.168.2.0", added,
+				neighbor);
+		graph.addVertex(added);
+		graph.addEdge(added, neighbor, link);
+		graph.setEdgeWeight(link, 3.25);
+		delta.getVertices().add(added);
+		delta.getLinks().add(
+				new TopologyDelta.LinkEntry(added.getHostname(), neighbor
+						.getHostname(), link, 3.25));
+
+		TopologyDelta copy = (TopologyDelta) WireFormatTest.roundTrip(delta);
+
+		assertFalse(copy.isFull());
+		assertFalse(copy.isEmpty());
+		assertEquals(1, copy.getFromVersion());
+		assertEquals(2, copy.getToVersion());
+		assertEquals(1, copy.getRemovedVertices().size());
+		assertEquals(4, copy.getRemovedLinks().size());
+		assertEquals(2, copy.getVertices().size());
+		assertEquals(2, copy.getLinks().size());
+
+		copy.applyTo(received);
+		WireFormatTest.assertGraph(graph, received);
+	}
+
+	public void testEmptyDelta() throws Exception {
+		TopologyDelta delta = new TopologyDelta(5, 5, false);
+
+		TopologyDelta copy = (TopologyDelta) WireFormatTest.roundTrip(delta);
+
+		assertTrue(copy.isEmpty());
+		assertEquals(5, copy.getFromVersion());
+		assertEquals(5, copy.getToVersion());
+	}
+
+	public void testVersionEdgeValues() throws Exception {
+		TopologyDelta delta = new TopologyDelta(Long.MIN_VALUE,
+				Long.MAX_VALUE, false);
+
+		TopologyDelta copy = (TopologyDelta) WireFormatTest.roundTrip(delta);
+
+		assertEquals(Long.MIN_VALUE, copy.getFromVersion());
+		assertEquals(Long.MAX_VALUE, copy.getToVersion());
+	}
+
+	/**
+	 * @return A full delta with all vertices and links of the graph.
+	 */
+	private static TopologyDelta createFullDelta(
+			DirectedWeightedMultigraph<Vertex, Link> graph, long version) {
+		TopologyDelta delta = new TopologyDelta(0, version, true);
+
+		delta.getVertices().addAll(graph.vertexSet());
+		for (Link link : graph.edgeSet()) {
+			delta.getLinks().add(
+					new TopologyDelta.LinkEntry(graph.getEdgeSource(link)
+							.getHostname(), graph.getEdgeTarget(link)
+							.getHostname(), link, graph.getEdgeWeight(link)));
+		}
+		return delta;
+	}
+
+	private static Vertex findVertex(
+			DirectedWeightedMultigraph<Vertex, Link> graph, String hostname) {
+		for (Vertex vertex : graph.vertexSet()) {
+			if (vertex.getHostname().equals(hostname)) {
+				return vertex;
+			}
+		}
+		return null;
+	}
+}
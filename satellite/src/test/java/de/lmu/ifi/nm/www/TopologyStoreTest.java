@@ -0,0 +1,66 @@
+package de.lmu.ifi.nm.www;
+
+import junit.framework.TestCase;
+
+import org.jgrapht.graph.DirectedWeightedMultigraph;
+
+/**
+ * Links added to and removed from the TopologyStore by network events.
+ */
+public class TopologyStoreTest extends TestCase {
+	private static final String FIRST = "GigabitEthernet0/1";
+	private static final String SECOND = "GigabitEthernet0/2";
+
+	private TopologyStore store;
+
+	@Override
+	protected void setUp() throws Exception {
+		store = new TopologyStore(new DirectedWeightedMultigraph<Vertex, Link>(
+				Link.class));
+		store.addVertex(WireFormatTest.createVertex("R1", "10.0.0.1"));
+		store.addVertex(WireFormatTest.createVertex("R2", "10.0.0.2"));
+		store.addVertex(WireFormatTest.createVertex("R3", "10.0.0.3"));
+	}
+
+	public void testParallelLinks() {
+		assertTrue(store.addLink("R1", FIRST, "192.168.1.1", "R2", FIRST,
+				"192.168.1.2"));
+		assertTrue(store.addLink("R1", SECOND, "192.168.2.1", "R2", SECOND,
+				"192.168.2.2"));
+		assertFalse(store.addLink("R1", FIRST, "192.168.1.1", "R2", FIRST,
+				"192.168.1.2"));
+		assertEquals(2, store.getLinkCount());
+
+		// The other link stays when one of them goes away
+		assertTrue(store.removeLink("R1", FIRST, "R2"));
+		assertEquals(1, store.getLinkCount());
+		assertEquals(SECOND, store.getGraph().getAllEdges(
+				store.getVertex("R1"), store.getVertex("R2")).iterator()
+				.next().getSourceIntPort());
+		assertFalse(store.removeLink("R1", FIRST, "R2"));
+
+		assertTrue(store.addLink("R1", FIRST, "192.168.1.1", "R2", FIRST,
+				"192.168.1.2"));
+		assertEquals(2, store.getLinkCount());
+	}
+
+	public void testInterfaceToAnotherNeighbor() {
+		assertTrue(store.addLink("R1", FIRST, "192.168.1.1", "R2", FIRST,
+				"192.168.1.2"));
+		long version = store.getVersion();
+
+		assertTrue(store.addLink("R1", FIRST, "192.168.1.1", "R3", FIRST,
+				"192.168.1.3"));
+
+		assertEquals(1, store.getLinkCount());
+		assertTrue(store.getGraph().getAllEdges(store.getVertex("R1"),
+				store.getVertex("R2")).isEmpty());
+		assertEquals(1, store.getDelta(version).getRemovedLinks().size());
+	}
+
+	public void testUnknownVertex() {
+		assertFalse(store.addLink("R1", FIRST, "192.168.1.1", "R4", FIRST,
+				"192.168.1.4"));
+		assertEquals(0, store.getLinkCount());
+	}
+}
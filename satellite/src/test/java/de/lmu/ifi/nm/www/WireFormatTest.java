@@ -0,0 +1,417 @@
+package de.lmu.ifi.nm.www;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.jgrapht.graph.DirectedWeightedMultigraph;
+
+/**
+ * Round trips through the compact wire format of Vertex and Link.
+ */
+public class WireFormatTest extends TestCase {
+
+	public void testVarIntRoundTrip() throws IOException {
+		int[] values = { 0, 1, 127, 128, 16383, 16384, -1, -128,
+				Integer.MIN_VALUE, Integer.MAX_VALUE };
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		for (int value : values) {
+			WireFormat.writeVarInt(out, value);
+		}
+
+		DataInputStream in = input(bytes);
+		for (int value : values) {
+			assertEquals(value, WireFormat.readVarInt(in));
+		}
+		assertEquals(0, in.available());
+	}
+
+	public void testVarLongRoundTrip() throws IOException {
+		long[] values = { 0, 1, 127, 128, -1, Integer.MIN_VALUE,
+				Integer.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE };
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		for (long value : values) {
+			WireFormat.writeVarLong(out, value);
+		}
+
+		DataInputStream in = input(bytes);
+		for (long value : values) {
+			assertEquals(value, WireFormat.readVarLong(in));
+		}
+		assertEquals(0, in.available());
+	}
+
+	public void testVarIntLength() throws IOException {
+		assertEquals(1, varIntLength(0));
+		assertEquals(1, varIntLength(127));
+		assertEquals(2, varIntLength(128));
+		assertEquals(5, varIntLength(Integer.MAX_VALUE));
+		assertEquals(5, varIntLength(-1));
+	}
+
+	public void testMalformedVarInt() throws IOException {
+		byte[] bytes = new byte[6];
+		java.util.Arrays.fill(bytes, (byte) 0xFF);
+
+		try {
+			WireFormat.readVarInt(new DataInputStream(new ByteArrayInputStream(
+					bytes)));
+			fail("Malformed varint has been read.");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	public void testStringTable() throws IOException {
+		String longString = repeat('x', 300);
+		String[] values = { "GigabitEthernet0/1", null, "GigabitEthernet0/1",
+				"", longString, "FastEthernet1/0", longString, "",
+				"GigabitEthernet0/1", "\u00fcber" };
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		WireFormat.StringTable writeTable = new WireFormat.StringTable();
+		for (String value : values) {
+			WireFormat.writeString(out, value, writeTable);
+		}
+
+		DataInputStream in = input(bytes);
+		WireFormat.StringTable readTable = new WireFormat.StringTable();
+		for (String value : values) {
+			assertEquals(value, WireFormat.readString(in, readTable));
+		}
+		assertEquals(0, in.available());
+	}
+
+	public void testRepeatedStringIsReference() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		WireFormat.StringTable table = new WireFormat.StringTable();
+
+		WireFormat.writeString(out, "GigabitEthernet0/1", table);
+		int first = bytes.size();
+		WireFormat.writeString(out, "GigabitEthernet0/1", table);
+
+		assertEquals(1, bytes.size() - first);
+	}
+
+	public void testUnknownStringReference() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		WireFormat.writeVarInt(new DataOutputStream(bytes), 7);
+
+		try {
+			WireFormat.readString(input(bytes), new WireFormat.StringTable());
+			fail("Unknown string reference has been read.");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	public void testAddressRoundTrip() throws IOException {
+		String[] values = { "10.0.0.1", null, "0.0.0.0", "255.255.255.255",
+				"router.example.org", "10.0.0.1" };
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		WireFormat.StringTable writeTable = new WireFormat.StringTable();
+		for (String value : values) {
+			WireFormat.writeAddress(out, value, writeTable);
+		}
+
+		DataInputStream in = input(bytes);
+		WireFormat.StringTable readTable = new WireFormat.StringTable();
+		for (String value : values) {
+			assertEquals(value, WireFormat.readAddress(in, readTable));
+		}
+		assertEquals(0, in.available());
+	}
+
+	public void testVertexRoundTrip() throws Exception {
+		Vertex vertex = createVertex("R1", "10.0.0.1");
+		vertex.setUserName("cisco");
+		vertex.setPassword("secret");
+
+		Vertex copy = (Vertex) roundTrip(vertex);
+
+		assertVertex(vertex, copy);
+		assertNull(copy.getUserName());
+		assertNull(copy.getPassword());
+	}
+
+	public void testVertexWithoutInterfaces() throws Exception {
+		Vertex vertex = new Vertex(null, null, null, null, 0, "R1",
+				null, 0, 0);
+
+		Vertex copy = (Vertex) roundTrip(vertex);
+
+		assertEquals("R1", copy.getHostname());
+		assertNull(copy.getUniqueIdentifier());
+		assertNull(copy.getManagementIP());
+		assertNull(copy.getInterfaceHash());
+	}
+
+	public void testVertexNegativeUpTime() throws Exception {
+		Vertex vertex = createVertex("R1", "10.0.0.1");
+		vertex.setUpTime(-1);
+
+		assertEquals(0, ((Vertex) roundTrip(vertex)).getUpTime());
+	}
+
+	public void testLinkRoundTrip() throws Exception {
+		Vertex source = createVertex("R1", "10.0.0.1");
+		Vertex target = createVertex("R2", "10.0.0.2");
+		Link link = new Link("GigabitEthernet0/1", "192.168.1.1",
+				"GigabitEthernet0/2", "192.168.1.2", "192.168.1.0", source,
+				target);
+		link.setMetricFeedRelation("delay", "feed-1");
+		link.setMetricFeedRelation("load", null);
+		link.setUp(false);
+
+		Link copy = (Link) roundTrip(link);
+
+		assertLink(link, copy);
+	}
+
+	public void testLinkWithoutFeeds() throws Exception {
+		Link link = new Link("Gi0/1", "Gi0/2");
+
+		Link copy = (Link) roundTrip(link);
+
+		assertEquals("Gi0/1", copy.getSourceIntPort());
+		assertEquals("Gi0/2", copy.getTargetIntPort());
+		assertNull(copy.getSourceIPaddress());
+		assertNull(copy.getMetricFeedRelation());
+	}
+
+	public void testGraphRoundTrip() throws Exception {
+		DirectedWeightedMultigraph<Vertex, Link> graph = createGraph(20);
+
+		@SuppressWarnings("unchecked")
+		DirectedWeightedMultigraph<Vertex, Link> copy = (DirectedWeightedMultigraph<Vertex, Link>) roundTrip(graph);
+
+		assertGraph(graph, copy);
+	}
+
+	public void testStringTableAcrossObjects() throws Exception {
+		List<Vertex> vertices = new ArrayList<Vertex>();
+		for (int i = 0; i < 50; i++) {
+			vertices.add(createVertex("R" + i, "10.0.0." + (i + 1)));
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+
+		// Write the class descriptor ahead with a vertex without strings
+		out.writeObject(new Vertex(null, null, null, null, 0, null,
+				null, 0, 0));
+		int[] sizes = new int[vertices.size()];
+		for (int i = 0; i < vertices.size(); i++) {
+			out.flush();
+			int start = bytes.size();
+			out.writeObject(vertices.get(i));
+			out.flush();
+			sizes[i] = bytes.size() - start;
+		}
+		out.close();
+
+		// The interface names are written once for all vertices, then
+		// referenced with a single byte each
+		int shared = "GigabitEthernet0/1".length()
+				+ "GigabitEthernet0/2".length();
+		for (int i = 1; i < sizes.length; i++) {
+			assertTrue(sizes[0] - sizes[i] >= shared);
+		}
+
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(
+				bytes.toByteArray()));
+		assertNull(((Vertex) in.readObject()).getHostname());
+		for (Vertex vertex : vertices) {
+			assertVertex(vertex, (Vertex) in.readObject());
+		}
+		in.close();
+	}
+
+	public void testStringTablePerStream() throws Exception {
+		Vertex vertex = createVertex("R1", "10.0.0.1");
+
+		// A second stream must not refer to the strings of the first one
+		assertVertex(vertex, (Vertex) roundTrip(vertex));
+		assertVertex(vertex, (Vertex) roundTrip(vertex));
+	}
+
+	/**
+	 * @param hostname
+	 *            - The name of the vertex.
+	 * @param managementIP
+	 *            - The management IP-Address of the vertex.
+	 * @return A vertex with two interfaces.
+	 */
+	static Vertex createVertex(String hostname, String managementIP)
+			throws IOException {
+		HashMap<String, List<NetworkPrefix>> interfaceHash = new HashMap<String, List<NetworkPrefix>>();
+		List<NetworkPrefix> first = new ArrayList<NetworkPrefix>();
+		first.add(new NetworkPrefix(InetAddress.getByName(managementIP), 24));
+		first.add(new NetworkPrefix(InetAddress.getByName("192.168.1.1"), 30));
+		interfaceHash.put("GigabitEthernet0/1", first);
+		interfaceHash.put("GigabitEthernet0/2", new ArrayList<NetworkPrefix>());
+
+		return new Vertex("FTX" + hostname, null, null, interfaceHash,
+				123456789L, hostname, managementIP, 48.15, 11.58);
+	}
+
+	/**
+	 * @param size
+	 *            - The number of vertices.
+	 * @return A ring of vertices with links in both directions.
+	 */
+	static DirectedWeightedMultigraph<Vertex, Link> createGraph(int size)
+			throws IOException {
+		DirectedWeightedMultigraph<Vertex, Link> graph = new DirectedWeightedMultigraph<Vertex, Link>(
+				Link.class);
+		List<Vertex> vertices = new ArrayList<Vertex>();
+
+		for (int i = 0; i < size; i++) {
+			Vertex vertex = createVertex("R" + i, "10.0.0." + (i + 1));
+			vertices.add(vertex);
+			graph.addVertex(vertex);
+		}
+		for (int i = 0; i < size; i++) {
+			Vertex source = vertices.get(i);
+			Vertex target = vertices.get((i + 1) % size);
+			Link forward = new Link("GigabitEthernet0/1", "192.168.1.1",
+					"GigabitEthernet0/2", "192.168.1.2", "192.168.1.0",
+					source, target);
+			Link backward = new Link("GigabitEthernet0/2", "192.168.1.2",
+					"GigabitEthernet0/1", "192.168.1.1", "192.168.1.0",
+					target, source);
+			graph.addEdge(source, target, forward);
+			graph.addEdge(target, source, backward);
+			graph.setEdgeWeight(forward, i);
+			graph.setEdgeWeight(backward, i + 0.5);
+		}
+		return graph;
+	}
+
+	/**
+	 * Serialize and deserialize an object in one stream each.
+	 */
+	static Object roundTrip(Object object) throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(object);
+		out.close();
+
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(
+				bytes.toByteArray()));
+		try {
+			return in.readObject();
+		} finally {
+			in.close();
+		}
+	}
+
+	static void assertVertex(Vertex expected, Vertex actual) {
+		assertEquals(expected.getHostname(), actual.getHostname());
+		assertEquals(expected.getUniqueIdentifier(),
+				actual.getUniqueIdentifier());
+		assertEquals(expected.getManagementIP(), actual.getManagementIP());
+		assertEquals(expected.getUpTime(), actual.getUpTime());
+		assertEquals(expected.getLatitude(), actual.getLatitude(), 0);
+		assertEquals(expected.getLongitude(), actual.getLongitude(), 0);
+		assertEquals(expected.getInterfaceHash().keySet(), actual
+				.getInterfaceHash().keySet());
+
+		for (String name : expected.getInterfaceHash().keySet()) {
+			List<NetworkPrefix> expectedPrefixes = expected.getInterfaceHash()
+					.get(name);
+			List<NetworkPrefix> actualPrefixes = actual.getInterfaceHash().get(
+					name);
+			assertEquals(expectedPrefixes.size(), actualPrefixes.size());
+			for (int i = 0; i < expectedPrefixes.size(); i++) {
+				assertEquals(expectedPrefixes.get(i).getAddress(),
+						actualPrefixes.get(i).getAddress());
+				assertEquals(expectedPrefixes.get(i).getPrefixLen(),
+						actualPrefixes.get(i).getPrefixLen());
+			}
+		}
+	}
+
+	static void assertLink(Link expected, Link actual) {
+		assertEquals(expected.getSourceIntPort(), actual.getSourceIntPort());
+		assertEquals(expected.getTargetIntPort(), actual.getTargetIntPort());
+		assertEquals(expected.getSourceIPaddress(),
+				actual.getSourceIPaddress());
+		assertEquals(expected.getTargetIPaddress(),
+				actual.getTargetIPaddress());
+		assertEquals(expected.getSubnetAddress(), actual.getSubnetAddress());
+		assertEquals(expected.getSubnetPrefix(), actual.getSubnetPrefix());
+		assertEquals(expected.isUp(), actual.isUp());
+		assertEquals(expected.getMetricFeedRelation(),
+				actual.getMetricFeedRelation());
+	}
+
+	static void assertGraph(DirectedWeightedMultigraph<Vertex, Link> expected,
+			DirectedWeightedMultigraph<Vertex, Link> actual) {
+		HashMap<String, Vertex> vertices = new HashMap<String, Vertex>();
+		for (Vertex vertex : actual.vertexSet()) {
+			vertices.put(vertex.getHostname(), vertex);
+		}
+		assertEquals(expected.vertexSet().size(), vertices.size());
+		assertEquals(expected.edgeSet().size(), actual.edgeSet().size());
+
+		for (Vertex vertex : expected.vertexSet()) {
+			assertVertex(vertex, vertices.get(vertex.getHostname()));
+		}
+
+		for (Link link : expected.edgeSet()) {
+			Vertex source = vertices.get(expected.getEdgeSource(link)
+					.getHostname());
+			Vertex target = vertices.get(expected.getEdgeTarget(link)
+					.getHostname());
+			Link match = null;
+			for (Link candidate : actual.getAllEdges(source, target)) {
+				if (candidate.getSourceIntPort().equals(
+						link.getSourceIntPort())) {
+					match = candidate;
+				}
+			}
+			assertNotNull("Missing link " + link, match);
+			assertLink(link, match);
+			assertEquals(expected.getEdgeWeight(link),
+					actual.getEdgeWeight(match), 0);
+		}
+	}
+
+	private static DataInputStream input(ByteArrayOutputStream bytes) {
+		return new DataInputStream(new ByteArrayInputStream(
+				bytes.toByteArray()));
+	}
+
+	private static int varIntLength(int value) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		WireFormat.writeVarInt(new DataOutputStream(bytes), value);
+		return bytes.size();
+	}
+
+	private static String repeat(char c, int count) {
+		StringBuilder builder = new StringBuilder(count);
+		for (int i = 0; i < count; i++) {
+			builder.append(c);
+		}
+		return builder.toString();
+	}
+}
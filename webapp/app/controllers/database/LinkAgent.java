@@ -117,4 +117,54 @@ public class LinkAgent extends Controller {
 
         return metricFeedRel;
     }
+
+    /**
+     * Get the metric-feed relations of all links with one query, for the link
+     * costs of a whole topology.
+     * 
+     * @return the relations like getMetricFeed() returns them, by the key of
+     *         the link, see getLinkKey()
+     */
+    public static HashMap<String, HashMap<String, String>> getMetricFeeds() {
+        HashMap<String, HashMap<String, String>> metricFeedRels = new HashMap<String, HashMap<String, String>>();
+
+        for (Link currentLink : Link.getFind().all()) {
+            String key = getLinkKey(currentLink.getSourceInterface(),
+                    currentLink.getSourceIP(),
+                    currentLink.getTargetInterface(),
+                    currentLink.getTargetIP(), currentLink.getSubnet());
+            HashMap<String, String> metricFeedRel = metricFeedRels.get(key);
+            if (metricFeedRel == null) {
+                metricFeedRel = new HashMap<String, String>();
+                metricFeedRels.put(key, metricFeedRel);
+            }
+            metricFeedRel.put(currentLink.getMetric().getName(), currentLink
+                    .getFeed().getName());
+        }
+
+        Logger.debug("Metric-feed relations of " + metricFeedRels.size()
+                + " links read");
+        return metricFeedRels;
+    }
+
+    /**
+     * @param l
+     *            the link of the topology
+     * @return the key of its relations in getMetricFeeds()
+     */
+    public static String getLinkKey(de.lmu.ifi.nm.www.Link l) {
+        return getLinkKey(l.getSourceIntPort(), l.getSourceIPaddress(),
+                l.getTargetIntPort(), l.getTargetIPaddress(),
+                l.getSubnetAddress());
+    }
+
+    /**
+     * @return the columns identifying a link, joined to one string
+     */
+    private static String getLinkKey(final String sourceInterface,
+            final String sourceIP, final String targetInterface,
+            final String targetIP, final String subnet) {
+        return sourceInterface + "|" + sourceIP + "|" + targetInterface + "|"
+                + targetIP + "|" + subnet;
+    }
 }
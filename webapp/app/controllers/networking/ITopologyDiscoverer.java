@@ -2,6 +2,7 @@ package controllers.networking;
 
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.util.List;
 
 /**
  * Java RMI Interface for the TopologyDiscoverer class.
@@ -51,4 +52,19 @@ public interface ITopologyDiscoverer extends Remote {
      */
 	public void receiveEvent(String userName, String message)
 			throws RemoteException;
+
+    /**
+     * Receive a batch of coalesced network events.
+     *
+     * @param userName
+     *            - The name of the client who has sent the events.
+     * @param events
+     *            - The events in the order they first occurred.
+     * @throws RemoteException
+     *             A RemoteException is the common superclass for a number of
+     *             communication-related exceptions that may occur during the
+     *             execution of a remote method call.
+     */
+    public void receiveEvents(String userName, List<NetworkEvent> events)
+            throws RemoteException;
 }
\ No newline at end of file
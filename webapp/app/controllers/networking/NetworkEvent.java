@@ -0,0 +1,149 @@
+package controllers.networking;
+
+import java.io.Serializable;
+
+/**
+ * A change of the network reported by a Satellite with
+ * ITopologyDiscoverer.receiveEvents().
+ *
+ * The Satellite coalesces events concerning the same link or interface that
+ * occur within a short window: only the latest type and detail are kept and
+ * 'count' tells how many events have been merged. An interface that flaps ten
+ * times is therefore reported once, with its final state.
+ */
+public class NetworkEvent implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The kinds of events. Events of the same subject replace each other when
+     * they are coalesced.
+     */
+    public enum Type {
+        LINK_ADDED("link"), LINK_REMOVED("link"), INTERFACE_UP("interface"), INTERFACE_DOWN(
+                "interface");
+
+        private final String subject;
+
+        private Type(String subject) {
+            this.subject = subject;
+        }
+
+        /**
+         * @return What the event is about, e.g. "link" or "interface".
+         */
+        public String getSubject() {
+            return subject;
+        }
+    }
+
+    private Type type = null;
+    private String hostname = null;
+    private String interfaceName = null;
+    private String detail = null;
+    private long firstTime = 0;
+    private long lastTime = 0;
+    private int count = 1;
+
+    /**
+     * @param type
+     *            - The kind of event.
+     * @param hostname
+     *            - The host name of the network element.
+     * @param interfaceName
+     *            - The name of the interface concerned.
+     * @param detail
+     *            - Further information, e.g. the host name of the neighbor
+     *            of a link.
+     */
+    public NetworkEvent(Type type, String hostname, String interfaceName,
+            String detail) {
+        this.type = type;
+        this.hostname = hostname;
+        this.interfaceName = interfaceName;
+        this.detail = detail;
+        this.firstTime = System.currentTimeMillis();
+        this.lastTime = firstTime;
+    }
+
+    /**
+     * @return The key of the link or interface the event is about. Events with
+     *         the same key are coalesced.
+     */
+    public String getKey() {
+        return type.getSubject() + "|" + hostname + "|" + interfaceName;
+    }
+
+    /**
+     * Merge a later event with the same key into this one.
+     *
+     * @param later
+     *            - The later event.
+     */
+    public void coalesce(NetworkEvent later) {
+        type = later.type;
+        detail = later.detail;
+        lastTime = later.lastTime;
+        count += later.count;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return type + " " + hostname + " " + interfaceName
+                + (detail == null ? "" : " " + detail)
+                + (count > 1 ? " (" + count + " events)" : "");
+    }
+
+    /**
+     * @return The kind of the latest event.
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return The host name of the network element.
+     */
+    public String getHostname() {
+        return hostname;
+    }
+
+    /**
+     * @return The name of the interface concerned.
+     */
+    public String getInterfaceName() {
+        return interfaceName;
+    }
+
+    /**
+     * @return Further information of the latest event.
+     */
+    public String getDetail() {
+        return detail;
+    }
+
+    /**
+     * @return The time of the first merged event in milliseconds.
+     */
+    public long getFirstTime() {
+        return firstTime;
+    }
+
+    /**
+     * @return The time of the latest merged event in milliseconds.
+     */
+    public long getLastTime() {
+        return lastTime;
+    }
+
+    /**
+     * @return The number of merged events.
+     */
+    public int getCount() {
+        return count;
+    }
+}
@@ -9,16 +9,28 @@ import java.rmi.registry.Registry;
 import java.rmi.server.RemoteServer;
 import java.rmi.server.UnicastRemoteObject;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
+import org.apache.thrift.transport.TTransportException;
+import org.jgrapht.Graphs;
 import org.jgrapht.graph.DirectedWeightedMultigraph;
 
+import de.lmu.ifi.nm.www.InterfaceIndex;
 import de.lmu.ifi.nm.www.Link;
 import de.lmu.ifi.nm.www.Vertex;
 import de.lmu.ifi.nm.www.ISatellite;
+import de.lmu.ifi.nm.www.RouteRequest;
+import de.lmu.ifi.nm.www.ThriftServer;
+import de.lmu.ifi.nm.www.TopologyChunk;
+import de.lmu.ifi.nm.www.TopologyDelta;
 
+import play.Configuration;
 import play.Logger;
+import play.Play;
 
 /**
  * The TopologyDiscoverer offers functions for
@@ -33,7 +45,8 @@ import play.Logger;
  *              MyLogic.dowork()                    receiveEvent()
  *              <---------------                    <-------------
  *
- * The TopologyDiscoverer can handle multiple Satellites.
+ * The TopologyDiscoverer can handle multiple Satellites. Besides RMI it can
+ * offer the same operations as a Thrift service, see startThriftServer().
  *
  * @author Dawin Schmidt, dawin.schmidt@lmu.de
  * @since October 2, 2013
@@ -42,6 +55,8 @@ public class TopologyDiscoverer implements ITopologyDiscoverer {
 
     private static final String TOPODIS_IP = "localhost";
     private static final int TOPODIS_PORT = 1100;
+    private static final int ROUTING_TABLE_PAGE_SIZE = 500;
+    private static final int TOPOLOGY_CHUNK_SIZE = 1000;
 
     // Graph object for storing the network topology
     private DirectedWeightedMultigraph<Vertex, Link> myGraph = null;
@@ -49,6 +64,24 @@ public class TopologyDiscoverer implements ITopologyDiscoverer {
     // List for storing Satellites
     private List<ISatellite> satellites = new ArrayList<ISatellite>();
 
+    // Topology graph and its version for every Satellite
+    private Map<ISatellite, DirectedWeightedMultigraph<Vertex, Link>> satelliteGraphs = new HashMap<ISatellite, DirectedWeightedMultigraph<Vertex, Link>>();
+    private Map<ISatellite, Long> topologyVersions = new HashMap<ISatellite, Long>();
+
+    // Interface addresses of every Satellite's network elements
+    private Map<ISatellite, InterfaceIndex> satelliteInterfaces = new HashMap<ISatellite, InterfaceIndex>();
+
+    // The Satellite managing a network element, by host name
+    private Map<String, ISatellite> hostSatellites = new HashMap<String, ISatellite>();
+
+    // Guards the list of Satellites and everything kept for them. A graph
+    // handed out by getTopology() is never changed afterwards, deltas are
+    // applied to a copy that replaces it
+    private final Object topologyLock = new Object();
+
+    // Thrift transport, only started if configured
+    private ThriftServer myThriftServer = null;
+
     public TopologyDiscoverer() {
         myGraph = new DirectedWeightedMultigraph<Vertex, Link>(Link.class);
 
@@ -79,6 +112,38 @@ public class TopologyDiscoverer implements ITopologyDiscoverer {
         } catch (RemoteException e) {
             e.printStackTrace();
         }
+
+        startThriftServer();
+    }
+
+    /**
+     * Offers the TopologyDiscoverer as Thrift service in addition to RMI if
+     * 'topodis.thriftPort' is configured. Satellites configured with
+     * transport=thrift connect to this port.
+     */
+    private void startThriftServer() {
+        Configuration configuration = Play.application().configuration();
+        Integer port = configuration.getInt("topodis.thriftPort");
+        if (port == null || port <= 0) {
+            return;
+        }
+
+        String address = configuration.getString("topodis.thriftAddress");
+        Long timeout = configuration.getMilliseconds("topodis.thriftTimeout");
+        Integer workers = configuration.getInt("topodis.thriftWorkers");
+
+        try {
+            myThriftServer = new ThriftServer(address == null ? TOPODIS_IP
+                    : address, port, new TopologyDiscovererThriftService(this,
+                    timeout == null ? 60000 : timeout), workers == null ? 4
+                    : workers);
+            myThriftServer.start();
+            Logger.info("TopologyDiscoverer listening for Thrift on port "
+                    + port + ".");
+        } catch (TTransportException e) {
+            Logger.error("Could not start the Thrift server on port " + port,
+                    e);
+        }
     }
 
     /**
@@ -102,8 +167,7 @@ public class TopologyDiscoverer implements ITopologyDiscoverer {
         try {
             ISatellite satellite = (ISatellite) Naming.lookup("//"
                     + satelliteIP + ":" + satPort + "/" + satName);
-            satellites.add(satellite);
-            Logger.debug("Satellite " + "'" + satName + "'" + " connected.");
+            addSatellite(satellite, satName);
         } catch (MalformedURLException e) {
             e.printStackTrace();
         } catch (NotBoundException e) {
@@ -131,10 +195,7 @@ public class TopologyDiscoverer implements ITopologyDiscoverer {
         try {
             ISatellite satellite = (ISatellite) Naming.lookup("//"
                     + satelliteIP + ":" + satPort + "/" + satName);
-            satellites.remove(satellite);
-            Logger.debug("Removed satellite " + "'" + satName + "'"
-                    + " from ArrayList.");
-            Logger.debug("Remaining satellites: " + satellites.toString() + ".");
+            removeSatellite(satellite, satName);
         } catch (MalformedURLException e) {
             e.printStackTrace();
         } catch (NotBoundException e) {
@@ -142,6 +203,55 @@ public class TopologyDiscoverer implements ITopologyDiscoverer {
         }
     }
 
+    /**
+     * Adds a connected Satellite to the ArrayList 'satellites', no matter
+     * whether it is reached through RMI or Thrift.
+     *
+     * @param satellite
+     *            - The remote Satellite.
+     * @param satName
+     *            - The name of the Satellite.
+     */
+    public void addSatellite(ISatellite satellite, String satName) {
+        synchronized (topologyLock) {
+            satellites.add(satellite);
+        }
+        Logger.debug("Satellite " + "'" + satName + "'" + " connected.");
+    }
+
+    /**
+     * Removes a Satellite and everything kept for it.
+     *
+     * @param satellite
+     *            - The remote Satellite.
+     * @param satName
+     *            - The name of the Satellite.
+     */
+    public void removeSatellite(ISatellite satellite, String satName) {
+        synchronized (topologyLock) {
+            forgetSatellite(satellite);
+            Logger.debug("Removed satellite " + "'" + satName + "'"
+                    + " from ArrayList.");
+            Logger.debug("Remaining satellites: " + satellites.toString()
+                    + ".");
+        }
+    }
+
+    /**
+     * Removes a Satellite together with its topology. The caller holds
+     * topologyLock.
+     *
+     * @param satellite
+     *            - The remote Satellite.
+     */
+    private void forgetSatellite(ISatellite satellite) {
+        satellites.remove(satellite);
+        satelliteGraphs.remove(satellite);
+        topologyVersions.remove(satellite);
+        satelliteInterfaces.remove(satellite);
+        hostSatellites.values().removeAll(Collections.singleton(satellite));
+    }
+
     /**
      * Satellites call this RMI method when an error has occurred on the
      * network.
@@ -159,9 +269,33 @@ public class TopologyDiscoverer implements ITopologyDiscoverer {
         Logger.info("\n Received event from " + satName + ": \n" + message);
     }
 
+    /**
+     * Satellites call this RMI method with the network events that have
+     * occurred since the last batch.
+     *
+     * @param satName
+     *            - The name of the Satellite who has sent the events.
+     * @param events
+     *            - The coalesced events.
+     * @throws RemoteException
+     *             A RemoteException is the common superclass for a number of
+     *             communication-related exceptions that may occur during the
+     *             execution of a remote method call.
+     */
+    public void receiveEvents(String satName, List<NetworkEvent> events)
+            throws RemoteException {
+        Logger.info("Received " + events.size() + " events from " + satName
+                + ".");
+        for (NetworkEvent event : events) {
+            Logger.debug(satName + ": " + event);
+        }
+    }
+
     /**
      * Gets the global network topology by calling the remote procedure
-     * getTopology() for every Satellite stored in the list.
+     * getTopologyDelta() for every Satellite stored in the list. Only the
+     * changes since the last call are transferred and applied to the graph
+     * kept for the Satellite.
      *
      * @return The global topology of the network.
      * @throws RemoteException
@@ -169,14 +303,231 @@ public class TopologyDiscoverer implements ITopologyDiscoverer {
      *             communication-related exceptions that may occur during the
      *             execution of a remote method call.
      */
-    @SuppressWarnings("unchecked")
     public DirectedWeightedMultigraph<Vertex, Link> getTopology()
             throws RemoteException {
-        Logger.info(satellites.toString());
+        return getTopology(false);
+    }
+
+    /**
+     * Gets the global network topology like getTopology().
+     *
+     * @param allowStale
+     *            - True to take the topology the Satellites know right now
+     *            without waiting for a running discovery, e.g. for the GUI.
+     * @return The global topology of the network.
+     * @throws RemoteException
+     *             A RemoteException is the common superclass for a number of
+     *             communication-related exceptions that may occur during the
+     *             execution of a remote method call.
+     */
+    public DirectedWeightedMultigraph<Vertex, Link> getTopology(
+            boolean allowStale) throws RemoteException {
+        synchronized (topologyLock) {
+            Logger.info(satellites.toString());
+            for (ISatellite sat : satellites) {
+                myGraph = updateTopology(sat, allowStale);
+                return myGraph;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Fetches the changes of a Satellite's topology since the version seen
+     * last and applies them to the graph kept for the Satellite. The changes
+     * are streamed in chunks of TOPOLOGY_CHUNK_SIZE vertices and links and
+     * applied as they arrive.
+     *
+     * A delta is applied to a copy of the graph, so callers still working on
+     * the graph returned last never see it change. The caller holds
+     * topologyLock.
+     *
+     * @param sat
+     *            - The Satellite to ask.
+     * @param allowStale
+     *            - True to not wait for a running discovery.
+     * @return The up to date topology graph of the Satellite.
+     * @throws RemoteException
+     *             A RemoteException is the common superclass for a number of
+     *             communication-related exceptions that may occur during the
+     *             execution of a remote method call.
+     */
+    private DirectedWeightedMultigraph<Vertex, Link> updateTopology(
+            ISatellite sat, boolean allowStale) throws RemoteException {
+        DirectedWeightedMultigraph<Vertex, Link> graph = satelliteGraphs
+                .get(sat);
+        InterfaceIndex interfaces = satelliteInterfaces.get(sat);
+        Long version = topologyVersions.get(sat);
+
+        if (graph == null) {
+            graph = new DirectedWeightedMultigraph<Vertex, Link>(Link.class);
+            satelliteGraphs.put(sat, graph);
+        }
+        if (interfaces == null) {
+            interfaces = new InterfaceIndex();
+            satelliteInterfaces.put(sat, interfaces);
+        }
+
+        TopologyChunk chunk = sat.openTopologyStream(version == null ? 0
+                : version, allowStale, TOPOLOGY_CHUNK_SIZE);
+
+        // A full stream is assembled aside, a delta is applied to a copy.
+        // Either way the old graph stays intact
+        DirectedWeightedMultigraph<Vertex, Link> target = graph;
+        InterfaceIndex targetInterfaces = interfaces;
+        if (chunk.isFull()) {
+            target = new DirectedWeightedMultigraph<Vertex, Link>(Link.class);
+            targetInterfaces = new InterfaceIndex();
+        } else if (!chunk.isLast() || !chunk.getDelta().isEmpty()) {
+            target = new DirectedWeightedMultigraph<Vertex, Link>(Link.class);
+            Graphs.addGraph(target, graph);
+        }
+
+        Map<String, Vertex> vertexMap = new HashMap<String, Vertex>();
+        for (Vertex vertex : target.vertexSet()) {
+            vertexMap.put(vertex.getHostname(), vertex);
+        }
+
+        // Host names are only taken over once the whole stream has arrived,
+        // true for an added and false for a removed network element
+        Map<String, Boolean> hostChanges = new HashMap<String, Boolean>();
+
+        int chunks = 0;
+        while (true) {
+            TopologyDelta delta = chunk.getDelta();
+            delta.applyTo(target, vertexMap);
+            for (String hostname : delta.getRemovedVertices()) {
+                targetInterfaces.remove(hostname);
+                hostChanges.put(hostname, false);
+            }
+            for (Vertex vertex : delta.getVertices()) {
+                targetInterfaces.put(vertex);
+                hostChanges.put(vertex.getHostname(), true);
+            }
+            chunks++;
+
+            if (chunk.isLast()) {
+                break;
+            }
+            chunk = sat.nextTopologyChunk(chunk.getStreamId());
+            if (chunk == null) {
+                throw new RemoteException("Topology stream expired.");
+            }
+        }
+
+        TopologyDelta delta = chunk.getDelta();
+        if (chunk.isFull() || chunks > 1 || !delta.isEmpty()) {
+            Logger.debug("Applied topology " + (chunk.isFull() ? "" : "delta ")
+                    + delta.getFromVersion() + " -> " + delta.getToVersion()
+                    + " in " + chunks + " chunks: "
+                    + target.vertexSet().size() + " vertices, "
+                    + target.edgeSet().size() + " links.");
+        }
+
+        if (target != graph) {
+            graph = target;
+            satelliteGraphs.put(sat, graph);
+        }
+        if (chunk.isFull()) {
+            satelliteInterfaces.put(sat, targetInterfaces);
+            hostSatellites.values().removeAll(Collections.singleton(sat));
+        }
+        for (Map.Entry<String, Boolean> change : hostChanges.entrySet()) {
+            if (change.getValue()) {
+                hostSatellites.put(change.getKey(), sat);
+            } else if (hostSatellites.get(change.getKey()) == sat) {
+                hostSatellites.remove(change.getKey());
+            }
+        }
+        topologyVersions.put(sat, delta.getToVersion());
+
+        return graph;
+    }
+
+    /**
+     * Gets the routing table of a network element from the Satellite that
+     * manages it. The routing table is transferred in pages of
+     * ROUTING_TABLE_PAGE_SIZE routes.
+     *
+     * @param vertex
+     *            - The network element.
+     * @return The routing table, one route per line.
+     * @throws RemoteException
+     *             A RemoteException is the common superclass for a number of
+     *             communication-related exceptions that may occur during the
+     *             execution of a remote method call.
+     */
+    public String getRoutingTable(Vertex vertex) throws RemoteException {
+        StringBuilder routingTable = new StringBuilder();
+        ISatellite sat = null;
+        synchronized (topologyLock) {
+            sat = getSatellite(vertex);
+        }
+
+        if (sat == null) {
+            return "";
+        }
+
+        int offset = 0;
+        List<String> page = null;
+        do {
+            page = sat.getRoutingTable(vertex.getHostname(), offset,
+                    ROUTING_TABLE_PAGE_SIZE);
+            for (String route : page) {
+                routingTable.append(route).append("\n");
+            }
+            offset += page.size();
+        } while (page.size() == ROUTING_TABLE_PAGE_SIZE);
+
+        return routingTable.toString();
+    }
+
+    /**
+     * Finds the network element and interface an IP-Address belongs to.
+     *
+     * @param address
+     *            - An IP-Address.
+     * @return The interface configured with the address, or null if it is
+     *         unknown to all Satellites.
+     */
+    public InterfaceIndex.Entry getInterface(String address) {
+        synchronized (topologyLock) {
+            for (ISatellite sat : satellites) {
+                InterfaceIndex interfaces = satelliteInterfaces.get(sat);
+                InterfaceIndex.Entry entry = interfaces == null ? null
+                        : interfaces.getOwner(address);
+                if (entry != null) {
+                    return entry;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * @param vertex
+     *            - A network element.
+     * @return The Satellite whose topology contains the network element, or
+     *         the first Satellite if none is known to contain it.
+     */
+    private ISatellite getSatellite(Vertex vertex) {
+        return getSatellite(vertex.getHostname());
+    }
+
+    /**
+     * @param hostname
+     *            - The host name of a network element.
+     * @return The Satellite whose topology contains the network element, or
+     *         the first Satellite if none is known to contain it. The caller
+     *         holds topologyLock.
+     */
+    private ISatellite getSatellite(String hostname) {
+        ISatellite managing = hostSatellites.get(hostname);
+        if (managing != null) {
+            return managing;
+        }
         for (ISatellite sat : satellites) {
-            myGraph = (DirectedWeightedMultigraph<Vertex, Link>) sat
-                    .getTopology();
-            return myGraph;
+            return sat;
         }
         return null;
     }
@@ -203,10 +554,54 @@ public class TopologyDiscoverer implements ITopologyDiscoverer {
      */
     public boolean setRoute(Vertex source, Vertex next, Vertex secondToLast,
             Vertex destination) throws RemoteException {
-        for (ISatellite sat : satellites) {
-            return sat.setRoute(source, next, secondToLast, destination);
+        ISatellite sat = null;
+        synchronized (topologyLock) {
+            sat = getSatellite(source);
+        }
+        if (sat == null) {
+            return false;
+        }
+        return sat.setRoute(source, next, secondToLast, destination);
+    }
+
+    /**
+     * Sets a whole set of static routes. The routes are grouped by the
+     * Satellite that manages their source network element, so every
+     * Satellite is called once.
+     *
+     * @param routes
+     *            - The routes to be configured.
+     * @return The routes that could not be placed.
+     * @throws RemoteException
+     *             A RemoteException is the common superclass for a number of
+     *             communication-related exceptions that may occur during the
+     *             execution of a remote method call.
+     */
+    public List<RouteRequest> setRoutes(List<RouteRequest> routes)
+            throws RemoteException {
+        List<RouteRequest> failed = new ArrayList<RouteRequest>();
+        Map<ISatellite, List<RouteRequest>> satelliteRoutes = new HashMap<ISatellite, List<RouteRequest>>();
+
+        synchronized (topologyLock) {
+            for (RouteRequest route : routes) {
+                ISatellite sat = getSatellite(route.getSource());
+                if (sat == null) {
+                    failed.add(route);
+                    continue;
+                }
+                if (!satelliteRoutes.containsKey(sat)) {
+                    satelliteRoutes.put(sat, new ArrayList<RouteRequest>());
+                }
+                satelliteRoutes.get(sat).add(route);
+            }
+        }
+
+        for (Map.Entry<ISatellite, List<RouteRequest>> entry : satelliteRoutes
+                .entrySet()) {
+            failed.addAll(entry.getKey().setRoutes(entry.getValue()));
         }
-        return false;
+
+        return failed;
     }
 
     /**
@@ -215,7 +610,9 @@ public class TopologyDiscoverer implements ITopologyDiscoverer {
      * @return The graph object where the network topology is stored.
      */
     public DirectedWeightedMultigraph<Vertex, Link> getMyGraph() {
-        return myGraph;
+        synchronized (topologyLock) {
+            return myGraph;
+        }
     }
 
     /**
@@ -223,7 +620,13 @@ public class TopologyDiscoverer implements ITopologyDiscoverer {
      * occurs remove the Satellite from the ArrayList.
      */
     public void checkSatellites() {
-        for (Iterator<ISatellite> iter = satellites.iterator(); iter.hasNext();) {
+        List<ISatellite> current = null;
+        synchronized (topologyLock) {
+            current = new ArrayList<ISatellite>(satellites);
+        }
+
+        // The remote calls are made without holding the lock
+        for (Iterator<ISatellite> iter = current.iterator(); iter.hasNext();) {
             ISatellite satellite = iter.next();
             try {
                 if (satellite.isAlive()) {
@@ -232,10 +635,14 @@ public class TopologyDiscoverer implements ITopologyDiscoverer {
             } catch (RemoteException e) {
                 Logger.error("Could not call remote method isAlive()!");
                 Logger.error("Removing Satellite from ArrayList!");
-                iter.remove();
+                synchronized (topologyLock) {
+                    forgetSatellite(satellite);
+                }
             }
         }
-        Logger.debug("New ArrayList of satellites: " + "\n"
-                + satellites.toString());
+        synchronized (topologyLock) {
+            Logger.debug("New ArrayList of satellites: " + "\n"
+                    + satellites.toString());
+        }
     }
 }
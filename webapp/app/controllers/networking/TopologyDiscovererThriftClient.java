@@ -0,0 +1,87 @@
+package controllers.networking;
+
+import java.io.IOException;
+import java.rmi.RemoteException;
+import java.util.List;
+
+import de.lmu.ifi.nm.www.ThriftClient;
+import de.lmu.ifi.nm.www.ThriftCodec;
+
+/**
+ * ITopologyDiscoverer on top of the Thrift service 'TopologyDiscoverer' of
+ * starfish.thrift. Used by Satellites configured with transport=thrift.
+ */
+public class TopologyDiscovererThriftClient implements ITopologyDiscoverer {
+    private ThriftClient myClient = null;
+
+    /**
+     * @param host
+     *            - The host name or IP-Address of the TopologyDiscoverer.
+     * @param port
+     *            - The port of the TopologyDiscoverer's Thrift server.
+     * @param timeout
+     *            - The timeout of a call in milliseconds, 0 for none.
+     */
+    public TopologyDiscovererThriftClient(String host, int port, long timeout) {
+        myClient = new ThriftClient(host, port, timeout);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see controllers.networking.ITopologyDiscoverer#connect(java.lang.String,
+     * int, java.lang.String)
+     */
+    public void connect(String clientIP, int clientPort, String userName)
+            throws RemoteException {
+        myClient.call("connect", clientIP, clientPort, userName);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * controllers.networking.ITopologyDiscoverer#disconnect(java.lang.String,
+     * int, java.lang.String)
+     */
+    public void disconnect(String clientIP, int clientPort, String userName)
+            throws RemoteException {
+        myClient.call("disconnect", clientIP, clientPort, userName);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * controllers.networking.ITopologyDiscoverer#receiveEvent(java.lang.String,
+     * java.lang.String)
+     */
+    public void receiveEvent(String userName, String message)
+            throws RemoteException {
+        myClient.call("receiveEvent", userName, message);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * controllers.networking.ITopologyDiscoverer#receiveEvents(java.lang.String
+     * , java.util.List)
+     */
+    public void receiveEvents(String userName, List<NetworkEvent> events)
+            throws RemoteException {
+        try {
+            myClient.call("receiveEvents", userName,
+                    ThriftCodec.serialize(events));
+        } catch (IOException e) {
+            throw new RemoteException("Could not serialize the events", e);
+        }
+    }
+
+    /**
+     * Close the connection to the TopologyDiscoverer.
+     */
+    public void close() {
+        myClient.close();
+    }
+}
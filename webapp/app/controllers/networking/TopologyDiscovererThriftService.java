@@ -0,0 +1,61 @@
+package controllers.networking;
+
+import java.util.List;
+
+import de.lmu.ifi.nm.www.SatelliteThriftClient;
+import de.lmu.ifi.nm.www.ThriftService;
+
+/**
+ * Thrift service 'TopologyDiscoverer' of starfish.thrift, the counterpart of
+ * the RMI interface ITopologyDiscoverer. A Satellite that connects through
+ * this service is called back over Thrift as well.
+ */
+public class TopologyDiscovererThriftService extends ThriftService {
+    private TopologyDiscoverer myTopologyDiscoverer = null;
+    private long timeout = 0;
+
+    /**
+     * @param myTopologyDiscoverer
+     *            - The TopologyDiscoverer handling the calls.
+     * @param timeout
+     *            - The timeout of calls to the Satellites in milliseconds, 0
+     *            for none.
+     */
+    public TopologyDiscovererThriftService(
+            TopologyDiscoverer myTopologyDiscoverer, long timeout) {
+        this.myTopologyDiscoverer = myTopologyDiscoverer;
+        this.timeout = timeout;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see de.lmu.ifi.nm.www.ThriftService#invoke(java.lang.String,
+     * de.lmu.ifi.nm.www.ThriftService.Arguments)
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    protected Object invoke(String method, Arguments arguments)
+            throws Exception {
+        if (method.equals("connect")) {
+            myTopologyDiscoverer.addSatellite(new SatelliteThriftClient(
+                    arguments.getString(1), arguments.getInt(2), timeout),
+                    arguments.getString(3));
+            return null;
+        } else if (method.equals("disconnect")) {
+            myTopologyDiscoverer.removeSatellite(new SatelliteThriftClient(
+                    arguments.getString(1), arguments.getInt(2), timeout),
+                    arguments.getString(3));
+            return null;
+        } else if (method.equals("receiveEvent")) {
+            myTopologyDiscoverer.receiveEvent(arguments.getString(1),
+                    arguments.getString(2));
+            return null;
+        } else if (method.equals("receiveEvents")) {
+            myTopologyDiscoverer.receiveEvents(arguments.getString(1),
+                    (List<NetworkEvent>) arguments.getObject(2));
+            return null;
+        }
+        throw unknownMethod(method);
+    }
+}
@@ -0,0 +1,1065 @@
+package controllers.routing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.jgrapht.DirectedGraph;
+
+import de.lmu.ifi.nm.www.Link;
+import de.lmu.ifi.nm.www.RouteRequest;
+import de.lmu.ifi.nm.www.Vertex;
+
+/**
+ * Keeps the shortest path trees of all sources up to date while the topology
+ * and the link costs change, in the manner of an incremental SPF.
+ *
+ * update() compares a graph with the one of the previous call. Network
+ * elements are identified by their host name and links by their end points
+ * and interfaces, as every discovery yields new objects. Instead of running
+ * Dijkstra's algorithm again for every source, only the parts of the trees
+ * that are affected by the differences are repaired:
+ *
+ * - A link that has become more expensive, has disappeared or is down only
+ * matters to the trees it is part of. The subtree below it is detached and
+ * every vertex of it is attached again through its cheapest link from the
+ * rest of the tree.
+ *
+ * - A link that has become cheaper, has appeared or is up again is relaxed,
+ * and the improvement is propagated from its target on.
+ *
+ * Both are finished by a run of Dijkstra's algorithm that only visits the
+ * vertices whose distance changes. Of several shortest paths, the one already
+ * in the tree is kept, so routes do not flap between paths of equal cost;
+ * the distances are the same as after a full calculation, the chosen paths
+ * may differ when there are ties. The repairs of the sources are independent
+ * of each other and are spread over a ForkJoinPool.
+ *
+ * If a large part of the links has changed, e.g. because the formula of the
+ * link costs has, or if too many removed vertices and links have piled up,
+ * all trees are computed again from a GraphSnapshot instead.
+ *
+ * The trees take 20 bytes per pair of vertices. This class is not thread
+ * safe.
+ */
+public class DynamicShortestPaths {
+	/** Number of sources below which a task is not split any further. */
+	private static final int SOURCES_PER_TASK = 4;
+	/** Share of changed links above which all trees are computed again. */
+	private static final double REBUILD_FRACTION = 0.25;
+
+	private final ForkJoinPool pool;
+
+	private int vertexCount = 0;
+	private int liveVertices = 0;
+	private String[] names = new String[0];
+	private boolean[] alive = new boolean[0];
+	private IntList[] outgoing = new IntList[0];
+	private IntList[] incoming = new IntList[0];
+	private Map<String, Integer> vertexIds = new HashMap<String, Integer>();
+	private SourceTree[] trees = null;
+
+	private int edgeCount = 0;
+	private int liveEdges = 0;
+	private int[] sources = new int[0];
+	private int[] targets = new int[0];
+	private double[] weights = new double[0];
+	private Map<String, Integer> edgeIds = new HashMap<String, Integer>();
+
+	/**
+	 * The shortest paths from one source. Vertices that are not reachable
+	 * have an infinite distance and no parent.
+	 */
+	private static final class SourceTree {
+		private double[] distances;
+		private int[] parents;
+		private int[] firstHops;
+		private int[] marks;
+		private int epoch = 0;
+		private int reachable = 0;
+		private boolean routed = false;
+		private boolean fresh = false;
+
+		/**
+		 * @param capacity
+		 *            - The number of vertices the tree has room for.
+		 */
+		public SourceTree(int capacity) {
+			distances = new double[capacity];
+			parents = new int[capacity];
+			firstHops = new int[capacity];
+			marks = new int[capacity];
+			Arrays.fill(distances, Double.POSITIVE_INFINITY);
+			Arrays.fill(parents, -1);
+			Arrays.fill(firstHops, -1);
+		}
+
+		/**
+		 * @param capacity
+		 *            - The new number of vertices the tree has room for.
+		 */
+		public void grow(int capacity) {
+			int length = distances.length;
+
+			distances = Arrays.copyOf(distances, capacity);
+			parents = Arrays.copyOf(parents, capacity);
+			firstHops = Arrays.copyOf(firstHops, capacity);
+			marks = Arrays.copyOf(marks, capacity);
+			Arrays.fill(distances, length, capacity, Double.POSITIVE_INFINITY);
+			Arrays.fill(parents, length, capacity, -1);
+			Arrays.fill(firstHops, length, capacity, -1);
+		}
+	}
+
+	/**
+	 * Work done for every source.
+	 */
+	private interface SourceJob {
+		/**
+		 * @param source
+		 *            - The number of the source vertex.
+		 * @return The changed routes from the source.
+		 */
+		List<RouteChange> run(int source);
+	}
+
+	/**
+	 * Runs a SourceJob for a range of sources, split in halves until the range
+	 * is small enough.
+	 */
+	private static class SourceTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final SourceJob job;
+		private final List<List<RouteChange>> results;
+		private final int from;
+		private final int to;
+
+		/**
+		 * @param job
+		 *            - The work done for every source.
+		 * @param results
+		 *            - The changed routes by source.
+		 * @param from
+		 *            - The number of the first source.
+		 * @param to
+		 *            - The number following the last source.
+		 */
+		public SourceTask(SourceJob job, List<List<RouteChange>> results,
+				int from, int to) {
+			this.job = job;
+			this.results = results;
+			this.from = from;
+			this.to = to;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.util.concurrent.RecursiveAction#compute()
+		 */
+		@Override
+		protected void compute() {
+			if (to - from <= SOURCES_PER_TASK) {
+				for (int source = from; source < to; source++) {
+					results.set(source, job.run(source));
+				}
+				return;
+			}
+
+			int middle = (from + to) >>> 1;
+			invokeAll(new SourceTask(job, results, from, middle),
+					new SourceTask(job, results, middle, to));
+		}
+	}
+
+	/**
+	 * @param pool
+	 *            - The pool the sources are spread over, null to work in the
+	 *            calling thread.
+	 */
+	public DynamicShortestPaths(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Bring the shortest paths up to date with a graph. The first call
+	 * computes all of them.
+	 *
+	 * @param network
+	 *            - The graph with the link costs as edge weights.
+	 * @return The pairs of network elements whose route has changed, in the
+	 *         order of the sources.
+	 * @throws IllegalArgumentException
+	 *             If a link has a negative weight.
+	 */
+	public List<RouteChange> update(DirectedGraph<Vertex, Link> network) {
+		if (trees == null) {
+			return rebuild(network);
+		}
+
+		// Differences to the previous graph
+		Map<Vertex, String> seen = new HashMap<Vertex, String>();
+		List<String> added = new ArrayList<String>();
+		for (Vertex vertex : network.vertexSet()) {
+			String name = vertex.getHostname();
+			seen.put(vertex, name);
+			if (!vertexIds.containsKey(name)) {
+				added.add(name);
+			}
+		}
+		Set<String> hostnames = new HashSet<String>(seen.values());
+		IntList removed = new IntList();
+		for (int v = 0; v < vertexCount; v++) {
+			if (alive[v] && !hostnames.contains(names[v])) {
+				removed.add(v);
+			}
+		}
+
+		Set<Integer> kept = new HashSet<Integer>();
+		IntList changed = new IntList();
+		List<Double> changedWeights = new ArrayList<Double>();
+		List<String> insertedKeys = new ArrayList<String>();
+		List<Link> inserted = new ArrayList<Link>();
+		for (Link link : network.edgeSet()) {
+			// A link that went down is repaired like a removed one
+			if (!link.isUp()) {
+				continue;
+			}
+			double weight = network.getEdgeWeight(link);
+			if (weight < 0) {
+				throw new IllegalArgumentException(
+						"Negative edge weights not allowed");
+			}
+
+			String key = getLinkKey(seen.get(network.getEdgeSource(link)),
+					link, seen.get(network.getEdgeTarget(link)));
+			Integer e = edgeIds.get(key);
+			if (e == null) {
+				insertedKeys.add(key);
+				inserted.add(link);
+			} else {
+				kept.add(e);
+				if (weight != weights[e]) {
+					changed.add(e);
+					changedWeights.add(weight);
+				}
+			}
+		}
+		IntList deleted = new IntList();
+		Iterator<Integer> edges = edgeIds.values().iterator();
+		while (edges.hasNext()) {
+			int e = edges.next();
+			if (!kept.contains(e)) {
+				deleted.add(e);
+				edges.remove();
+			}
+		}
+
+		int edits = added.size() + removed.size() + changed.size()
+				+ inserted.size() + deleted.size();
+		if (edits == 0) {
+			return new ArrayList<RouteChange>(0);
+		}
+		int deadEdges = edgeCount - liveEdges + deleted.size();
+		int deadVertices = vertexCount - liveVertices + removed.size();
+		if (edits > REBUILD_FRACTION * liveEdges
+				|| deadEdges > liveEdges - deleted.size() + inserted.size()
+				|| deadVertices > liveVertices - removed.size() + added.size()) {
+			return rebuild(network);
+		}
+
+		// Apply them to the graph
+		for (String name : added) {
+			addVertex(name);
+		}
+		for (int i = 0; i < removed.size(); i++) {
+			alive[removed.get(i)] = false;
+			vertexIds.remove(this.names[removed.get(i)]);
+			liveVertices--;
+		}
+
+		final IntList increased = new IntList();
+		final IntList decreased = new IntList();
+		for (int i = 0; i < deleted.size(); i++) {
+			int e = deleted.get(i);
+			outgoing[sources[e]].remove(e);
+			incoming[targets[e]].remove(e);
+			liveEdges--;
+			increased.add(e);
+		}
+		for (int i = 0; i < changed.size(); i++) {
+			int e = changed.get(i);
+			double weight = changedWeights.get(i);
+			if (weight > weights[e]) {
+				increased.add(e);
+			} else {
+				decreased.add(e);
+			}
+			weights[e] = weight;
+		}
+		for (int i = 0; i < inserted.size(); i++) {
+			Link link = inserted.get(i);
+			decreased.add(addEdge(insertedKeys.get(i),
+					vertexIds.get(seen.get(network.getEdgeSource(link))),
+					vertexIds.get(seen.get(network.getEdgeTarget(link))),
+					network.getEdgeWeight(link)));
+		}
+
+		// Repair the trees
+		return forEachSource(vertexCount, new SourceJob() {
+			public List<RouteChange> run(int source) {
+				if (trees[source] == null) {
+					return new ArrayList<RouteChange>(0);
+				}
+				if (!alive[source]) {
+					List<RouteChange> changes = withdraw(source);
+					trees[source] = null;
+					return changes;
+				}
+				return repair(source, increased, decreased);
+			}
+		});
+	}
+
+	/**
+	 * @param source
+	 *            - The host name of the source network element.
+	 * @param destination
+	 *            - The host name of the destination network element.
+	 * @return The route between them, null if none is needed or there is no
+	 *         path.
+	 */
+	public RouteRequest getRoute(String source, String destination) {
+		Integer start = vertexIds.get(source);
+		Integer end = vertexIds.get(destination);
+
+		if (trees == null || start == null || end == null) {
+			return null;
+		}
+		SourceTree tree = trees[start];
+		return getRoute(start, tree.routed, end, tree.parents[end],
+				tree.firstHops[end]);
+	}
+
+	/**
+	 * @param source
+	 *            - The host name of the source network element.
+	 * @param destination
+	 *            - The host name of the destination network element.
+	 * @return The length of the shortest path, Double.POSITIVE_INFINITY if
+	 *         there is none.
+	 */
+	public double getDistance(String source, String destination) {
+		Integer start = vertexIds.get(source);
+		Integer end = vertexIds.get(destination);
+
+		if (trees == null || start == null || end == null) {
+			return Double.POSITIVE_INFINITY;
+		}
+		return trees[start].distances[end];
+	}
+
+	/**
+	 * @return The number of pairs of network elements without a path between
+	 *         them.
+	 */
+	public int getUnreachable() {
+		int unreachable = 0;
+
+		for (int v = 0; v < vertexCount; v++) {
+			if (alive[v]) {
+				unreachable += liveVertices - 1 - trees[v].reachable;
+			}
+		}
+		return unreachable;
+	}
+
+	/**
+	 * Compute all trees of a graph and compare the routes with the ones of
+	 * the previous graph by host name.
+	 *
+	 * @param network
+	 *            - The graph with the link costs as edge weights.
+	 * @return The pairs of network elements whose route has changed.
+	 */
+	private List<RouteChange> rebuild(DirectedGraph<Vertex, Link> network) {
+		final GraphSnapshot graph = new GraphSnapshot(network);
+		final DynamicShortestPaths previous = trees == null ? null
+				: copyState();
+		int count = graph.getVertexCount();
+
+		vertexCount = 0;
+		liveVertices = 0;
+		names = new String[count];
+		alive = new boolean[count];
+		outgoing = new IntList[count];
+		incoming = new IntList[count];
+		vertexIds = new HashMap<String, Integer>(count * 2);
+		trees = new SourceTree[count];
+		edgeCount = 0;
+		liveEdges = 0;
+		sources = new int[graph.getEdgeCount()];
+		targets = new int[graph.getEdgeCount()];
+		weights = new double[graph.getEdgeCount()];
+		edgeIds = new HashMap<String, Integer>(graph.getEdgeCount() * 2);
+
+		for (int v = 0; v < count; v++) {
+			addVertex(graph.getVertex(v).getHostname());
+		}
+		for (int e = 0; e < graph.getEdgeCount(); e++) {
+			addEdge(getLinkKey(names[graph.getSource(e)], graph.getLink(e),
+					names[graph.getTarget(e)]), graph.getSource(e),
+					graph.getTarget(e), graph.getWeight(e));
+		}
+
+		List<RouteChange> changes = forEachSource(count, new SourceJob() {
+			public List<RouteChange> run(int source) {
+				ShortestPathTree path = new ShortestPathTree(graph, source);
+				SourceTree tree = trees[source];
+
+				for (int v = 0; v < vertexCount; v++) {
+					tree.distances[v] = path.getDistance(v);
+					tree.parents[v] = path.getParentEdge(v);
+					tree.firstHops[v] = path.getNextHop(v);
+					if (v != source && path.isReachable(v)) {
+						tree.reachable++;
+					}
+				}
+				tree.routed = getDegree(source) > 1;
+				tree.fresh = false;
+				return compare(previous, source);
+			}
+		});
+
+		// Routes from and to network elements that are gone
+		if (previous != null) {
+			for (int v = 0; v < previous.vertexCount; v++) {
+				if (previous.alive[v]
+						&& !vertexIds.containsKey(previous.names[v])) {
+					changes.addAll(previous.withdraw(v));
+				}
+			}
+		}
+		return changes;
+	}
+
+	/**
+	 * @return A copy of the fields that rebuild() replaces.
+	 */
+	private DynamicShortestPaths copyState() {
+		DynamicShortestPaths state = new DynamicShortestPaths(null);
+
+		state.vertexCount = vertexCount;
+		state.liveVertices = liveVertices;
+		state.names = names;
+		state.alive = alive;
+		state.vertexIds = vertexIds;
+		state.trees = trees;
+		state.sources = sources;
+		return state;
+	}
+
+	/**
+	 * @param previous
+	 *            - The state before rebuild(), null for none.
+	 * @param source
+	 *            - The number of a source vertex after rebuild().
+	 * @return The routes from the source that differ from the ones in the
+	 *         previous state.
+	 */
+	private List<RouteChange> compare(DynamicShortestPaths previous,
+			int source) {
+		List<RouteChange> changes = new ArrayList<RouteChange>();
+		SourceTree tree = trees[source];
+		Integer oldSource = previous == null ? null : previous.vertexIds
+				.get(names[source]);
+		SourceTree oldTree = oldSource == null ? null
+				: previous.trees[oldSource];
+
+		for (int end = 0; end < vertexCount; end++) {
+			RouteRequest route = getRoute(source, tree.routed, end,
+					tree.parents[end], tree.firstHops[end]);
+			RouteRequest oldRoute = null;
+
+			if (oldTree != null) {
+				Integer oldEnd = previous.vertexIds.get(names[end]);
+				if (oldEnd != null) {
+					oldRoute = previous.getRoute(oldSource, oldTree.routed,
+							oldEnd, oldTree.parents[oldEnd],
+							oldTree.firstHops[oldEnd]);
+				}
+			}
+			if (route == null ? oldRoute != null : !route.equals(oldRoute)) {
+				changes.add(new RouteChange(names[source], names[end],
+						oldRoute, route));
+			}
+		}
+
+		// Destinations that are gone
+		if (oldTree != null) {
+			for (int oldEnd = 0; oldEnd < previous.vertexCount; oldEnd++) {
+				if (!previous.alive[oldEnd]
+						|| vertexIds.containsKey(previous.names[oldEnd])) {
+					continue;
+				}
+				RouteRequest oldRoute = previous.getRoute(oldSource,
+						oldTree.routed, oldEnd, oldTree.parents[oldEnd],
+						oldTree.firstHops[oldEnd]);
+				if (oldRoute != null) {
+					changes.add(new RouteChange(names[source],
+							previous.names[oldEnd], oldRoute, null));
+				}
+			}
+		}
+		return changes;
+	}
+
+	/**
+	 * @param source
+	 *            - The number of a source vertex.
+	 * @return The withdrawals of all routes from the source.
+	 */
+	private List<RouteChange> withdraw(int source) {
+		List<RouteChange> changes = new ArrayList<RouteChange>();
+		SourceTree tree = trees[source];
+
+		for (int end = 0; end < vertexCount; end++) {
+			RouteRequest route = getRoute(source, tree.routed, end,
+					tree.parents[end], tree.firstHops[end]);
+			if (route != null) {
+				changes.add(new RouteChange(names[source], names[end], route,
+						null));
+			}
+		}
+		return changes;
+	}
+
+	/**
+	 * Repair the tree of a source after the graph has changed.
+	 *
+	 * @param source
+	 *            - The number of the source vertex.
+	 * @param increased
+	 *            - The links that have become more expensive or have been
+	 *            removed.
+	 * @param decreased
+	 *            - The links that have become cheaper or have been added.
+	 * @return The changed routes from the source.
+	 */
+	private List<RouteChange> repair(int source, IntList increased,
+			IntList decreased) {
+		SourceTree tree = trees[source];
+		double[] distances = tree.distances;
+		int[] parents = tree.parents;
+		int[] firstHops = tree.firstHops;
+		int epoch = ++tree.epoch;
+		IntList touched = new IntList();
+		IntList oldParents = new IntList();
+		IntList oldFirstHops = new IntList();
+		Heap heap = new Heap();
+
+		if (tree.fresh) {
+			distances[source] = 0;
+			heap.add(0, source);
+			tree.fresh = false;
+		}
+
+		// Detach the subtrees below links that have become worse
+		IntList affected = new IntList();
+		for (int i = 0; i < increased.size(); i++) {
+			int e = increased.get(i);
+			if (parents[targets[e]] != e) {
+				continue;
+			}
+
+			int first = affected.size();
+			touch(tree, targets[e], touched, oldParents, oldFirstHops);
+			affected.add(targets[e]);
+			parents[targets[e]] = -1;
+			for (int j = first; j < affected.size(); j++) {
+				int v = affected.get(j);
+				IntList links = outgoing[v];
+
+				for (int k = 0; k < links.size(); k++) {
+					int f = links.get(k);
+					if (parents[targets[f]] == f) {
+						touch(tree, targets[f], touched, oldParents,
+								oldFirstHops);
+						affected.add(targets[f]);
+						parents[targets[f]] = -1;
+					}
+				}
+				distances[v] = Double.POSITIVE_INFINITY;
+				firstHops[v] = -1;
+			}
+		}
+
+		// Attach them again through their cheapest link from the rest
+		for (int i = 0; i < affected.size(); i++) {
+			int v = affected.get(i);
+			IntList links = incoming[v];
+			double best = Double.POSITIVE_INFINITY;
+			int parent = -1;
+
+			for (int k = 0; k < links.size(); k++) {
+				int f = links.get(k);
+				double distance = distances[sources[f]] + weights[f];
+				if (distance < best
+						|| (distance == best && parent >= 0 && sources[f] < sources[parent])) {
+					best = distance;
+					parent = f;
+				}
+			}
+			if (parent >= 0) {
+				setParent(tree, source, v, parent, best);
+				heap.add(best, v);
+			}
+		}
+
+		// Links that have become better, then propagate
+		for (int i = 0; i < decreased.size(); i++) {
+			relax(tree, source, decreased.get(i), heap, touched, oldParents,
+					oldFirstHops);
+		}
+		while (!heap.isEmpty()) {
+			double distance = heap.peekKey();
+			int v = heap.poll();
+			if (distance != distances[v]) {
+				continue;
+			}
+
+			IntList links = outgoing[v];
+			for (int k = 0; k < links.size(); k++) {
+				relax(tree, source, links.get(k), heap, touched, oldParents,
+						oldFirstHops);
+			}
+		}
+
+		// Compare the routes of the vertices that have changed
+		List<RouteChange> changes = new ArrayList<RouteChange>();
+		boolean routed = getDegree(source) > 1;
+		for (int i = 0; i < touched.size(); i++) {
+			int end = touched.get(i);
+			int oldParent = oldParents.get(i);
+
+			if (oldParent >= 0) {
+				tree.reachable--;
+			}
+			if (parents[end] >= 0) {
+				tree.reachable++;
+			}
+			addChange(changes, source, end, tree.routed, oldParent,
+					oldFirstHops.get(i), routed, parents[end], firstHops[end]);
+		}
+		if (routed != tree.routed) {
+			for (int end = 0; end < vertexCount; end++) {
+				if (tree.marks[end] != epoch) {
+					addChange(changes, source, end, tree.routed, parents[end],
+							firstHops[end], routed, parents[end],
+							firstHops[end]);
+				}
+			}
+		}
+		tree.routed = routed;
+		return changes;
+	}
+
+	/**
+	 * Shorten the path to the target of a link if it is a better way there.
+	 *
+	 * @param tree
+	 *            - The tree being repaired.
+	 * @param source
+	 *            - The number of its source vertex.
+	 * @param e
+	 *            - The number of the link.
+	 * @param heap
+	 *            - The vertices whose links are to be relaxed.
+	 * @param touched
+	 *            - The vertices that have changed.
+	 * @param oldParents
+	 *            - Their parents before the repair.
+	 * @param oldFirstHops
+	 *            - Their first hops before the repair.
+	 */
+	private void relax(SourceTree tree, int source, int e, Heap heap,
+			IntList touched, IntList oldParents, IntList oldFirstHops) {
+		int target = targets[e];
+		double distance = tree.distances[sources[e]] + weights[e];
+
+		if (distance < tree.distances[target]) {
+			touch(tree, target, touched, oldParents, oldFirstHops);
+			setParent(tree, source, target, e, distance);
+			heap.add(distance, target);
+		}
+	}
+
+	/**
+	 * @param tree
+	 *            - The tree being repaired.
+	 * @param source
+	 *            - The number of its source vertex.
+	 * @param v
+	 *            - The number of a vertex.
+	 * @param e
+	 *            - The number of the link it is reached through.
+	 * @param distance
+	 *            - The length of its path.
+	 */
+	private void setParent(SourceTree tree, int source, int v, int e,
+			double distance) {
+		int via = sources[e];
+
+		tree.distances[v] = distance;
+		tree.parents[v] = e;
+		tree.firstHops[v] = via == source ? v : tree.firstHops[via];
+	}
+
+	/**
+	 * Remember the path to a vertex before it is changed for the first time
+	 * in a repair.
+	 *
+	 * @param tree
+	 *            - The tree being repaired.
+	 * @param v
+	 *            - The number of the vertex.
+	 * @param touched
+	 *            - The vertices that have changed.
+	 * @param oldParents
+	 *            - Their parents before the repair.
+	 * @param oldFirstHops
+	 *            - Their first hops before the repair.
+	 */
+	private static void touch(SourceTree tree, int v, IntList touched,
+			IntList oldParents, IntList oldFirstHops) {
+		if (tree.marks[v] != tree.epoch) {
+			tree.marks[v] = tree.epoch;
+			touched.add(v);
+			oldParents.add(tree.parents[v]);
+			oldFirstHops.add(tree.firstHops[v]);
+		}
+	}
+
+	/**
+	 * Add a RouteChange if the route to a destination has changed.
+	 *
+	 * @param changes
+	 *            - The changed routes.
+	 * @param source
+	 *            - The number of the source vertex.
+	 * @param end
+	 *            - The number of the destination vertex.
+	 * @param oldRouted
+	 *            - True if the source had routes before.
+	 * @param oldParent
+	 *            - The last link of the path before, -1 for none.
+	 * @param oldFirstHop
+	 *            - The next hop before, -1 for none.
+	 * @param routed
+	 *            - True if the source has routes now.
+	 * @param parent
+	 *            - The last link of the path now, -1 for none.
+	 * @param firstHop
+	 *            - The next hop now, -1 for none.
+	 */
+	private void addChange(List<RouteChange> changes, int source, int end,
+			boolean oldRouted, int oldParent, int oldFirstHop, boolean routed,
+			int parent, int firstHop) {
+		int oldVia = oldRouted && oldParent >= 0 ? sources[oldParent] : -1;
+		int via = routed && parent >= 0 ? sources[parent] : -1;
+		boolean hadRoute = oldVia >= 0 && oldVia != source;
+		boolean hasRoute = via >= 0 && via != source;
+
+		if (hadRoute == hasRoute
+				&& (!hasRoute || (oldVia == via && oldFirstHop == firstHop))) {
+			return;
+		}
+		changes.add(new RouteChange(names[source], names[end], getRoute(
+				source, oldRouted, end, oldParent, oldFirstHop), getRoute(
+				source, routed, end, parent, firstHop)));
+	}
+
+	/**
+	 * @param source
+	 *            - The number of the source vertex.
+	 * @param routed
+	 *            - True if the source has more than one link.
+	 * @param end
+	 *            - The number of the destination vertex.
+	 * @param parent
+	 *            - The last link of the path, -1 for none.
+	 * @param firstHop
+	 *            - The next hop, -1 for none.
+	 * @return The route, null if none is needed or there is no path.
+	 */
+	private RouteRequest getRoute(int source, boolean routed, int end,
+			int parent, int firstHop) {
+		if (!routed || parent < 0 || sources[parent] == source) {
+			return null;
+		}
+		return new RouteRequest(names[source], names[firstHop],
+				names[sources[parent]], names[end]);
+	}
+
+	/**
+	 * @param v
+	 *            - The number of a vertex.
+	 * @return The number of links of the vertex.
+	 */
+	private int getDegree(int v) {
+		return outgoing[v].size() + incoming[v].size();
+	}
+
+	/**
+	 * Add a vertex without links. Its tree is computed by the next repair.
+	 *
+	 * @param name
+	 *            - The host name of the network element.
+	 */
+	private void addVertex(String name) {
+		if (vertexCount == names.length) {
+			int capacity = Math.max(16, vertexCount * 2);
+
+			names = Arrays.copyOf(names, capacity);
+			alive = Arrays.copyOf(alive, capacity);
+			outgoing = Arrays.copyOf(outgoing, capacity);
+			incoming = Arrays.copyOf(incoming, capacity);
+			trees = Arrays.copyOf(trees, capacity);
+			for (int v = 0; v < vertexCount; v++) {
+				if (trees[v] != null) {
+					trees[v].grow(capacity);
+				}
+			}
+		}
+
+		int v = vertexCount++;
+		names[v] = name;
+		alive[v] = true;
+		outgoing[v] = new IntList();
+		incoming[v] = new IntList();
+		vertexIds.put(name, v);
+		trees[v] = new SourceTree(names.length);
+		trees[v].fresh = true;
+		liveVertices++;
+	}
+
+	/**
+	 * @param key
+	 *            - The key of the link, see getLinkKey().
+	 * @param source
+	 *            - The number of its source vertex.
+	 * @param target
+	 *            - The number of its target vertex.
+	 * @param weight
+	 *            - Its cost.
+	 * @return The number of the link.
+	 */
+	private int addEdge(String key, int source, int target, double weight) {
+		if (edgeCount == sources.length) {
+			int capacity = Math.max(16, edgeCount * 2);
+
+			sources = Arrays.copyOf(sources, capacity);
+			targets = Arrays.copyOf(targets, capacity);
+			weights = Arrays.copyOf(weights, capacity);
+		}
+
+		int e = edgeCount++;
+		sources[e] = source;
+		targets[e] = target;
+		weights[e] = weight;
+		outgoing[source].add(e);
+		incoming[target].add(e);
+		edgeIds.put(key, e);
+		liveEdges++;
+		return e;
+	}
+
+	/**
+	 * @param count
+	 *            - The number of sources.
+	 * @param job
+	 *            - The work done for every source.
+	 * @return The changed routes of all sources in their order.
+	 */
+	private List<RouteChange> forEachSource(int count, SourceJob job) {
+		List<List<RouteChange>> results = new ArrayList<List<RouteChange>>(
+				count);
+		for (int source = 0; source < count; source++) {
+			results.add(null);
+		}
+
+		if (pool == null) {
+			for (int source = 0; source < count; source++) {
+				results.set(source, job.run(source));
+			}
+		} else {
+			pool.invoke(new SourceTask(job, results, 0, count));
+		}
+
+		List<RouteChange> changes = new ArrayList<RouteChange>();
+		for (List<RouteChange> result : results) {
+			changes.addAll(result);
+		}
+		return changes;
+	}
+
+	/**
+	 * @param source
+	 *            - The host name of the source network element.
+	 * @param link
+	 *            - The link.
+	 * @param target
+	 *            - The host name of the target network element.
+	 * @return The key the link is recognized by in the next graph.
+	 */
+	private static String getLinkKey(String source, Link link, String target) {
+		return source + "|" + link.getSourceIntPort() + "|" + target + "|"
+				+ link.getTargetIntPort();
+	}
+
+	/**
+	 * Growable list of primitive ints.
+	 */
+	private static final class IntList {
+		private int[] items = new int[4];
+		private int size = 0;
+
+		/**
+		 * @param item
+		 *            - The value to be appended.
+		 */
+		public void add(int item) {
+			if (size == items.length) {
+				items = Arrays.copyOf(items, size * 2);
+			}
+			items[size++] = item;
+		}
+
+		/**
+		 * @param item
+		 *            - The value to be removed, the last one takes its place.
+		 */
+		public void remove(int item) {
+			for (int i = 0; i < size; i++) {
+				if (items[i] == item) {
+					items[i] = items[--size];
+					return;
+				}
+			}
+		}
+
+		/**
+		 * @param i
+		 *            - The position.
+		 * @return The value at the position.
+		 */
+		public int get(int i) {
+			return items[i];
+		}
+
+		/**
+		 * @return The number of values.
+		 */
+		public int size() {
+			return size;
+		}
+	}
+
+	/**
+	 * Binary heap of vertices ordered by distance, then by number. A vertex is
+	 * added again when its distance decreases; entries with an outdated
+	 * distance are skipped by the caller.
+	 */
+	private static final class Heap {
+		private double[] keys = new double[16];
+		private int[] values = new int[16];
+		private int size = 0;
+
+		/**
+		 * @return True if there are no entries left.
+		 */
+		public boolean isEmpty() {
+			return size == 0;
+		}
+
+		/**
+		 * @param key
+		 *            - The distance of the vertex.
+		 * @param value
+		 *            - The number of the vertex.
+		 */
+		public void add(double key, int value) {
+			if (size == keys.length) {
+				keys = Arrays.copyOf(keys, size * 2);
+				values = Arrays.copyOf(values, size * 2);
+			}
+
+			int i = size++;
+			while (i > 0) {
+				int parent = (i - 1) >>> 1;
+				if (!isLess(key, value, keys[parent], values[parent])) {
+					break;
+				}
+				keys[i] = keys[parent];
+				values[i] = values[parent];
+				i = parent;
+			}
+			keys[i] = key;
+			values[i] = value;
+		}
+
+		/**
+		 * @return The distance of the first entry.
+		 */
+		public double peekKey() {
+			return keys[0];
+		}
+
+		/**
+		 * @return The vertex of the first entry, which is removed.
+		 */
+		public int poll() {
+			int first = values[0];
+			double key = keys[--size];
+			int value = values[size];
+			int i = 0;
+
+			while (true) {
+				int child = 2 * i + 1;
+				if (child >= size) {
+					break;
+				}
+				if (child + 1 < size
+						&& isLess(keys[child + 1], values[child + 1],
+								keys[child], values[child])) {
+					child++;
+				}
+				if (!isLess(keys[child], values[child], key, value)) {
+					break;
+				}
+				keys[i] = keys[child];
+				values[i] = values[child];
+				i = child;
+			}
+			keys[i] = key;
+			values[i] = value;
+			return first;
+		}
+
+		/**
+		 * @return True if the first entry is ordered before the second.
+		 */
+		private static boolean isLess(double key, int value, double otherKey,
+				int otherValue) {
+			return key < otherKey || (key == otherKey && value < otherValue);
+		}
+	}
+}
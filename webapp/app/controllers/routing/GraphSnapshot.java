@@ -0,0 +1,183 @@
+package controllers.routing;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jgrapht.DirectedGraph;
+
+import de.lmu.ifi.nm.www.Link;
+import de.lmu.ifi.nm.www.Vertex;
+
+/**
+ * Immutable copy of the weighted topology for the route calculation.
+ * 
+ * Vertices are numbered in the iteration order of the graph. The outgoing
+ * links of vertex v are the edges offsets[v] to offsets[v + 1] - 1, stored
+ * in compressed sparse row form as primitive arrays, so shortest path trees
+ * can be computed by many threads at once without touching the JGraphT
+ * graph, which the Logic keeps changing. Edge weights are taken over when
+ * the snapshot is created. Links that are down are left out.
+ */
+public final class GraphSnapshot {
+	private final Vertex[] vertices;
+	private final Map<Vertex, Integer> indexes;
+	private final int[] degrees;
+	private final int[] offsets;
+	private final int[] sources;
+	private final int[] targets;
+	private final double[] weights;
+	private final Link[] links;
+
+	/**
+	 * @param network
+	 *            - The graph with the link costs as edge weights.
+	 * @throws IllegalArgumentException
+	 *             If a link has a negative weight.
+	 */
+	public GraphSnapshot(DirectedGraph<Vertex, Link> network) {
+		int vertexCount = network.vertexSet().size();
+		int edgeCount = 0;
+		for (Link link : network.edgeSet()) {
+			if (link.isUp()) {
+				edgeCount++;
+			}
+		}
+
+		vertices = new Vertex[vertexCount];
+		indexes = new HashMap<Vertex, Integer>(vertexCount * 2);
+		degrees = new int[vertexCount];
+		offsets = new int[vertexCount + 1];
+		sources = new int[edgeCount];
+		targets = new int[edgeCount];
+		weights = new double[edgeCount];
+		links = new Link[edgeCount];
+
+		int v = 0;
+		for (Vertex vertex : network.vertexSet()) {
+			vertices[v] = vertex;
+			indexes.put(vertex, v);
+			v++;
+		}
+
+		int e = 0;
+		for (v = 0; v < vertexCount; v++) {
+			offsets[v] = e;
+			for (Link link : network.outgoingEdgesOf(vertices[v])) {
+				if (!link.isUp()) {
+					continue;
+				}
+				double weight = network.getEdgeWeight(link);
+				if (weight < 0) {
+					throw new IllegalArgumentException(
+							"Negative edge weights not allowed");
+				}
+
+				sources[e] = v;
+				targets[e] = indexes.get(network.getEdgeTarget(link));
+				weights[e] = weight;
+				links[e] = link;
+				degrees[v]++;
+				degrees[targets[e]]++;
+				e++;
+			}
+		}
+		offsets[vertexCount] = e;
+	}
+
+	/**
+	 * @return The number of vertices.
+	 */
+	public int getVertexCount() {
+		return vertices.length;
+	}
+
+	/**
+	 * @return The number of links.
+	 */
+	public int getEdgeCount() {
+		return links.length;
+	}
+
+	/**
+	 * @param v
+	 *            - The number of a vertex.
+	 * @return The vertex.
+	 */
+	public Vertex getVertex(int v) {
+		return vertices[v];
+	}
+
+	/**
+	 * @param vertex
+	 *            - A vertex of the graph.
+	 * @return The number of the vertex, -1 if it is not part of the snapshot.
+	 */
+	public int indexOf(Vertex vertex) {
+		Integer v = indexes.get(vertex);
+		return v == null ? -1 : v;
+	}
+
+	/**
+	 * @param v
+	 *            - The number of a vertex.
+	 * @return The number of incoming and outgoing links of the vertex that
+	 *         are up.
+	 */
+	public int getDegree(int v) {
+		return degrees[v];
+	}
+
+	/**
+	 * @param v
+	 *            - The number of a vertex.
+	 * @return The first outgoing link of the vertex.
+	 */
+	public int getFirstEdge(int v) {
+		return offsets[v];
+	}
+
+	/**
+	 * @param v
+	 *            - The number of a vertex.
+	 * @return The link following the last outgoing link of the vertex.
+	 */
+	public int getEndEdge(int v) {
+		return offsets[v + 1];
+	}
+
+	/**
+	 * @param e
+	 *            - The number of a link.
+	 * @return The number of the vertex the link leaves.
+	 */
+	public int getSource(int e) {
+		return sources[e];
+	}
+
+	/**
+	 * @param e
+	 *            - The number of a link.
+	 * @return The number of the vertex the link leads to.
+	 */
+	public int getTarget(int e) {
+		return targets[e];
+	}
+
+	/**
+	 * @param e
+	 *            - The number of a link.
+	 * @return The weight of the link when the snapshot was created.
+	 */
+	public double getWeight(int e) {
+		return weights[e];
+	}
+
+	/**
+	 * @param e
+	 *            - The number of a link.
+	 * @return The link.
+	 */
+	public Link getLink(int e) {
+		return links[e];
+	}
+}
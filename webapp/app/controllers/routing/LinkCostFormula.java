@@ -0,0 +1,693 @@
+package controllers.routing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.dyndns.kwitte.jfunction.FunctionFormatException;
+
+/**
+ * The formula of the link costs, compiled once into a tree of operations.
+ *
+ * The formula has the syntax of jfunction: numbers, the operators + - * / %
+ * and ^, parentheses and the functions sin, cos, tan, sinh, cosh, tanh,
+ * asin, acos, atan, exp, ln, sqrt, abs, ceil, floor, round and signum, with
+ * the same precedence; sin, cos and tan take degrees like there. Instead of
+ * the single variable x, the names of the metrics are variables. Every name
+ * gets a slot, so evaluate() takes the values of the metrics as an array of
+ * doubles and neither replaces nor parses any text. Subterms without
+ * variables are computed when the formula is compiled.
+ *
+ * The formula can also be evaluated for a whole table of values at once, see
+ * LinkCostTable, one loop over all rows per operation. The right operands
+ * need columns for their intermediate values; the caller allocates them once,
+ * as many as getScratchCount() and one entry per row.
+ */
+public final class LinkCostFormula {
+	private static final String[] FUNCTIONS = { "sin", "cos", "tan", "sinh",
+			"cosh", "tanh", "asin", "acos", "atan", "exp", "ln", "sqrt", "abs",
+			"ceil", "floor", "round", "signum" };
+	private static final Pattern NUMBER = Pattern
+			.compile("(\\d*\\.?\\d+)(e\\-?\\d*\\.?\\d+)?");
+
+	private static final int ADD = 0;
+	private static final int SUB = 1;
+	private static final int MUL = 2;
+	private static final int DIV = 3;
+	private static final int MOD = 4;
+	private static final int POW = 5;
+
+	private final String formula;
+	private final List<String> variables;
+	private final boolean[] used;
+	private final Node root;
+	private final int scratchCount;
+
+	/**
+	 * A node of the tree.
+	 */
+	private abstract static class Node {
+		/**
+		 * @param values
+		 *            - The values of the variables by slot.
+		 * @return The value of the subterm.
+		 */
+		abstract double evaluate(double[] values);
+
+		/**
+		 * @param columns
+		 *            - The values of the variables by slot and row.
+		 * @param count
+		 *            - The number of rows.
+		 * @param result
+		 *            - Receives the value of the subterm for every row.
+		 * @param scratch
+		 *            - The columns for intermediate values.
+		 * @param depth
+		 *            - The first scratch column the subterm may use.
+		 */
+		abstract void evaluate(double[][] columns, int count,
+				double[] result, double[][] scratch, int depth);
+
+		/**
+		 * @param columns
+		 *            - The values of the variables by slot and row.
+		 * @param count
+		 *            - The number of rows.
+		 * @param buffer
+		 *            - May receive the values.
+		 * @param scratch
+		 *            - The columns for intermediate values.
+		 * @param depth
+		 *            - The first scratch column the subterm may use.
+		 * @return The value of the subterm for every row, the column itself
+		 *         for a variable.
+		 */
+		double[] column(double[][] columns, int count, double[] buffer,
+				double[][] scratch, int depth) {
+			evaluate(columns, count, buffer, scratch, depth);
+			return buffer;
+		}
+
+		/**
+		 * @return The number of scratch columns the subterm uses.
+		 */
+		int getScratchCount() {
+			return 0;
+		}
+
+		/**
+		 * @return True if the subterm does not contain variables.
+		 */
+		boolean isConstant() {
+			return false;
+		}
+	}
+
+	/**
+	 * A number.
+	 */
+	private static final class Constant extends Node {
+		private final double value;
+
+		/**
+		 * @param value
+		 *            - The number.
+		 */
+		Constant(double value) {
+			this.value = value;
+		}
+
+		@Override
+		double evaluate(double[] values) {
+			return value;
+		}
+
+		@Override
+		void evaluate(double[][] columns, int count, double[] result,
+				double[][] scratch, int depth) {
+			Arrays.fill(result, 0, count, value);
+		}
+
+		@Override
+		boolean isConstant() {
+			return true;
+		}
+	}
+
+	/**
+	 * The value of a metric.
+	 */
+	private static final class Variable extends Node {
+		private final int slot;
+
+		/**
+		 * @param slot
+		 *            - The number of the metric.
+		 */
+		Variable(int slot) {
+			this.slot = slot;
+		}
+
+		@Override
+		double evaluate(double[] values) {
+			return values[slot];
+		}
+
+		@Override
+		void evaluate(double[][] columns, int count, double[] result,
+				double[][] scratch, int depth) {
+			System.arraycopy(columns[slot], 0, result, 0, count);
+		}
+
+		@Override
+		double[] column(double[][] columns, int count, double[] buffer,
+				double[][] scratch, int depth) {
+			return columns[slot];
+		}
+	}
+
+	/**
+	 * A function of one argument.
+	 */
+	private static final class Function extends Node {
+		private final int function;
+		private final Node argument;
+
+		/**
+		 * @param function
+		 *            - The position of the function in FUNCTIONS.
+		 * @param argument
+		 *            - The argument.
+		 */
+		Function(int function, Node argument) {
+			this.function = function;
+			this.argument = argument;
+		}
+
+		@Override
+		double evaluate(double[] values) {
+			return apply(function, argument.evaluate(values));
+		}
+
+		@Override
+		void evaluate(double[][] columns, int count, double[] result,
+				double[][] scratch, int depth) {
+			double[] arguments = argument.column(columns, count, result,
+					scratch, depth);
+			for (int i = 0; i < count; i++) {
+				result[i] = apply(function, arguments[i]);
+			}
+		}
+
+		@Override
+		int getScratchCount() {
+			return argument.getScratchCount();
+		}
+
+		@Override
+		boolean isConstant() {
+			return argument.isConstant();
+		}
+	}
+
+	/**
+	 * An operator with two operands.
+	 */
+	private static final class Operation extends Node {
+		private final int operator;
+		private final Node left;
+		private final Node right;
+
+		/**
+		 * @param operator
+		 *            - One of ADD, SUB, MUL, DIV, MOD and POW.
+		 * @param left
+		 *            - The left operand.
+		 * @param right
+		 *            - The right operand.
+		 */
+		Operation(int operator, Node left, Node right) {
+			this.operator = operator;
+			this.left = left;
+			this.right = right;
+		}
+
+		@Override
+		double evaluate(double[] values) {
+			return apply(operator, left.evaluate(values),
+					right.evaluate(values));
+		}
+
+		@Override
+		void evaluate(double[][] columns, int count, double[] result,
+				double[][] scratch, int depth) {
+			// The left operand is done with its scratch columns before the
+			// right one takes the first of them
+			double[] a = left.column(columns, count, result, scratch, depth);
+			double[] b = right.column(columns, count, scratch[depth],
+					scratch, depth + 1);
+			apply(operator, a, b, result, count);
+		}
+
+		@Override
+		int getScratchCount() {
+			return Math.max(left.getScratchCount(),
+					1 + right.getScratchCount());
+		}
+
+		@Override
+		boolean isConstant() {
+			return left.isConstant() && right.isConstant();
+		}
+	}
+
+	/**
+	 * Recursive descent parser following the grammar of jfunction.
+	 */
+	private static final class Parser {
+		private final String text;
+		private final List<String> variables;
+		private final boolean[] used;
+		private int position = 0;
+		private String token = null;
+		private int slot = -1;
+
+		/**
+		 * @param text
+		 *            - The formula.
+		 * @param variables
+		 *            - The names of the variables.
+		 * @param used
+		 *            - Set for every variable found in the formula.
+		 */
+		Parser(String text, List<String> variables, boolean[] used) {
+			this.text = text;
+			this.variables = variables;
+			this.used = used;
+		}
+
+		/**
+		 * @return The tree of the whole formula.
+		 * @throws FunctionFormatException
+		 *             If the formula is not valid.
+		 */
+		Node parse() throws FunctionFormatException {
+			next();
+			Node node = expression();
+			if (token != null) {
+				throw new FunctionFormatException(
+						"unexpected token; expected end of term: >" + token
+								+ "<");
+			}
+			return node;
+		}
+
+		/**
+		 * expression = term { ("+" | "-") term }
+		 */
+		private Node expression() throws FunctionFormatException {
+			Node node = term();
+			while ("+".equals(token) || "-".equals(token)) {
+				int operator = "+".equals(token) ? ADD : SUB;
+				next();
+				node = operation(operator, node, term());
+			}
+			return node;
+		}
+
+		/**
+		 * term = factor { ("*" | "/" | "%") factor }
+		 */
+		private Node term() throws FunctionFormatException {
+			Node node = factor();
+			while ("*".equals(token) || "/".equals(token)
+					|| "%".equals(token)) {
+				int operator = "*".equals(token) ? MUL
+						: "/".equals(token) ? DIV : MOD;
+				next();
+				node = operation(operator, node, factor());
+			}
+			return node;
+		}
+
+		/**
+		 * factor = power { "^" power }
+		 */
+		private Node factor() throws FunctionFormatException {
+			Node node = power();
+			while ("^".equals(token)) {
+				next();
+				node = operation(POW, node, power());
+			}
+			return node;
+		}
+
+		/**
+		 * power = "(" expression ")" | "-" power | function power | number |
+		 * variable
+		 */
+		private Node power() throws FunctionFormatException {
+			if (token == null) {
+				throw new FunctionFormatException("unexpected end of term");
+			}
+
+			if ("(".equals(token)) {
+				next();
+				Node node = expression();
+				if (!")".equals(token)) {
+					throw new FunctionFormatException(
+							"open brace without matching closing brace");
+				}
+				next();
+				return node;
+			}
+			if ("-".equals(token)) {
+				next();
+				return operation(MUL, new Constant(-1), power());
+			}
+			if (slot >= 0) {
+				Node node = new Variable(slot);
+				used[slot] = true;
+				next();
+				return node;
+			}
+			for (int function = 0; function < FUNCTIONS.length; function++) {
+				if (FUNCTIONS[function].equals(token)) {
+					next();
+					Node argument = power();
+					Node node = new Function(function, argument);
+					return argument.isConstant() ? new Constant(
+							node.evaluate(null)) : node;
+				}
+			}
+			if (NUMBER.matcher(token).matches()) {
+				Node node = new Constant(Double.parseDouble(token));
+				next();
+				return node;
+			}
+			throw new FunctionFormatException("unexpected token: >" + token
+					+ "<");
+		}
+
+		/**
+		 * @return An Operation, or a Constant if both operands are.
+		 */
+		private Node operation(int operator, Node left, Node right) {
+			Node node = new Operation(operator, left, right);
+			return node.isConstant() ? new Constant(node.evaluate(null))
+					: node;
+		}
+
+		/**
+		 * Read the next token: the longest name of a variable or function,
+		 * a number or a single character. Names of variables win over
+		 * functions of the same length.
+		 *
+		 * @throws FunctionFormatException
+		 *             If the text contains an unknown name.
+		 */
+		private void next() throws FunctionFormatException {
+			while (position < text.length()
+					&& Character.isWhitespace(text.charAt(position))) {
+				position++;
+			}
+			token = null;
+			slot = -1;
+			if (position == text.length()) {
+				return;
+			}
+
+			int length = 0;
+			for (int i = 0; i < variables.size(); i++) {
+				String name = variables.get(i);
+				if (name.length() > length
+						&& text.startsWith(name, position)) {
+					length = name.length();
+					slot = i;
+				}
+			}
+			for (String function : FUNCTIONS) {
+				if (function.length() > length
+						&& text.startsWith(function, position)) {
+					length = function.length();
+					slot = -1;
+				}
+			}
+
+			if (length == 0) {
+				Matcher number = NUMBER.matcher(text).region(position,
+						text.length());
+				if (number.lookingAt()) {
+					length = number.end() - position;
+				} else if ("+-*/%^()".indexOf(text.charAt(position)) >= 0) {
+					length = 1;
+				} else {
+					throw new FunctionFormatException(
+							"can not handle this part of the function; illegal start of term: "
+									+ text.substring(position));
+				}
+			}
+			token = text.substring(position, position + length);
+			position += length;
+		}
+	}
+
+	/**
+	 * @param formula
+	 *            - The formula.
+	 * @param variables
+	 *            - The names of the variables.
+	 * @param used
+	 *            - Set for every variable found in the formula.
+	 * @param root
+	 *            - The tree of the formula.
+	 */
+	private LinkCostFormula(String formula, List<String> variables,
+			boolean[] used, Node root) {
+		this.formula = formula;
+		this.variables = variables;
+		this.used = used;
+		this.root = root;
+		scratchCount = root.getScratchCount();
+	}
+
+	/**
+	 * Compile a formula.
+	 *
+	 * @param formula
+	 *            - The formula, e.g. the Operators of application.properties.
+	 * @param variables
+	 *            - The names of the metrics, in the order of their values in
+	 *            evaluate().
+	 * @return The compiled formula.
+	 * @throws FunctionFormatException
+	 *             If the formula is not valid or uses an unknown name.
+	 */
+	public static LinkCostFormula compile(String formula,
+			List<String> variables) throws FunctionFormatException {
+		if (formula == null) {
+			throw new FunctionFormatException("no formula");
+		}
+
+		List<String> names = Collections
+				.unmodifiableList(new ArrayList<String>(variables));
+		boolean[] used = new boolean[names.size()];
+		Node root = new Parser(formula, names, used).parse();
+		return new LinkCostFormula(formula, names, used, root);
+	}
+
+	/**
+	 * @param values
+	 *            - The values of the variables, in the order given to
+	 *            compile().
+	 * @return The value of the formula.
+	 */
+	public double evaluate(double... values) {
+		return root.evaluate(values);
+	}
+
+	/**
+	 * Evaluate the formula for many rows at once. Every operation of the tree
+	 * runs as one loop over all rows of its operands.
+	 *
+	 * @param columns
+	 *            - The values of the variables, one array per variable in the
+	 *            order given to compile() and one entry per row; null for
+	 *            variables that are not used.
+	 * @param count
+	 *            - The number of rows.
+	 * @param results
+	 *            - Receives the value of the formula for every row.
+	 * @param scratch
+	 *            - At least getScratchCount() columns of at least count
+	 *            entries for the intermediate values.
+	 */
+	public void evaluate(double[][] columns, int count, double[] results,
+			double[][] scratch) {
+		root.evaluate(columns, count, results, scratch, 0);
+	}
+
+	/**
+	 * @return The number of scratch columns evaluate() needs for a table,
+	 *         which grows with the depth of the right operands in the tree.
+	 */
+	public int getScratchCount() {
+		return scratchCount;
+	}
+
+	/**
+	 * @return The formula as given to compile().
+	 */
+	public String getFormula() {
+		return formula;
+	}
+
+	/**
+	 * @return The names of the variables as given to compile().
+	 */
+	public List<String> getVariables() {
+		return variables;
+	}
+
+	/**
+	 * @param slot
+	 *            - The number of a variable.
+	 * @return True if the formula depends on the variable.
+	 */
+	public boolean isUsed(int slot) {
+		return used[slot];
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return formula;
+	}
+
+	/**
+	 * @param operator
+	 *            - One of ADD, SUB, MUL, DIV, MOD and POW.
+	 * @param left
+	 *            - The left operand.
+	 * @param right
+	 *            - The right operand.
+	 * @return The result.
+	 */
+	private static double apply(int operator, double left, double right) {
+		switch (operator) {
+		case ADD:
+			return left + right;
+		case SUB:
+			return left - right;
+		case MUL:
+			return left * right;
+		case DIV:
+			return left / right;
+		case MOD:
+			return left % right;
+		default:
+			return Math.pow(left, right);
+		}
+	}
+
+	/**
+	 * @param operator
+	 *            - One of ADD, SUB, MUL, DIV, MOD and POW.
+	 * @param a
+	 *            - The left operands.
+	 * @param b
+	 *            - The right operands.
+	 * @param result
+	 *            - Receives the results, may be one of the operands.
+	 * @param count
+	 *            - The number of rows.
+	 */
+	private static void apply(int operator, double[] a, double[] b,
+			double[] result, int count) {
+		switch (operator) {
+		case ADD:
+			for (int i = 0; i < count; i++) {
+				result[i] = a[i] + b[i];
+			}
+			break;
+		case SUB:
+			for (int i = 0; i < count; i++) {
+				result[i] = a[i] - b[i];
+			}
+			break;
+		case MUL:
+			for (int i = 0; i < count; i++) {
+				result[i] = a[i] * b[i];
+			}
+			break;
+		case DIV:
+			for (int i = 0; i < count; i++) {
+				result[i] = a[i] / b[i];
+			}
+			break;
+		case MOD:
+			for (int i = 0; i < count; i++) {
+				result[i] = a[i] % b[i];
+			}
+			break;
+		default:
+			for (int i = 0; i < count; i++) {
+				result[i] = Math.pow(a[i], b[i]);
+			}
+		}
+	}
+
+	/**
+	 * @param function
+	 *            - The position of the function in FUNCTIONS.
+	 * @param argument
+	 *            - The argument.
+	 * @return The result.
+	 */
+	private static double apply(int function, double argument) {
+		switch (function) {
+		case 0:
+			return Math.sin(Math.toRadians(argument));
+		case 1:
+			return Math.cos(Math.toRadians(argument));
+		case 2:
+			return Math.tan(Math.toRadians(argument));
+		case 3:
+			return Math.sinh(argument);
+		case 4:
+			return Math.cosh(argument);
+		case 5:
+			return Math.tanh(argument);
+		case 6:
+			return Math.asin(argument);
+		case 7:
+			return Math.acos(argument);
+		case 8:
+			return Math.atan(argument);
+		case 9:
+			return Math.exp(argument);
+		case 10:
+			return Math.log(argument);
+		case 11:
+			return Math.sqrt(argument);
+		case 12:
+			return Math.abs(argument);
+		case 13:
+			return Math.ceil(argument);
+		case 14:
+			return Math.floor(argument);
+		case 15:
+			return Math.round(argument);
+		default:
+			return Math.signum(argument);
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package controllers.routing;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.jgrapht.WeightedGraph;
+
+import de.lmu.ifi.nm.www.Link;
+import de.lmu.ifi.nm.www.Vertex;
+
+/**
+ * The values of the metrics of all links in columns, one primitive array per
+ * metric with one row per link, for the batch calculation of the link costs.
+ *
+ * Only the metrics the LinkCostFormula uses get a column. The columns are
+ * filled with the default value of the metric and the values of the feeds,
+ * then evaluate() computes the costs of all links with one loop per
+ * operation of the formula and apply() sets them as edge weights. The
+ * scratch columns of the formula are allocated with the table, so repeated
+ * evaluations do not allocate.
+ */
+public class LinkCostTable {
+	private final LinkCostFormula formula;
+	private final Link[] links;
+	private final double[][] columns;
+	private final double[] costs;
+	private final double[][] scratch;
+
+	/**
+	 * @param formula
+	 *            - The compiled formula of the link costs.
+	 * @param links
+	 *            - The links, in the order of the rows.
+	 */
+	public LinkCostTable(LinkCostFormula formula, Collection<Link> links) {
+		this.formula = formula;
+		this.links = links.toArray(new Link[links.size()]);
+		columns = new double[formula.getVariables().size()][];
+		costs = new double[this.links.length];
+		scratch = new double[formula.getScratchCount()][this.links.length];
+
+		for (int slot = 0; slot < columns.length; slot++) {
+			if (formula.isUsed(slot)) {
+				columns[slot] = new double[this.links.length];
+			}
+		}
+	}
+
+	/**
+	 * @return The number of links.
+	 */
+	public int getRowCount() {
+		return links.length;
+	}
+
+	/**
+	 * @param row
+	 *            - The number of a row.
+	 * @return The link of the row.
+	 */
+	public Link getLink(int row) {
+		return links[row];
+	}
+
+	/**
+	 * @param slot
+	 *            - The number of a metric, see LinkCostFormula.getVariables().
+	 * @return True if the formula uses the metric, so it has a column.
+	 */
+	public boolean hasColumn(int slot) {
+		return columns[slot] != null;
+	}
+
+	/**
+	 * @param slot
+	 *            - The number of a metric with a column.
+	 * @param value
+	 *            - The value for all links.
+	 */
+	public void fill(int slot, double value) {
+		Arrays.fill(columns[slot], value);
+	}
+
+	/**
+	 * @param slot
+	 *            - The number of a metric with a column.
+	 * @param row
+	 *            - The number of a row.
+	 * @param value
+	 *            - The value of the metric for the link.
+	 */
+	public void set(int slot, int row, double value) {
+		columns[slot][row] = value;
+	}
+
+	/**
+	 * Calculate the costs of all links.
+	 *
+	 * @return The costs by row.
+	 */
+	public double[] evaluate() {
+		formula.evaluate(columns, links.length, costs, scratch);
+		return costs;
+	}
+
+	/**
+	 * Set the costs of the last evaluate() as edge weights, cut to whole
+	 * numbers like the costs have always been.
+	 *
+	 * @param network
+	 *            - The graph of the links.
+	 */
+	public void apply(WeightedGraph<Vertex, Link> network) {
+		for (int row = 0; row < links.length; row++) {
+			network.setEdgeWeight(links[row], (int) costs[row]);
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package controllers.routing;
+
+import de.lmu.ifi.nm.www.RouteRequest;
+
+/**
+ * The route between a pair of network elements before and after an update of
+ * DynamicShortestPaths.
+ */
+public class RouteChange {
+	private final String source;
+	private final String destination;
+	private final RouteRequest oldRoute;
+	private final RouteRequest newRoute;
+
+	/**
+	 * @param source
+	 *            - The host name of the source network element.
+	 * @param destination
+	 *            - The host name of the destination network element.
+	 * @param oldRoute
+	 *            - The route before the update, null for none.
+	 * @param newRoute
+	 *            - The route after the update, null for none.
+	 */
+	public RouteChange(String source, String destination,
+			RouteRequest oldRoute, RouteRequest newRoute) {
+		this.source = source;
+		this.destination = destination;
+		this.oldRoute = oldRoute;
+		this.newRoute = newRoute;
+	}
+
+	/**
+	 * @return The host name of the source network element.
+	 */
+	public String getSource() {
+		return source;
+	}
+
+	/**
+	 * @return The host name of the destination network element.
+	 */
+	public String getDestination() {
+		return destination;
+	}
+
+	/**
+	 * @return The key of the route, see getRouteKey().
+	 */
+	public String getKey() {
+		return getRouteKey(source, destination);
+	}
+
+	/**
+	 * @return The route before the update, null for none.
+	 */
+	public RouteRequest getOldRoute() {
+		return oldRoute;
+	}
+
+	/**
+	 * @return The route after the update, null for none.
+	 */
+	public RouteRequest getNewRoute() {
+		return newRoute;
+	}
+
+	/**
+	 * @return True if the next hop has changed, false if only the second to
+	 *         last hop has.
+	 */
+	public boolean isNextHopChanged() {
+		String oldNext = oldRoute == null ? null : oldRoute.getNext();
+		String newNext = newRoute == null ? null : newRoute.getNext();
+		return oldNext == null ? newNext != null : !oldNext.equals(newNext);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return getKey() + ": " + oldRoute + " -> " + newRoute;
+	}
+
+	/**
+	 * @param source
+	 *            - The host name of the source network element.
+	 * @param destination
+	 *            - The host name of the destination network element.
+	 * @return The key of the route from the source to the destination.
+	 */
+	public static String getRouteKey(String source, String destination) {
+		return source + "|" + destination;
+	}
+}
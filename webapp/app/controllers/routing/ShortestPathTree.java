@@ -0,0 +1,333 @@
+package controllers.routing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import de.lmu.ifi.nm.www.Link;
+import de.lmu.ifi.nm.www.Vertex;
+
+/**
+ * The shortest paths from one source vertex to all other vertices of a
+ * GraphSnapshot, computed with a single run of Dijkstra's algorithm.
+ * 
+ * Every reachable vertex stores the last link of its shortest path and the
+ * first hop after the source, so the next hop and the second to last hop of
+ * a route can be read off without walking the path. Of several shortest
+ * paths, the one through the vertex with the lower number is kept, so the
+ * tree only depends on the snapshot.
+ */
+public class ShortestPathTree {
+	private final GraphSnapshot graph;
+	private final int source;
+	private final double[] distances;
+	private final int[] parents;
+	private final int[] firstHops;
+	private final int[] hops;
+	private final int[] order;
+	private int reachable = 0;
+
+	/**
+	 * Compute the shortest paths from a source vertex.
+	 * 
+	 * @param graph
+	 *            - The weighted graph.
+	 * @param source
+	 *            - The number of the vertex the paths start at.
+	 */
+	public ShortestPathTree(GraphSnapshot graph, int source) {
+		int vertexCount = graph.getVertexCount();
+
+		this.graph = graph;
+		this.source = source;
+		distances = new double[vertexCount];
+		parents = new int[vertexCount];
+		firstHops = new int[vertexCount];
+		hops = new int[vertexCount];
+		order = new int[vertexCount];
+
+		Arrays.fill(distances, Double.POSITIVE_INFINITY);
+		Arrays.fill(parents, -1);
+		Arrays.fill(firstHops, -1);
+		Arrays.fill(hops, -1);
+
+		Heap heap = new Heap(distances);
+		distances[source] = 0;
+		hops[source] = 0;
+		heap.update(source);
+
+		while (!heap.isEmpty()) {
+			int v = heap.poll();
+			order[reachable++] = v;
+
+			for (int e = graph.getFirstEdge(v); e < graph.getEndEdge(v); e++) {
+				int target = graph.getTarget(e);
+				double distance = distances[v] + graph.getWeight(e);
+
+				if (heap.isSettled(target)
+						|| !isShorter(distance, v, target)) {
+					continue;
+				}
+
+				distances[target] = distance;
+				parents[target] = e;
+				firstHops[target] = v == source ? target : firstHops[v];
+				hops[target] = hops[v] + 1;
+				heap.update(target);
+			}
+		}
+	}
+
+	/**
+	 * @param distance
+	 *            - The length of a new path to the target.
+	 * @param via
+	 *            - The second to last vertex of the new path.
+	 * @param target
+	 *            - The vertex the path leads to.
+	 * @return True if the new path is to be preferred to the known one.
+	 */
+	private boolean isShorter(double distance, int via, int target) {
+		if (distance != distances[target]) {
+			return distance < distances[target];
+		}
+		return parents[target] >= 0 && via < graph.getSource(parents[target]);
+	}
+
+	/**
+	 * Binary min-heap of vertex numbers ordered by their distance and number,
+	 * with decrease-key.
+	 */
+	private static final class Heap {
+		private final double[] keys;
+		private final int[] heap;
+		private final int[] positions;
+		private int size = 0;
+
+		/**
+		 * @param keys
+		 *            - The distances of the vertices.
+		 */
+		public Heap(double[] keys) {
+			this.keys = keys;
+			heap = new int[keys.length];
+			positions = new int[keys.length];
+			Arrays.fill(positions, -1);
+		}
+
+		/**
+		 * @return True if no vertex is waiting.
+		 */
+		public boolean isEmpty() {
+			return size == 0;
+		}
+
+		/**
+		 * @param v
+		 *            - The number of a vertex.
+		 * @return True if the vertex has been removed from the heap.
+		 */
+		public boolean isSettled(int v) {
+			return positions[v] == -2;
+		}
+
+		/**
+		 * Insert a vertex or move it up after its key has decreased.
+		 * 
+		 * @param v
+		 *            - The number of the vertex.
+		 */
+		public void update(int v) {
+			int i = positions[v];
+			if (i < 0) {
+				i = size++;
+				heap[i] = v;
+				positions[v] = i;
+			}
+			siftUp(i);
+		}
+
+		/**
+		 * @return The vertex with the smallest key, which is removed.
+		 */
+		public int poll() {
+			int v = heap[0];
+			positions[v] = -2;
+			size--;
+			if (size > 0) {
+				heap[0] = heap[size];
+				positions[heap[0]] = 0;
+				siftDown(0);
+			}
+			return v;
+		}
+
+		/**
+		 * @param a
+		 *            - The number of a vertex.
+		 * @param b
+		 *            - The number of another vertex.
+		 * @return True if vertex a comes before vertex b.
+		 */
+		private boolean less(int a, int b) {
+			return keys[a] < keys[b] || (keys[a] == keys[b] && a < b);
+		}
+
+		/**
+		 * @param i
+		 *            - The position of the entry to move up.
+		 */
+		private void siftUp(int i) {
+			int v = heap[i];
+			while (i > 0) {
+				int parent = (i - 1) >>> 1;
+				if (!less(v, heap[parent])) {
+					break;
+				}
+				heap[i] = heap[parent];
+				positions[heap[i]] = i;
+				i = parent;
+			}
+			heap[i] = v;
+			positions[v] = i;
+		}
+
+		/**
+		 * @param i
+		 *            - The position of the entry to move down.
+		 */
+		private void siftDown(int i) {
+			int v = heap[i];
+			while (true) {
+				int child = 2 * i + 1;
+				if (child >= size) {
+					break;
+				}
+				if (child + 1 < size && less(heap[child + 1], heap[child])) {
+					child++;
+				}
+				if (!less(heap[child], v)) {
+					break;
+				}
+				heap[i] = heap[child];
+				positions[heap[i]] = i;
+				i = child;
+			}
+			heap[i] = v;
+			positions[v] = i;
+		}
+	}
+
+	/**
+	 * @return The graph the tree has been computed on.
+	 */
+	public GraphSnapshot getGraph() {
+		return graph;
+	}
+
+	/**
+	 * @return The number of the vertex the paths start at.
+	 */
+	public int getSourceIndex() {
+		return source;
+	}
+
+	/**
+	 * @return The vertex the paths start at.
+	 */
+	public Vertex getSource() {
+		return graph.getVertex(source);
+	}
+
+	/**
+	 * @return The reachable vertices including the source, ordered by their
+	 *         distance from the source.
+	 */
+	public List<Vertex> getVertices() {
+		List<Vertex> vertices = new ArrayList<Vertex>(reachable);
+		for (int i = 0; i < reachable; i++) {
+			vertices.add(graph.getVertex(order[i]));
+		}
+		return vertices;
+	}
+
+	/**
+	 * @param v
+	 *            - The number of a vertex.
+	 * @return True if there is a path from the source to the vertex.
+	 */
+	public boolean isReachable(int v) {
+		return hops[v] >= 0;
+	}
+
+	/**
+	 * @param v
+	 *            - The number of a vertex.
+	 * @return The length of the shortest path, Double.POSITIVE_INFINITY if the
+	 *         vertex is not reachable.
+	 */
+	public double getDistance(int v) {
+		return distances[v];
+	}
+
+	/**
+	 * @param v
+	 *            - The number of a vertex.
+	 * @return The number of links of the shortest path, -1 if the vertex is
+	 *         not reachable.
+	 */
+	public int getHopCount(int v) {
+		return hops[v];
+	}
+
+	/**
+	 * @param v
+	 *            - The number of a vertex.
+	 * @return The number of the last link of the shortest path, -1 for the
+	 *         source and for vertices that are not reachable.
+	 */
+	public int getParentEdge(int v) {
+		return parents[v];
+	}
+
+	/**
+	 * @param v
+	 *            - The number of a vertex.
+	 * @return The number of the vertex following the source on the shortest
+	 *         path, -1 for the source and for vertices that are not
+	 *         reachable.
+	 */
+	public int getNextHop(int v) {
+		return firstHops[v];
+	}
+
+	/**
+	 * @param v
+	 *            - The number of a vertex.
+	 * @return The number of the vertex preceding it on the shortest path, -1
+	 *         for the source and for vertices that are not reachable.
+	 */
+	public int getSecondToLast(int v) {
+		return parents[v] < 0 ? -1 : graph.getSource(parents[v]);
+	}
+
+	/**
+	 * @param destination
+	 *            - A vertex of the graph.
+	 * @return The links of the shortest path from the source, empty for the
+	 *         source and for vertices that are not reachable or not part of
+	 *         the graph.
+	 */
+	public List<Link> getPath(Vertex destination) {
+		List<Link> path = new ArrayList<Link>();
+		int v = graph.indexOf(destination);
+
+		while (v >= 0 && parents[v] >= 0) {
+			path.add(graph.getLink(parents[v]));
+			v = graph.getSource(parents[v]);
+		}
+		Collections.reverse(path);
+		return path;
+	}
+}
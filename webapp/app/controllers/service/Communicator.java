@@ -162,7 +162,7 @@ public class Communicator extends Controller {
             s = s + "\"hostname\": \"" + a.getHostname() + "\"" + ",";
             s = s
                     + "\"routingTable\": \""
-                    + a.getRoutingTable().replace(
+                    + MyLogic.getRoutingTable(a).replace(
                             System.getProperty("line.separator"), "\\n") + "\""
                             + ",";
             s = s + "\"upTime\": " + a.getUpTime() + ",";
@@ -203,7 +203,7 @@ public class Communicator extends Controller {
         for (Vertex a : vertexes) {
             if (a.getUniqueIdentifier().equals(name)) {
                 s = s + a.getHostname() + a.getManagementIP()
-                        + a.getRoutingTable() + a.getUpTime();
+                        + MyLogic.getRoutingTable(a) + a.getUpTime();
                 return ok(s);
             }
 
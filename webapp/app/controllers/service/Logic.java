@@ -1,25 +1,35 @@
 package controllers.service;
 
 import java.rmi.RemoteException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 import models.*;
 import models.ApplicationProperties;
+import de.lmu.ifi.nm.www.InterfaceIndex;
 import de.lmu.ifi.nm.www.Link;
+import de.lmu.ifi.nm.www.RouteRequest;
 import de.lmu.ifi.nm.www.Vertex;
 
 import org.dyndns.kwitte.jfunction.FunctionFormatException;
-import org.dyndns.kwitte.jfunction.Terms;
 import org.jgrapht.alg.DijkstraShortestPath;
 import org.jgrapht.graph.DirectedWeightedMultigraph;
 
 import play.Logger;
+import play.Play;
 import controllers.database.LinkAgent;
 import controllers.database.MetricAgent;
 import controllers.networking.TopologyDiscoverer;
+import controllers.routing.DynamicShortestPaths;
+import controllers.routing.LinkCostFormula;
+import controllers.routing.LinkCostTable;
+import controllers.routing.RouteChange;
 
 /**
  * Contains the most part of the logic of the program.
@@ -35,6 +45,13 @@ public class Logic {
 	public static String formula;
 	public static ApplicationProperties properties;
 	public static Trc traceroute = new Trc();
+	private Map<String, RouteRequest> installedRoutes = new HashMap<String, RouteRequest>();
+	private Map<String, RouteChange> retryRoutes = new LinkedHashMap<String, RouteChange>();
+	private ForkJoinPool routingPool = null;
+	private DynamicShortestPaths shortestPaths = null;
+	private LinkCostFormula linkCostFormula = null;
+	private String compiledFormula = null;
+	private List<String> compiledMetrics = null;
 
 	/**
 	 * Does the whole logic part: Managing communication with GUI Managing
@@ -51,6 +68,14 @@ public class Logic {
 		properties = new ApplicationProperties();
 		properties.loadProgrammProperies();
 
+		// Threads the shortest path trees of the sources are spread over
+		Integer routingThreads = Play.application().configuration()
+				.getInt("routing.threads");
+		routingPool = new ForkJoinPool(
+				routingThreads == null || routingThreads <= 0 ? Runtime
+						.getRuntime().availableProcessors() : routingThreads);
+		shortestPaths = new DynamicShortestPaths(routingPool);
+
 		IterativeThread t0 = new IterativeThread(
 				properties.getMinutesToRefresh());
 		 t0.start();
@@ -77,12 +102,14 @@ public class Logic {
 
 	/**
 	 * Method to call the network agents to give the graph to me. Updates
-	 * instance variable with new graphobject
+	 * instance variable with new graphobject. Used by the GUI, so it takes
+	 * the topology the Satellites know right now instead of waiting for a
+	 * discovery.
 	 * 
 	 */
 	public DirectedWeightedMultigraph<Vertex, Link> getTopology() {
 		try {
-			network = TopologyDiscoverer.getTopology();
+			network = TopologyDiscoverer.getTopology(true);
 			// getting the informations in the db who fit to the links in the
 			// graphobject
 			if (network != null) {
@@ -136,13 +163,12 @@ public class Logic {
 
 	/**
 	 * This method calculates the costs of all links. It first creates a list of
-	 * all links. Then it calculates for every Link the costs. It uses the
-	 * String from Program.Properties replaces the variables with there real
-	 * values and calculates it values. Then it sets the value of the Link to
-	 * the calculated costs.
-	 * 
-	 * Evaluating Formula is done by API from http://kaiwitte.org/ Documentation
-	 * under http://kaiwitte.org/pr/jfunction/javadoc/
+	 * all links. Then it puts the values of the metrics the formula from
+	 * Program.Properties uses into a LinkCostTable, one column per metric and
+	 * one row per link: the default value of the metric, or the value of the
+	 * feed the link has for it. The formula, compiled once by
+	 * getLinkCostFormula(), is evaluated for all links at once and the costs
+	 * are set as the weights of the links.
 	 */
 	private void calculateLinkCosts() {
 		Logger.debug("Started to calculate Link costs");
@@ -151,108 +177,190 @@ public class Logic {
 			Set<Vertex> VertexSet = network.vertexSet();
 
 			Set<Link> LinkSet = new HashSet<Link>();
-			// create a List with all Links
+			// create a List with all Links that are up, the route
+			// calculation leaves out the others
 			for (Vertex Vertex : VertexSet) {
 				Set<Link> LinklistTemp = network.incomingEdgesOf(Vertex);
 				for (Link Link : LinklistTemp) {
-					LinkSet.add(Link);
+					if (Link.isUp()) {
+						LinkSet.add(Link);
+					}
 				}
 			}
 
-			for (Link l : LinkSet) {
-				HashMap<String, String> hashmap = new HashMap<String, String>();
-
-				hashmap = LinkAgent.getMetricFeed(l);
-				if (hashmap != null) {
-					l.setMetricFeedRelation(hashmap);
+			LinkCostFormula compiled = getLinkCostFormula();
+			if (compiled == null) {
+				for (Link l : LinkSet) {
+					network.setEdgeWeight(l, 0);
 				}
+				Logger.debug("Done with calculating Link costs");
+				return;
+			}
 
-				int value = 0;
-				String Formulaactually = formula;
-				String newFormula = "";
-				for (Metric m : metrics) {
-
-					String feedname = l.getMetricFeedRelation(m.getName());
-					// String defaultLinkValue =
-					// Link.getMetricDefaultLinkValueRelation(m.getName());
-					// this coloumn is used if we implemente a not default value for
-					// a metric without having a feed
-					// the user can type in a numerical value he wants for this link (and only this link)
-					int a;
-					if (feedname != null) {
-						a = controllers.database.FeedAgent.readValues(feedname);
-					} else {
-						a = m.getDefaultValue();
-					}
-					String s = new Integer(a).toString();
-					newFormula = Formulaactually.replace(m.getName(), s);
+			// One column per metric, one row per link
+			LinkCostTable table = new LinkCostTable(compiled, LinkSet);
+			Map<String, Integer> slots = new HashMap<String, Integer>();
+			for (int i = 0; i < compiled.getVariables().size(); i++) {
+				slots.put(compiled.getVariables().get(i), i);
+				if (table.hasColumn(i)) {
+					table.fill(i, metrics.get(i).getDefaultValue());
 				}
+			}
 
-				try {
-					value = (int) Terms.evaluate(newFormula);
-				} catch (FunctionFormatException e) {
-					Logger.error(
-							"Formula in application.properties is not a valid Formula. Maybe there are names for metrics used which don't exist.",
-							e);
+			// Feeds override the default value, every feed is read once
+			HashMap<String, HashMap<String, String>> relations = LinkAgent
+					.getMetricFeeds();
+			Map<String, Integer> feedValues = new HashMap<String, Integer>();
+			for (int row = 0; row < table.getRowCount(); row++) {
+				Link l = table.getLink(row);
+				HashMap<String, String> hashmap = relations.get(LinkAgent
+						.getLinkKey(l));
+				if (hashmap == null) {
+					hashmap = new HashMap<String, String>();
 				}
+				l.setMetricFeedRelation(hashmap);
 
-				Logger.debug("Link in question is:\n " + l.toString());
-				Logger.debug("Set edge weight from " + network.getEdgeWeight(l)
-						+ " to " + value);
-
-				network.setEdgeWeight(l, value);
+				for (Map.Entry<String, String> relation : hashmap.entrySet()) {
+					Integer slot = slots.get(relation.getKey());
+					if (slot == null || !table.hasColumn(slot)) {
+						continue;
+					}
 
+					Integer value = feedValues.get(relation.getValue());
+					if (value == null) {
+						value = controllers.database.FeedAgent
+								.readValues(relation.getValue());
+						feedValues.put(relation.getValue(), value);
+					}
+					table.set(slot, row, value);
+				}
 			}
+
+			table.evaluate();
+			table.apply(network);
+			Logger.debug("Set edge weights of " + table.getRowCount()
+					+ " links");
 		}
 
 		Logger.debug("Done with calculating Link costs");
 	}
 
 	/**
-	 * This method calculates the costs of all links. It first creates a list of
-	 * all links.
+	 * Compiles the formula from Program.Properties with the names of the
+	 * metrics as variables. The compiled formula is kept until the formula or
+	 * the metrics change, i.e. it is only compiled again after the properties
+	 * file has been edited or a metric has been added.
+	 * 
+	 * Evaluating Formula follows the API from http://kaiwitte.org/
+	 * Documentation under http://kaiwitte.org/pr/jfunction/javadoc/
+	 * 
+	 * @return The compiled formula, null if it is not valid.
+	 */
+	private LinkCostFormula getLinkCostFormula() {
+		List<String> names = new ArrayList<String>(metrics.size());
+		for (Metric m : metrics) {
+			names.add(m.getName());
+		}
+
+		boolean changed = formula == null ? compiledFormula != null
+				: !formula.equals(compiledFormula);
+		if (changed || !names.equals(compiledMetrics)) {
+			compiledFormula = formula;
+			compiledMetrics = names;
+			try {
+				linkCostFormula = LinkCostFormula.compile(formula, names);
+				Logger.debug("Compiled formula " + formula + " for metrics "
+						+ names);
+			} catch (FunctionFormatException e) {
+				linkCostFormula = null;
+				Logger.error(
+						"Formula in application.properties is not a valid Formula. Maybe there are names for metrics used which don't exist.",
+						e);
+			}
+		}
+		return linkCostFormula;
+	}
+
+	/**
+	 * Brings the shortest paths between all pairs of network elements up to
+	 * date with 'shortestPaths', which only repairs the trees affected by the
+	 * changes since the previous run. Only the routes it reports as changed
+	 * and the ones that could not be set before are compared with the
+	 * installed routes and sent to the TopologyDiscoverer in one batch.
 	 */
 	private void setRoutes() {
 		Logger.debug("Started to set Routes");
 		if (network != null) {
-			Set<Vertex> VertexSet = network.vertexSet();
+			List<RouteChange> changed = shortestPaths.update(network);
 
-			for (Vertex start : VertexSet) {
-				if (network.edgesOf(start).size() > 1) {
-					for (Vertex end : VertexSet) {
-						if (start != end) {
-							List<Link> path = DijkstraShortestPath
-									.findPathBetween(network, start, end);
-							if (path.isEmpty()) {
-								Logger.info("No Path between " + start
-										+ " and " + end);
-							} else {
-								Link next = path.get(0);
-								Vertex nextV = network.getEdgeTarget(next);
-								Link lastLink = path.get(path.size() - 1);
-								Vertex nextToLast = network
-										.getEdgeSource(lastLink);
-								Logger.debug("Route calculated. Now setting in network.");
-								if (path.size() > 1) {
-									try {
-										TopologyDiscoverer.setRoute(start,
-												nextV, nextToLast, end);
-										Logger.debug("Set route from \n"
-												+ start + " to  \n" + end
-												+ " via \n" + nextV);
-									} catch (RemoteException e) {
-										Logger.error("Failed to setRoute from "
-												+ start + " to " + end
-												+ " via " + nextV, e);
-									}
-								}
-							}
-						}
+			if (shortestPaths.getUnreachable() > 0) {
+				Logger.info("No Path between " + shortestPaths.getUnreachable()
+						+ " pairs of network elements");
+			}
+
+			Map<String, RouteChange> pending = new LinkedHashMap<String, RouteChange>();
+			pending.putAll(retryRoutes);
+			for (RouteChange change : changed) {
+				pending.put(change.getKey(), change);
+			}
+			retryRoutes.clear();
+
+			List<RouteRequest> changes = new ArrayList<RouteRequest>();
+			for (Map.Entry<String, RouteChange> change : pending.entrySet()) {
+				RouteChange pair = change.getValue();
+				RouteRequest route = shortestPaths.getRoute(pair.getSource(),
+						pair.getDestination());
+				RouteRequest installed = installedRoutes.get(change.getKey());
+
+				if (route != null) {
+					if (!route.equals(installed)) {
+						changes.add(route);
 					}
+				} else if (installed != null) {
+					changes.add(new RouteRequest(pair.getSource(), pair
+							.getDestination()));
+				}
+			}
+
+			Logger.debug(changed.size() + " routes recalculated, "
+					+ changes.size() + " changed. Now setting in network.");
+			if (changes.isEmpty()) {
+				Logger.debug("Done with setting routes");
+				return;
+			}
+
+			try {
+				List<RouteRequest> failed = TopologyDiscoverer
+						.setRoutes(changes);
+				for (RouteRequest route : failed) {
+					Logger.error("Failed to setRoute from " + route);
+				}
+
+				// Failed changes are sent again in the next run
+				Set<RouteRequest> failedSet = new HashSet<RouteRequest>(failed);
+				for (RouteRequest route : changes) {
+					String key = RouteChange.getRouteKey(
+							route.getSource(), route.getDestination());
+					if (failedSet.contains(route)) {
+						retryRoutes.put(key, pending.get(key));
+					} else if (route.isWithdrawal()) {
+						installedRoutes.remove(key);
+					} else {
+						installedRoutes.put(key, route);
+					}
+				}
+				Logger.debug("Set " + (changes.size() - failed.size())
+						+ " routes.");
+			} catch (RemoteException e) {
+				Logger.error("Failed to set " + changes.size() + " routes", e);
+				for (RouteRequest route : changes) {
+					String key = RouteChange.getRouteKey(
+							route.getSource(), route.getDestination());
+					retryRoutes.put(key, pending.get(key));
 				}
 			}
 		}
-		Logger.debug("Done with calculating Link costs");
+		Logger.debug("Done with setting routes");
 		
 	}
 
@@ -326,25 +434,56 @@ public class Logic {
 	}
 
 	public List<Link> calculateTraceroute() {
-		String from = traceroute.from;
-		String to = traceroute.to;
-		Set<Vertex> VertexSet = network.vertexSet();
-		for (Vertex start : VertexSet) {
-			if (start.getHostname().equals(from)) {
-				for (Vertex end : VertexSet) {
-					if (end.getHostname().equals(to)) {
-						List<Link> path = DijkstraShortestPath.findPathBetween(
-								network, start, end);
-
-						return path;
-					}
-				}
+		String from = resolveHostname(traceroute.from);
+		String to = resolveHostname(traceroute.to);
+		Vertex start = null;
+		Vertex end = null;
+		for (Vertex vertex : network.vertexSet()) {
+			if (vertex.getHostname().equals(from)) {
+				start = vertex;
 			}
+			if (vertex.getHostname().equals(to)) {
+				end = vertex;
+			}
+		}
 
+		if (start == null || end == null) {
+			return null;
 		}
+		return DijkstraShortestPath.findPathBetween(network, start, end);
+	}
 
-		return null;
+	/**
+	 * Network elements can be given by host name or by the IP-Address of one
+	 * of their interfaces.
+	 * 
+	 * @param name
+	 *            - A host name or IP-Address.
+	 * @return The host name of the network element owning the IP-Address, or
+	 *         the given name.
+	 */
+	private String resolveHostname(String name) {
+		InterfaceIndex.Entry entry = TopologyDiscoverer.getInterface(name);
+		return entry == null ? name : entry.getHostname();
+	}
 
+	/**
+	 * Fetches the routing table of a network element. Routing tables are not
+	 * part of the topology and are asked from the Satellite on demand.
+	 * 
+	 * @param vertex
+	 *            - The network element.
+	 * @return The routing table, one route per line, or an empty String if it
+	 *         could not be fetched.
+	 */
+	public String getRoutingTable(Vertex vertex) {
+		try {
+			return TopologyDiscoverer.getRoutingTable(vertex);
+		} catch (RemoteException e) {
+			Logger.error("Failed to get routing table of "
+					+ vertex.getHostname(), e);
+			return "";
+		}
 	}
 
 	public List<Metric> getAllMetrics() {
@@ -0,0 +1,439 @@
+package controllers.routing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import org.jgrapht.alg.DijkstraShortestPath;
+import org.jgrapht.graph.DirectedWeightedMultigraph;
+import org.junit.Test;
+
+import de.lmu.ifi.nm.www.Link;
+import de.lmu.ifi.nm.www.RouteRequest;
+import de.lmu.ifi.nm.www.Vertex;
+
+/**
+ * Compares the routes of DynamicShortestPaths with the routes found by a
+ * DijkstraShortestPath of JGraphT for every pair of vertices, then applies
+ * random changes to a topology and compares the repaired trees with a full
+ * calculation after every step.
+ */
+public class DynamicShortestPathsTest {
+	private static final int VERTICES = 60;
+	private static final int EXTRA_LINKS = 40;
+	private static final int STEPS = 200;
+	private static final double EPSILON = 1e-9;
+
+	@Test
+	public void uniqueWeights() {
+		check(1, false, null);
+	}
+
+	@Test
+	public void tiedWeights() {
+		check(2, true, null);
+	}
+
+	@Test
+	public void parallelRepairs() {
+		ForkJoinPool pool = new ForkJoinPool(3);
+		try {
+			check(3, false, pool);
+			check(4, true, pool);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void sameRoutesAsPairwiseDijkstra() {
+		for (long seed = 21; seed < 26; seed++) {
+			DirectedWeightedMultigraph<Vertex, Link> graph = new RandomTopology(
+					seed, VERTICES, EXTRA_LINKS, false).getGraph();
+			DynamicShortestPaths paths = new DynamicShortestPaths(null);
+
+			assertEquals(calculatePairwise(graph), getRoutes(paths.update(graph)));
+			assertEquals(0, paths.getUnreachable());
+		}
+	}
+
+	@Test
+	public void unreachableVertices() {
+		RandomTopology topology = new RandomTopology(26, 30, 20, false);
+		DirectedWeightedMultigraph<Vertex, Link> graph = topology.getGraph();
+		Vertex first = topology.addVertex();
+		Vertex second = topology.addVertex();
+		topology.addLinks(first, second);
+		topology.randomLink().setUp(false);
+
+		DynamicShortestPaths paths = new DynamicShortestPaths(null);
+
+		assertEquals(calculatePairwise(graph), getRoutes(paths.update(graph)));
+		assertEquals(countUnreachable(graph), paths.getUnreachable());
+		assertTrue(paths.getUnreachable() > 0);
+	}
+
+	@Test
+	public void noRoutesToNeighborsAndFromLeaves() {
+		DirectedWeightedMultigraph<Vertex, Link> graph = new RandomTopology(
+				27, VERTICES, EXTRA_LINKS, false).getGraph();
+		Map<String, RouteRequest> routes = getRoutes(new DynamicShortestPaths(
+				null).update(graph));
+
+		for (Link link : graph.edgeSet()) {
+			Vertex source = graph.getEdgeSource(link);
+			Vertex target = graph.getEdgeTarget(link);
+			// A neighbor gets a route only if a detour is shorter
+			if (new DijkstraShortestPath<Vertex, Link>(graph, source, target)
+					.getPathLength() == graph.getEdgeWeight(link)) {
+				assertFalse(routes.containsKey(RouteChange.getRouteKey(
+						source.getHostname(), target.getHostname())));
+			}
+		}
+		for (RouteRequest route : routes.values()) {
+			for (Vertex vertex : graph.vertexSet()) {
+				if (vertex.getHostname().equals(route.getSource())) {
+					assertTrue(graph.edgesOf(vertex).size() > 1);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void parallelSameAsSerial() {
+		RandomTopology topology = new RandomTopology(28, 120, 80, true);
+		Vertex first = topology.addVertex();
+		Vertex second = topology.addVertex();
+		topology.addLinks(first, second);
+		DynamicShortestPaths serial = new DynamicShortestPaths(null);
+		Map<String, RouteRequest> expected = getRoutes(serial.update(topology
+				.getGraph()));
+
+		for (int threads : new int[] { 1, 2, 4, 8 }) {
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			try {
+				for (int run = 0; run < 3; run++) {
+					DynamicShortestPaths parallel = new DynamicShortestPaths(
+							pool);
+					assertEquals(expected,
+							getRoutes(parallel.update(topology.getGraph())));
+					assertEquals(serial.getUnreachable(),
+							parallel.getUnreachable());
+				}
+			} finally {
+				pool.shutdown();
+			}
+		}
+		assertTrue(serial.getUnreachable() > 0);
+	}
+
+	@Test
+	public void unchangedTopology() {
+		RandomTopology topology = new RandomTopology(5, VERTICES,
+				EXTRA_LINKS, false);
+		DynamicShortestPaths paths = new DynamicShortestPaths(null);
+
+		assertFalse(paths.update(topology.getGraph()).isEmpty());
+		assertTrue(paths.update(topology.getGraph()).isEmpty());
+	}
+
+	/**
+	 * Run random steps on a topology and compare after each of them.
+	 */
+	private void check(long seed, boolean integerWeights, ForkJoinPool pool) {
+		RandomTopology topology = new RandomTopology(seed, VERTICES,
+				EXTRA_LINKS, integerWeights);
+		DirectedWeightedMultigraph<Vertex, Link> graph = topology.getGraph();
+		DynamicShortestPaths paths = new DynamicShortestPaths(pool);
+		Map<String, RouteRequest> installed = new HashMap<String, RouteRequest>();
+
+		for (int step = 0; step <= STEPS; step++) {
+			if (step > 0) {
+				change(topology, integerWeights);
+			}
+			for (RouteChange change : paths.update(graph)) {
+				apply(change, installed);
+			}
+			compare(graph, paths, installed, integerWeights);
+		}
+	}
+
+	/**
+	 * Apply one random change: a link cost goes up or down, a link is added,
+	 * removed, goes down or comes up again, a vertex is added or removed, or
+	 * the costs of all links change at once.
+	 */
+	private void change(RandomTopology topology, boolean integerWeights) {
+		DirectedWeightedMultigraph<Vertex, Link> graph = topology.getGraph();
+		Random random = topology.getRandom();
+		Link link = topology.randomLink();
+		double weight = graph.getEdgeWeight(link);
+
+		switch (random.nextInt(9)) {
+		case 0:
+			graph.setEdgeWeight(link, weight * (2 + random.nextInt(3)));
+			break;
+		case 1:
+			graph.setEdgeWeight(link,
+					integerWeights ? Math.max(1, Math.floor(weight / 2))
+							: weight / (1 + random.nextDouble()));
+			break;
+		case 2:
+			Vertex source = topology.randomVertex();
+			Vertex target = topology.randomVertex();
+			if (source != target) {
+				topology.addLinks(source, target);
+			}
+			break;
+		case 3:
+			graph.removeEdge(link);
+			break;
+		case 4:
+			link.setUp(!link.isUp());
+			break;
+		case 5:
+			Vertex added = topology.addVertex();
+			for (int i = random.nextInt(3); i > 0; i--) {
+				topology.addLinks(added, topology.randomVertex());
+			}
+			break;
+		case 6:
+			if (graph.vertexSet().size() > VERTICES / 2) {
+				graph.removeVertex(topology.randomVertex());
+			}
+			break;
+		case 7:
+			for (int i = 1 + random.nextInt(3); i > 0; i--) {
+				Link changed = topology.randomLink();
+				graph.setEdgeWeight(changed, topology.randomWeight());
+			}
+			break;
+		default:
+			if (random.nextInt(10) == 0) {
+				for (Link changed : graph.edgeSet()) {
+					graph.setEdgeWeight(changed, topology.randomWeight());
+				}
+			}
+			break;
+		}
+	}
+
+	/**
+	 * Install a route change like the Logic does, after checking that it
+	 * starts from the route installed before.
+	 */
+	private void apply(RouteChange change, Map<String, RouteRequest> installed) {
+		RouteRequest oldRoute = installed.get(change.getKey());
+
+		assertEquals(change.toString(), oldRoute, change.getOldRoute());
+		assertFalse(change.toString(),
+				change.getNewRoute() == null ? oldRoute == null : change
+						.getNewRoute().equals(oldRoute));
+
+		if (change.getNewRoute() == null) {
+			installed.remove(change.getKey());
+		} else {
+			installed.put(change.getKey(), change.getNewRoute());
+		}
+	}
+
+	/**
+	 * Compare the trees and the installed routes with a full calculation.
+	 * With unique weights the routes have to be the same. With ties only the
+	 * distances have to be the same, and every route has to follow a shortest
+	 * path.
+	 */
+	private void compare(DirectedWeightedMultigraph<Vertex, Link> graph,
+			DynamicShortestPaths paths, Map<String, RouteRequest> installed,
+			boolean integerWeights) {
+		GraphSnapshot snapshot = new GraphSnapshot(graph);
+		Map<String, RouteRequest> expected = new HashMap<String, RouteRequest>();
+		Map<String, Vertex> vertices = new HashMap<String, Vertex>();
+		int unreachable = 0;
+
+		for (Vertex vertex : graph.vertexSet()) {
+			vertices.put(vertex.getHostname(), vertex);
+		}
+
+		for (int s = 0; s < snapshot.getVertexCount(); s++) {
+			ShortestPathTree tree = new ShortestPathTree(snapshot, s);
+			String source = snapshot.getVertex(s).getHostname();
+
+			for (int d = 0; d < snapshot.getVertexCount(); d++) {
+				if (d == s) {
+					continue;
+				}
+				String destination = snapshot.getVertex(d).getHostname();
+				String key = RouteChange.getRouteKey(source, destination);
+				RouteRequest route = paths.getRoute(source, destination);
+
+				if (!tree.isReachable(d)) {
+					unreachable++;
+				} else if (snapshot.getDegree(s) > 1
+						&& tree.getHopCount(d) > 1) {
+					expected.put(key, new RouteRequest(source, snapshot
+							.getVertex(tree.getNextHop(d)).getHostname(),
+							snapshot.getVertex(tree.getSecondToLast(d))
+									.getHostname(), destination));
+				}
+				assertEquals(key, tree.getDistance(d),
+						paths.getDistance(source, destination), EPSILON);
+				assertEquals(key, installed.get(key), route);
+
+				if (integerWeights && route != null) {
+					assertShortest(graph, vertices, paths, route);
+				}
+				if (integerWeights
+						&& expected.containsKey(key) != (route != null)) {
+					// Only a tie with the direct link may make a difference
+					assertEquals(key, tree.getDistance(d),
+							getDirectWeight(graph, snapshot.getVertex(s),
+									snapshot.getVertex(d)), EPSILON);
+				}
+			}
+		}
+
+		if (!integerWeights) {
+			assertEquals(expected, installed);
+		}
+		assertEquals(unreachable, paths.getUnreachable());
+	}
+
+	/**
+	 * Check that the next hop and the second to last hop of a route lie on a
+	 * shortest path.
+	 */
+	private void assertShortest(DirectedWeightedMultigraph<Vertex, Link> graph,
+			Map<String, Vertex> vertices, DynamicShortestPaths paths,
+			RouteRequest route) {
+		Vertex source = vertices.get(route.getSource());
+		Vertex next = vertices.get(route.getNext());
+		Vertex secondToLast = vertices.get(route.getSecondToLast());
+		Vertex destination = vertices.get(route.getDestination());
+		assertNotNull(route.toString(), next);
+		assertNotNull(route.toString(), secondToLast);
+
+		double distance = paths.getDistance(route.getSource(),
+				route.getDestination());
+		assertEquals(route.toString(), distance,
+				getDirectWeight(graph, source, next)
+						+ paths.getDistance(route.getNext(),
+								route.getDestination()), EPSILON);
+		assertEquals(route.toString(), distance,
+				paths.getDistance(route.getSource(), route.getSecondToLast())
+						+ getDirectWeight(graph, secondToLast, destination),
+				EPSILON);
+	}
+
+	/**
+	 * @return The weight of the cheapest link that is up from the source to
+	 *         the target, Double.POSITIVE_INFINITY if there is none.
+	 */
+	private double getDirectWeight(
+			DirectedWeightedMultigraph<Vertex, Link> graph, Vertex source,
+			Vertex target) {
+		double weight = Double.POSITIVE_INFINITY;
+		Set<Link> links = new HashSet<Link>(graph.getAllEdges(source, target));
+		for (Link link : links) {
+			if (link.isUp()) {
+				weight = Math.min(weight, graph.getEdgeWeight(link));
+			}
+		}
+		return weight;
+	}
+
+	/**
+	 * @return The new routes of an update by their key, which are all routes
+	 *         after the first one.
+	 */
+	private Map<String, RouteRequest> getRoutes(List<RouteChange> changes) {
+		Map<String, RouteRequest> routes = new HashMap<String, RouteRequest>();
+
+		for (RouteChange change : changes) {
+			if (change.getNewRoute() != null) {
+				routes.put(change.getKey(), change.getNewRoute());
+			}
+		}
+		return routes;
+	}
+
+	/**
+	 * Calculate the routes with a separate search for every pair of vertices,
+	 * the way the routes were calculated before the shortest path trees.
+	 */
+	private Map<String, RouteRequest> calculatePairwise(
+			DirectedWeightedMultigraph<Vertex, Link> graph) {
+		DirectedWeightedMultigraph<Vertex, Link> network = getUpLinks(graph);
+		Map<String, RouteRequest> routes = new HashMap<String, RouteRequest>();
+
+		for (Vertex start : network.vertexSet()) {
+			if (network.edgesOf(start).size() <= 1) {
+				continue;
+			}
+			for (Vertex end : network.vertexSet()) {
+				if (end == start) {
+					continue;
+				}
+				List<Link> path = DijkstraShortestPath.findPathBetween(network,
+						start, end);
+				if (path != null && path.size() > 1) {
+					RouteRequest route = new RouteRequest(start.getHostname(),
+							network.getEdgeTarget(path.get(0)).getHostname(),
+							network.getEdgeSource(path.get(path.size() - 1))
+									.getHostname(), end.getHostname());
+					routes.put(RouteChange.getRouteKey(start.getHostname(),
+							end.getHostname()), route);
+				}
+			}
+		}
+		return routes;
+	}
+
+	/**
+	 * @return The number of pairs of vertices without a path between them.
+	 */
+	private int countUnreachable(DirectedWeightedMultigraph<Vertex, Link> graph) {
+		DirectedWeightedMultigraph<Vertex, Link> network = getUpLinks(graph);
+		int unreachable = 0;
+
+		for (Vertex start : network.vertexSet()) {
+			for (Vertex end : network.vertexSet()) {
+				if (end != start
+						&& DijkstraShortestPath.findPathBetween(network, start,
+								end) == null) {
+					unreachable++;
+				}
+			}
+		}
+		return unreachable;
+	}
+
+	/**
+	 * @return A copy of the graph without the links that are down.
+	 */
+	private DirectedWeightedMultigraph<Vertex, Link> getUpLinks(
+			DirectedWeightedMultigraph<Vertex, Link> graph) {
+		DirectedWeightedMultigraph<Vertex, Link> network = new DirectedWeightedMultigraph<Vertex, Link>(
+				Link.class);
+		for (Vertex vertex : graph.vertexSet()) {
+			network.addVertex(vertex);
+		}
+		for (Link link : graph.edgeSet()) {
+			if (link.isUp()) {
+				network.addEdge(graph.getEdgeSource(link),
+						graph.getEdgeTarget(link), link);
+				network.setEdgeWeight(link, graph.getEdgeWeight(link));
+			}
+		}
+		return network;
+	}
+}
@@ -0,0 +1,140 @@
+package controllers.routing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.dyndns.kwitte.jfunction.FunctionFormatException;
+import org.dyndns.kwitte.jfunction.Terms;
+import org.junit.Test;
+
+/**
+ * Compares the compiled formulas with the evaluation by jfunction, and the
+ * evaluation of columns with the evaluation row by row.
+ */
+public class LinkCostFormulaTest {
+	private static final List<String> VARIABLES = Arrays.asList("Preis",
+			"Delay", "Bandbreite");
+
+	private static final String[] FORMULAS = { " 1+Preis", "Preis*2+Delay/3",
+			"-Preis^2", "2^3^2", "(Preis+Delay)%7", "sqrt Preis + ln(Delay)",
+			"sin(Preis)*cos Delay", "abs(-Preis)+round(Delay/3)",
+			"1.5e2*Bandbreite-Preis",
+			"signum(Preis-Delay)*floor(Bandbreite/4)+ceil(0.5)", "exp(1)",
+			"Preis - -Delay", "((Preis))",
+			"tanh Preis + asin(0.5) + atan Delay" };
+
+	@Test
+	public void sameValuesAsJfunction() throws FunctionFormatException {
+		double[] values = { 10, 7, 100 };
+
+		for (String formula : FORMULAS) {
+			String substituted = formula;
+			for (int i = 0; i < VARIABLES.size(); i++) {
+				substituted = substituted.replace(VARIABLES.get(i), "("
+						+ (int) values[i] + ")");
+			}
+
+			assertBits(formula, Terms.evaluate(substituted), LinkCostFormula
+					.compile(formula, VARIABLES).evaluate(values));
+		}
+	}
+
+	@Test
+	public void invalidFormulas() {
+		for (String formula : new String[] { "1+", "Foo", "(1+2", "1 2", "x",
+				null }) {
+			try {
+				LinkCostFormula.compile(formula, VARIABLES);
+				fail(formula);
+			} catch (FunctionFormatException e) {
+				// expected
+			}
+		}
+	}
+
+	@Test
+	public void usedVariables() throws FunctionFormatException {
+		LinkCostFormula formula = LinkCostFormula.compile("1+Preis*Bandbreite",
+				VARIABLES);
+
+		assertTrue(formula.isUsed(0));
+		assertFalse(formula.isUsed(1));
+		assertTrue(formula.isUsed(2));
+	}
+
+	@Test
+	public void scratchColumns() throws FunctionFormatException {
+		assertEquals(0, LinkCostFormula.compile("Preis", VARIABLES)
+				.getScratchCount());
+		assertEquals(0, LinkCostFormula.compile("sqrt(2*3)", VARIABLES)
+				.getScratchCount());
+		assertEquals(1, LinkCostFormula.compile("Preis+Delay+Bandbreite",
+				VARIABLES).getScratchCount());
+		assertEquals(3, LinkCostFormula.compile(
+				"Preis+Delay*(Bandbreite-1)", VARIABLES).getScratchCount());
+	}
+
+	@Test
+	public void columnsSameAsRows() throws FunctionFormatException {
+		Random random = new Random(31);
+		int count = 1000;
+		double[][] values = new double[VARIABLES.size()][count];
+		for (double[] column : values) {
+			for (int row = 0; row < count; row++) {
+				column[row] = random.nextInt(200) - 20;
+			}
+		}
+
+		String[] formulas = Arrays.copyOf(FORMULAS, FORMULAS.length + 4);
+		formulas[FORMULAS.length] = "Preis";
+		formulas[FORMULAS.length + 1] = "5";
+		formulas[FORMULAS.length + 2] = "Delay/(Preis-Preis)";
+		formulas[FORMULAS.length + 3] = "Preis^Delay^0.5 - sinh(Bandbreite/1000)";
+
+		for (String formula : formulas) {
+			LinkCostFormula compiled = LinkCostFormula.compile(formula,
+					VARIABLES);
+			double[][] columns = new double[VARIABLES.size()][];
+			double[][] copies = new double[VARIABLES.size()][];
+			for (int slot = 0; slot < columns.length; slot++) {
+				if (compiled.isUsed(slot)) {
+					columns[slot] = values[slot];
+					copies[slot] = values[slot].clone();
+				}
+			}
+			double[] results = new double[count];
+			double[][] scratch = new double[compiled.getScratchCount()][count];
+
+			compiled.evaluate(columns, count, results, scratch);
+
+			for (int row = 0; row < count; row++) {
+				assertBits(formula + " row " + row, compiled.evaluate(
+						values[0][row], values[1][row], values[2][row]),
+						results[row]);
+			}
+			for (int slot = 0; slot < columns.length; slot++) {
+				if (columns[slot] != null) {
+					assertTrue(formula,
+							Arrays.equals(copies[slot], columns[slot]));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Compare two doubles bit by bit, which also tells NaN and the signs of
+	 * zero apart.
+	 */
+	private static void assertBits(String message, double expected,
+			double actual) {
+		assertEquals(message + ": " + expected + " vs " + actual,
+				Double.doubleToLongBits(expected),
+				Double.doubleToLongBits(actual));
+	}
+}
@@ -0,0 +1,80 @@
+package controllers.routing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.dyndns.kwitte.jfunction.FunctionFormatException;
+import org.jgrapht.graph.DirectedWeightedMultigraph;
+import org.junit.Test;
+
+import de.lmu.ifi.nm.www.Link;
+import de.lmu.ifi.nm.www.Vertex;
+
+/**
+ * Compares the costs of a LinkCostTable with the formula evaluated link by
+ * link.
+ */
+public class LinkCostTableTest {
+	private static final List<String> VARIABLES = Arrays.asList("Preis",
+			"Delay", "Bandbreite");
+
+	@Test
+	public void sameCostsAsRows() throws FunctionFormatException {
+		RandomTopology topology = new RandomTopology(41, 50, 40, false);
+		DirectedWeightedMultigraph<Vertex, Link> graph = topology.getGraph();
+		LinkCostFormula formula = LinkCostFormula.compile(
+				"1+Preis*2+Bandbreite/3", VARIABLES);
+		List<Link> links = new ArrayList<Link>(graph.edgeSet());
+		LinkCostTable table = new LinkCostTable(formula, links);
+		double[] defaults = { 10, 5, 100 };
+		double[][] values = new double[VARIABLES.size()][links.size()];
+		Random random = new Random(42);
+
+		assertEquals(links.size(), table.getRowCount());
+		assertTrue(table.hasColumn(0));
+		assertFalse(table.hasColumn(1));
+		assertTrue(table.hasColumn(2));
+
+		// Every third link has a feed value for a metric
+		for (int slot = 0; slot < VARIABLES.size(); slot++) {
+			Arrays.fill(values[slot], defaults[slot]);
+			if (table.hasColumn(slot)) {
+				table.fill(slot, defaults[slot]);
+				for (int row = 0; row < links.size(); row += 1 + random
+						.nextInt(3)) {
+					values[slot][row] = random.nextInt(1000) / 7.0;
+					table.set(slot, row, values[slot][row]);
+				}
+			}
+		}
+
+		double[] costs = table.evaluate();
+		table.apply(graph);
+
+		for (int row = 0; row < links.size(); row++) {
+			double cost = formula.evaluate(values[0][row], values[1][row],
+					values[2][row]);
+			assertEquals(links.get(row), table.getLink(row));
+			assertEquals(Double.doubleToLongBits(cost),
+					Double.doubleToLongBits(costs[row]));
+			assertEquals((int) cost, graph.getEdgeWeight(links.get(row)), 0);
+		}
+	}
+
+	@Test
+	public void noLinks() throws FunctionFormatException {
+		LinkCostTable table = new LinkCostTable(LinkCostFormula.compile(
+				"Preis", VARIABLES), new ArrayList<Link>());
+
+		table.fill(0, 1);
+
+		assertEquals(0, table.getRowCount());
+		assertEquals(0, table.evaluate().length);
+	}
+}
@@ -0,0 +1,129 @@
+package controllers.routing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.jgrapht.graph.DirectedWeightedMultigraph;
+
+import de.lmu.ifi.nm.www.Link;
+import de.lmu.ifi.nm.www.Vertex;
+
+/**
+ * Random topologies for the tests of the route calculation.
+ *
+ * Every vertex is attached to a random vertex added before it, which makes
+ * the topology connected and leaves some network elements with a single
+ * link, then further links are added between random vertices. Links come in
+ * pairs, one per direction, with independent weights. Integer weights cause
+ * many shortest paths of equal length, the other weights practically none.
+ */
+class RandomTopology {
+	private final Random random;
+	private final boolean integerWeights;
+	private final DirectedWeightedMultigraph<Vertex, Link> graph = new DirectedWeightedMultigraph<Vertex, Link>(
+			Link.class);
+	private int nextVertex = 0;
+	private int nextInterface = 0;
+
+	/**
+	 * @param seed
+	 *            - The seed of the random numbers.
+	 * @param vertices
+	 *            - The number of vertices.
+	 * @param extraLinks
+	 *            - The number of pairs of links added to the spanning tree.
+	 * @param integerWeights
+	 *            - True for weights from 1 to 4, false for unique weights.
+	 */
+	RandomTopology(long seed, int vertices, int extraLinks,
+			boolean integerWeights) {
+		this.random = new Random(seed);
+		this.integerWeights = integerWeights;
+
+		List<Vertex> added = new ArrayList<Vertex>();
+		for (int i = 0; i < vertices; i++) {
+			Vertex vertex = addVertex();
+			if (!added.isEmpty()) {
+				addLinks(vertex, added.get(random.nextInt(added.size())));
+			}
+			added.add(vertex);
+		}
+		for (int i = 0; i < extraLinks; i++) {
+			Vertex source = randomVertex();
+			Vertex target = randomVertex();
+			if (source != target) {
+				addLinks(source, target);
+			}
+		}
+	}
+
+	/**
+	 * @return The topology.
+	 */
+	DirectedWeightedMultigraph<Vertex, Link> getGraph() {
+		return graph;
+	}
+
+	/**
+	 * @return The random numbers of the topology.
+	 */
+	Random getRandom() {
+		return random;
+	}
+
+	/**
+	 * @return A new vertex without links.
+	 */
+	Vertex addVertex() {
+		String name = "R" + nextVertex++;
+		Vertex vertex = new Vertex(name, null, null, null, 0, name,
+				null, 0, 0);
+		graph.addVertex(vertex);
+		return vertex;
+	}
+
+	/**
+	 * Add a link in both directions between two vertices.
+	 */
+	void addLinks(Vertex a, Vertex b) {
+		String portA = "Gi" + nextInterface++;
+		String portB = "Gi" + nextInterface++;
+		addLink(a, b, portA, portB);
+		addLink(b, a, portB, portA);
+	}
+
+	/**
+	 * @return A random vertex of the topology.
+	 */
+	Vertex randomVertex() {
+		List<Vertex> vertices = new ArrayList<Vertex>(graph.vertexSet());
+		return vertices.get(random.nextInt(vertices.size()));
+	}
+
+	/**
+	 * @return A random link of the topology.
+	 */
+	Link randomLink() {
+		List<Link> links = new ArrayList<Link>(graph.edgeSet());
+		return links.get(random.nextInt(links.size()));
+	}
+
+	/**
+	 * @return A random weight.
+	 */
+	double randomWeight() {
+		if (integerWeights) {
+			return 1 + random.nextInt(4);
+		}
+		return 1 + random.nextInt(1000) + random.nextDouble();
+	}
+
+	private void addLink(Vertex source, Vertex target, String sourcePort,
+			String targetPort) {
+		Link link = new Link(sourcePort, targetPort);
+		link.setUp(true);
+		graph.addEdge(source, target, link);
+		graph.setEdgeWeight(link, randomWeight());
+	}
+}
@@ -0,0 +1,145 @@
+package controllers.routing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.jgrapht.alg.DijkstraShortestPath;
+import org.jgrapht.graph.DirectedWeightedMultigraph;
+import org.junit.Test;
+
+import de.lmu.ifi.nm.www.Link;
+import de.lmu.ifi.nm.www.Vertex;
+
+/**
+ * Compares the shortest path trees with the DijkstraShortestPath of JGraphT.
+ */
+public class ShortestPathTreeTest {
+	private static final double EPSILON = 1e-9;
+
+	@Test
+	public void uniqueWeights() {
+		check(new RandomTopology(11, 80, 60, false).getGraph(), true);
+	}
+
+	@Test
+	public void tiedWeights() {
+		check(new RandomTopology(12, 80, 60, true).getGraph(), false);
+	}
+
+	@Test
+	public void unreachableVertices() {
+		RandomTopology topology = new RandomTopology(13, 20, 10, false);
+		Vertex isolated = topology.addVertex();
+		Vertex source = topology.randomVertex();
+		Link link = new Link("Gi-1", "Gi-2");
+		link.setUp(true);
+		topology.getGraph().addEdge(source, isolated, link);
+		topology.getGraph().setEdgeWeight(link, 1);
+
+		check(topology.getGraph(), true);
+	}
+
+	@Test
+	public void sameTreeForSameSnapshot() {
+		GraphSnapshot snapshot = new GraphSnapshot(new RandomTopology(14, 80,
+				60, true).getGraph());
+
+		for (int s = 0; s < snapshot.getVertexCount(); s++) {
+			ShortestPathTree first = new ShortestPathTree(snapshot, s);
+			ShortestPathTree second = new ShortestPathTree(snapshot, s);
+			for (int v = 0; v < snapshot.getVertexCount(); v++) {
+				assertEquals(first.getParentEdge(v), second.getParentEdge(v));
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void negativeWeight() {
+		RandomTopology topology = new RandomTopology(15, 10, 0, false);
+		topology.getGraph().setEdgeWeight(topology.randomLink(), -1);
+
+		new GraphSnapshot(topology.getGraph());
+	}
+
+	/**
+	 * Compare the trees of all sources with the paths of JGraphT. Without
+	 * ties the paths have to be the same, with ties their lengths.
+	 */
+	private void check(DirectedWeightedMultigraph<Vertex, Link> graph,
+			boolean samePaths) {
+		GraphSnapshot snapshot = new GraphSnapshot(graph);
+
+		for (int s = 0; s < snapshot.getVertexCount(); s++) {
+			ShortestPathTree tree = new ShortestPathTree(snapshot, s);
+			Vertex source = snapshot.getVertex(s);
+			double previous = 0;
+
+			for (Vertex vertex : tree.getVertices()) {
+				double distance = tree.getDistance(snapshot.indexOf(vertex));
+				assertTrue(distance >= previous);
+				previous = distance;
+			}
+
+			for (int d = 0; d < snapshot.getVertexCount(); d++) {
+				if (d == s) {
+					continue;
+				}
+				Vertex destination = snapshot.getVertex(d);
+				DijkstraShortestPath<Vertex, Link> dijkstra = new DijkstraShortestPath<Vertex, Link>(
+						graph, source, destination);
+				String pair = source + " -> " + destination;
+
+				if (dijkstra.getPath() == null) {
+					assertFalse(pair, tree.isReachable(d));
+					assertEquals(pair, Double.POSITIVE_INFINITY,
+							tree.getDistance(d), 0);
+					assertEquals(pair, -1, tree.getHopCount(d));
+					continue;
+				}
+
+				List<Link> path = tree.getPath(destination);
+				assertTrue(pair, tree.isReachable(d));
+				assertEquals(pair, dijkstra.getPathLength(),
+						tree.getDistance(d), EPSILON);
+				if (samePaths) {
+					assertEquals(pair, dijkstra.getPathEdgeList(), path);
+				}
+
+				assertPath(graph, source, destination, path);
+				assertEquals(pair, path.size(), tree.getHopCount(d));
+				assertEquals(pair, tree.getDistance(d), getLength(graph, path),
+						EPSILON);
+				assertEquals(pair, graph.getEdgeTarget(path.get(0)),
+						snapshot.getVertex(tree.getNextHop(d)));
+				assertEquals(pair,
+						graph.getEdgeSource(path.get(path.size() - 1)),
+						snapshot.getVertex(tree.getSecondToLast(d)));
+			}
+		}
+	}
+
+	/**
+	 * Check that the links form a path from the source to the destination.
+	 */
+	private void assertPath(DirectedWeightedMultigraph<Vertex, Link> graph,
+			Vertex source, Vertex destination, List<Link> path) {
+		Vertex vertex = source;
+		for (Link link : path) {
+			assertEquals(vertex, graph.getEdgeSource(link));
+			vertex = graph.getEdgeTarget(link);
+		}
+		assertEquals(destination, vertex);
+	}
+
+	private double getLength(DirectedWeightedMultigraph<Vertex, Link> graph,
+			List<Link> path) {
+		double length = 0;
+		for (Link link : path) {
+			length += graph.getEdgeWeight(link);
+		}
+		return length;
+	}
+}